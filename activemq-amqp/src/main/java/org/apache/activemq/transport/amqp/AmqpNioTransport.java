@@ -74,7 +74,7 @@ public class AmqpNioTransport extends TcpTransport {
         channel = socket.getChannel();
         channel.configureBlocking(false);
         // listen for events telling us when the socket is readable.
-        selection = SelectorManager.getInstance().register(channel, new SelectorManager.Listener() {
+        selection = getSelectorManager().register(channel, new SelectorManager.Listener() {
             @Override
             public void onSelect(SelectorSelection selection) {
                 if (!isStopped()) {
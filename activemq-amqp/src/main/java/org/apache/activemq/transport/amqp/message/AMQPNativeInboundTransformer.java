@@ -17,9 +17,21 @@
 package org.apache.activemq.transport.amqp.message;
 
 import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
 
 public class AMQPNativeInboundTransformer extends AMQPRawInboundTransformer {
 
+    // For now Proton requires that we create a decoder to create an encoder
+    private final DecoderImpl decoder = new DecoderImpl();
+    private final EncoderImpl encoder = new EncoderImpl(decoder);
+    {
+        AMQPDefinedTypes.registerAllTypes(decoder, encoder);
+    }
+
+    private AMQPRawInboundTransformer fallbackTransformer;
+
     @Override
     public String getTransformerName() {
         return TRANSFORMER_NATIVE;
@@ -27,12 +39,17 @@ public class AMQPNativeInboundTransformer extends AMQPRawInboundTransformer {
 
     @Override
     public InboundTransformer getFallbackTransformer() {
-        return new AMQPRawInboundTransformer();
+        if (fallbackTransformer == null) {
+            fallbackTransformer = new AMQPRawInboundTransformer();
+        }
+        return fallbackTransformer;
     }
 
     @Override
     protected ActiveMQMessage doTransform(EncodedMessage amqpMessage) throws Exception {
-        org.apache.qpid.proton.message.Message amqp = amqpMessage.decode();
+        // The encoded bytes are stored unchanged, so only the sections that are mapped
+        // onto the message are decoded and the body is skipped.
+        org.apache.qpid.proton.message.Message amqp = amqpMessage.decodeWithoutBody(decoder);
 
         ActiveMQMessage result = super.doTransform(amqpMessage);
 
@@ -19,6 +19,8 @@ package org.apache.activemq.transport.amqp.message;
 import static org.apache.activemq.transport.amqp.message.AmqpMessageSupport.JMS_AMQP_MESSAGE_FORMAT;
 import static org.apache.activemq.transport.amqp.message.AmqpMessageSupport.getBinaryFromMessageBody;
 
+import java.nio.ByteBuffer;
+
 import jakarta.jms.JMSException;
 import jakarta.jms.MessageFormatException;
 
@@ -27,20 +29,30 @@ import org.apache.activemq.command.ActiveMQMessage;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.messaging.Header;
-import org.apache.qpid.proton.message.ProtonJMessage;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.codec.TypeConstructor;
 
 public class AMQPNativeOutboundTransformer implements OutboundTransformer {
 
+    // For now Proton requires that we create a decoder to create an encoder
+    private final DecoderImpl decoder = new DecoderImpl();
+    private final EncoderImpl encoder = new EncoderImpl(decoder);
+    {
+        AMQPDefinedTypes.registerAllTypes(decoder, encoder);
+    }
+
     @Override
     public EncodedMessage transform(ActiveMQMessage message) throws Exception {
         if (message == null || !(message instanceof ActiveMQBytesMessage)) {
             return null;
         }
 
-        return transform(this, (ActiveMQBytesMessage) message);
+        return transform((ActiveMQBytesMessage) message);
     }
 
-    static EncodedMessage transform(OutboundTransformer options, ActiveMQBytesMessage message) throws JMSException {
+    EncodedMessage transform(ActiveMQBytesMessage message) throws JMSException {
         final long messageFormat;
         if (message.propertyExists(JMS_AMQP_MESSAGE_FORMAT)) {
             try {
@@ -54,39 +66,51 @@ public class AMQPNativeOutboundTransformer implements OutboundTransformer {
 
         Binary encodedMessage = getBinaryFromMessageBody(message);
         byte encodedData[] = encodedMessage.getArray();
+        int encodedOffset = encodedMessage.getArrayOffset();
         int encodedSize = encodedMessage.getLength();
 
         int count = message.getRedeliveryCounter();
         if (count >= 1) {
 
-            // decode...
-            ProtonJMessage amqp = (ProtonJMessage) org.apache.qpid.proton.message.Message.Factory.create();
-            int offset = 0;
-            int len = encodedSize;
-            while (len > 0) {
-                final int decoded = amqp.decode(encodedData, offset, len);
-                assert decoded > 0 : "Make progress decoding the message";
-                offset += decoded;
-                len -= decoded;
+            // The header is always the first section, decode only that one and keep the
+            // bytes of all the sections that follow it.
+            ByteBuffer buffer = ByteBuffer.wrap(encodedData, encodedOffset, encodedSize);
+            decoder.setByteBuffer(buffer);
+
+            Header header = null;
+            if (buffer.hasRemaining()) {
+                TypeConstructor<?> constructor = decoder.readConstructor();
+                if (Header.class.equals(constructor.getTypeClass())) {
+                    header = (Header) constructor.readValue();
+                } else {
+                    buffer.position(encodedOffset);
+                }
             }
+            int remainder = buffer.position();
+            int remainderSize = encodedOffset + encodedSize - remainder;
 
             // Update the DeliveryCount header...
             // The AMQP delivery-count field only includes prior failed delivery attempts,
             // whereas JMSXDeliveryCount includes the first/current delivery attempt. Subtract 1.
-            if (amqp.getHeader() == null) {
-                amqp.setHeader(new Header());
+            if (header == null) {
+                header = new Header();
+            } else if (header.getDeliveryCount() != null && header.getDeliveryCount().intValue() == count) {
+                return new EncodedMessage(messageFormat, encodedData, encodedOffset, encodedSize);
             }
 
-            amqp.getHeader().setDeliveryCount(new UnsignedInteger(count));
+            header.setDeliveryCount(new UnsignedInteger(count));
 
-            // Re-encode...
-            final AmqpWritableBuffer buffer = new AmqpWritableBuffer();
-            int written = amqp.encode(buffer);
+            // Re-encode the header followed by the untouched sections...
+            final AmqpWritableBuffer output = new AmqpWritableBuffer(remainderSize + 64);
+            encoder.setByteBuffer(output);
+            encoder.writeObject(header);
+            output.put(encodedData, remainder, remainderSize);
 
-            encodedData = buffer.getArray();
-            encodedSize = written;
+            encodedData = output.getArray();
+            encodedOffset = 0;
+            encodedSize = output.getArrayLength();
         }
 
-        return new EncodedMessage(messageFormat, encodedData, 0, encodedSize);
+        return new EncodedMessage(messageFormat, encodedData, encodedOffset, encodedSize);
     }
 }
@@ -26,6 +26,7 @@ import org.apache.activemq.command.ActiveMQMessage;
 public class AutoOutboundTransformer extends JMSMappingOutboundTransformer {
 
     private final JMSMappingOutboundTransformer transformer = new JMSMappingOutboundTransformer();
+    private final AMQPNativeOutboundTransformer nativeTransformer = new AMQPNativeOutboundTransformer();
 
     @Override
     public EncodedMessage transform(ActiveMQMessage message) throws Exception {
@@ -35,7 +36,7 @@ public class AutoOutboundTransformer extends JMSMappingOutboundTransformer {
 
         if (message.getBooleanProperty(JMS_AMQP_NATIVE)) {
             if (message instanceof BytesMessage) {
-                return AMQPNativeOutboundTransformer.transform(this, (ActiveMQBytesMessage) message);
+                return nativeTransformer.transform((ActiveMQBytesMessage) message);
             } else {
                 return null;
             }
@@ -16,7 +16,21 @@
  */
 package org.apache.activemq.transport.amqp.message;
 
+import java.nio.ByteBuffer;
+
 import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.AmqpSequence;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.DeliveryAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Footer;
+import org.apache.qpid.proton.amqp.messaging.Header;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.TypeConstructor;
 import org.apache.qpid.proton.message.Message;
 
 public class EncodedMessage {
@@ -48,6 +62,110 @@ public class EncodedMessage {
         return amqp;
     }
 
+    /**
+     * Decodes the header, annotation, properties and footer sections of the message while
+     * skipping over the body, which is left in its encoded form.
+     *
+     * @param decoder
+     *        the decoder, with the AMQP types registered, used to read the sections
+     *
+     * @return a message holding all sections of the encoded message except the body
+     */
+    public Message decodeWithoutBody(DecoderImpl decoder) {
+        return decodeSections(decoder, false);
+    }
+
+    /**
+     * Decodes all sections of the message with the given decoder. A data body is not copied,
+     * its binary refers to the bytes of this encoded message.
+     *
+     * @param decoder
+     *        the decoder, with the AMQP types registered, used to read the sections
+     *
+     * @return a message holding all sections of the encoded message
+     */
+    public Message decode(DecoderImpl decoder) {
+        return decodeSections(decoder, true);
+    }
+
+    private Message decodeSections(DecoderImpl decoder, boolean withBody) {
+        Header header = null;
+        DeliveryAnnotations deliveryAnnotations = null;
+        MessageAnnotations messageAnnotations = null;
+        Properties properties = null;
+        ApplicationProperties applicationProperties = null;
+        Section body = null;
+        Footer footer = null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(getArray(), getArrayOffset(), getLength());
+        decoder.setByteBuffer(buffer);
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            TypeConstructor<?> constructor = decoder.readConstructor();
+            Class<?> type = constructor.getTypeClass();
+            if (Header.class.equals(type)) {
+                header = (Header) constructor.readValue();
+            } else if (DeliveryAnnotations.class.equals(type)) {
+                deliveryAnnotations = (DeliveryAnnotations) constructor.readValue();
+            } else if (MessageAnnotations.class.equals(type)) {
+                messageAnnotations = (MessageAnnotations) constructor.readValue();
+            } else if (Properties.class.equals(type)) {
+                properties = (Properties) constructor.readValue();
+            } else if (ApplicationProperties.class.equals(type)) {
+                applicationProperties = (ApplicationProperties) constructor.readValue();
+            } else if (Footer.class.equals(type)) {
+                footer = (Footer) constructor.readValue();
+            } else if (withBody && Data.class.equals(type)) {
+                Binary payload = sliceData(buffer, start);
+                body = payload != null ? new Data(payload) : (Section) constructor.readValue();
+            } else if (withBody && (AmqpValue.class.equals(type) || AmqpSequence.class.equals(type))) {
+                body = (Section) constructor.readValue();
+            } else {
+                constructor.skipValue();
+            }
+        }
+
+        return Message.Factory.create(header, deliveryAnnotations, messageAnnotations, properties, applicationProperties, body, footer);
+    }
+
+    /**
+     * Locates the payload of the data section starting at the given position, which is
+     * encoded as the described type code, a numeric descriptor and a vbin8 or vbin32.
+     *
+     * @return the payload referring to the bytes of this message, positioning the buffer
+     *         after the section, or null when the section is encoded in another way
+     */
+    private Binary sliceData(ByteBuffer buffer, int start) {
+        byte[] array = getArray();
+        int position = start + 1;
+        switch (array[position] & 0xFF) {
+        case 0x53:
+            position += 2;
+            break;
+        case 0x80:
+            position += 9;
+            break;
+        default:
+            return null;
+        }
+
+        int length;
+        switch (array[position++] & 0xFF) {
+        case 0xA0:
+            length = array[position++] & 0xFF;
+            break;
+        case 0xB0:
+            length = ByteBuffer.wrap(array, position, 4).getInt();
+            position += 4;
+            break;
+        default:
+            return null;
+        }
+
+        buffer.position(position + length);
+        return new Binary(array, position, length);
+    }
+
     public int getLength() {
         return data.getLength();
     }
@@ -57,10 +57,20 @@ import org.apache.qpid.proton.amqp.messaging.AmqpSequence;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
 import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
 import org.apache.qpid.proton.message.Message;
 
 public class JMSMappingInboundTransformer extends InboundTransformer {
 
+    private final DecoderImpl decoder = new DecoderImpl();
+    {
+        AMQPDefinedTypes.registerAllTypes(decoder, new EncoderImpl(decoder));
+    }
+
+    private AMQPNativeInboundTransformer fallbackTransformer;
+
     @Override
     public String getTransformerName() {
         return TRANSFORMER_JMS;
@@ -68,12 +78,16 @@ public class JMSMappingInboundTransformer extends InboundTransformer {
 
     @Override
     public InboundTransformer getFallbackTransformer() {
-        return new AMQPNativeInboundTransformer();
+        if (fallbackTransformer == null) {
+            fallbackTransformer = new AMQPNativeInboundTransformer();
+        }
+        return fallbackTransformer;
     }
 
     @Override
     protected ActiveMQMessage doTransform(EncodedMessage amqpMessage) throws Exception {
-        Message amqp = amqpMessage.decode();
+        // A data body is left in the encoded bytes rather than copied out of them.
+        Message amqp = amqpMessage.decode(decoder);
 
         ActiveMQMessage result = createMessage(amqp, amqpMessage);
 
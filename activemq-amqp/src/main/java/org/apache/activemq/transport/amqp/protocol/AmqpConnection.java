@@ -36,7 +36,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -154,6 +156,7 @@ public class AmqpConnection implements AmqpProtocolConverter {
     private final Map<TransactionId, AmqpTransactionCoordinator> transactions = new HashMap<>();
     private final ConcurrentMap<Integer, ResponseHandler> resposeHandlers = new ConcurrentHashMap<>();
     private final ConcurrentMap<ConsumerId, AmqpSender> subscriptionsByConsumerId = new ConcurrentHashMap<>();
+    private final Set<AmqpSender> sendersWithPendingAcks = new LinkedHashSet<>();
 
     public AmqpConnection(AmqpTransport transport, BrokerService brokerService) {
         this.amqpTransport = transport;
@@ -437,6 +440,8 @@ public class AmqpConnection implements AmqpProtocolConverter {
                 eventCollector.pop();
             }
 
+            flushPendingAcks();
+
         } catch (Throwable e) {
             handleException(new AmqpProtocolException("Could not process AMQP commands", true, e));
         }
@@ -688,6 +693,20 @@ public class AmqpConnection implements AmqpProtocolConverter {
         subscriptionsByConsumerId.remove(consumerId);
     }
 
+    void registerPendingAcks(AmqpSender sender) {
+        sendersWithPendingAcks.add(sender);
+    }
+
+    private void flushPendingAcks() throws Exception {
+        if (!sendersWithPendingAcks.isEmpty()) {
+            AmqpSender[] senders = sendersWithPendingAcks.toArray(new AmqpSender[sendersWithPendingAcks.size()]);
+            sendersWithPendingAcks.clear();
+            for (AmqpSender sender : senders) {
+                sender.flushAcks();
+            }
+        }
+    }
+
     void registerTransaction(TransactionId txId, AmqpTransactionCoordinator coordinator) {
         transactions.put(txId, coordinator);
     }
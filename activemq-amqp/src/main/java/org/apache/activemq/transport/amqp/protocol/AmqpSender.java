@@ -19,7 +19,11 @@ package org.apache.activemq.transport.amqp.protocol;
 import static org.apache.activemq.transport.amqp.AmqpSupport.toLong;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.activemq.broker.region.AbstractSubscription;
@@ -79,6 +83,14 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
     private final LinkedList<MessageDispatch> outbound = new LinkedList<>();
     private final LinkedList<Delivery> dispatchedInTx = new LinkedList<>();
 
+    // Accepted deliveries are collected and acknowledged to the broker with a single
+    // ranged ack as long as they follow each other in the order the broker dispatched
+    // them, the position of each dispatch is tracked here until it has been acked.
+    private final Map<MessageDispatch, Long> dispatchSequences = new IdentityHashMap<>();
+    private final List<Delivery> pendingAcks = new ArrayList<>();
+    private long nextDispatchSequence;
+    private long lastPendingAckSequence;
+
     private final ConsumerInfo consumerInfo;
     private AbstractSubscription subscription;
     private AtomicInteger prefetchExtension;
@@ -129,6 +141,12 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
     @Override
     public void detach() {
         if (!isClosed() && isOpened()) {
+            try {
+                flushAcks();
+            } catch (Exception e) {
+                LOG.warn("Error detected while flushing pending acks: {}", e.getMessage());
+            }
+
             RemoveInfo removeCommand = new RemoveInfo(getConsumerId());
             removeCommand.setLastDeliveredSequenceId(lastDeliveredSequenceId);
 
@@ -148,6 +166,12 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
     @Override
     public void close() {
         if (!isClosed() && isOpened()) {
+            try {
+                flushAcks();
+            } catch (Exception e) {
+                LOG.warn("Error detected while flushing pending acks: {}", e.getMessage());
+            }
+
             RemoveInfo removeCommand = new RemoveInfo(getConsumerId());
             removeCommand.setLastDeliveredSequenceId(lastDeliveredSequenceId);
 
@@ -175,6 +199,9 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
 
     @Override
     public void flow() throws Exception {
+        // Settle what was accepted so far before the credit is extended
+        flushAcks();
+
         Link endpoint = getEndpoint();
         if (LOG.isTraceEnabled()) {
             LOG.trace("Flow: draining={}, drain={} credit={}, currentCredit={}, senderDeliveryCount={} - Sub={}",
@@ -268,12 +295,17 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
                 }
             }
         } else {
+            if (!(state instanceof Accepted)) {
+                // Keep the acks for earlier accepted deliveries ahead of this outcome
+                flushAcks();
+            }
+
             if (state instanceof Accepted) {
                 LOG.trace("onDelivery: accepted state = {}", state);
                 if (!delivery.remotelySettled()) {
                     delivery.disposition(new Accepted());
                 }
-                settle(delivery, MessageAck.INDIVIDUAL_ACK_TYPE);
+                acknowledge(delivery);
             } else if (state instanceof Rejected) {
                 // Rejection is a terminal outcome, we poison the message for dispatch to
                 // the DLQ.  If a custom redelivery policy is used on the broker the message
@@ -307,9 +339,12 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
 
     @Override
     public void commit(LocalTransactionId txnId) throws Exception {
+        flushAcks();
+
         if (!dispatchedInTx.isEmpty()) {
             for (final Delivery delivery : dispatchedInTx) {
                 MessageDispatch dispatch = (MessageDispatch) delivery.getContext();
+                dispatchSequences.remove(dispatch);
 
                 MessageAck pendingTxAck = new MessageAck(dispatch, MessageAck.INDIVIDUAL_ACK_TYPE, 1);
                 pendingTxAck.setFirstMessageId(dispatch.getMessage().getMessageId());
@@ -338,6 +373,8 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
 
     @Override
     public void rollback(LocalTransactionId txnId) throws Exception {
+        flushAcks();
+
         synchronized (outbound) {
 
             LOG.trace("Rolling back {} messages for redelivery. ", dispatchedInTx.size());
@@ -374,6 +411,12 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
             synchronized (outbound) {
                 outbound.addLast(dispatch);
             }
+
+            // A released message is dispatched again locally but keeps its place in
+            // the broker's list of dispatched messages.
+            if (dispatch.getMessage() != null && !dispatchSequences.containsKey(dispatch)) {
+                dispatchSequences.put(dispatch, nextDispatchSequence++);
+            }
             pumpOutbound();
             session.pumpProtonToSocket();
         }
@@ -415,6 +458,71 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
         consumerInfo.setDestination(destination);
     }
 
+    /**
+     * Sends a single ack to the broker for the accepted deliveries that are waiting
+     * to be acknowledged, the deliveries are settled once the broker has processed it.
+     *
+     * @throws Exception if an error occurs while sending the ack.
+     */
+    public void flushAcks() throws Exception {
+        if (pendingAcks.isEmpty()) {
+            return;
+        }
+
+        if (pendingAcks.size() == 1) {
+            Delivery delivery = pendingAcks.remove(0);
+            settle(delivery, MessageAck.INDIVIDUAL_ACK_TYPE);
+            return;
+        }
+
+        final List<Delivery> deliveries = new ArrayList<>(pendingAcks);
+        pendingAcks.clear();
+
+        for (Delivery delivery : deliveries) {
+            dispatchSequences.remove(delivery.getContext());
+        }
+
+        MessageDispatch first = (MessageDispatch) deliveries.get(0).getContext();
+        MessageDispatch last = (MessageDispatch) deliveries.get(deliveries.size() - 1).getContext();
+        lastDeliveredSequenceId = last.getMessage().getMessageId().getBrokerSequenceId();
+
+        MessageAck ack = new MessageAck();
+        ack.setConsumerId(getConsumerId());
+        ack.setFirstMessageId(first.getMessage().getMessageId());
+        ack.setLastMessageId(last.getMessage().getMessageId());
+        ack.setMessageCount(deliveries.size());
+        ack.setAckType(MessageAck.STANDARD_ACK_TYPE);
+        ack.setDestination(last.getDestination());
+        LOG.trace("Sending ranged Ack to ActiveMQ: {}", ack);
+
+        sendToActiveMQ(ack, new ResponseHandler() {
+            @Override
+            public void onResponse(AmqpProtocolConverter converter, Response response) throws IOException {
+                if (response.isException()) {
+                    // The range no longer matches what the broker has dispatched, ack
+                    // the deliveries one by one instead, which also returns their tags.
+                    LOG.debug("Ranged Ack was not accepted, acking individually: {}", ((ExceptionResponse) response).getException().getMessage());
+                    try {
+                        for (Delivery delivery : deliveries) {
+                            settle(delivery, MessageAck.INDIVIDUAL_ACK_TYPE);
+                        }
+                    } catch (Exception e) {
+                        throw new IOException(e);
+                    }
+                } else {
+                    for (Delivery delivery : deliveries) {
+                        byte[] tag = delivery.getTag();
+                        if (tag != null && tag.length > 0 && delivery.remotelySettled()) {
+                            tagCache.returnTag(tag);
+                        }
+                        delivery.settle();
+                    }
+                }
+                session.pumpProtonToSocket();
+            }
+        });
+    }
+
     //----- Internal Implementation ------------------------------------------//
 
     public void pumpOutbound() throws Exception {
@@ -496,6 +604,28 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
         }
     }
 
+    private void acknowledge(Delivery delivery) throws Exception {
+        MessageDispatch md = (MessageDispatch) delivery.getContext();
+        Long sequence = dispatchSequences.get(md);
+        if (sequence == null || consumerInfo.isBrowser()) {
+            settle(delivery, MessageAck.INDIVIDUAL_ACK_TYPE);
+            return;
+        }
+
+        if (!pendingAcks.isEmpty()) {
+            MessageDispatch previous = (MessageDispatch) pendingAcks.get(pendingAcks.size() - 1).getContext();
+            if (sequence != lastPendingAckSequence + 1 || !md.getDestination().equals(previous.getDestination())) {
+                flushAcks();
+            }
+        }
+
+        if (pendingAcks.isEmpty()) {
+            session.getConnection().registerPendingAcks(this);
+        }
+        pendingAcks.add(delivery);
+        lastPendingAckSequence = sequence;
+    }
+
     private void settle(final Delivery delivery, final int ackType) throws Exception {
         byte[] tag = delivery.getTag();
         if (tag != null && tag.length > 0 && delivery.remotelySettled()) {
@@ -508,6 +638,7 @@ public class AmqpSender extends AmqpAbstractLink<Sender> {
             onMessageDispatch((MessageDispatch) delivery.getContext());
         } else {
             MessageDispatch md = (MessageDispatch) delivery.getContext();
+            dispatchSequences.remove(md);
             lastDeliveredSequenceId = md.getMessage().getMessageId().getBrokerSequenceId();
             MessageAck ack = new MessageAck();
             ack.setConsumerId(getConsumerId());
@@ -504,6 +504,62 @@ public class AmqpReceiverTest extends AmqpClientTestSupport {
         connection.close();
     }
 
+    @Test(timeout = 60000)
+    public void testAcceptsOutOfOrderAndAroundReleaseAreAllAcked() throws Exception {
+        final int MSG_COUNT = 6;
+        sendMessages(getTestName(), MSG_COUNT, false);
+
+        AmqpClient client = createAmqpClient();
+        AmqpConnection connection = trackConnection(client.connect());
+        AmqpSession session = connection.createSession();
+
+        AmqpReceiver receiver = session.createReceiver("queue://" + getTestName());
+
+        final QueueViewMBean queueView = getProxyToQueue(getTestName());
+        assertEquals(MSG_COUNT, queueView.getQueueSize());
+
+        receiver.flow(MSG_COUNT);
+        AmqpMessage[] messages = new AmqpMessage[MSG_COUNT];
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            messages[i] = receiver.receive(5, TimeUnit.SECONDS);
+            assertNotNull(messages[i]);
+        }
+
+        messages[2].accept();
+        messages[0].accept();
+        messages[1].accept();
+        messages[3].release();
+        messages[4].accept();
+        messages[5].accept();
+
+        assertTrue("Should have ack'd all but the released one", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return queueView.getDequeueCount() == MSG_COUNT - 1;
+            }
+        }, TimeUnit.SECONDS.toMillis(5), TimeUnit.MILLISECONDS.toMillis(50)));
+
+        receiver.flow(1);
+        AmqpMessage message = receiver.receive(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        message.accept();
+
+        assertTrue("Queue should be empty now", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return queueView.getDequeueCount() == MSG_COUNT;
+            }
+        }, TimeUnit.SECONDS.toMillis(5), TimeUnit.MILLISECONDS.toMillis(50)));
+
+        receiver.close();
+
+        assertEquals(0, queueView.getQueueSize());
+
+        connection.close();
+    }
+
     @Test(timeout = 60000)
     public void testSecondReceiverOnQueueGetsAllUnconsumedMessages() throws Exception {
         int MSG_COUNT = 20;
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.amqp.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.UnsignedByte;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Header;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Test;
+
+public class AMQPNativeTransformerTest {
+
+    @Test
+    public void testInboundPopulatesMessageWithoutChangingTheBytes() throws Exception {
+        EncodedMessage em = encodeMessage(createMessage(null));
+
+        ActiveMQMessage result = new AMQPNativeInboundTransformer().transform(em);
+
+        assertTrue(result instanceof ActiveMQBytesMessage);
+        assertEquals(7, result.getPriority());
+        assertTrue(result.isPersistent());
+        assertEquals("value", result.getStringProperty("key"));
+        assertArrayEquals(toBytes(em), result.getContent().getData());
+    }
+
+    @Test
+    public void testDecodeWithoutBodySkipsTheBody() throws Exception {
+        EncodedMessage em = encodeMessage(createMessage(null));
+
+        Message decoded = em.decodeWithoutBody(createDecoder());
+
+        assertNotNull(decoded.getHeader());
+        assertNotNull(decoded.getApplicationProperties());
+        assertNull(decoded.getBody());
+    }
+
+    @Test
+    public void testOutboundForwardsBytesWhenDeliveryCountUnchanged() throws Exception {
+        EncodedMessage em = encodeMessage(createMessage(null));
+        ActiveMQMessage message = new AMQPNativeInboundTransformer().transform(em);
+
+        EncodedMessage result = new AMQPNativeOutboundTransformer().transform(message);
+
+        assertSame(message.getContent().getData(), result.getArray());
+        assertEquals(em.getLength(), result.getLength());
+    }
+
+    @Test
+    public void testOutboundReplacesOnlyTheHeaderOnRedelivery() throws Exception {
+        EncodedMessage em = encodeMessage(createMessage(1));
+        ActiveMQMessage message = new AMQPNativeInboundTransformer().transform(em);
+        message.setRedeliveryCounter(2);
+
+        EncodedMessage result = new AMQPNativeOutboundTransformer().transform(message);
+        Message decoded = result.decode();
+
+        assertEquals(2, decoded.getHeader().getDeliveryCount().intValue());
+        assertEquals(7, decoded.getHeader().getPriority().intValue());
+        assertEquals("value", decoded.getApplicationProperties().getValue().get("key"));
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), ((Data) decoded.getBody()).getValue());
+    }
+
+    @Test
+    public void testOutboundAddsHeaderOnRedeliveryWhenMissing() throws Exception {
+        Message amqp = createMessage(null);
+        amqp.setHeader(null);
+        ActiveMQMessage message = new AMQPNativeInboundTransformer().transform(encodeMessage(amqp));
+        message.setRedeliveryCounter(1);
+
+        Message decoded = new AMQPNativeOutboundTransformer().transform(message).decode();
+
+        assertEquals(1, decoded.getHeader().getDeliveryCount().intValue());
+        assertEquals("value", decoded.getApplicationProperties().getValue().get("key"));
+    }
+
+    private Message createMessage(Integer deliveryCount) {
+        Header header = new Header();
+        header.setDurable(true);
+        header.setPriority(UnsignedByte.valueOf((byte) 7));
+        if (deliveryCount != null) {
+            header.setDeliveryCount(UnsignedInteger.valueOf(deliveryCount));
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("key", "value");
+
+        Message message = Message.Factory.create();
+        message.setHeader(header);
+        message.setApplicationProperties(new ApplicationProperties(properties));
+        message.setBody(new Data(new Binary(new byte[] { 1, 2, 3 })));
+        return message;
+    }
+
+    private DecoderImpl createDecoder() {
+        DecoderImpl decoder = new DecoderImpl();
+        AMQPDefinedTypes.registerAllTypes(decoder, new EncoderImpl(decoder));
+        return decoder;
+    }
+
+    private byte[] toBytes(EncodedMessage em) {
+        byte[] bytes = new byte[em.getLength()];
+        System.arraycopy(em.getArray(), em.getArrayOffset(), bytes, 0, em.getLength());
+        return bytes;
+    }
+
+    private EncodedMessage encodeMessage(Message message) {
+        byte[] encodeBuffer = new byte[1024 * 8];
+        int encodedSize;
+        while (true) {
+            try {
+                encodedSize = message.encode(encodeBuffer, 0, encodeBuffer.length);
+                break;
+            } catch (java.nio.BufferOverflowException e) {
+                encodeBuffer = new byte[encodeBuffer.length * 2];
+            }
+        }
+
+        long messageFormat = 0;
+        return new EncodedMessage(messageFormat, toBytesExact(encodeBuffer, encodedSize), 0, encodedSize);
+    }
+
+    private byte[] toBytesExact(byte[] buffer, int size) {
+        byte[] bytes = new byte[size];
+        System.arraycopy(buffer, 0, bytes, 0, size);
+        return bytes;
+    }
+}
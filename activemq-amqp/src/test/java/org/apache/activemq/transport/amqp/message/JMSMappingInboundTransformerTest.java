@@ -19,6 +19,7 @@ package org.apache.activemq.transport.amqp.message;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.charset.Charset;
@@ -44,11 +45,13 @@ import org.apache.activemq.command.ActiveMQMessage;
 import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.apache.activemq.command.ActiveMQStreamMessage;
 import org.apache.activemq.command.ActiveMQTextMessage;
+import org.apache.activemq.util.ByteSequence;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.AmqpSequence;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
 import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
 import org.apache.qpid.proton.message.Message;
@@ -223,6 +226,51 @@ public class JMSMappingInboundTransformerTest {
         assertEquals("Unexpected message class type", ActiveMQBytesMessage.class, jmsMessage.getClass());
     }
 
+    /**
+     * Test that the content of a BytesMessage created from a data body refers to the
+     * encoded message rather than a copy of it, and that the other sections are mapped.
+     *
+     * @throws Exception if an error occurs during the test.
+     */
+    @Test
+    public void testCreateBytesMessageFromDataKeepsEncodedBytes() throws Exception {
+        for (int size : new int[] { 16, 1024 }) {
+            byte[] payload = new byte[size];
+            Arrays.fill(payload, (byte) 7);
+
+            Message message = Proton.message();
+            message.setBody(new Data(new Binary(payload)));
+            message.setContentType(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE);
+            message.setPriority((short) 7);
+            message.setSubject("subject");
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("key", "value");
+            message.setApplicationProperties(new ApplicationProperties(properties));
+
+            EncodedMessage em = encodeMessage(message);
+
+            JMSMappingInboundTransformer transformer = new JMSMappingInboundTransformer();
+            ActiveMQMessage jmsMessage = transformer.transform(em);
+
+            assertEquals("Unexpected message class type", ActiveMQBytesMessage.class, jmsMessage.getClass());
+            ByteSequence content = jmsMessage.getContent();
+            assertSame(em.getArray(), content.getData());
+            assertEquals(size, content.getLength());
+            assertEquals(7, jmsMessage.getJMSPriority());
+            assertEquals("subject", jmsMessage.getJMSType());
+            assertEquals("value", jmsMessage.getStringProperty("key"));
+        }
+    }
+
+    @Test
+    public void testFallbackTransformerIsReused() throws Exception {
+        JMSMappingInboundTransformer transformer = new JMSMappingInboundTransformer();
+        InboundTransformer fallback = transformer.getFallbackTransformer();
+
+        assertSame(fallback, transformer.getFallbackTransformer());
+        assertSame(fallback.getFallbackTransformer(), fallback.getFallbackTransformer());
+    }
+
     /**
      * Test that receiving a data body containing nothing, but with the content type set to
      * {@value AmqpMessageSupport#SERIALIZED_JAVA_OBJECT_CONTENT_TYPE} results in an ObjectMessage
@@ -42,6 +42,7 @@ import org.apache.activemq.broker.region.RegionBroker;
 import org.apache.activemq.broker.region.Subscription;
 import org.apache.activemq.broker.region.TopicRegion;
 import org.apache.activemq.broker.region.TopicSubscription;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
 import org.apache.activemq.broker.region.virtual.VirtualDestination;
 import org.apache.activemq.broker.region.virtual.VirtualTopic;
 import org.apache.activemq.command.ActiveMQDestination;
@@ -132,7 +133,7 @@ public class AdvisoryBroker extends BrokerFilter {
 
         // Don't advise advisory topics.
         if (!AdvisorySupport.isAdvisoryTopic(info.getDestination())) {
-            ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(info.getDestination());
+            ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(getAdvisoryDestination(info.getDestination()));
             consumersLock.writeLock().lock();
             try {
                 consumers.put(info.getConsumerId(), info);
@@ -185,7 +186,7 @@ public class AdvisoryBroker extends BrokerFilter {
             if (AdvisorySupport.isProducerAdvisoryTopic(info.getDestination())) {
                 for (Iterator<ProducerInfo> iter = producers.values().iterator(); iter.hasNext(); ) {
                     ProducerInfo value = iter.next();
-                    ActiveMQTopic topic = AdvisorySupport.getProducerAdvisoryTopic(value.getDestination());
+                    ActiveMQTopic topic = AdvisorySupport.getProducerAdvisoryTopic(getAdvisoryDestination(value.getDestination()));
                     fireProducerAdvisory(context, value.getDestination(), topic, value, info.getConsumerId());
                 }
             }
@@ -196,7 +197,7 @@ public class AdvisoryBroker extends BrokerFilter {
                 try {
                     for (Iterator<ConsumerInfo> iter = consumers.values().iterator(); iter.hasNext(); ) {
                         ConsumerInfo value = iter.next();
-                        ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(value.getDestination());
+                        ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(getAdvisoryDestination(value.getDestination()));
                         fireConsumerAdvisory(context, value.getDestination(), topic, value, info.getConsumerId());
                     }
                 } finally {
@@ -233,7 +234,7 @@ public class AdvisoryBroker extends BrokerFilter {
         //Don't advise advisory topics.
         if ((info.getDestination() != null || getBrokerService().isAnonymousProducerAdvisorySupport())
                 && !AdvisorySupport.isAdvisoryTopic(info.getDestination())) {
-            ActiveMQTopic topic = AdvisorySupport.getProducerAdvisoryTopic(info.getDestination());
+            ActiveMQTopic topic = AdvisorySupport.getProducerAdvisoryTopic(getAdvisoryDestination(info.getDestination()));
             fireProducerAdvisory(context, info.getDestination(), topic, info);
             producers.put(info.getProducerId(), info);
         }
@@ -242,7 +243,7 @@ public class AdvisoryBroker extends BrokerFilter {
     @Override
     public Destination addDestination(ConnectionContext context, ActiveMQDestination destination, boolean create) throws Exception {
         Destination answer = super.addDestination(context, destination, create);
-        if (!AdvisorySupport.isAdvisoryTopic(destination)) {
+        if (!AdvisorySupport.isAdvisoryTopic(destination) && !isFlyweightTopic(destination)) {
             //for queues, create demand if isUseVirtualDestSubsOnCreation is true
             if (getBrokerService().isUseVirtualDestSubsOnCreation() && destination.isQueue()) {
                 //check if this new destination matches a virtual destination that exists
@@ -356,7 +357,7 @@ public class AdvisoryBroker extends BrokerFilter {
         // Don't advise advisory topics.
         ActiveMQDestination dest = info.getDestination();
         if (!AdvisorySupport.isAdvisoryTopic(dest)) {
-            ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(dest);
+            ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(getAdvisoryDestination(dest));
             consumersLock.writeLock().lock();
             try {
                 consumers.remove(info.getConsumerId());
@@ -404,7 +405,7 @@ public class AdvisoryBroker extends BrokerFilter {
 
         // Don't advise advisory topics.
         if (!AdvisorySupport.isAdvisoryTopic(dest)) {
-            ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(dest);
+            ActiveMQTopic topic = AdvisorySupport.getConsumerAdvisoryTopic(getAdvisoryDestination(dest));
             fireConsumerAdvisory(context, dest, topic, info);
         }
 
@@ -418,7 +419,7 @@ public class AdvisoryBroker extends BrokerFilter {
         //Don't advise advisory topics.
         ActiveMQDestination dest = info.getDestination();
         if ((dest != null || getBrokerService().isAnonymousProducerAdvisorySupport()) && !AdvisorySupport.isAdvisoryTopic(dest)) {
-            ActiveMQTopic topic = AdvisorySupport.getProducerAdvisoryTopic(dest);
+            ActiveMQTopic topic = AdvisorySupport.getProducerAdvisoryTopic(getAdvisoryDestination(dest));
             producers.remove(info.getProducerId());
             if (dest == null || !dest.isTemporary() || destinations.containsKey(dest)) {
                 fireProducerAdvisory(context, dest, topic, info.createRemoveCommand());
@@ -850,6 +851,30 @@ public class AdvisoryBroker extends BrokerFilter {
         }
     }
 
+    private boolean isFlyweightTopic(ActiveMQDestination destination) {
+        return getFlyweightEntry(destination) != null;
+    }
+
+    /**
+     * Consumer and producer advisories of flyweight topics are sent on the advisory topic of
+     * their policy entry's destination, so a large topic namespace does not create an
+     * advisory topic per leaf topic.
+     */
+    private ActiveMQDestination getAdvisoryDestination(ActiveMQDestination destination) {
+        PolicyEntry entry = getFlyweightEntry(destination);
+        return entry != null && entry.getDestination() != null ? entry.getDestination() : destination;
+    }
+
+    private PolicyEntry getFlyweightEntry(ActiveMQDestination destination) {
+        if (destination != null && destination.isTopic() && !destination.isTemporary() && getBrokerService().getDestinationPolicy() != null) {
+            PolicyEntry entry = getBrokerService().getDestinationPolicy().getEntryFor(destination);
+            if (entry != null && entry.isFlyweight()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     private void handleFireFailure(String message, Throwable cause) {
         LOG.warn("Failed to fire {} advisory", message, cause);
     }
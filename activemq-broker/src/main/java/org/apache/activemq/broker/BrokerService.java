@@ -72,6 +72,7 @@ import org.apache.activemq.broker.region.Destination;
 import org.apache.activemq.broker.region.DestinationFactory;
 import org.apache.activemq.broker.region.DestinationFactoryImpl;
 import org.apache.activemq.broker.region.DestinationInterceptor;
+import org.apache.activemq.broker.region.DispatchScheduler;
 import org.apache.activemq.broker.region.RegionBroker;
 import org.apache.activemq.broker.region.policy.PolicyMap;
 import org.apache.activemq.broker.region.virtual.MirroredQueue;
@@ -97,6 +98,7 @@ import org.apache.activemq.store.JournaledStore;
 import org.apache.activemq.store.PListStore;
 import org.apache.activemq.store.PersistenceAdapter;
 import org.apache.activemq.store.PersistenceAdapterFactory;
+import org.apache.activemq.store.RetainedMessageStore;
 import org.apache.activemq.store.memory.MemoryPersistenceAdapter;
 import org.apache.activemq.thread.Scheduler;
 import org.apache.activemq.thread.TaskRunnerFactory;
@@ -165,6 +167,8 @@ public class BrokerService implements Service {
     private ManagementContext managementContext;
     private ObjectName brokerObjectName;
     private TaskRunnerFactory taskRunnerFactory;
+    private DispatchScheduler dispatchScheduler;
+    private int dispatchSchedulerPoolSize;
     private TaskRunnerFactory persistenceTaskRunnerFactory;
     private SystemUsage systemUsage;
     private SystemUsage producerSystemUsage;
@@ -245,6 +249,7 @@ public class BrokerService implements Service {
     private boolean networkConnectorStartAsync = false;
     private boolean allowTempAutoCreationOnSend;
     private JobSchedulerStore jobSchedulerStore;
+    private RetainedMessageStore retainedMessageStore;
     private final AtomicLong totalConnections = new AtomicLong();
     private final AtomicInteger currentConnections = new AtomicInteger();
 
@@ -706,6 +711,18 @@ public class BrokerService implements Service {
                 throw exception;
             }
         }
+
+        if (retainedMessageStore != null) {
+            LOG.info("Starting Retained Message Store");
+            try {
+                retainedMessageStore.start();
+            } catch (Exception e) {
+                RuntimeException exception = new RuntimeException(
+                        "Failed to start retained message store: " + retainedMessageStore, e);
+                LOG.error(exception.getLocalizedMessage(), e);
+                throw exception;
+            }
+        }
         LOG.info("Persistence Adapter successfully started");
     }
 
@@ -852,6 +869,9 @@ public class BrokerService implements Service {
             jobSchedulerStore.stop();
             jobSchedulerStore = null;
         }
+        if (retainedMessageStore != null) {
+            stopper.stop(retainedMessageStore);
+        }
         if (tempDataStore != null) {
             tempDataStore.stop();
             tempDataStore = null;
@@ -875,6 +895,10 @@ public class BrokerService implements Service {
             this.taskRunnerFactory.shutdown();
             this.taskRunnerFactory = null;
         }
+        if (this.dispatchScheduler != null) {
+            this.dispatchScheduler.shutdown();
+            this.dispatchScheduler = null;
+        }
         if (this.executor != null) {
             ThreadPoolUtils.shutdownNow(executor);
             this.executor = null;
@@ -1279,6 +1303,36 @@ public class BrokerService implements Service {
         this.taskRunnerFactory = taskRunnerFactory;
     }
 
+    /**
+     * @return the shared dispatch scheduler used to run queue page in and dispatch, or null
+     * when dispatchSchedulerPoolSize is not set and each queue uses its own task runner
+     */
+    public synchronized DispatchScheduler getDispatchScheduler() {
+        if (this.dispatchScheduler == null && dispatchSchedulerPoolSize > 0) {
+            this.dispatchScheduler = new DispatchScheduler("ActiveMQ BrokerService[" + getBrokerName() + "] Dispatch Scheduler",
+                    dispatchSchedulerPoolSize, getTaskRunnerPriority());
+        }
+        return this.dispatchScheduler;
+    }
+
+    public void setDispatchScheduler(DispatchScheduler dispatchScheduler) {
+        this.dispatchScheduler = dispatchScheduler;
+    }
+
+    public int getDispatchSchedulerPoolSize() {
+        return dispatchSchedulerPoolSize;
+    }
+
+    /**
+     * Sets the number of threads of a broker wide scheduler that runs queue page in and
+     * dispatch, sharing them fairly between queues weighted by backlog and consumer demand.
+     * When zero (the default) each queue is iterated by its own task runner, dedicated or pooled
+     * depending on dedicatedTaskRunner.
+     */
+    public void setDispatchSchedulerPoolSize(int dispatchSchedulerPoolSize) {
+        this.dispatchSchedulerPoolSize = dispatchSchedulerPoolSize;
+    }
+
     public TaskRunnerFactory getPersistenceTaskRunnerFactory() {
         if (taskRunnerFactory == null) {
             persistenceTaskRunnerFactory = new TaskRunnerFactory("Persistence Adaptor Task", persistenceThreadPriority,
@@ -1981,6 +2035,24 @@ public class BrokerService implements Service {
         configureService(jobSchedulerStore);
     }
 
+    /**
+     * @return the broker wide store of retained topic messages or null when
+     *         retained messages are only kept by their topics
+     */
+    public RetainedMessageStore getRetainedMessageStore() {
+        return retainedMessageStore;
+    }
+
+    /**
+     * Sets a store that keeps the retained messages of all topics, so they survive
+     * a restart and can be recovered by wildcard subscriptions without the matching
+     * topics being loaded
+     */
+    public void setRetainedMessageStore(RetainedMessageStore retainedMessageStore) {
+        this.retainedMessageStore = retainedMessageStore;
+        configureService(retainedMessageStore);
+    }
+
     //
     // Implementation methods
     // -------------------------------------------------------------------------
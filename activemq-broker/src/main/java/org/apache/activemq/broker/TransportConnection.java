@@ -982,6 +982,10 @@ public class TransportConnection implements Connection, Task, CommandVisitor {
                     } catch (RuntimeException convertToIO) {
                         throw new IOException(convertToIO);
                     }
+                    Message message = messageDispatch.getMessage();
+                    if (connector != null && message != null && message.getBrokerOutTime() > 0) {
+                        connector.getStatistics().getEnqueueToDispatchLatency().record(message.getBrokerOutTime() - message.getBrokerInTime());
+                    }
                 }
                 dispatch(command);
             }
@@ -42,6 +42,7 @@ import org.apache.activemq.transport.TransportFactorySupport;
 import org.apache.activemq.transport.TransportServer;
 import org.apache.activemq.transport.discovery.DiscoveryAgent;
 import org.apache.activemq.transport.discovery.DiscoveryAgentFactory;
+import org.apache.activemq.transport.nio.NIOTransport;
 import org.apache.activemq.util.ServiceStopper;
 import org.apache.activemq.util.ServiceSupport;
 import org.slf4j.Logger;
@@ -334,6 +335,11 @@ public class TransportConnector implements Connector, BrokerServiceAware {
                 : taskRunnerFactory, brokerService.getTaskRunnerFactory());
         boolean statEnabled = this.getStatistics().isEnabled();
         answer.getStatistics().setEnabled(statEnabled);
+        NIOTransport nioTransport = transport.narrow(NIOTransport.class);
+        if (nioTransport != null) {
+            nioTransport.getTransportStatistics().setEnabled(statEnabled);
+            nioTransport.getTransportStatistics().setParent(statistics.getTransportStatistics());
+        }
         answer.setMessageAuthorizationPolicy(messageAuthorizationPolicy);
         return answer;
     }
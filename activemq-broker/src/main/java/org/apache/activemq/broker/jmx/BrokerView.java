@@ -25,7 +25,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 
 import org.apache.activemq.ActiveMQConnectionMetaData;
 import org.apache.activemq.broker.BrokerService;
@@ -33,6 +38,7 @@ import org.apache.activemq.broker.ConnectionContext;
 import org.apache.activemq.broker.TransportConnector;
 import org.apache.activemq.broker.region.Subscription;
 import org.apache.activemq.command.*;
+import org.apache.activemq.filter.DestinationFilter;
 import org.apache.activemq.network.NetworkConnector;
 import org.apache.activemq.util.BrokerSupport;
 import org.slf4j.Logger;
@@ -299,6 +305,27 @@ public class BrokerView implements BrokerViewMBean {
                 .filter(page, pageSize);
     }
 
+    @Override
+    public TabularData queryDestinationStatistics(String destinationFilter) throws Exception {
+        DestinationFilter filter = DestinationFilter.parseFilter(
+            ActiveMQDestination.createDestination(destinationFilter, ActiveMQDestination.QUEUE_TYPE));
+        OpenTypeSupport.OpenTypeFactory factory = OpenTypeSupport.getFactory(DestinationView.class);
+        CompositeType ct = factory.getCompositeType();
+        TabularType tt = new TabularType("DestinationStatistics", "DestinationStatistics", ct, new String[] { "destination" });
+        TabularDataSupport rc = new TabularDataSupport(tt);
+
+        ManagedRegionBroker broker = safeGetBroker();
+        List<DestinationView> views = new ArrayList<>();
+        views.addAll(broker.getQueueViews().values());
+        views.addAll(broker.getTopicViews().values());
+        for (DestinationView view : views) {
+            if (filter.matches(view.destination.getActiveMQDestination())) {
+                rc.put(new CompositeDataSupport(ct, factory.getFields(view)));
+            }
+        }
+        return rc;
+    }
+
     public CompositeData[] browseQueue(String queueName) throws OpenDataException, MalformedObjectNameException {
        return safeGetBroker().getQueueView(queueName).browse();
     }
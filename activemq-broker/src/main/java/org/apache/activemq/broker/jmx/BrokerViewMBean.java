@@ -23,6 +23,7 @@ import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.TabularData;
 
 import org.apache.activemq.Service;
 
@@ -194,6 +195,16 @@ public interface BrokerViewMBean extends Service {
     @MBeanInfo("Query topics")
     String queryTopics(String filter, int page, int pageSize) throws IOException;
 
+    /**
+     * Returns the statistics of all the destinations matching a wildcard in one call
+     *
+     * @param destinationFilter a destination wildcard such as FOO.&gt;, queues are assumed
+     *        unless the name is prefixed with topic://
+     * @return a table with a row of statistics per matching destination
+     */
+    @MBeanInfo("Statistics of all destinations matching a wildcard, use the topic:// prefix to match topics")
+    TabularData queryDestinationStatistics(@MBeanInfo("destinationFilter") String destinationFilter) throws Exception;
+
     public CompositeData[] browseQueue(String queueName) throws OpenDataException, MalformedObjectNameException;
 
     @MBeanInfo("Temporary Topics; generally unused.")
@@ -142,6 +142,21 @@ public class ConnectorView implements ConnectorViewMBean {
         return this.connector.getMaxConnectionExceededCount();
     }
 
+    @Override
+    public long getFramesWritten() {
+        return this.connector.getStatistics().getTransportStatistics().getFramesWritten().getCount();
+    }
+
+    @Override
+    public long getSocketWrites() {
+        return this.connector.getStatistics().getTransportStatistics().getSocketWrites().getCount();
+    }
+
+    @Override
+    public double getSocketWritesPerFrame() {
+        return this.connector.getStatistics().getTransportStatistics().getSocketWritesPerFrame();
+    }
+
     @Override
     public boolean isStarted() {
         return this.connector.isStarted();
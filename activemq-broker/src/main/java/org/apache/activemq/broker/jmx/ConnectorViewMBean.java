@@ -90,6 +90,27 @@ public interface ConnectorViewMBean extends Service {
     @MBeanInfo("Max connection exceeded count")
     long getMaxConnectionExceededCount();
 
+    /**
+     * @return The number of frames written by the connections of this
+     * connector that use write coalescing
+     */
+    @MBeanInfo("Number of frames written by connections using write coalescing")
+    long getFramesWritten();
+
+    /**
+     * @return The number of socket writes made by the connections of this
+     * connector that use write coalescing
+     */
+    @MBeanInfo("Number of socket writes made by connections using write coalescing")
+    long getSocketWrites();
+
+    /**
+     * @return The average number of socket writes per frame written by the
+     * connections of this connector that use write coalescing
+     */
+    @MBeanInfo("Average number of socket writes per frame for connections using write coalescing")
+    double getSocketWritesPerFrame();
+
     /**
      * @return true if transport connector is started
      */
@@ -599,4 +599,9 @@ public class DestinationView implements DestinationViewMBean {
     public long getMaxUncommittedExceededCount() {
         return destination.getDestinationStatistics().getMaxUncommittedExceededCount().getCount();
     }
+
+    @Override
+    public long getDispatchCpuTime() {
+        return destination.getDestinationStatistics().getDispatchCpuTime().getCount();
+    }
 }
@@ -481,4 +481,7 @@ public interface DestinationViewMBean {
 
     @MBeanInfo("Number of times the max uncommitted limit has been exceed for this destination")
     long getMaxUncommittedExceededCount();
+
+    @MBeanInfo("Cpu time (microseconds) spent by the broker dispatch scheduler paging in and dispatching for this destination")
+    long getDispatchCpuTime();
 }
@@ -47,6 +47,7 @@ import org.apache.activemq.broker.region.Destination;
 import org.apache.activemq.broker.region.DestinationFactory;
 import org.apache.activemq.broker.region.DestinationInterceptor;
 import org.apache.activemq.broker.region.DurableTopicSubscription;
+import org.apache.activemq.broker.region.FlyweightTopic;
 import org.apache.activemq.broker.region.MessageReference;
 import org.apache.activemq.broker.region.NullMessageReference;
 import org.apache.activemq.broker.region.Queue;
@@ -160,6 +161,10 @@ public class ManagedRegionBroker extends RegionBroker {
     }
 
     public void register(ActiveMQDestination destName, Destination destination) {
+        if (destination instanceof FlyweightTopic) {
+            // only reported through the statistics of their group
+            return;
+        }
         // TODO refactor to allow views for custom destinations
         try {
             ObjectName objectName = BrokerMBeanSupport.createDestinationName(brokerObjectName, destName);
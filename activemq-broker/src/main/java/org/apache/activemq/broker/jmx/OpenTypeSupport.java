@@ -517,6 +517,47 @@ public final class OpenTypeSupport {
         }
     }
 
+    static class DestinationStatisticsOpenTypeFactory extends AbstractOpenTypeFactory {
+        @Override
+        protected String getTypeName() {
+            return DestinationView.class.getName();
+        }
+
+        @Override
+        protected void init() throws OpenDataException {
+            super.init();
+            addItem("destination", "qualified destination name", SimpleType.STRING);
+            addItem("queueSize", "number of messages on the destination", SimpleType.LONG);
+            addItem("enqueueCount", "number of messages sent to the destination", SimpleType.LONG);
+            addItem("dequeueCount", "number of messages acknowledged from the destination", SimpleType.LONG);
+            addItem("dispatchCount", "number of messages dispatched to consumers", SimpleType.LONG);
+            addItem("expiredCount", "number of messages expired", SimpleType.LONG);
+            addItem("inFlightCount", "number of messages dispatched but not acknowledged", SimpleType.LONG);
+            addItem("consumerCount", "number of consumers", SimpleType.LONG);
+            addItem("producerCount", "number of producers", SimpleType.LONG);
+            addItem("memoryUsageByteCount", "memory used by the destination", SimpleType.LONG);
+            addItem("averageEnqueueTime", "average time a message stays on the destination", SimpleType.DOUBLE);
+        }
+
+        @Override
+        public Map<String, Object> getFields(Object o) throws OpenDataException {
+            DestinationView view = (DestinationView) o;
+            Map<String, Object> rc = super.getFields(o);
+            rc.put("destination", view.destination.getActiveMQDestination().getQualifiedName());
+            rc.put("queueSize", view.getQueueSize());
+            rc.put("enqueueCount", view.getEnqueueCount());
+            rc.put("dequeueCount", view.getDequeueCount());
+            rc.put("dispatchCount", view.getDispatchCount());
+            rc.put("expiredCount", view.getExpiredCount());
+            rc.put("inFlightCount", view.getInFlightCount());
+            rc.put("consumerCount", view.getConsumerCount());
+            rc.put("producerCount", view.getProducerCount());
+            rc.put("memoryUsageByteCount", view.getMemoryUsageByteCount());
+            rc.put("averageEnqueueTime", view.getAverageEnqueueTime());
+            return rc;
+        }
+    }
+
     static {
         OPEN_TYPE_FACTORIES.put(ActiveMQMessage.class, new MessageOpenTypeFactory());
         OPEN_TYPE_FACTORIES.put(ActiveMQBytesMessage.class, new ByteMessageOpenTypeFactory());
@@ -528,6 +569,7 @@ public final class OpenTypeSupport {
         OPEN_TYPE_FACTORIES.put(SlowConsumerEntry.class, new SlowConsumerEntryOpenTypeFactory());
         OPEN_TYPE_FACTORIES.put(ActiveMQBlobMessage.class, new ActiveMQBlobMessageOpenTypeFactory());
         OPEN_TYPE_FACTORIES.put(HealthStatus.class, new HealthStatusOpenTypeFactory());
+        OPEN_TYPE_FACTORIES.put(DestinationView.class, new DestinationStatisticsOpenTypeFactory());
     }
 
     private OpenTypeSupport() {
@@ -98,6 +98,11 @@ public class PersistenceAdapterView implements PersistenceAdapterViewMBean {
                 result.put("slowReadTime", getTimeStatisticAsMap(persistenceAdapterStatistics.getSlowReadTime()));
                 result.put("writeTime", getTimeStatisticAsMap(persistenceAdapterStatistics.getWriteTime()));
                 result.put("readTime", getTimeStatisticAsMap(persistenceAdapterStatistics.getReadTime()));
+                result.put("pageCacheHits", persistenceAdapterStatistics.getPageCacheHits().getCount());
+                result.put("pageCacheMisses", persistenceAdapterStatistics.getPageCacheMisses().getCount());
+                result.put("pageCacheEvictions", persistenceAdapterStatistics.getPageCacheEvictions().getCount());
+                result.put("journalCompactions", persistenceAdapterStatistics.getJournalCompactions().getCount());
+                result.put("journalCompactedBytes", persistenceAdapterStatistics.getJournalCompactedBytes().getCount());
                 return mapper.writeValueAsString(result);
             } catch (IOException e) {
                 return e.toString();
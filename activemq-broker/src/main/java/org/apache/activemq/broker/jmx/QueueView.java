@@ -16,17 +16,28 @@
  */
 package org.apache.activemq.broker.jmx;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 import jakarta.jms.JMSException;
 
 import org.apache.activemq.broker.ConnectionContext;
 import org.apache.activemq.broker.region.Queue;
 import org.apache.activemq.broker.region.QueueMessageReference;
 import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQMessage;
 import org.apache.activemq.command.Message;
+import org.apache.activemq.filter.BooleanExpression;
+import org.apache.activemq.selector.SelectorParser;
 import org.apache.activemq.util.BrokerSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +67,36 @@ public class QueueView extends DestinationView implements QueueViewMBean {
         return result;
     }
 
+    @Override
+    public CompositeData browsePage(String selector, String resumeToken, int maxMessages) throws Exception {
+        Queue queue = (Queue) destination;
+        int max = maxMessages > 0 ? maxMessages : queue.getMaxBrowsePageSize();
+        BooleanExpression selectorExpression = selector == null || selector.isEmpty() ? null : SelectorParser.parse(selector);
+
+        List<Message> messages = new ArrayList<Message>(max);
+        String next = queue.browse(resumeToken, max, selectorExpression, messages);
+
+        OpenTypeSupport.OpenTypeFactory factory = OpenTypeSupport.getFactory(ActiveMQMessage.class);
+        CompositeType ct = factory.getCompositeType();
+        TabularType tt = new TabularType("MessageList", "MessageList", ct, new String[] { "JMSMessageID" });
+        TabularDataSupport table = new TabularDataSupport(tt);
+        for (Message message : messages) {
+            try {
+                table.put(new CompositeDataSupport(ct, factory.getFields(message)));
+            } catch (Throwable e) {
+                LOG.warn("exception browsing destination", e);
+            }
+        }
+
+        CompositeType pageType = new CompositeType("BrowsePage", "A page of browsed messages",
+                new String[] { "messages", "resumeToken" },
+                new String[] { "the browsed messages", "token to resume browsing from, null at the end of the queue" },
+                new OpenType<?>[] { tt, SimpleType.STRING });
+        return new CompositeDataSupport(pageType,
+                new String[] { "messages", "resumeToken" },
+                new Object[] { table, next });
+    }
+
     public synchronized void purge() throws Exception {
         final long originalMessageCount = destination.getDestinationStatistics().getMessages().getCount();
 
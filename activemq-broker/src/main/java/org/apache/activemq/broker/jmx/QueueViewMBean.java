@@ -33,6 +33,20 @@ public interface QueueViewMBean extends DestinationViewMBean {
     @MBeanInfo("View a message from the destination by JMS message ID.")
     CompositeData getMessage(@MBeanInfo("messageId") String messageId) throws OpenDataException;
 
+    /**
+     * Browses one page of the queue without paging the whole queue into memory.
+     * Pass the returned resumeToken to the next call to continue where this page
+     * ended, the token is null once the end of the queue has been reached.
+     *
+     * @param selector an optional selector the messages have to match
+     * @param resumeToken the token returned by the previous page, or null to start at the head
+     * @param maxMessages the maximum number of messages to return
+     * @return a CompositeData holding the messages table and the resumeToken
+     * @throws Exception
+     */
+    @MBeanInfo("Browse a page of messages, pass the returned resumeToken to get the next page.")
+    CompositeData browsePage(@MBeanInfo("selector") String selector, @MBeanInfo("resumeToken") String resumeToken, @MBeanInfo("maxMessages") int maxMessages) throws Exception;
+
     /**
      * Removes a message from the queue. If the message has already been
      * dispatched to another consumer, the message cannot be deleted and this
@@ -91,7 +91,7 @@ public abstract class BaseDestination implements Destination {
     private boolean sendAdvisoryIfNoConsumers;
     private boolean sendDuplicateFromStoreToDLQ = false;
     private boolean includeBodyForAdvisory;
-    protected final DestinationStatistics destinationStatistics = new DestinationStatistics();
+    protected final DestinationStatistics destinationStatistics;
     protected final BrokerService brokerService;
     protected final Broker regionBroker;
     protected DeadLetterStrategy deadLetterStrategy = DEFAULT_DEAD_LETTER_STRATEGY;
@@ -109,6 +109,7 @@ public abstract class BaseDestination implements Destination {
     private boolean reduceMemoryFootprint = false;
     protected final Scheduler scheduler;
     private boolean disposed = false;
+    private final boolean sharedResources;
     private boolean doOptimzeMessageStorage = true;
     /*
      * percentage of in-flight messages above which optimize message store is disabled
@@ -128,6 +129,7 @@ public abstract class BaseDestination implements Destination {
         this.broker = brokerService.getBroker();
         this.store = store;
         this.destination = destination;
+        this.destinationStatistics = new DestinationStatistics();
         // let's copy the enabled property from the parent DestinationStatistics
         this.destinationStatistics.setEnabled(parentStats.isEnabled());
         this.destinationStatistics.setParent(parentStats);
@@ -136,6 +138,32 @@ public abstract class BaseDestination implements Destination {
         this.memoryUsage.setUsagePortion(1.0f);
         this.regionBroker = brokerService.getRegionBroker();
         this.scheduler = brokerService.getBroker().getScheduler();
+        this.sharedResources = false;
+    }
+
+    /**
+     * Creates a destination that records into statistics and usage shared with other
+     * destinations, their lifecycle is left to the owner of the shared instances.
+     *
+     * @param brokerService
+     * @param store
+     * @param destination
+     * @param sharedStatistics
+     * @param sharedUsage
+     * @throws Exception
+     */
+    protected BaseDestination(BrokerService brokerService, MessageStore store, ActiveMQDestination destination,
+            DestinationStatistics sharedStatistics, SystemUsage sharedUsage) throws Exception {
+        this.brokerService = brokerService;
+        this.broker = brokerService.getBroker();
+        this.store = store;
+        this.destination = destination;
+        this.destinationStatistics = sharedStatistics;
+        this.systemUsage = sharedUsage;
+        this.memoryUsage = sharedUsage.getMemoryUsage();
+        this.regionBroker = brokerService.getRegionBroker();
+        this.scheduler = brokerService.getBroker().getScheduler();
+        this.sharedResources = true;
     }
 
     /**
@@ -539,6 +567,14 @@ public abstract class BaseDestination implements Destination {
      */
     @Override
     public void messageConsumed(ConnectionContext context, MessageReference messageReference) {
+        Message message = messageReference.getMessage();
+        if (message != null && message.getBrokerOutTime() > 0) {
+            long dispatchToAck = System.currentTimeMillis() - message.getBrokerOutTime();
+            destinationStatistics.getDispatchToAckLatency().record(dispatchToAck);
+            if (context != null && context.getConnector() != null) {
+                context.getConnector().getStatistics().getDispatchToAckLatency().record(dispatchToAck);
+            }
+        }
         if (advisoryForConsumed) {
             broker.messageConsumed(context, messageReference);
         }
@@ -627,11 +663,20 @@ public abstract class BaseDestination implements Destination {
             this.store.removeAllMessages(context);
             this.store.dispose(context);
         }
-        this.destinationStatistics.setParent(null);
-        this.memoryUsage.stop();
+        if (!sharedResources) {
+            this.destinationStatistics.setParent(null);
+            this.memoryUsage.stop();
+        }
         this.disposed = true;
     }
 
+    /**
+     * @return true when the statistics and usage of this destination are shared with others
+     */
+    protected boolean isSharedResources() {
+        return sharedResources;
+    }
+
     @Override
     public boolean isDisposed() {
         return this.disposed;
@@ -825,7 +870,7 @@ public abstract class BaseDestination implements Destination {
     @Override
     public void markForGC(long timeStamp) {
         if (isGcIfInactive() && this.lastActiveTime == 0 && isActive() == false
-                && destinationStatistics.messages.getCount() == 0 && getInactiveTimeoutBeforeGC() > 0l) {
+                && !hasMessagesBlockingGC() && getInactiveTimeoutBeforeGC() > 0l) {
             this.lastActiveTime = timeStamp;
         }
     }
@@ -834,7 +879,7 @@ public abstract class BaseDestination implements Destination {
     public boolean canGC() {
         boolean result = false;
         final long currentLastActiveTime = this.lastActiveTime;
-        if (isGcIfInactive() && currentLastActiveTime != 0l && destinationStatistics.messages.getCount() == 0L ) {
+        if (isGcIfInactive() && currentLastActiveTime != 0l && !hasMessagesBlockingGC()) {
             if ((System.currentTimeMillis() - currentLastActiveTime) >= getInactiveTimeoutBeforeGC()) {
                 result = true;
             }
@@ -842,6 +887,13 @@ public abstract class BaseDestination implements Destination {
         return result;
     }
 
+    /**
+     * @return true when the destination still holds messages and must not be garbage collected
+     */
+    protected boolean hasMessagesBlockingGC() {
+        return destinationStatistics.messages.getCount() != 0;
+    }
+
     public void setReduceMemoryFootprint(boolean reduceMemoryFootprint) {
         this.reduceMemoryFootprint = reduceMemoryFootprint;
     }
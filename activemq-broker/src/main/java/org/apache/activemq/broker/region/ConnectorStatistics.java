@@ -18,8 +18,10 @@
 package org.apache.activemq.broker.region;
 
 import org.apache.activemq.management.CountStatisticImpl;
+import org.apache.activemq.management.HistogramStatisticImpl;
 import org.apache.activemq.management.PollCountStatisticImpl;
 import org.apache.activemq.management.StatsImpl;
+import org.apache.activemq.transport.TransportStatistics;
 
 /**
  * The J2EE Statistics for the a Destination.
@@ -33,6 +35,11 @@ public class ConnectorStatistics extends StatsImpl {
     protected CountStatisticImpl consumers;
     protected CountStatisticImpl messages;
     protected PollCountStatisticImpl messagesCached;
+    protected HistogramStatisticImpl enqueueToDispatchLatency;
+    protected HistogramStatisticImpl dispatchToAckLatency;
+    protected HistogramStatisticImpl storeWriteLatency;
+    protected HistogramStatisticImpl journalSyncLatency;
+    protected TransportStatistics transportStatistics;
 
     public ConnectorStatistics() {
 
@@ -41,12 +48,24 @@ public class ConnectorStatistics extends StatsImpl {
         consumers = new CountStatisticImpl("consumers", "The number of consumers that that are subscribing to messages from the destination");
         messages = new CountStatisticImpl("messages", "The number of messages that that are being held by the destination");
         messagesCached = new PollCountStatisticImpl("messagesCached", "The number of messages that are held in the destination's memory cache");
+        enqueueToDispatchLatency = new HistogramStatisticImpl("enqueueToDispatchLatency", "millis", "Distribution of the time messages dispatched to this connector waited in their destination");
+        dispatchToAckLatency = new HistogramStatisticImpl("dispatchToAckLatency", "millis", "Distribution of the time between dispatch and acknowledgement by consumers of this connector");
+        storeWriteLatency = new HistogramStatisticImpl("storeWriteLatency", "millis", "Distribution of the time to store the messages sent over this connector");
+        journalSyncLatency = new HistogramStatisticImpl("journalSyncLatency", "micros", "Distribution of the time synchronous sends over this connector waited for the journal write and sync");
 
         addStatistic("enqueues", enqueues);
         addStatistic("dequeues", dequeues);
         addStatistic("consumers", consumers);
         addStatistic("messages", messages);
         addStatistic("messagesCached", messagesCached);
+        addStatistic("enqueueToDispatchLatency", enqueueToDispatchLatency);
+        addStatistic("dispatchToAckLatency", dispatchToAckLatency);
+        addStatistic("storeWriteLatency", storeWriteLatency);
+        addStatistic("journalSyncLatency", journalSyncLatency);
+
+        transportStatistics = new TransportStatistics();
+        addStatistic("framesWritten", transportStatistics.getFramesWritten());
+        addStatistic("socketWrites", transportStatistics.getSocketWrites());
     }
 
     public CountStatisticImpl getEnqueues() {
@@ -69,10 +88,38 @@ public class ConnectorStatistics extends StatsImpl {
         return messages;
     }
 
+    public HistogramStatisticImpl getEnqueueToDispatchLatency() {
+        return enqueueToDispatchLatency;
+    }
+
+    public HistogramStatisticImpl getDispatchToAckLatency() {
+        return dispatchToAckLatency;
+    }
+
+    public HistogramStatisticImpl getStoreWriteLatency() {
+        return storeWriteLatency;
+    }
+
+    public HistogramStatisticImpl getJournalSyncLatency() {
+        return journalSyncLatency;
+    }
+
+    /**
+     * @return the write statistics of the connections of this connector that use write coalescing
+     */
+    public TransportStatistics getTransportStatistics() {
+        return transportStatistics;
+    }
+
     public void reset() {
         super.reset();
         enqueues.reset();
         dequeues.reset();
+        enqueueToDispatchLatency.reset();
+        dispatchToAckLatency.reset();
+        storeWriteLatency.reset();
+        journalSyncLatency.reset();
+        transportStatistics.reset();
     }
 
     public void setEnabled(boolean enabled) {
@@ -82,6 +129,11 @@ public class ConnectorStatistics extends StatsImpl {
         consumers.setEnabled(enabled);
         messages.setEnabled(enabled);
         messagesCached.setEnabled(enabled);
+        enqueueToDispatchLatency.setEnabled(enabled);
+        dispatchToAckLatency.setEnabled(enabled);
+        storeWriteLatency.setEnabled(enabled);
+        journalSyncLatency.setEnabled(enabled);
+        transportStatistics.setEnabled(enabled);
     }
 
     public void setParent(ConnectorStatistics parent) {
@@ -91,12 +143,22 @@ public class ConnectorStatistics extends StatsImpl {
             consumers.setParent(parent.consumers);
             messagesCached.setParent(parent.messagesCached);
             messages.setParent(parent.messages);
+            enqueueToDispatchLatency.setParent(parent.enqueueToDispatchLatency);
+            dispatchToAckLatency.setParent(parent.dispatchToAckLatency);
+            storeWriteLatency.setParent(parent.storeWriteLatency);
+            journalSyncLatency.setParent(parent.journalSyncLatency);
+            transportStatistics.setParent(parent.transportStatistics);
         } else {
             enqueues.setParent(null);
             dequeues.setParent(null);
             consumers.setParent(null);
             messagesCached.setParent(null);
             messages.setParent(null);
+            enqueueToDispatchLatency.setParent(null);
+            dispatchToAckLatency.setParent(null);
+            storeWriteLatency.setParent(null);
+            journalSyncLatency.setParent(null);
+            transportStatistics.setParent(null);
         }
     }
 
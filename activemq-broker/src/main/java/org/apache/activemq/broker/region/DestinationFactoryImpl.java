@@ -18,6 +18,9 @@ package org.apache.activemq.broker.region;
 
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.activemq.advisory.AdvisorySupport;
 import org.apache.activemq.broker.BrokerService;
 import org.apache.activemq.broker.ConnectionContext;
@@ -45,6 +48,7 @@ public class DestinationFactoryImpl extends DestinationFactory {
     protected final PersistenceAdapter persistenceAdapter;
     protected RegionBroker broker;
     private final BrokerService brokerService;
+    private final ConcurrentMap<PolicyEntry, FlyweightTopicGroup> flyweightTopicGroups = new ConcurrentHashMap<PolicyEntry, FlyweightTopicGroup>();
 
     public DestinationFactoryImpl(BrokerService brokerService, TaskRunnerFactory taskRunnerFactory, PersistenceAdapter persistenceAdapter) {
         this.brokerService = brokerService;
@@ -94,11 +98,21 @@ public class DestinationFactoryImpl extends DestinationFactory {
             topic.initialize();
             return topic;
         } else {
-            TopicMessageStore store = null;
+            PolicyEntry flyweightEntry = null;
             if (!AdvisorySupport.isAdvisoryTopic(destination)) {
-                store = persistenceAdapter.createTopicMessageStore((ActiveMQTopic)destination);
+                flyweightEntry = getFlyweightEntry(destination);
+            }
+            Topic topic;
+            if (flyweightEntry != null) {
+                FlyweightTopicGroup group = getFlyweightTopicGroup(flyweightEntry, destinationStatistics);
+                topic = new FlyweightTopic(brokerService, destination, group.createStore((ActiveMQTopic) destination), group, taskRunnerFactory);
+            } else {
+                TopicMessageStore store = null;
+                if (!AdvisorySupport.isAdvisoryTopic(destination)) {
+                    store = persistenceAdapter.createTopicMessageStore((ActiveMQTopic)destination);
+                }
+                topic = new Topic(brokerService, destination, store, destinationStatistics, taskRunnerFactory);
             }
-            Topic topic = new Topic(brokerService, destination, store, destinationStatistics, taskRunnerFactory);
             configureTopic(topic, destination);
             topic.initialize();
             return topic;
@@ -112,12 +126,35 @@ public class DestinationFactoryImpl extends DestinationFactory {
             if (destination.isQueue()) {
                 persistenceAdapter.removeQueueMessageStore((ActiveMQQueue) destination);
             }
-            else if (!AdvisorySupport.isAdvisoryTopic(destination)) {
+            else if (!AdvisorySupport.isAdvisoryTopic(destination)
+                    && !(dest instanceof FlyweightTopic && !((FlyweightTopic) dest).isStored())) {
                 persistenceAdapter.removeTopicMessageStore((ActiveMQTopic) destination);
             }
         }
     }
 
+    protected PolicyEntry getFlyweightEntry(ActiveMQDestination destination) {
+        if (broker != null && broker.getDestinationPolicy() != null) {
+            PolicyEntry entry = broker.getDestinationPolicy().getEntryFor(destination);
+            if (entry != null && entry.isFlyweight()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    protected FlyweightTopicGroup getFlyweightTopicGroup(PolicyEntry entry, DestinationStatistics parentStats) {
+        FlyweightTopicGroup group = flyweightTopicGroups.get(entry);
+        if (group == null) {
+            group = new FlyweightTopicGroup(brokerService, entry, parentStats, persistenceAdapter, taskRunnerFactory);
+            FlyweightTopicGroup previous = flyweightTopicGroups.putIfAbsent(entry, group);
+            if (previous != null) {
+                group = previous;
+            }
+        }
+        return group;
+    }
+
     protected void configureQueue(Queue queue, ActiveMQDestination destination) {
         if (broker == null) {
             throw new IllegalStateException("broker property is not set");
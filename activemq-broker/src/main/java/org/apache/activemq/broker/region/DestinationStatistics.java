@@ -45,6 +45,11 @@ public class DestinationStatistics extends StatsImpl {
     protected TimeStatisticImpl blockedTime;
     protected SizeStatisticImpl messageSize;
     protected CountStatisticImpl maxUncommittedExceededCount;
+    protected CountStatisticImpl dispatchCpuTime;
+    protected HistogramStatisticImpl enqueueToDispatchLatency;
+    protected HistogramStatisticImpl dispatchToAckLatency;
+    protected HistogramStatisticImpl storeWriteLatency;
+    protected HistogramStatisticImpl journalSyncLatency;
 
     public DestinationStatistics() {
 
@@ -68,6 +73,11 @@ public class DestinationStatistics extends StatsImpl {
         blockedTime = new TimeStatisticImpl("blockedTime","amount of time messages are blocked for flow control");
         messageSize = new SizeStatisticImpl("messageSize","Size of messages passing through the destination");
         maxUncommittedExceededCount = new CountStatisticImpl("maxUncommittedExceededCount", "number of times maxUncommittedCount has been exceeded");
+        dispatchCpuTime = new CountStatisticImpl("dispatchCpuTime", "The cpu time in microseconds spent by the broker dispatch scheduler paging in and dispatching for the destination");
+        enqueueToDispatchLatency = new HistogramStatisticImpl("enqueueToDispatchLatency", "millis", "Distribution of the time messages wait in the destination before dispatch");
+        dispatchToAckLatency = new HistogramStatisticImpl("dispatchToAckLatency", "millis", "Distribution of the time between dispatch and acknowledgement of messages");
+        storeWriteLatency = new HistogramStatisticImpl("storeWriteLatency", "millis", "Distribution of the time to store messages sent to the destination");
+        journalSyncLatency = new HistogramStatisticImpl("journalSyncLatency", "micros", "Distribution of the time synchronous sends to the destination waited for the journal write and sync");
         addStatistic("enqueues", enqueues);
         addStatistic("dispatched", dispatched);
         addStatistic("dequeues", dequeues);
@@ -83,6 +93,11 @@ public class DestinationStatistics extends StatsImpl {
         addStatistic("blockedTime",blockedTime);
         addStatistic("messageSize",messageSize);
         addStatistic("maxUncommittedExceededCount", maxUncommittedExceededCount);
+        addStatistic("dispatchCpuTime", dispatchCpuTime);
+        addStatistic("enqueueToDispatchLatency", enqueueToDispatchLatency);
+        addStatistic("dispatchToAckLatency", dispatchToAckLatency);
+        addStatistic("storeWriteLatency", storeWriteLatency);
+        addStatistic("journalSyncLatency", journalSyncLatency);
     }
 
     public CountStatisticImpl getEnqueues() {
@@ -151,6 +166,26 @@ public class DestinationStatistics extends StatsImpl {
         return this.maxUncommittedExceededCount;
     }
 
+    public CountStatisticImpl getDispatchCpuTime() {
+        return this.dispatchCpuTime;
+    }
+
+    public HistogramStatisticImpl getEnqueueToDispatchLatency() {
+        return this.enqueueToDispatchLatency;
+    }
+
+    public HistogramStatisticImpl getDispatchToAckLatency() {
+        return this.dispatchToAckLatency;
+    }
+
+    public HistogramStatisticImpl getStoreWriteLatency() {
+        return this.storeWriteLatency;
+    }
+
+    public HistogramStatisticImpl getJournalSyncLatency() {
+        return this.journalSyncLatency;
+    }
+
     public void reset() {
         if (this.isDoReset()) {
             super.reset();
@@ -165,6 +200,11 @@ public class DestinationStatistics extends StatsImpl {
             blockedTime.reset();
             messageSize.reset();
             maxUncommittedExceededCount.reset();
+            dispatchCpuTime.reset();
+            enqueueToDispatchLatency.reset();
+            dispatchToAckLatency.reset();
+            storeWriteLatency.reset();
+            journalSyncLatency.reset();
         }
     }
 
@@ -186,6 +226,11 @@ public class DestinationStatistics extends StatsImpl {
         blockedTime.setEnabled(enabled);
         messageSize.setEnabled(enabled);
         maxUncommittedExceededCount.setEnabled(enabled);
+        dispatchCpuTime.setEnabled(enabled);
+        enqueueToDispatchLatency.setEnabled(enabled);
+        dispatchToAckLatency.setEnabled(enabled);
+        storeWriteLatency.setEnabled(enabled);
+        journalSyncLatency.setEnabled(enabled);
 
     }
 
@@ -207,6 +252,11 @@ public class DestinationStatistics extends StatsImpl {
             blockedTime.setParent(parent.blockedTime);
             messageSize.setParent(parent.messageSize);
             maxUncommittedExceededCount.setParent(parent.maxUncommittedExceededCount);
+            dispatchCpuTime.setParent(parent.dispatchCpuTime);
+            enqueueToDispatchLatency.setParent(parent.enqueueToDispatchLatency);
+            dispatchToAckLatency.setParent(parent.dispatchToAckLatency);
+            storeWriteLatency.setParent(parent.storeWriteLatency);
+            journalSyncLatency.setParent(parent.journalSyncLatency);
         } else {
             enqueues.setParent(null);
             dispatched.setParent(null);
@@ -224,6 +274,11 @@ public class DestinationStatistics extends StatsImpl {
             blockedTime.setParent(null);
             messageSize.setParent(null);
             maxUncommittedExceededCount.setParent(null);
+            dispatchCpuTime.setParent(null);
+            enqueueToDispatchLatency.setParent(null);
+            dispatchToAckLatency.setParent(null);
+            storeWriteLatency.setParent(null);
+            journalSyncLatency.setParent(null);
         }
     }
 
@@ -0,0 +1,324 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.region;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.activemq.management.CountStatisticImpl;
+import org.apache.activemq.thread.Task;
+import org.apache.activemq.thread.TaskRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the iterate work of destinations from a bounded pool of worker threads.
+ *
+ * Instead of each destination owning a task runner that is woken independently, every
+ * destination registers with this scheduler and is picked by start-time fair queuing:
+ * a destination that was woken gets a virtual start tag, and after each iteration its
+ * finish tag advances by the cpu time it consumed divided by its weight. The weight is
+ * supplied by the destination (typically derived from its backlog and consumer demand) so
+ * that busy destinations get proportionally more of the pool without starving quiet ones.
+ * Repeated wakeups of a destination that is already queued are coalesced.
+ */
+public class DispatchScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DispatchScheduler.class);
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Provides the scheduling weight of a destination, larger weights get a larger
+     * share of the worker pool.
+     */
+    public interface Weigher {
+        int getDispatchWeight();
+    }
+
+    private final String name;
+    private final int poolSize;
+    private final int priority;
+    private final boolean measureCpuTime;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final PriorityQueue<ScheduledTaskRunner> runQueue = new PriorityQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private Thread[] workers;
+    private double virtualTime;
+    private boolean shutdown;
+
+    public DispatchScheduler(String name, int poolSize, int priority) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be greater than zero: " + poolSize);
+        }
+        this.name = name;
+        this.poolSize = poolSize;
+        this.priority = priority;
+        boolean cpuTimeSupported = false;
+        try {
+            cpuTimeSupported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException e) {
+            LOG.debug("Thread cpu time not supported, dispatch cost will use wall clock time");
+        }
+        this.measureCpuTime = cpuTimeSupported;
+    }
+
+    public synchronized void start() {
+        if (workers != null) {
+            return;
+        }
+        workers = new Thread[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            Thread worker = new Thread(this::runWorker, name + "-" + i);
+            worker.setDaemon(true);
+            worker.setPriority(priority);
+            workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            runQueue.clear();
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        Thread[] current;
+        synchronized (this) {
+            current = workers;
+            workers = null;
+        }
+        if (current != null) {
+            for (Thread worker : current) {
+                if (worker != Thread.currentThread()) {
+                    try {
+                        worker.join(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a task runner for a destination whose iterations are scheduled on this pool.
+     *
+     * @param task the destination task
+     * @param weigher provides the current scheduling weight of the task
+     * @param cpuTime optional statistic updated with the cpu time, in microseconds, spent iterating the task
+     * @param taskName name used for logging
+     */
+    public TaskRunner createTaskRunner(Task task, Weigher weigher, CountStatisticImpl cpuTime, String taskName) {
+        start();
+        return new ScheduledTaskRunner(task, weigher, cpuTime, taskName);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueuedTaskCount() {
+        lock.lock();
+        try {
+            return runQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void schedule(ScheduledTaskRunner runner) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            runner.startTag = Math.max(virtualTime, runner.finishTag);
+            runner.sequence = sequence.incrementAndGet();
+            runQueue.add(runner);
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unschedule(ScheduledTaskRunner runner) {
+        lock.lock();
+        try {
+            runQueue.remove(runner);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            ScheduledTaskRunner next;
+            lock.lock();
+            try {
+                while (!shutdown && runQueue.isEmpty()) {
+                    ready.await();
+                }
+                if (shutdown) {
+                    return;
+                }
+                next = runQueue.poll();
+                virtualTime = Math.max(virtualTime, next.startTag);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                next.runTask();
+            } catch (Throwable e) {
+                LOG.warn("Dispatch task {} failed", next.taskName, e);
+            }
+        }
+    }
+
+    private long currentTime() {
+        return measureCpuTime ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private final class ScheduledTaskRunner implements TaskRunner, Comparable<ScheduledTaskRunner> {
+
+        private final Task task;
+        private final Weigher weigher;
+        private final CountStatisticImpl cpuTime;
+        private final String taskName;
+        private final Object mutex = new Object();
+        private boolean queued;
+        private boolean iterating;
+        private boolean shutdown;
+        private volatile Thread runningThread;
+
+        // scheduling tags, guarded by the scheduler lock
+        private double startTag;
+        private double finishTag;
+        private long sequence;
+
+        ScheduledTaskRunner(Task task, Weigher weigher, CountStatisticImpl cpuTime, String taskName) {
+            this.task = task;
+            this.weigher = weigher;
+            this.cpuTime = cpuTime;
+            this.taskName = taskName;
+        }
+
+        @Override
+        public void wakeup() throws InterruptedException {
+            synchronized (mutex) {
+                if (queued || shutdown) {
+                    return;
+                }
+                queued = true;
+                // runTask() re-schedules once the current iteration is done
+                if (!iterating) {
+                    schedule(this);
+                }
+            }
+        }
+
+        @Override
+        public void shutdown(long timeout) throws InterruptedException {
+            synchronized (mutex) {
+                shutdown = true;
+                if (queued && !iterating) {
+                    queued = false;
+                    unschedule(this);
+                }
+                // an iteration may itself shut the runner down
+                if (runningThread != Thread.currentThread() && iterating) {
+                    mutex.wait(timeout);
+                }
+            }
+        }
+
+        @Override
+        public void shutdown() throws InterruptedException {
+            shutdown(0);
+        }
+
+        void runTask() {
+            synchronized (mutex) {
+                queued = false;
+                if (shutdown) {
+                    mutex.notifyAll();
+                    return;
+                }
+                iterating = true;
+            }
+
+            runningThread = Thread.currentThread();
+            boolean again = false;
+            long start = currentTime();
+            try {
+                again = task.iterate();
+            } finally {
+                long cost = Math.max(1, currentTime() - start);
+                runningThread = null;
+                if (cpuTime != null) {
+                    cpuTime.add(cost / 1000);
+                }
+
+                int weight = Math.max(1, weigher.getDispatchWeight());
+                lock.lock();
+                try {
+                    finishTag = startTag + (double) cost / weight;
+                } finally {
+                    lock.unlock();
+                }
+
+                synchronized (mutex) {
+                    iterating = false;
+                    mutex.notifyAll();
+                    if (!shutdown) {
+                        if (again) {
+                            queued = true;
+                        }
+                        if (queued) {
+                            schedule(this);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(ScheduledTaskRunner other) {
+            int result = Double.compare(startTag, other.startTag);
+            if (result == 0) {
+                result = Long.compare(sequence, other.sequence);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return taskName;
+        }
+    }
+}
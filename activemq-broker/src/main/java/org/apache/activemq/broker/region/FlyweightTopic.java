@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.region;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.ConnectionContext;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ProducerInfo;
+import org.apache.activemq.thread.TaskRunnerFactory;
+
+/**
+ * A Topic for large topic namespaces, created for topics whose {@link org.apache.activemq.broker.region.policy.PolicyEntry}
+ * is flyweight. It records into the statistics and memory usage of its {@link FlyweightTopicGroup}
+ * rather than its own and leaves the messages waiting for space to the task of the group. It
+ * only gets a store of the persistence adapter once it has a durable subscription, it is not
+ * registered in JMX, its consumer and producer advisories are sent on the advisory topics of
+ * the group, no destination advisory is sent for it and it is garbage collected once inactive
+ * unless it has a store.
+ */
+public class FlyweightTopic extends Topic {
+
+    private final FlyweightTopicGroup group;
+    private final FlyweightTopicStore flyweightStore;
+    private final AtomicInteger producerCount = new AtomicInteger();
+    private final AtomicBoolean waiting = new AtomicBoolean();
+
+    FlyweightTopic(BrokerService brokerService, ActiveMQDestination destination, FlyweightTopicStore store,
+            FlyweightTopicGroup group, TaskRunnerFactory taskFactory) throws Exception {
+        super(brokerService, destination, store, group.getDestinationStatistics(), group.getSystemUsage(), taskFactory);
+        this.group = group;
+        this.flyweightStore = store;
+    }
+
+    @Override
+    public void activate(ConnectionContext context, DurableTopicSubscription subscription) throws Exception {
+        super.activate(context, subscription);
+        if (flyweightStore.isStored()) {
+            // a durable subscription gave the topic a store, its messages can now expire
+            scheduleMessageExpiry();
+        }
+    }
+
+    @Override
+    protected void scheduleMessageExpiry() {
+        if (flyweightStore.isStored()) {
+            super.scheduleMessageExpiry();
+        }
+    }
+
+    @Override
+    protected void wakeupMessagesWaitingForSpace() throws InterruptedException {
+        group.wakeup(this);
+    }
+
+    boolean markWaiting() {
+        return waiting.compareAndSet(false, true);
+    }
+
+    void clearWaiting() {
+        waiting.set(false);
+    }
+
+    /**
+     * @return true when the topic is backed by a store of the persistence adapter
+     */
+    public boolean isStored() {
+        return flyweightStore.isStored();
+    }
+
+    @Override
+    public void addProducer(ConnectionContext context, ProducerInfo info) throws Exception {
+        super.addProducer(context, info);
+        producerCount.incrementAndGet();
+    }
+
+    @Override
+    public void removeProducer(ConnectionContext context, ProducerInfo info) throws Exception {
+        super.removeProducer(context, info);
+        producerCount.decrementAndGet();
+    }
+
+    /**
+     * The consumer and producer counts of the shared statistics cover the whole group,
+     * so activity is judged from the subscriptions and producers of this topic alone.
+     * Durable subscriptions keep the topic active while they are offline too.
+     */
+    @Override
+    public boolean isActive() {
+        if (producerCount.get() > 0 || !getDurableTopicSubs().isEmpty()) {
+            return true;
+        }
+        if (isGcWithNetworkConsumers()) {
+            return hasRegularConsumers(getConsumers());
+        }
+        return !getConsumers().isEmpty();
+    }
+
+    /**
+     * The message count of the shared statistics covers the whole group. A topic without a
+     * store holds no messages of its own, while a stored topic keeps the messages of its
+     * offline durable subscriptions, so it is never garbage collected.
+     */
+    @Override
+    protected boolean hasMessagesBlockingGC() {
+        return isStored();
+    }
+
+    @Override
+    public boolean canGC() {
+        return !isStored() && super.canGC();
+    }
+
+    public FlyweightTopicGroup getGroup() {
+        return group;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.region;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.filter.DestinationFilter;
+import org.apache.activemq.store.PersistenceAdapter;
+import org.apache.activemq.store.TopicMessageStore;
+import org.apache.activemq.thread.Task;
+import org.apache.activemq.thread.TaskRunner;
+import org.apache.activemq.thread.TaskRunnerFactory;
+import org.apache.activemq.usage.SystemUsage;
+
+/**
+ * The resources shared by all the {@link FlyweightTopic}s created for one policy entry:
+ * the statistics, the memory usage and its limit, and the task that sends the messages
+ * that wait for memory to free up. The topics only get a store of the persistence
+ * adapter once they have durable subscriptions. It lives as long as the broker,
+ * independently of the topics that come and go.
+ */
+public class FlyweightTopicGroup implements Task {
+
+    private final String name;
+    private final ActiveMQDestination destination;
+    private final DestinationStatistics destinationStatistics = new DestinationStatistics();
+    private final SystemUsage systemUsage;
+    private final PersistenceAdapter persistenceAdapter;
+    private final TaskRunnerFactory taskRunnerFactory;
+    private final ConcurrentLinkedQueue<FlyweightTopic> waitingTopics = new ConcurrentLinkedQueue<FlyweightTopic>();
+    private TaskRunner taskRunner;
+    private Set<ActiveMQDestination> storedTopics;
+
+    public FlyweightTopicGroup(BrokerService brokerService, PolicyEntry entry, DestinationStatistics parentStats,
+            PersistenceAdapter persistenceAdapter, TaskRunnerFactory taskRunnerFactory) {
+        this.destination = entry.getDestination();
+        this.name = destination != null ? destination.getQualifiedName() : "topic://>";
+        this.persistenceAdapter = persistenceAdapter;
+        this.taskRunnerFactory = taskRunnerFactory;
+        this.destinationStatistics.setEnabled(parentStats.isEnabled());
+        this.destinationStatistics.setParent(parentStats);
+        this.systemUsage = new SystemUsage(brokerService.getProducerSystemUsage(), name);
+        this.systemUsage.getMemoryUsage().setUsagePortion(1.0f);
+        if (entry.getMemoryLimit() > 0) {
+            this.systemUsage.getMemoryUsage().setLimit(entry.getMemoryLimit());
+        }
+        this.systemUsage.getMemoryUsage().start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the statistics aggregated over every topic of the group
+     */
+    public DestinationStatistics getDestinationStatistics() {
+        return destinationStatistics;
+    }
+
+    public SystemUsage getSystemUsage() {
+        return systemUsage;
+    }
+
+    /**
+     * Changes the memory limit shared by the topics of the group
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        if (systemUsage.getMemoryUsage().getLimit() != memoryLimit) {
+            systemUsage.getMemoryUsage().setLimit(memoryLimit);
+        }
+    }
+
+    /**
+     * Creates the store of a topic of the group, backed by a store of the persistence
+     * adapter only when the adapter already holds the topic.
+     */
+    synchronized FlyweightTopicStore createStore(ActiveMQTopic topic) throws IOException {
+        if (storedTopics == null) {
+            // every stored topic is loaded when the broker starts, so the set only has to
+            // be read once and shrinks as the topics are loaded
+            storedTopics = new HashSet<ActiveMQDestination>();
+            DestinationFilter filter = destination != null ? DestinationFilter.parseFilter(destination) : null;
+            for (ActiveMQDestination stored : persistenceAdapter.getDestinations()) {
+                if (stored.isTopic() && (filter == null || filter.matches(stored))) {
+                    storedTopics.add(stored);
+                }
+            }
+        }
+        TopicMessageStore delegate = storedTopics.remove(topic) ? createTopicMessageStore(topic) : null;
+        return new FlyweightTopicStore(this, topic, delegate);
+    }
+
+    TopicMessageStore createTopicMessageStore(ActiveMQTopic topic) throws IOException {
+        return persistenceAdapter.createTopicMessageStore(topic);
+    }
+
+    /**
+     * Queues a topic to have its messages waiting for space sent by the task of the group
+     */
+    void wakeup(FlyweightTopic topic) throws InterruptedException {
+        if (topic.markWaiting()) {
+            waitingTopics.add(topic);
+            getTaskRunner().wakeup();
+        }
+    }
+
+    private synchronized TaskRunner getTaskRunner() {
+        if (taskRunner == null) {
+            taskRunner = taskRunnerFactory.createTaskRunner(this, "FlyweightTopicGroup " + name);
+        }
+        return taskRunner;
+    }
+
+    @Override
+    public boolean iterate() {
+        FlyweightTopic topic;
+        while ((topic = waitingTopics.poll()) != null) {
+            topic.clearWaiting();
+            topic.iterate();
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "FlyweightTopicGroup: " + name;
+    }
+}
@@ -0,0 +1,369 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.region;
+
+import java.io.IOException;
+
+import org.apache.activemq.broker.ConnectionContext;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.command.Message;
+import org.apache.activemq.command.MessageAck;
+import org.apache.activemq.command.MessageId;
+import org.apache.activemq.command.SubscriptionInfo;
+import org.apache.activemq.store.IndexListener;
+import org.apache.activemq.store.ListenableFuture;
+import org.apache.activemq.store.MessageRecoveryListener;
+import org.apache.activemq.store.MessageStoreStatistics;
+import org.apache.activemq.store.MessageStoreSubscriptionStatistics;
+import org.apache.activemq.store.TopicMessageStore;
+import org.apache.activemq.usage.MemoryUsage;
+
+/**
+ * The message store of a {@link FlyweightTopic}. A topic only writes to its store for
+ * durable subscriptions, so the store of the persistence adapter is only created once the
+ * topic gets one, until then the topic is empty and costs the persistence adapter nothing.
+ */
+class FlyweightTopicStore implements TopicMessageStore {
+
+    private static final SubscriptionInfo[] NO_SUBSCRIPTIONS = new SubscriptionInfo[0];
+
+    private final FlyweightTopicGroup group;
+    private final ActiveMQTopic destination;
+    private volatile TopicMessageStore delegate;
+    private MemoryUsage memoryUsage;
+    private IndexListener indexListener;
+    private boolean prioritizedMessages;
+    private boolean started;
+    private MessageStoreStatistics messageStoreStatistics;
+    private MessageStoreSubscriptionStatistics messageStoreSubStatistics;
+
+    FlyweightTopicStore(FlyweightTopicGroup group, ActiveMQTopic destination, TopicMessageStore delegate) {
+        this.group = group;
+        this.destination = destination;
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return true once the topic is backed by a store of the persistence adapter
+     */
+    boolean isStored() {
+        return delegate != null;
+    }
+
+    private synchronized TopicMessageStore getOrCreateDelegate() throws IOException {
+        if (delegate == null) {
+            TopicMessageStore store = group.createTopicMessageStore(destination);
+            store.setPrioritizedMessages(prioritizedMessages);
+            if (memoryUsage != null) {
+                store.setMemoryUsage(memoryUsage);
+            }
+            if (indexListener != null) {
+                store.registerIndexListener(indexListener);
+            }
+            if (started) {
+                try {
+                    store.start();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+            delegate = store;
+        }
+        return delegate;
+    }
+
+    @Override
+    public void addMessage(ConnectionContext context, Message message) throws IOException {
+        getOrCreateDelegate().addMessage(context, message);
+    }
+
+    @Override
+    public void addMessage(ConnectionContext context, Message message, boolean canOptimizeHint) throws IOException {
+        getOrCreateDelegate().addMessage(context, message, canOptimizeHint);
+    }
+
+    @Override
+    public ListenableFuture<Object> asyncAddQueueMessage(ConnectionContext context, Message message) throws IOException {
+        return getOrCreateDelegate().asyncAddQueueMessage(context, message);
+    }
+
+    @Override
+    public ListenableFuture<Object> asyncAddQueueMessage(ConnectionContext context, Message message, boolean canOptimizeHint) throws IOException {
+        return getOrCreateDelegate().asyncAddQueueMessage(context, message, canOptimizeHint);
+    }
+
+    @Override
+    public ListenableFuture<Object> asyncAddTopicMessage(ConnectionContext context, Message message) throws IOException {
+        return getOrCreateDelegate().asyncAddTopicMessage(context, message);
+    }
+
+    @Override
+    public ListenableFuture<Object> asyncAddTopicMessage(ConnectionContext context, Message message, boolean canOptimizeHint) throws IOException {
+        return getOrCreateDelegate().asyncAddTopicMessage(context, message, canOptimizeHint);
+    }
+
+    @Override
+    public Message getMessage(MessageId identity) throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.getMessage(identity) : null;
+    }
+
+    @Override
+    public void removeMessage(ConnectionContext context, MessageAck ack) throws IOException {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.removeMessage(context, ack);
+        }
+    }
+
+    @Override
+    public void removeAsyncMessage(ConnectionContext context, MessageAck ack) throws IOException {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.removeAsyncMessage(context, ack);
+        }
+    }
+
+    @Override
+    public void removeAllMessages(ConnectionContext context) throws IOException {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.removeAllMessages(context);
+        }
+    }
+
+    @Override
+    public void recover(MessageRecoveryListener container) throws Exception {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.recover(container);
+        }
+    }
+
+    @Override
+    public ActiveMQDestination getDestination() {
+        return destination;
+    }
+
+    @Override
+    public synchronized void setMemoryUsage(MemoryUsage memoryUsage) {
+        this.memoryUsage = memoryUsage;
+        if (delegate != null) {
+            delegate.setMemoryUsage(memoryUsage);
+        }
+    }
+
+    @Override
+    public int getMessageCount() throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.getMessageCount() : 0;
+    }
+
+    @Override
+    public long getMessageSize() throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.getMessageSize() : 0;
+    }
+
+    @Override
+    public synchronized MessageStoreStatistics getMessageStoreStatistics() {
+        if (delegate != null) {
+            return delegate.getMessageStoreStatistics();
+        }
+        if (messageStoreStatistics == null) {
+            messageStoreStatistics = new MessageStoreStatistics();
+        }
+        return messageStoreStatistics;
+    }
+
+    @Override
+    public void resetBatching() {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.resetBatching();
+        }
+    }
+
+    @Override
+    public void recoverNextMessages(int maxReturned, MessageRecoveryListener listener) throws Exception {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.recoverNextMessages(maxReturned, listener);
+        }
+    }
+
+    @Override
+    public boolean recoverMessagesAfter(long sequence, int maxReturned, MessageRecoveryListener listener) throws Exception {
+        TopicMessageStore store = delegate;
+        return store != null ? store.recoverMessagesAfter(sequence, maxReturned, listener) : true;
+    }
+
+    @Override
+    public void dispose(ConnectionContext context) {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.dispose(context);
+        }
+    }
+
+    @Override
+    public void setBatch(MessageId messageId) throws Exception {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.setBatch(messageId);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() throws Exception {
+        TopicMessageStore store = delegate;
+        return store == null || store.isEmpty();
+    }
+
+    @Override
+    public synchronized void setPrioritizedMessages(boolean prioritizedMessages) {
+        this.prioritizedMessages = prioritizedMessages;
+        if (delegate != null) {
+            delegate.setPrioritizedMessages(prioritizedMessages);
+        }
+    }
+
+    @Override
+    public synchronized boolean isPrioritizedMessages() {
+        return delegate != null ? delegate.isPrioritizedMessages() : prioritizedMessages;
+    }
+
+    @Override
+    public void updateMessage(Message message) throws IOException {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.updateMessage(message);
+        }
+    }
+
+    @Override
+    public synchronized void registerIndexListener(IndexListener indexListener) {
+        this.indexListener = indexListener;
+        if (delegate != null) {
+            delegate.registerIndexListener(indexListener);
+        }
+    }
+
+    @Override
+    public void acknowledge(ConnectionContext context, String clientId, String subscriptionName, MessageId messageId, MessageAck ack) throws IOException {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.acknowledge(context, clientId, subscriptionName, messageId, ack);
+        }
+    }
+
+    @Override
+    public void deleteSubscription(String clientId, String subscriptionName) throws IOException {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.deleteSubscription(clientId, subscriptionName);
+        }
+    }
+
+    @Override
+    public void recoverSubscription(String clientId, String subscriptionName, MessageRecoveryListener listener) throws Exception {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.recoverSubscription(clientId, subscriptionName, listener);
+        }
+    }
+
+    @Override
+    public void recoverNextMessages(String clientId, String subscriptionName, int maxReturned, MessageRecoveryListener listener) throws Exception {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.recoverNextMessages(clientId, subscriptionName, maxReturned, listener);
+        }
+    }
+
+    @Override
+    public void resetBatching(String clientId, String subscriptionName) {
+        TopicMessageStore store = delegate;
+        if (store != null) {
+            store.resetBatching(clientId, subscriptionName);
+        }
+    }
+
+    @Override
+    public int getMessageCount(String clientId, String subscriberName) throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.getMessageCount(clientId, subscriberName) : 0;
+    }
+
+    @Override
+    public long getMessageSize(String clientId, String subscriberName) throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.getMessageSize(clientId, subscriberName) : 0;
+    }
+
+    @Override
+    public synchronized MessageStoreSubscriptionStatistics getMessageStoreSubStatistics() {
+        if (delegate != null) {
+            return delegate.getMessageStoreSubStatistics();
+        }
+        if (messageStoreSubStatistics == null) {
+            messageStoreSubStatistics = new MessageStoreSubscriptionStatistics(false);
+        }
+        return messageStoreSubStatistics;
+    }
+
+    @Override
+    public SubscriptionInfo lookupSubscription(String clientId, String subscriptionName) throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.lookupSubscription(clientId, subscriptionName) : null;
+    }
+
+    @Override
+    public SubscriptionInfo[] getAllSubscriptions() throws IOException {
+        TopicMessageStore store = delegate;
+        return store != null ? store.getAllSubscriptions() : NO_SUBSCRIPTIONS;
+    }
+
+    @Override
+    public void addSubscription(SubscriptionInfo subscriptionInfo, boolean retroactive) throws IOException {
+        getOrCreateDelegate().addSubscription(subscriptionInfo, retroactive);
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        started = true;
+        if (delegate != null) {
+            delegate.start();
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        started = false;
+        if (delegate != null) {
+            delegate.stop();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FlyweightTopicStore: " + destination.getPhysicalName();
+    }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -109,6 +110,8 @@ import org.slf4j.MDC;
  */
 public class Queue extends BaseDestination implements Task, UsageListener, IndexListener {
     protected static final Logger LOG = LoggerFactory.getLogger(Queue.class);
+    private static final char BROWSE_FROM_STORE = 's';
+    private static final char BROWSE_FROM_QUEUE = 'q';
     protected final TaskRunnerFactory taskFactory;
     protected TaskRunner taskRunner;
     private final ReentrantReadWriteLock consumersLock = new ReentrantReadWriteLock();
@@ -395,7 +398,13 @@ public class Queue extends BaseDestination implements Task, UsageListener, Index
             memoryUsage.setParent(systemUsage.getMemoryUsage());
         }
 
-        this.taskRunner = taskFactory.createTaskRunner(this, "Queue:" + destination.getPhysicalName());
+        DispatchScheduler dispatchScheduler = brokerService.getDispatchScheduler();
+        if (dispatchScheduler != null) {
+            this.taskRunner = dispatchScheduler.createTaskRunner(this, this::getDispatchWeight,
+                    getDestinationStatistics().getDispatchCpuTime(), "Queue:" + destination.getPhysicalName());
+        } else {
+            this.taskRunner = taskFactory.createTaskRunner(this, "Queue:" + destination.getPhysicalName());
+        }
 
         super.initialize();
         if (store != null) {
@@ -1244,6 +1253,231 @@ public class Queue extends BaseDestination implements Task, UsageListener, Index
         }
     }
 
+    /**
+     * Browses up to max messages positioned after the given resume token without paging
+     * the queue in. When the queue has a store that supports positional recovery and every
+     * message the queue holds is in that store the messages are read straight from the store.
+     * Otherwise, with non persistent messages or store adds that are still in flight, the
+     * persistent messages are read from the store first and the non persistent ones follow in
+     * broker sequence order, peeked from the paged in lists and the pending cursor without
+     * paging them in. When the store cannot recover positionally and persistent messages are
+     * still pending an IllegalStateException is thrown rather than reporting the end of the
+     * queue. The way is chosen when a browse starts and kept for its following pages, the
+     * token records which one it is and the positions reached. At most
+     * {@link #getMaxBrowsePageSize()} messages are examined per call so sparse selectors may
+     * return a short page that still has a resume token.
+     *
+     * @param resumeToken the token returned by the previous call, or null to start at the head
+     * @param max the maximum number of messages to return
+     * @param selector an optional selector the browsed messages have to match
+     * @param browseList the list the browsed messages are added to
+     * @return the token to resume browsing from, or null when the end of the queue was reached
+     */
+    public String browse(String resumeToken, int max, BooleanExpression selector, List<Message> browseList) throws Exception {
+        final MessageEvaluationContext context = new NonCachedMessageEvaluationContext();
+        context.setDestination(destination);
+        final int scanLimit = Math.max(getMaxBrowsePageSize(), max);
+
+        boolean fromStore;
+        long storePosition = -1;
+        long position = -1;
+        if (resumeToken == null || resumeToken.isEmpty()) {
+            fromStore = store != null && destinationStatistics.getMessages().getCount() <= store.getMessageStoreStatistics().getMessageCount().getCount();
+        } else {
+            char kind = resumeToken.charAt(0);
+            try {
+                if (kind == BROWSE_FROM_STORE) {
+                    fromStore = true;
+                    storePosition = Long.parseLong(resumeToken.substring(1));
+                } else if (kind == BROWSE_FROM_QUEUE) {
+                    fromStore = false;
+                    int split = resumeToken.indexOf(':');
+                    storePosition = Long.parseLong(resumeToken.substring(1, split));
+                    position = Long.parseLong(resumeToken.substring(split + 1));
+                } else {
+                    throw new IllegalArgumentException("Invalid resume token: " + resumeToken);
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid resume token: " + resumeToken, e);
+            }
+        }
+
+        if (fromStore) {
+            PagedBrowseListener listener = new PagedBrowseListener(browseList, max, selector, context);
+            if (store != null && store.recoverMessagesAfter(storePosition, scanLimit, listener)) {
+                if (listener.recovered == 0 || (listener.recovered < scanLimit && listener.hasSpace())) {
+                    return null;
+                }
+                return BROWSE_FROM_STORE + Long.toString(listener.lastPosition);
+            }
+            if (storePosition >= 0) {
+                throw new IllegalArgumentException("Invalid resume token: " + resumeToken);
+            }
+        }
+
+        // persistent messages are read from the store first, the ones only held in memory follow
+        int examined = 0;
+        boolean storeRecovery = false;
+        if (store != null) {
+            PagedBrowseListener listener = new PagedBrowseListener(browseList, max, selector, context);
+            storeRecovery = store.recoverMessagesAfter(storePosition, scanLimit, listener);
+            if (storeRecovery && listener.recovered > 0) {
+                storePosition = listener.lastPosition;
+                examined = listener.recovered;
+                if (!listener.hasSpace() || examined >= scanLimit) {
+                    return browseToken(storePosition, position);
+                }
+            }
+        }
+
+        Map<MessageId, Message> held = new HashMap<MessageId, Message>();
+        collectForBrowse(dispatchPendingList, pagedInPendingDispatchLock, position, storeRecovery, held);
+        collectForBrowse(pagedInMessages, pagedInMessagesLock, position, storeRecovery, held);
+        boolean unreachable = peekPendingForBrowse(position, storeRecovery, scanLimit - examined, held);
+
+        List<Message> candidates = new ArrayList<Message>(held.values());
+        candidates.sort(Comparator.comparingLong(message -> message.getMessageId().getBrokerSequenceId()));
+        for (Message message : candidates) {
+            position = message.getMessageId().getBrokerSequenceId();
+            if (matchesForBrowse(message, selector, context)) {
+                browseList.add(message);
+                if (browseList.size() >= max) {
+                    return browseToken(storePosition, position);
+                }
+            }
+            if (++examined >= scanLimit) {
+                return browseToken(storePosition, position);
+            }
+        }
+        if (unreachable) {
+            throw new IllegalStateException("Cannot browse " + destination.getQualifiedName()
+                    + " past sequence " + position + " without paging in persistent messages the store cannot recover");
+        }
+        return null;
+    }
+
+    private static String browseToken(long storePosition, long position) {
+        return BROWSE_FROM_QUEUE + Long.toString(storePosition) + ':' + Long.toString(position);
+    }
+
+    private static void collectForBrowse(PendingList list, ReentrantReadWriteLock lock, long position,
+            boolean skipPersistent, Map<MessageId, Message> held) {
+        lock.readLock().lock();
+        try {
+            for (MessageReference ref : list) {
+                QueueMessageReference queueRef = (QueueMessageReference) ref;
+                if (!queueRef.isAcked() && queueRef.getMessageId().getBrokerSequenceId() > position) {
+                    Message message = queueRef.getMessage();
+                    if (message != null && !(skipPersistent && message.isPersistent())) {
+                        held.put(queueRef.getMessageId(), message);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Peeks at the non persistent messages still pending in the cursor without paging them in.
+     * The pending messages are in send order so the window grows until it holds enough messages
+     * past the resume position.
+     *
+     * @return true when persistent messages are pending that can neither be peeked nor recovered
+     */
+    private boolean peekPendingForBrowse(long position, boolean storeRecovery, int wanted,
+            Map<MessageId, Message> held) {
+        messagesLock.writeLock().lock();
+        try {
+            PendingMessageCursor pending = messages;
+            boolean unreachable = false;
+            if (messages instanceof StoreQueueCursor) {
+                StoreQueueCursor storeCursor = (StoreQueueCursor) messages;
+                pending = storeCursor.getNonPersistent();
+                unreachable = !storeRecovery && storeCursor.getPersistent() != null && !storeCursor.getPersistent().isEmpty();
+            }
+            if (pending == null || pending.isEmpty() || wanted <= 0) {
+                return unreachable;
+            }
+            for (int window = wanted; ; window *= 2) {
+                List<MessageReference> refs = pending.pageInList(window);
+                int found = 0;
+                try {
+                    for (MessageReference ref : refs) {
+                        if (ref.getMessageId().getBrokerSequenceId() > position) {
+                            Message message = ref.getMessage();
+                            if (message != null && !(storeRecovery && message.isPersistent())) {
+                                held.put(ref.getMessageId(), message);
+                                found++;
+                            }
+                        }
+                    }
+                } finally {
+                    for (MessageReference ref : refs) {
+                        ref.decrementReferenceCount();
+                    }
+                }
+                if (found >= wanted || refs.size() < window || window > Integer.MAX_VALUE / 2) {
+                    return unreachable;
+                }
+            }
+        } finally {
+            messagesLock.writeLock().unlock();
+        }
+    }
+
+    private static boolean matchesForBrowse(Message message, BooleanExpression selector, MessageEvaluationContext context) throws Exception {
+        if (message.isExpired()) {
+            return false;
+        }
+        if (selector == null) {
+            return true;
+        }
+        context.setMessageReference(message);
+        return selector.matches(context);
+    }
+
+    private static class PagedBrowseListener implements MessageRecoveryListener {
+        private final List<Message> browseList;
+        private final int max;
+        private final BooleanExpression selector;
+        private final MessageEvaluationContext context;
+        private long lastPosition = -1;
+        private int recovered;
+
+        PagedBrowseListener(List<Message> browseList, int max, BooleanExpression selector, MessageEvaluationContext context) {
+            this.browseList = browseList;
+            this.max = max;
+            this.selector = selector;
+            this.context = context;
+        }
+
+        @Override
+        public boolean recoverMessage(Message message) throws Exception {
+            recovered++;
+            lastPosition = (Long) message.getMessageId().getFutureOrSequenceLong();
+            if (matchesForBrowse(message, selector, context)) {
+                browseList.add(message);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean recoverMessageReference(MessageId ref) throws Exception {
+            return false;
+        }
+
+        @Override
+        public boolean hasSpace() {
+            return browseList.size() < max;
+        }
+
+        @Override
+        public boolean isDuplicate(MessageId ref) {
+            return false;
+        }
+    }
+
     private boolean shouldPageInMoreForBrowse(int max) {
         int alreadyPagedIn = 0;
         pagedInMessagesLock.readLock().lock();
@@ -1992,6 +2226,21 @@ public class Queue extends BaseDestination implements Task, UsageListener, Index
         }
     }
 
+    /**
+     * The share of the broker dispatch scheduler this queue should get, grows with the
+     * backlog (logarithmically) and with the number of consumers able to take messages.
+     * A queue without consumers keeps the minimum weight so expiry and paging still run.
+     */
+    int getDispatchWeight() {
+        long consumerCount = getDestinationStatistics().getConsumers().getCount();
+        if (consumerCount <= 0) {
+            return 1;
+        }
+        long backlog = Math.max(0, getDestinationStatistics().getMessages().getCount());
+        int backlogBits = Long.SIZE - Long.numberOfLeadingZeros(backlog);
+        return 1 + backlogBits * (int) Math.min(consumerCount, 16);
+    }
+
     private void asyncWakeup() {
         try {
             pendingWakeups.incrementAndGet();
@@ -44,9 +44,11 @@ import org.apache.activemq.broker.ProducerBrokerExchange;
 import org.apache.activemq.broker.TransportConnection;
 import org.apache.activemq.broker.TransportConnector;
 import org.apache.activemq.broker.region.policy.DeadLetterStrategy;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
 import org.apache.activemq.broker.region.policy.PolicyMap;
 import org.apache.activemq.command.ActiveMQDestination;
 import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.activemq.command.ActiveMQTopic;
 import org.apache.activemq.command.BrokerId;
 import org.apache.activemq.command.BrokerInfo;
 import org.apache.activemq.command.ConnectionId;
@@ -84,6 +86,7 @@ public class RegionBroker extends EmptyBroker {
     public static final String ORIGINAL_EXPIRATION = "originalExpiration";
     private static final Logger LOG = LoggerFactory.getLogger(RegionBroker.class);
     private static final IdGenerator BROKER_ID_GENERATOR = new IdGenerator();
+    private static final int FLYWEIGHT_TOPIC_PURGE_PERIOD = 30000;
 
     protected final DestinationStatistics destinationStatistics = new DestinationStatistics();
     protected DestinationFactory destinationFactory;
@@ -219,6 +222,10 @@ public class RegionBroker extends EmptyBroker {
         tempQueueRegion.start();
         tempTopicRegion.start();
         int period = this.brokerService.getSchedulePeriodForDestinationPurge();
+        if (period <= 0 && hasFlyweightTopicPolicy()) {
+            // idle flyweight topics are removed even when no purge period was configured
+            period = FLYWEIGHT_TOPIC_PURGE_PERIOD;
+        }
         if (period > 0) {
             this.scheduler.executePeriodically(purgeInactiveDestinationsTask, period);
         }
@@ -238,6 +245,22 @@ public class RegionBroker extends EmptyBroker {
         brokerInfos.clear();
     }
 
+    private boolean hasFlyweightTopicPolicy() {
+        PolicyMap policyMap = getDestinationPolicy();
+        if (policyMap == null) {
+            return false;
+        }
+        if (policyMap.getDefaultEntry() != null && policyMap.getDefaultEntry().isFlyweight()) {
+            return true;
+        }
+        for (Object entry : policyMap.get(new ActiveMQTopic(">"))) {
+            if (entry instanceof PolicyEntry && ((PolicyEntry) entry).isFlyweight()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public PolicyMap getDestinationPolicy() {
         return brokerService != null ? brokerService.getDestinationPolicy() : null;
     }
@@ -632,7 +655,9 @@ public class RegionBroker extends EmptyBroker {
             message.setBrokerOutTime(endTime);
             if (getBrokerService().isEnableStatistics()) {
                 long totalTime = endTime - message.getBrokerInTime();
-                ((Destination) message.getRegionDestination()).getDestinationStatistics().getProcessTime().addTime(totalTime);
+                DestinationStatistics destinationStatistics = ((Destination) message.getRegionDestination()).getDestinationStatistics();
+                destinationStatistics.getProcessTime().addTime(totalTime);
+                destinationStatistics.getEnqueueToDispatchLatency().record(totalTime);
             }
             if (((BaseDestination) message.getRegionDestination()).isPersistJMSRedelivered() && !message.isRedelivered()) {
                 final int originalValue = message.getRedeliveryCounter();
@@ -59,6 +59,7 @@ import org.apache.activemq.thread.Task;
 import org.apache.activemq.thread.TaskRunner;
 import org.apache.activemq.thread.TaskRunnerFactory;
 import org.apache.activemq.transaction.Synchronization;
+import org.apache.activemq.usage.SystemUsage;
 import org.apache.activemq.util.SubscriptionKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,7 +89,7 @@ public class Topic extends BaseDestination implements Task {
         @Override
         public void run() {
             try {
-                Topic.this.taskRunner.wakeup();
+                wakeupMessagesWaitingForSpace();
             } catch (InterruptedException e) {
             }
         }
@@ -98,11 +99,29 @@ public class Topic extends BaseDestination implements Task {
             DestinationStatistics parentStats, TaskRunnerFactory taskFactory) throws Exception {
         super(brokerService, store, destination, parentStats);
         this.topicStore = store;
-        subscriptionRecoveryPolicy = new RetainedMessageSubscriptionRecoveryPolicy(null);
+        this.subscriptionRecoveryPolicy = createRetainedMessagePolicy(brokerService);
         this.taskRunner = taskFactory.createTaskRunner(this, "Topic  " + destination.getPhysicalName());
         this.taskRunnerFactor = taskFactory;
     }
 
+    protected Topic(BrokerService brokerService, ActiveMQDestination destination, TopicMessageStore store,
+            DestinationStatistics sharedStatistics, SystemUsage sharedUsage, TaskRunnerFactory taskFactory) throws Exception {
+        super(brokerService, store, destination, sharedStatistics, sharedUsage);
+        this.topicStore = store;
+        this.subscriptionRecoveryPolicy = createRetainedMessagePolicy(brokerService);
+        // the owner of the shared resources runs iterate() through wakeupMessagesWaitingForSpace()
+        this.taskRunner = null;
+        this.taskRunnerFactor = taskFactory;
+    }
+
+    private static RetainedMessageSubscriptionRecoveryPolicy createRetainedMessagePolicy(BrokerService brokerService) {
+        RetainedMessageSubscriptionRecoveryPolicy retainedPolicy = new RetainedMessageSubscriptionRecoveryPolicy(null);
+        if (brokerService != null) {
+            retainedPolicy.setRetainedMessageStore(brokerService.getRetainedMessageStore());
+        }
+        return retainedPolicy;
+    }
+
     @Override
     public void initialize() throws Exception {
         super.initialize();
@@ -632,13 +651,11 @@ public class Topic extends BaseDestination implements Task {
     public void start() throws Exception {
         if (started.compareAndSet(false, true)) {
             this.subscriptionRecoveryPolicy.start();
-            if (memoryUsage != null) {
+            if (memoryUsage != null && !isSharedResources()) {
                 memoryUsage.start();
             }
 
-            if (getExpireMessagesPeriod() > 0 && !AdvisorySupport.isAdvisoryTopic(getActiveMQDestination())) {
-                scheduler.executePeriodically(expireMessagesTask, getExpireMessagesPeriod());
-            }
+            scheduleMessageExpiry();
         }
     }
 
@@ -649,7 +666,7 @@ public class Topic extends BaseDestination implements Task {
                 taskRunner.shutdown();
             }
             this.subscriptionRecoveryPolicy.stop();
-            if (memoryUsage != null) {
+            if (memoryUsage != null && !isSharedResources()) {
                 memoryUsage.stop();
             }
             if (this.topicStore != null) {
@@ -657,6 +674,7 @@ public class Topic extends BaseDestination implements Task {
             }
 
             scheduler.cancel(expireMessagesTask);
+            expiryScheduled.set(false);
         }
     }
 
@@ -732,6 +750,23 @@ public class Topic extends BaseDestination implements Task {
         return false;
     }
 
+    /**
+     * Requests a run of {@link #iterate()} to send the messages waiting for space
+     */
+    protected void wakeupMessagesWaitingForSpace() throws InterruptedException {
+        taskRunner.wakeup();
+    }
+
+    /**
+     * Starts the periodic expiry of the stored messages, does nothing when already started
+     */
+    protected void scheduleMessageExpiry() {
+        if (getExpireMessagesPeriod() > 0 && !AdvisorySupport.isAdvisoryTopic(getActiveMQDestination())
+                && expiryScheduled.compareAndSet(false, true)) {
+            scheduler.executePeriodically(expireMessagesTask, getExpireMessagesPeriod());
+        }
+    }
+
     private void registerCallbackForNotFullNotification() {
         // If the usage manager is not full, then the task will not
         // get called..
@@ -815,6 +850,7 @@ public class Topic extends BaseDestination implements Task {
     }
 
     private final AtomicBoolean expiryTaskInProgress = new AtomicBoolean(false);
+    private final AtomicBoolean expiryScheduled = new AtomicBoolean(false);
     private final Runnable expireMessagesWork = new Runnable() {
         @Override
         public void run() {
@@ -23,6 +23,7 @@ import org.apache.activemq.broker.Broker;
 import org.apache.activemq.broker.region.BaseDestination;
 import org.apache.activemq.broker.region.Destination;
 import org.apache.activemq.broker.region.DurableTopicSubscription;
+import org.apache.activemq.broker.region.FlyweightTopic;
 import org.apache.activemq.broker.region.Queue;
 import org.apache.activemq.broker.region.QueueBrowserSubscription;
 import org.apache.activemq.broker.region.QueueSubscription;
@@ -100,6 +101,7 @@ public class PolicyEntry extends DestinationMapEntry {
     private boolean allConsumersExclusiveByDefault;
     private boolean gcInactiveDestinations;
     private boolean gcWithNetworkConsumers;
+    private boolean flyweight;
     private long inactiveTimeoutBeforeGC = BaseDestination.DEFAULT_INACTIVE_TIMEOUT_BEFORE_GC;
     private boolean reduceMemoryFootprint;
     private NetworkBridgeFilterFactory networkBridgeFilterFactory;
@@ -199,11 +201,15 @@ public class PolicyEntry extends DestinationMapEntry {
             srp.setBroker(broker);
             topic.setSubscriptionRecoveryPolicy(srp);
         }
-        if (memoryLimit > 0) {
+        // the limit of flyweight topics is set once on their shared usage by the group
+        if (memoryLimit > 0 && !(topic instanceof FlyweightTopic)) {
             topic.getMemoryUsage().setLimit(memoryLimit);
         }
         topic.setLazyDispatch(isLazyDispatch());
         topic.setMessageInterceptorStrategy(getMessageInterceptorStrategy());
+        if (flyweight) {
+            topic.setGcIfInactive(true);
+        }
     }
 
     public void update(Topic topic) {
@@ -215,11 +221,18 @@ public class PolicyEntry extends DestinationMapEntry {
     public void update(Topic topic, Set<String> includedProperties) {
         baseUpdate(topic, includedProperties);
         if (isUpdate("memoryLimit", includedProperties) && memoryLimit > 0) {
-            topic.getMemoryUsage().setLimit(memoryLimit);
+            if (topic instanceof FlyweightTopic) {
+                ((FlyweightTopic) topic).getGroup().setMemoryLimit(memoryLimit);
+            } else {
+                topic.getMemoryUsage().setLimit(memoryLimit);
+            }
         }
         if (isUpdate("lazyDispatch", includedProperties)) {
             topic.setLazyDispatch(isLazyDispatch());
         }
+        if (flyweight) {
+            topic.setGcIfInactive(true);
+        }
     }
 
     // attributes that can change on the fly
@@ -1034,6 +1047,24 @@ public class PolicyEntry extends DestinationMapEntry {
         this.gcInactiveDestinations = gcInactiveDestinations;
     }
 
+    public boolean isFlyweight() {
+        return flyweight;
+    }
+
+    /**
+     * When true the topics matching this entry are created as
+     * {@link org.apache.activemq.broker.region.FlyweightTopic}s: they share one set of
+     * statistics, one memory usage (memoryLimit then applies to all of them) and one
+     * flow control task, only get a message store once they have a durable subscription,
+     * are not registered in JMX, send their consumer and producer advisories on the
+     * advisory topics of this entry's destination, send no destination advisories and
+     * are removed once inactive for inactiveTimeoutBeforeGC. Meant for large topic
+     * namespaces such as one topic per MQTT device.
+     */
+    public void setFlyweight(boolean flyweight) {
+        this.flyweight = flyweight;
+    }
+
     /**
      * @return the amount of time spent inactive before GC of the destination kicks in.
      *
@@ -29,10 +29,12 @@ import org.apache.activemq.broker.region.Topic;
 import org.apache.activemq.command.ActiveMQDestination;
 import org.apache.activemq.command.Message;
 import org.apache.activemq.filter.DestinationFilter;
+import org.apache.activemq.store.RetainedMessageStore;
 
 /**
  * This implementation of {@link org.apache.activemq.broker.region.policy.SubscriptionRecoveryPolicy} will only keep the
  * last non-zero length message with the {@link org.apache.activemq.command.ActiveMQMessage}.RETAIN_PROPERTY.
+ * When a {@link RetainedMessageStore} is set the message is kept there instead of on the topic.
  *
  * @org.apache.xbean.XBean
  *
@@ -43,6 +45,7 @@ public class RetainedMessageSubscriptionRecoveryPolicy implements SubscriptionRe
     public static final String RETAINED_PROPERTY = "ActiveMQ.Retained";
     private volatile MessageReference retainedMessage;
     private SubscriptionRecoveryPolicy wrapped;
+    private RetainedMessageStore retainedMessageStore;
 
     public RetainedMessageSubscriptionRecoveryPolicy(SubscriptionRecoveryPolicy wrapped) {
         this.wrapped = wrapped;
@@ -53,7 +56,17 @@ public class RetainedMessageSubscriptionRecoveryPolicy implements SubscriptionRe
         final Object retainValue = message.getProperty(RETAIN_PROPERTY);
         // retain property set to true
         final boolean retain = retainValue != null && Boolean.parseBoolean(retainValue.toString());
-        if (retain) {
+        if (retain && retainedMessageStore != null) {
+            if (message.getContent().getLength() > 0) {
+                Message copy = message.copy();
+                copy.removeProperty(RETAIN_PROPERTY);
+                copy.setProperty(RETAINED_PROPERTY, true);
+                retainedMessageStore.addRetainedMessage(message.getDestination(), copy);
+            } else {
+                retainedMessageStore.removeRetainedMessage(message.getDestination());
+            }
+            node.getMessage().removeProperty(RETAIN_PROPERTY);
+        } else if (retain) {
             if (message.getContent().getLength() > 0) {
                 // non zero length message content
                 retainedMessage = message.copy();
@@ -71,8 +84,9 @@ public class RetainedMessageSubscriptionRecoveryPolicy implements SubscriptionRe
 
     public void recover(ConnectionContext context, Topic topic, SubscriptionRecovery sub) throws Exception {
         // Re-dispatch the last retained message seen.
-        if (retainedMessage != null) {
-            sub.addRecoveredMessage(context, retainedMessage);
+        MessageReference retained = getRetainedMessage(topic.getActiveMQDestination(), topic);
+        if (retained != null) {
+            sub.addRecoveredMessage(context, retained);
         }
         if (wrapped != null) {
             // retain default ActiveMQ behaviour of recovering messages only for empty durable subscriptions
@@ -100,7 +114,14 @@ public class RetainedMessageSubscriptionRecoveryPolicy implements SubscriptionRe
 
     public Message[] browse(ActiveMQDestination destination) throws Exception {
         final List<Message> result = new ArrayList<Message>();
-        if (retainedMessage != null) {
+        if (retainedMessageStore != null) {
+            for (ActiveMQDestination retainedDestination : retainedMessageStore.getRetainedDestinations(destination)) {
+                Message message = retainedMessageStore.getRetainedMessage(retainedDestination);
+                if (message != null) {
+                    result.add(message);
+                }
+            }
+        } else if (retainedMessage != null) {
             DestinationFilter filter = DestinationFilter.parseFilter(destination);
             if (filter.matches(retainedMessage.getMessage().getDestination())) {
                 result.add(retainedMessage.getMessage());
@@ -118,8 +139,21 @@ public class RetainedMessageSubscriptionRecoveryPolicy implements SubscriptionRe
         return messages;
     }
 
+    private MessageReference getRetainedMessage(ActiveMQDestination destination, Topic topic) throws Exception {
+        if (retainedMessageStore == null) {
+            return retainedMessage;
+        }
+        Message message = retainedMessageStore.getRetainedMessage(destination);
+        if (message != null) {
+            message.setRegionDestination(topic);
+        }
+        return message;
+    }
+
     public SubscriptionRecoveryPolicy copy() {
-        return new RetainedMessageSubscriptionRecoveryPolicy(wrapped);
+        RetainedMessageSubscriptionRecoveryPolicy copy = new RetainedMessageSubscriptionRecoveryPolicy(wrapped);
+        copy.setRetainedMessageStore(retainedMessageStore);
+        return copy;
     }
     
     public void setBroker(Broker broker) {        
@@ -132,4 +166,16 @@ public class RetainedMessageSubscriptionRecoveryPolicy implements SubscriptionRe
     public SubscriptionRecoveryPolicy getWrapped() {
         return wrapped;
     }
+
+    public RetainedMessageStore getRetainedMessageStore() {
+        return retainedMessageStore;
+    }
+
+    /**
+     * Sets the broker wide store to keep the retained message in, when not set the
+     * retained message is only held in memory by this policy
+     */
+    public void setRetainedMessageStore(RetainedMessageStore retainedMessageStore) {
+        this.retainedMessageStore = retainedMessageStore;
+    }
 }
@@ -51,12 +51,21 @@ public class SelectorAwareVirtualTopicInterceptor extends VirtualTopicIntercepto
      */
     @Override
     protected boolean shouldDispatch(final Broker broker, Message message, Destination dest) throws IOException {
+        MessageEvaluationContext msgContext = new NonCachedMessageEvaluationContext();
+        msgContext.setMessageReference(message);
+        return shouldDispatch(broker, message, dest, msgContext);
+    }
+
+    /**
+     * Selector results are cached in the shared evaluation context, so a selector used by
+     * consumers of several consumer queues is evaluated once per message.
+     */
+    @Override
+    protected boolean shouldDispatch(final Broker broker, Message message, Destination dest, MessageEvaluationContext msgContext) throws IOException {
         //first validate that the prefix matches in the super class
         if (super.shouldDispatch(broker, message, dest)) {
             boolean matches = false;
-            MessageEvaluationContext msgContext = new NonCachedMessageEvaluationContext();
             msgContext.setDestination(dest.getActiveMQDestination());
-            msgContext.setMessageReference(message);
             List<Subscription> subs = dest.getConsumers();
             for (Subscription sub : subs) {
                 if (sub.matches(message, msgContext)) {
@@ -82,7 +91,7 @@ public class SelectorAwareVirtualTopicInterceptor extends VirtualTopicIntercepto
                 for (String selector : selectors) {
                     try {
                         final BooleanExpression expression = getExpression(selector);
-                        matches = expression.matches(msgContext);
+                        matches = msgContext.matches(expression);
                         if (matches) {
                             return true;
                         }
@@ -32,6 +32,8 @@ import org.apache.activemq.command.ActiveMQQueue;
 import org.apache.activemq.command.ConnectionId;
 import org.apache.activemq.command.LocalTransactionId;
 import org.apache.activemq.command.Message;
+import org.apache.activemq.filter.MessageEvaluationContext;
+import org.apache.activemq.filter.NonCachedMessageEvaluationContext;
 import org.apache.activemq.util.LRUCache;
 
 import jakarta.jms.ResourceAllocationException;
@@ -83,6 +85,11 @@ public class VirtualTopicInterceptor extends DestinationFilter {
 
         final LocalTransactionId localBrokerTransactionToCoalesceJournalSync =
                 beginLocalTransaction(numDestinations, context.getConnectionContext(), message);
+
+        // one evaluation context for all consumer queues so selector results are shared
+        final MessageEvaluationContext msgContext = new NonCachedMessageEvaluationContext();
+        msgContext.setMessageReference(message);
+        msgContext.setCacheSelectorResults(true);
         try {
             if (concurrentSend && numDestinations > 1) {
 
@@ -91,7 +98,7 @@ public class VirtualTopicInterceptor extends DestinationFilter {
                 final BrokerService brokerService = broker.getBrokerService();
 
                 for (final Destination dest : destinations) {
-                    if (shouldDispatch(broker, message, dest)) {
+                    if (shouldDispatch(broker, message, dest, msgContext)) {
                         brokerService.getTaskRunnerFactory().execute(new Runnable() {
                             @Override
                             public void run() {
@@ -121,7 +128,7 @@ public class VirtualTopicInterceptor extends DestinationFilter {
 
             } else {
                 for (final Destination dest : destinations) {
-                    if (shouldDispatch(broker, message, dest)) {
+                    if (shouldDispatch(broker, message, dest, msgContext)) {
                         try {
                             dest.send(context, copy(message, dest.getActiveMQDestination()));
                         } catch (ResourceAllocationException e) {
@@ -166,6 +173,13 @@ public class VirtualTopicInterceptor extends DestinationFilter {
         }
     }
 
+    /**
+     * @param msgContext evaluation context shared by all the consumer queues the message is sent to
+     */
+    protected boolean shouldDispatch(Broker broker, Message message, Destination dest, MessageEvaluationContext msgContext) throws IOException {
+        return shouldDispatch(broker, message, dest);
+    }
+
     protected boolean shouldDispatch(Broker broker, Message message, Destination dest) throws IOException {
     	//if can't find .* in the prefix, default back to old logic and return true
     	return prefix.contains(".*") && !prefix.startsWith("*") ? dest.getName().startsWith(prefix.substring(0, prefix.indexOf(".*"))) : true;
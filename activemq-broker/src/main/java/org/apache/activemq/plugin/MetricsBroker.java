@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.activemq.broker.Broker;
+import org.apache.activemq.broker.BrokerFilter;
+import org.apache.activemq.broker.TransportConnector;
+import org.apache.activemq.broker.region.ConnectorStatistics;
+import org.apache.activemq.broker.region.Destination;
+import org.apache.activemq.broker.region.DestinationStatistics;
+import org.apache.activemq.broker.region.RegionBroker;
+import org.apache.activemq.management.CountStatisticImpl;
+import org.apache.activemq.management.HistogramStatisticImpl;
+import org.apache.activemq.store.PersistenceAdapter;
+import org.apache.activemq.store.PersistenceAdapterStatistics;
+import org.apache.activemq.store.PersistenceAdapterStatisticsAware;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A MetricsBroker
+ * Renders destination, connector and store statistics in the Prometheus text exposition
+ * format. Histograms are read through {@link HistogramStatisticImpl#getSnapshot()} so a
+ * scrape never blocks the threads recording them.
+ */
+public class MetricsBroker extends BrokerFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsBroker.class);
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private String host = "localhost";
+    private int port = 9404;
+    private String path = "/metrics";
+    private HttpServer server;
+
+    public MetricsBroker(Broker next) {
+        super(next);
+    }
+
+    @Override
+    public void start() throws Exception {
+        super.start();
+        if (port >= 0) {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext(path, this::handle);
+            server.start();
+            LOG.info("Broker metrics available at http://{}:{}{}", host, server.getAddress().getPort(), path);
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        super.stop();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder body = new StringBuilder(8192);
+            writeMetrics(body);
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to render broker metrics", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the broker metrics in text exposition format, each family with its
+     * TYPE line directly before its samples
+     */
+    public void writeMetrics(Appendable out) throws IOException {
+        RegionBroker regionBroker = (RegionBroker) getBrokerService().getRegionBroker();
+        Map<String, DestinationStatistics> destinations = new LinkedHashMap<>();
+        for (Destination destination : regionBroker.getDestinationMap().values()) {
+            destinations.put("destination=\"" + escape(destination.getActiveMQDestination().getQualifiedName()) + "\"",
+                destination.getDestinationStatistics());
+        }
+        writeCounts(out, "activemq_destination_enqueues_total", "counter", destinations, DestinationStatistics::getEnqueues);
+        writeCounts(out, "activemq_destination_dequeues_total", "counter", destinations, DestinationStatistics::getDequeues);
+        writeCounts(out, "activemq_destination_messages", "gauge", destinations, DestinationStatistics::getMessages);
+        writeCounts(out, "activemq_destination_consumers", "gauge", destinations, DestinationStatistics::getConsumers);
+        writeHistograms(out, "activemq_destination_enqueue_to_dispatch_millis", destinations, DestinationStatistics::getEnqueueToDispatchLatency);
+        writeHistograms(out, "activemq_destination_dispatch_to_ack_millis", destinations, DestinationStatistics::getDispatchToAckLatency);
+        writeHistograms(out, "activemq_destination_store_write_millis", destinations, DestinationStatistics::getStoreWriteLatency);
+        writeHistograms(out, "activemq_destination_journal_sync_micros", destinations, DestinationStatistics::getJournalSyncLatency);
+
+        Map<String, ConnectorStatistics> connectors = new LinkedHashMap<>();
+        for (TransportConnector connector : getBrokerService().getTransportConnectors()) {
+            connectors.put("connector=\"" + escape(connector.getName()) + "\"", connector.getStatistics());
+        }
+        writeHistograms(out, "activemq_connector_enqueue_to_dispatch_millis", connectors, ConnectorStatistics::getEnqueueToDispatchLatency);
+        writeHistograms(out, "activemq_connector_dispatch_to_ack_millis", connectors, ConnectorStatistics::getDispatchToAckLatency);
+        writeHistograms(out, "activemq_connector_store_write_millis", connectors, ConnectorStatistics::getStoreWriteLatency);
+        writeHistograms(out, "activemq_connector_journal_sync_micros", connectors, ConnectorStatistics::getJournalSyncLatency);
+
+        PersistenceAdapter persistenceAdapter = getBrokerService().getPersistenceAdapter();
+        PersistenceAdapterStatistics storeStatistics = persistenceAdapter instanceof PersistenceAdapterStatisticsAware ?
+            ((PersistenceAdapterStatisticsAware) persistenceAdapter).getPersistenceAdapterStatistics() : null;
+        if (storeStatistics != null) {
+            Map<String, PersistenceAdapterStatistics> store = Collections.singletonMap("", storeStatistics);
+            writeHistograms(out, "activemq_store_write_millis", store, PersistenceAdapterStatistics::getWriteLatency);
+            writeHistograms(out, "activemq_journal_sync_micros", store, PersistenceAdapterStatistics::getJournalSyncLatency);
+        }
+    }
+
+    private static void writeType(Appendable out, String name, String type) throws IOException {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static <S> void writeCounts(Appendable out, String name, String type, Map<String, S> statistics,
+                                        Function<S, CountStatisticImpl> metric) throws IOException {
+        writeType(out, name, type);
+        for (Map.Entry<String, S> entry : statistics.entrySet()) {
+            out.append(name).append('{').append(entry.getKey()).append("} ")
+               .append(Long.toString(metric.apply(entry.getValue()).getCount())).append('\n');
+        }
+    }
+
+    /**
+     * Writes a summary family and, as summaries have no max, a separate <code>_max</code> gauge
+     * family, both from the same snapshot of each histogram
+     */
+    private static <S> void writeHistograms(Appendable out, String name, Map<String, S> statistics,
+                                            Function<S, HistogramStatisticImpl> metric) throws IOException {
+        Map<String, HistogramStatisticImpl.Snapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<String, S> entry : statistics.entrySet()) {
+            snapshots.put(entry.getKey(), metric.apply(entry.getValue()).getSnapshot());
+        }
+
+        writeType(out, name, "summary");
+        for (Map.Entry<String, HistogramStatisticImpl.Snapshot> entry : snapshots.entrySet()) {
+            String labels = entry.getKey();
+            HistogramStatisticImpl.Snapshot snapshot = entry.getValue();
+            String separator = labels.isEmpty() ? "" : ",";
+            for (double quantile : QUANTILES) {
+                out.append(name).append('{').append(labels).append(separator).append("quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                   .append(Double.toString(snapshot.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            String suffixLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+            out.append(name).append("_sum").append(suffixLabels).append(' ').append(Long.toString(snapshot.getTotal())).append('\n');
+            out.append(name).append("_count").append(suffixLabels).append(' ').append(Long.toString(snapshot.getCount())).append('\n');
+        }
+
+        writeType(out, name + "_max", "gauge");
+        for (Map.Entry<String, HistogramStatisticImpl.Snapshot> entry : snapshots.entrySet()) {
+            String labels = entry.getKey();
+            String suffixLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+            out.append(name).append("_max").append(suffixLabels).append(' ').append(Long.toString(entry.getValue().getMax())).append('\n');
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * @return the port the endpoint is bound to, or the configured port when not started
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.plugin;
+
+import org.apache.activemq.broker.Broker;
+import org.apache.activemq.broker.BrokerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A MetricsBrokerPlugin
+ * Exposes destination, connector and store statistics, including latency histograms,
+ * in plain text over an embedded HTTP endpoint so they can be scraped without JMX.
+ * Setting the port to a negative value disables the endpoint, the metrics can then
+ * still be read through {@link MetricsBroker#writeMetrics(Appendable)}.
+ *
+ * @org.apache.xbean.XBean element="metricsBrokerPlugin"
+ *
+ */
+public class MetricsBrokerPlugin implements BrokerPlugin {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsBrokerPlugin.class);
+
+    private String host = "localhost";
+    private int port = 9404;
+    private String path = "/metrics";
+
+    /**
+     * @param broker
+     * @return the plug-in
+     * @throws Exception
+     * @see org.apache.activemq.broker.BrokerPlugin#installPlugin(org.apache.activemq.broker.Broker)
+     */
+    @Override
+    public Broker installPlugin(Broker broker) throws Exception {
+        LOG.info("Installing MetricsBroker");
+        MetricsBroker answer = new MetricsBroker(broker);
+        answer.setHost(host);
+        answer.setPort(port);
+        answer.setPath(path);
+        return answer;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Sets the address the metrics endpoint listens on, defaults to localhost
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Sets the port of the metrics endpoint, 0 picks a free port and a negative
+     * value disables the endpoint
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.BrokerServiceAware;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.Message;
+import org.apache.activemq.openwire.OpenWireFormat;
+import org.apache.activemq.store.memory.MemoryRetainedMessageStore;
+import org.apache.activemq.thread.Scheduler;
+import org.apache.activemq.util.ByteSequence;
+import org.apache.activemq.util.IOHelper;
+import org.apache.activemq.util.ServiceStopper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A RetainedMessageStore that logs every change to a local append only file.
+ *
+ * The retained messages are kept in memory as in the {@link MemoryRetainedMessageStore},
+ * the log is replayed on start and rewritten with only the live messages once it holds
+ * more than compactionFactor times as many records as there are retained messages.
+ * Changes are written to the log as they happen and synced to disk every syncInterval
+ * milliseconds rather than once per retained publish, unless syncWrites is enabled.
+ *
+ * @org.apache.xbean.XBean element="fileRetainedMessageStore"
+ */
+public class FileRetainedMessageStore extends MemoryRetainedMessageStore implements BrokerServiceAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileRetainedMessageStore.class);
+
+    private static final int MAGIC = 0x41524D53;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final String LOG_FILE = "retained.log";
+
+    private BrokerService brokerService;
+    private File directory;
+    private boolean syncWrites = false;
+    private long syncInterval = 1000;
+    private int compactionFactor = 2;
+    private int minimumCompactionSize = 1000;
+
+    private FileOutputStream logFile;
+    private DataOutputStream log;
+    private long logRecords;
+    private boolean dirty;
+    private Scheduler scheduler;
+    private final Runnable periodicSync = new Runnable() {
+        @Override
+        public void run() {
+            periodicSync();
+        }
+    };
+
+    @Override
+    public void setBrokerService(BrokerService brokerService) {
+        this.brokerService = brokerService;
+    }
+
+    @Override
+    public synchronized void addRetainedMessage(ActiveMQDestination destination, Message message) throws IOException {
+        ByteSequence data = marshal(message);
+        writeRecord(PUT, destination, data);
+        putMarshaled(destination, data);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void removeRetainedMessage(ActiveMQDestination destination) throws IOException {
+        if (messages.containsKey(destination)) {
+            writeRecord(REMOVE, destination, null);
+            removeMarshaled(destination);
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    protected synchronized void doStart() throws Exception {
+        if (directory == null) {
+            directory = new File(brokerService != null ? brokerService.getBrokerDataDirectory() : new File("activemq-data"), "retained");
+        }
+        IOHelper.mkdirs(directory);
+        File file = new File(directory, LOG_FILE);
+        if (file.exists()) {
+            load(file);
+        }
+        compact();
+        if (!syncWrites && syncInterval > 0) {
+            scheduler = new Scheduler("RetainedMessageStore sync");
+            scheduler.start();
+            scheduler.executePeriodically(periodicSync, syncInterval);
+        }
+        LOG.info("Retained message store started with {} retained messages in {}", size(), directory);
+    }
+
+    @Override
+    protected void doStop(ServiceStopper stopper) throws Exception {
+        if (scheduler != null) {
+            stopper.stop(scheduler);
+            scheduler = null;
+        }
+        closeLog();
+    }
+
+    private synchronized void closeLog() throws IOException {
+        if (log != null) {
+            log.flush();
+            if (dirty) {
+                logFile.getFD().sync();
+                dirty = false;
+            }
+            log.close();
+            log = null;
+            logFile = null;
+        }
+        clear();
+    }
+
+    private void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a retained message log: " + file);
+            }
+            int version = in.readInt();
+            OpenWireFormat reader = version == wireFormat.getVersion() ? null : new OpenWireFormat(version);
+            while (true) {
+                byte type = in.readByte();
+                ActiveMQDestination destination = ActiveMQDestination.createDestination(in.readUTF(), ActiveMQDestination.TOPIC_TYPE);
+                if (type == PUT) {
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    ByteSequence sequence = new ByteSequence(data);
+                    if (reader != null) {
+                        sequence = marshal((Message) reader.unmarshal(sequence));
+                    }
+                    putMarshaled(destination, sequence);
+                } else if (type == REMOVE) {
+                    removeMarshaled(destination);
+                } else {
+                    throw new IOException("Unknown record type " + type + " in " + file);
+                }
+            }
+        } catch (EOFException e) {
+            // end of the log, a record only partially written before a crash is
+            // dropped by the compaction that follows the load
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (logRecords > minimumCompactionSize && logRecords > (long) compactionFactor * size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes the live retained messages to a new log and swaps it in place of the current one
+     */
+    protected synchronized void compact() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+        File file = new File(directory, LOG_FILE);
+        File tmp = new File(directory, LOG_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeInt(wireFormat.getVersion());
+            for (Map.Entry<ActiveMQDestination, ByteSequence> entry : messages.entrySet()) {
+                writeRecord(data, PUT, entry.getKey(), entry.getValue());
+            }
+            data.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRecords = messages.size();
+        dirty = false;
+        logFile = new FileOutputStream(file, true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile));
+    }
+
+    private void writeRecord(byte type, ActiveMQDestination destination, ByteSequence data) throws IOException {
+        if (log == null) {
+            throw new IOException("Retained message store is not started");
+        }
+        writeRecord(log, type, destination, data);
+        log.flush();
+        if (syncWrites) {
+            logFile.getFD().sync();
+        } else {
+            dirty = true;
+        }
+        logRecords++;
+    }
+
+    /**
+     * Syncs the changes written since the last sync, the sync itself runs outside the
+     * store lock so retained publishes are not held up by the disk.
+     */
+    private void periodicSync() {
+        FileOutputStream file;
+        synchronized (this) {
+            if (!dirty || logFile == null) {
+                return;
+            }
+            file = logFile;
+            dirty = false;
+        }
+        try {
+            file.getFD().sync();
+        } catch (IOException e) {
+            // the log was swapped by a compaction, which synced the new one
+            LOG.debug("Failed to sync the retained message log", e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, ActiveMQDestination destination, ByteSequence data) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(destination.getQualifiedName());
+        if (type == PUT) {
+            out.writeInt(data.getLength());
+            out.write(data.getData(), data.getOffset(), data.getLength());
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sets the directory of the retained message log, defaults to the retained folder
+     * of the broker data directory
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * Sets whether every change is synced to disk before it is acknowledged, defaults to false
+     * in which case changes are synced every syncInterval milliseconds
+     */
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Sets how often in milliseconds the changes written to the log are synced to disk
+     * when syncWrites is disabled, defaults to 1000
+     */
+    public void setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    public int getCompactionFactor() {
+        return compactionFactor;
+    }
+
+    /**
+     * Sets how many log records per retained message are tolerated before the log
+     * is compacted, defaults to 2
+     */
+    public void setCompactionFactor(int compactionFactor) {
+        this.compactionFactor = compactionFactor;
+    }
+
+    public int getMinimumCompactionSize() {
+        return minimumCompactionSize;
+    }
+
+    /**
+     * Sets the number of log records below which the log is never compacted, defaults to 1000
+     */
+    public void setMinimumCompactionSize(int minimumCompactionSize) {
+        this.minimumCompactionSize = minimumCompactionSize;
+    }
+}
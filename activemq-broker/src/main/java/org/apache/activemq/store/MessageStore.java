@@ -178,6 +178,22 @@ public interface MessageStore extends Service {
 
     void recoverNextMessages(int maxReturned, MessageRecoveryListener listener) throws Exception;
 
+    /**
+     * Recovers up to maxReturned messages stored after the given store sequence, in store
+     * order, without changing the batch position used by {@link #recoverNextMessages}.
+     * Each recovered message carries its store sequence in
+     * {@link MessageId#getFutureOrSequenceLong()} so it can be used as the next position.
+     *
+     * @param sequence the store sequence to start after, use -1 to start at the beginning
+     * @param maxReturned the maximum number of messages to recover
+     * @param listener the listener to pass recovered messages to
+     * @return false if the store does not support positional recovery
+     * @throws Exception
+     */
+    default boolean recoverMessagesAfter(long sequence, int maxReturned, MessageRecoveryListener listener) throws Exception {
+        return false;
+    }
+
     void dispose(ConnectionContext context);
 
     /**
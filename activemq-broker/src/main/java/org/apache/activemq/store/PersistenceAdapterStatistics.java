@@ -16,6 +16,8 @@
  */
 package org.apache.activemq.store;
 
+import org.apache.activemq.management.CountStatisticImpl;
+import org.apache.activemq.management.HistogramStatisticImpl;
 import org.apache.activemq.management.StatsImpl;
 import org.apache.activemq.management.TimeStatisticImpl;
 
@@ -27,6 +29,16 @@ public class PersistenceAdapterStatistics extends StatsImpl {
     protected TimeStatisticImpl writeTime;
     protected TimeStatisticImpl readTime;
 
+    protected HistogramStatisticImpl writeLatency;
+    protected HistogramStatisticImpl journalSyncLatency;
+
+    protected CountStatisticImpl pageCacheHits;
+    protected CountStatisticImpl pageCacheMisses;
+    protected CountStatisticImpl pageCacheEvictions;
+
+    protected CountStatisticImpl journalCompactions;
+    protected CountStatisticImpl journalCompactedBytes;
+
     public PersistenceAdapterStatistics() {
     	slowCleanupTime = new TimeStatisticImpl("slowCleanupTime", "Slow time to cleanup data in the PersistentAdapter.");
     	slowWriteTime = new TimeStatisticImpl("slowWriteTime", "Slow time to write data to the PersistentAdapter.");
@@ -39,6 +51,26 @@ public class PersistenceAdapterStatistics extends StatsImpl {
         readTime = new TimeStatisticImpl("readTime", "Time to read data from the PersistentAdapter.");
         addStatistic("writeTime", writeTime);
         addStatistic("readTime", readTime);
+
+        writeLatency = new HistogramStatisticImpl("writeLatency", "millis", "Distribution of the time to write data to the PersistentAdapter.");
+        journalSyncLatency = new HistogramStatisticImpl("journalSyncLatency", "micros", "Distribution of the time to sync the journal to disk.");
+        // like the time statistics these are recorded whether or not broker statistics are enabled
+        writeLatency.setEnabled(true);
+        journalSyncLatency.setEnabled(true);
+        addStatistic("writeLatency", writeLatency);
+        addStatistic("journalSyncLatency", journalSyncLatency);
+
+        pageCacheHits = new CountStatisticImpl("pageCacheHits", "Number of index page reads served by the page cache.");
+        pageCacheMisses = new CountStatisticImpl("pageCacheMisses", "Number of index page reads that missed the page cache.");
+        pageCacheEvictions = new CountStatisticImpl("pageCacheEvictions", "Number of pages evicted from the index page cache.");
+        addStatistic("pageCacheHits", pageCacheHits);
+        addStatistic("pageCacheMisses", pageCacheMisses);
+        addStatistic("pageCacheEvictions", pageCacheEvictions);
+
+        journalCompactions = new CountStatisticImpl("journalCompactions", "Number of journal data files compacted.");
+        journalCompactedBytes = new CountStatisticImpl("journalCompactedBytes", "Number of bytes copied by journal compaction.");
+        addStatistic("journalCompactions", journalCompactions);
+        addStatistic("journalCompactedBytes", journalCompactedBytes);
     }
 
     public void addSlowCleanupTime(final long time) {
@@ -55,12 +87,24 @@ public class PersistenceAdapterStatistics extends StatsImpl {
     
     public void addWriteTime(final long time) {
         writeTime.addTime(time);
+        writeLatency.record(time);
     }
 
     public void addReadTime(final long time) {
         readTime.addTime(time);
     }
 
+    public void addPageCacheCounts(final long hits, final long misses, final long evictions) {
+        pageCacheHits.add(hits);
+        pageCacheMisses.add(misses);
+        pageCacheEvictions.add(evictions);
+    }
+
+    public void addJournalCompaction(final long copiedBytes) {
+        journalCompactions.increment();
+        journalCompactedBytes.add(copiedBytes);
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
         super.setEnabled(enabled);
@@ -69,6 +113,13 @@ public class PersistenceAdapterStatistics extends StatsImpl {
         slowReadTime.setEnabled(enabled);
         writeTime.setEnabled(enabled);
         readTime.setEnabled(enabled);
+        writeLatency.setEnabled(enabled);
+        journalSyncLatency.setEnabled(enabled);
+        pageCacheHits.setEnabled(enabled);
+        pageCacheMisses.setEnabled(enabled);
+        pageCacheEvictions.setEnabled(enabled);
+        journalCompactions.setEnabled(enabled);
+        journalCompactedBytes.setEnabled(enabled);
     }
     
     public TimeStatisticImpl getSlowCleanupTime() {
@@ -88,6 +139,34 @@ public class PersistenceAdapterStatistics extends StatsImpl {
 
     public TimeStatisticImpl getReadTime() { return readTime; }
 
+    public HistogramStatisticImpl getWriteLatency() {
+        return writeLatency;
+    }
+
+    public HistogramStatisticImpl getJournalSyncLatency() {
+        return journalSyncLatency;
+    }
+
+    public CountStatisticImpl getPageCacheHits() {
+        return pageCacheHits;
+    }
+
+    public CountStatisticImpl getPageCacheMisses() {
+        return pageCacheMisses;
+    }
+
+    public CountStatisticImpl getPageCacheEvictions() {
+        return pageCacheEvictions;
+    }
+
+    public CountStatisticImpl getJournalCompactions() {
+        return journalCompactions;
+    }
+
+    public CountStatisticImpl getJournalCompactedBytes() {
+        return journalCompactedBytes;
+    }
+
     @Override
     public void reset() {
         if (isDoReset()) {
@@ -96,6 +175,13 @@ public class PersistenceAdapterStatistics extends StatsImpl {
             slowCleanupTime.reset();
             slowWriteTime.reset();
             slowReadTime.reset();
+            writeLatency.reset();
+            journalSyncLatency.reset();
+            pageCacheHits.reset();
+            pageCacheMisses.reset();
+            pageCacheEvictions.reset();
+            journalCompactions.reset();
+            journalCompactedBytes.reset();
         }
     }
 
@@ -106,12 +192,26 @@ public class PersistenceAdapterStatistics extends StatsImpl {
             slowCleanupTime.setParent(parent.slowCleanupTime);
             slowWriteTime.setParent(parent.slowWriteTime);
             slowReadTime.setParent(parent.slowReadTime);
+            writeLatency.setParent(parent.writeLatency);
+            journalSyncLatency.setParent(parent.journalSyncLatency);
+            pageCacheHits.setParent(parent.pageCacheHits);
+            pageCacheMisses.setParent(parent.pageCacheMisses);
+            pageCacheEvictions.setParent(parent.pageCacheEvictions);
+            journalCompactions.setParent(parent.journalCompactions);
+            journalCompactedBytes.setParent(parent.journalCompactedBytes);
         } else {
             writeTime.setParent(null);
             readTime.setParent(null);
             slowCleanupTime.setParent(null);
             slowWriteTime.setParent(null);
             slowReadTime.setParent(null);
+            writeLatency.setParent(null);
+            journalSyncLatency.setParent(null);
+            pageCacheHits.setParent(null);
+            pageCacheMisses.setParent(null);
+            pageCacheEvictions.setParent(null);
+            journalCompactions.setParent(null);
+            journalCompactedBytes.setParent(null);
         }
 
     }
@@ -110,6 +110,11 @@ public class ProxyMessageStore implements MessageStore {
         delegate.recoverNextMessages(maxReturned, listener);
     }
 
+    @Override
+    public boolean recoverMessagesAfter(long sequence, int maxReturned, MessageRecoveryListener listener) throws Exception {
+        return delegate.recoverMessagesAfter(sequence, maxReturned, listener);
+    }
+
     @Override
     public void resetBatching() {
         delegate.resetBatching();
@@ -152,6 +152,11 @@ public class ProxyTopicMessageStore extends ProxyMessageStore implements TopicMe
         delegate.recoverNextMessages(maxReturned, listener);
     }
 
+    @Override
+    public boolean recoverMessagesAfter(long sequence, int maxReturned, MessageRecoveryListener listener) throws Exception {
+        return delegate.recoverMessagesAfter(sequence, maxReturned, listener);
+    }
+
     @Override
     public void dispose(ConnectionContext context) {
         delegate.dispose(context);
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.activemq.Service;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.Message;
+
+/**
+ * Holds the last retained message of every topic independently of the topic
+ * destinations, so retained messages survive a restart and can be looked up
+ * with a wildcard without the topics being loaded in the broker.
+ */
+public interface RetainedMessageStore extends Service {
+
+    /**
+     * Replaces the retained message of the given topic
+     *
+     * @param destination the topic the message was retained on
+     * @param message the message to retain
+     * @throws IOException
+     */
+    void addRetainedMessage(ActiveMQDestination destination, Message message) throws IOException;
+
+    /**
+     * Clears the retained message of the given topic
+     *
+     * @param destination the topic to clear
+     * @throws IOException
+     */
+    void removeRetainedMessage(ActiveMQDestination destination) throws IOException;
+
+    /**
+     * @param destination the topic to look up
+     * @return a new copy of the retained message or null if there is none
+     * @throws IOException
+     */
+    Message getRetainedMessage(ActiveMQDestination destination) throws IOException;
+
+    /**
+     * @param filter a topic name, possibly holding wildcards
+     * @return the topics with a retained message that match the filter
+     */
+    Set<ActiveMQDestination> getRetainedDestinations(ActiveMQDestination filter);
+
+    /**
+     * @return the number of retained messages
+     */
+    int size();
+}
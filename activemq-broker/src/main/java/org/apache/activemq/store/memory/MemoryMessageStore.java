@@ -130,6 +130,23 @@ public class MemoryMessageStore extends AbstractMessageStore {
         }
     }
 
+    @Override
+    public boolean recoverMessagesAfter(long sequence, int maxReturned, MessageRecoveryListener listener) throws Exception {
+        synchronized (messageTable) {
+            int counter = 0;
+            for (Message message : messageTable.values()) {
+                Object position = message.getMessageId().getFutureOrSequenceLong();
+                if (position instanceof Long && (Long) position > sequence) {
+                    listener.recoverMessage(message);
+                    if (++counter >= maxReturned || !listener.hasSpace()) {
+                        break;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public void resetBatching() {
         lastBatchId = null;
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.memory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.Message;
+import org.apache.activemq.filter.DestinationMap;
+import org.apache.activemq.openwire.OpenWireFormat;
+import org.apache.activemq.store.RetainedMessageStore;
+import org.apache.activemq.util.ByteSequence;
+import org.apache.activemq.util.ServiceStopper;
+import org.apache.activemq.util.ServiceSupport;
+
+/**
+ * A RetainedMessageStore that keeps the retained messages in memory only.
+ *
+ * Messages are held in their marshaled form so a retained message does not pin the
+ * topic it was sent to, and the topic names are indexed in a {@link DestinationMap}
+ * so wildcard lookups only walk the matching branches of the topic tree.
+ *
+ * @org.apache.xbean.XBean element="memoryRetainedMessageStore"
+ */
+public class MemoryRetainedMessageStore extends ServiceSupport implements RetainedMessageStore {
+
+    protected final OpenWireFormat wireFormat = new OpenWireFormat();
+    protected final ConcurrentMap<ActiveMQDestination, ByteSequence> messages = new ConcurrentHashMap<ActiveMQDestination, ByteSequence>();
+    private final DestinationMap index = new DestinationMap();
+
+    @Override
+    public synchronized void addRetainedMessage(ActiveMQDestination destination, Message message) throws IOException {
+        putMarshaled(destination, marshal(message));
+    }
+
+    @Override
+    public synchronized void removeRetainedMessage(ActiveMQDestination destination) throws IOException {
+        removeMarshaled(destination);
+    }
+
+    @Override
+    public Message getRetainedMessage(ActiveMQDestination destination) throws IOException {
+        ByteSequence data = messages.get(destination);
+        return data != null ? (Message) wireFormat.unmarshal(data) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<ActiveMQDestination> getRetainedDestinations(ActiveMQDestination filter) {
+        if (!filter.isPattern() && !filter.isComposite()) {
+            return messages.containsKey(filter) ? Collections.singleton(filter) : Collections.<ActiveMQDestination>emptySet();
+        }
+        return new HashSet<ActiveMQDestination>(index.get(filter));
+    }
+
+    @Override
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * Marshals a message into a sequence that holds only its own bytes, the sequence
+     * returned by the wire format is a view of the larger buffer it was written to.
+     */
+    protected ByteSequence marshal(Message message) throws IOException {
+        ByteSequence data = wireFormat.marshal(message);
+        data.compact();
+        return data;
+    }
+
+    protected boolean putMarshaled(ActiveMQDestination destination, ByteSequence data) {
+        if (messages.put(destination, data) == null) {
+            index.put(destination, destination);
+            return true;
+        }
+        return false;
+    }
+
+    protected boolean removeMarshaled(ActiveMQDestination destination) {
+        if (messages.remove(destination) != null) {
+            index.remove(destination, destination);
+            return true;
+        }
+        return false;
+    }
+
+    protected void clear() {
+        messages.clear();
+        index.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+    }
+
+    @Override
+    protected void doStop(ServiceStopper stopper) throws Exception {
+    }
+}
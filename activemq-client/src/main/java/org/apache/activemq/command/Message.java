@@ -87,6 +87,8 @@ public abstract class Message extends BaseCommand implements MarshallAware, Mess
 
     protected int size;
     protected Map<String, Object> properties;
+    // properties map is shared with a copy and must be cloned before it is modified
+    private transient boolean propertiesShared;
     protected boolean readOnlyProperties;
     protected boolean readOnlyBody;
     protected transient boolean recievedByDFBridge;
@@ -115,6 +117,7 @@ public abstract class Message extends BaseCommand implements MarshallAware, Mess
     // useful to reduce the memory footprint of a persisted message
     public void clearUnMarshalledState() throws JMSException {
         properties = null;
+        propertiesShared = false;
     }
 
     public boolean isMarshalled() {
@@ -152,10 +155,18 @@ public abstract class Message extends BaseCommand implements MarshallAware, Mess
         copy.groupSequence = groupSequence;
 
         if (properties != null) {
-            copy.properties = new HashMap<String, Object>(properties);
+            if (properties.containsKey(ORIGINAL_EXPIRATION)) {
+                copy.properties = new HashMap<String, Object>(properties);
 
-            // The new message hasn't expired, so remove this feild.
-            copy.properties.remove(ORIGINAL_EXPIRATION);
+                // The new message hasn't expired, so remove this feild.
+                copy.properties.remove(ORIGINAL_EXPIRATION);
+            } else {
+                // share the map until either message modifies its properties, fan out
+                // through composite and virtual destinations copies a message per target
+                copy.properties = properties;
+                copy.propertiesShared = true;
+                propertiesShared = true;
+            }
         } else {
             copy.properties = properties;
         }
@@ -218,6 +229,7 @@ public abstract class Message extends BaseCommand implements MarshallAware, Mess
     public void clearProperties() {
         marshalledProperties = null;
         properties = null;
+        propertiesShared = false;
     }
 
     public void setProperty(String name, Object value) throws IOException {
@@ -238,7 +250,12 @@ public abstract class Message extends BaseCommand implements MarshallAware, Mess
                 properties = unmarsallProperties(marshalledProperties);
                 marshalledProperties = null;
             }
+            propertiesShared = false;
         } else {
+            if (propertiesShared) {
+                properties = new HashMap<String, Object>(properties);
+                propertiesShared = false;
+            }
             marshalledProperties = null;
         }
     }
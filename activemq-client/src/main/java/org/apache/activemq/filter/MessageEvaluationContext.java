@@ -17,6 +17,10 @@
 package org.apache.activemq.filter;
 
 import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import jakarta.jms.JMSException;
 
 import org.apache.activemq.broker.region.MessageReference;
 import org.apache.activemq.command.ActiveMQDestination;
@@ -38,6 +42,8 @@ public class MessageEvaluationContext {
     protected boolean dropped;
     protected Message message;
     protected ActiveMQDestination destination;
+    protected boolean cacheSelectorResults;
+    private Map<BooleanExpression, Boolean> selectorResults;
 
     public MessageEvaluationContext() {
     }
@@ -64,15 +70,57 @@ public class MessageEvaluationContext {
     public void setMessageReference(MessageReference messageReference) {
         if (this.messageReference != messageReference) {
             clearMessageCache();
+            clearSelectorResults();
         }
         this.messageReference = messageReference;
     }
 
     public void clear() {
         clearMessageCache();
+        clearSelectorResults();
         destination = null;
     }
 
+    /**
+     * Evaluates the selector against the current message. When selector results are
+     * cached the outcome is remembered for the current message, so the same expression
+     * instance (selectors are shared through the SelectorParser cache) is evaluated only
+     * once however many subscriptions or destinations use it.
+     */
+    public boolean matches(BooleanExpression expression) throws JMSException {
+        if (!cacheSelectorResults) {
+            return expression.matches(this);
+        }
+        if (selectorResults == null) {
+            selectorResults = new IdentityHashMap<BooleanExpression, Boolean>();
+        }
+        Boolean result = selectorResults.get(expression);
+        if (result == null) {
+            result = expression.matches(this);
+            selectorResults.put(expression, result);
+        }
+        return result;
+    }
+
+    public boolean isCacheSelectorResults() {
+        return cacheSelectorResults;
+    }
+
+    /**
+     * Enables caching of selector results for the current message, only safe when
+     * the message is not modified between evaluations.
+     */
+    public void setCacheSelectorResults(boolean cacheSelectorResults) {
+        this.cacheSelectorResults = cacheSelectorResults;
+        clearSelectorResults();
+    }
+
+    protected void clearSelectorResults() {
+        if (selectorResults != null) {
+            selectorResults.clear();
+        }
+    }
+
     public ActiveMQDestination getDestination() {
         return destination;
     }
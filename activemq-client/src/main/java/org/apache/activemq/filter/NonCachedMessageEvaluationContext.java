@@ -33,6 +33,9 @@ public class NonCachedMessageEvaluationContext extends MessageEvaluationContext
     }
 
     public void setMessageReference(MessageReference messageReference) {
+        if (this.messageReference != messageReference) {
+            clearSelectorResults();
+        }
         this.messageReference = messageReference;
     }
 
@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.management;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram statistic.
+ *
+ * Values are recorded into log-linear buckets in the style of HdrHistogram: every power of
+ * two range is split into 8 linear sub buckets, so any recorded value is reported within
+ * 12.5% of its real value. Values above 2^36 are recorded in the last bucket. The bucket
+ * array is only allocated on the first recorded value so idle destinations stay cheap.
+ */
+public class HistogramStatisticImpl extends StatisticImpl {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    private static final long MAX_TRACKABLE_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    private volatile AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private HistogramStatisticImpl parent;
+
+    public HistogramStatisticImpl(String name, String unit, String description) {
+        super(name, unit, description);
+    }
+
+    public HistogramStatisticImpl(HistogramStatisticImpl parent, String name, String unit, String description) {
+        this(name, unit, description);
+        this.parent = parent;
+    }
+
+    public void record(long value) {
+        if (isEnabled()) {
+            if (value < 0) {
+                value = 0;
+            }
+            AtomicLongArray current = buckets;
+            if (current == null) {
+                current = lazyCreateBuckets();
+            }
+            current.incrementAndGet(bucketIndex(value));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+            if (parent != null) {
+                parent.record(value);
+            }
+        }
+    }
+
+    private synchronized AtomicLongArray lazyCreateBuckets() {
+        if (buckets == null) {
+            buckets = new AtomicLongArray(BUCKET_COUNT);
+        }
+        return buckets;
+    }
+
+    @Override
+    public synchronized void reset() {
+        if (isDoReset()) {
+            super.reset();
+            buckets = null;
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return a consistent enough copy of the histogram that can be queried without
+     *         touching the live counters
+     */
+    public Snapshot getSnapshot() {
+        AtomicLongArray current = buckets;
+        long[] counts = new long[BUCKET_COUNT];
+        long snapshotCount = 0;
+        if (current != null) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = current.get(i);
+                snapshotCount += counts[i];
+            }
+        }
+        return new Snapshot(counts, snapshotCount, total.get(), max.get());
+    }
+
+    public double getValueAtPercentile(double percentile) {
+        return getSnapshot().getValueAtPercentile(percentile);
+    }
+
+    public HistogramStatisticImpl getParent() {
+        return parent;
+    }
+
+    public void setParent(HistogramStatisticImpl parent) {
+        this.parent = parent;
+    }
+
+    static int bucketIndex(long value) {
+        if (value > MAX_TRACKABLE_VALUE) {
+            value = MAX_TRACKABLE_VALUE;
+        }
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lower = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    @Override
+    protected void appendFieldDescription(StringBuffer buffer) {
+        Snapshot snapshot = getSnapshot();
+        buffer.append(" count: ");
+        buffer.append(Long.toString(snapshot.getCount()));
+        buffer.append(" max: ");
+        buffer.append(Long.toString(snapshot.getMax()));
+        buffer.append(" mean: ");
+        buffer.append(Double.toString(snapshot.getMean()));
+        buffer.append(" p50: ");
+        buffer.append(Double.toString(snapshot.getValueAtPercentile(50)));
+        buffer.append(" p99: ");
+        buffer.append(Double.toString(snapshot.getValueAtPercentile(99)));
+        super.appendFieldDescription(buffer);
+    }
+
+    /**
+     * An immutable copy of the histogram counts.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the highest value equivalent to the recorded values at the given percentile
+         */
+        public double getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            double clamped = Math.min(Math.max(percentile, 0), 100);
+            long target = Math.max(1, (long) Math.ceil(clamped / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
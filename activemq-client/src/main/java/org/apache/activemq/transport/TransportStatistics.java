@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport;
+
+import org.apache.activemq.management.CountStatisticImpl;
+import org.apache.activemq.management.StatsImpl;
+
+/**
+ * The J2EE Statistics for the writes of a Transport, enabled unless turned off.
+ */
+public class TransportStatistics extends StatsImpl {
+
+    private CountStatisticImpl framesWritten;
+    private CountStatisticImpl socketWrites;
+
+    public TransportStatistics() {
+
+        framesWritten = new CountStatisticImpl("framesWritten", "The number of frames written by the transport");
+        socketWrites = new CountStatisticImpl("socketWrites", "The number of write calls the transport made on its socket");
+
+        addStatistic("framesWritten", framesWritten);
+        addStatistic("socketWrites", socketWrites);
+
+        setEnabled(true);
+    }
+
+    public CountStatisticImpl getFramesWritten() {
+        return framesWritten;
+    }
+
+    public CountStatisticImpl getSocketWrites() {
+        return socketWrites;
+    }
+
+    /**
+     * @return the average number of socket writes per written frame.
+     */
+    public double getSocketWritesPerFrame() {
+        long frames = framesWritten.getCount();
+        return frames == 0 ? 0 : (double) socketWrites.getCount() / frames;
+    }
+
+    public void reset() {
+        super.reset();
+        framesWritten.reset();
+        socketWrites.reset();
+    }
+
+    public void setEnabled(boolean enabled) {
+        super.setEnabled(enabled);
+        framesWritten.setEnabled(enabled);
+        socketWrites.setEnabled(enabled);
+    }
+
+    public void setParent(TransportStatistics parent) {
+        if (parent != null) {
+            framesWritten.setParent(parent.framesWritten);
+            socketWrites.setParent(parent.socketWrites);
+        } else {
+            framesWritten.setParent(null);
+            socketWrites.setParent(null);
+        }
+    }
+}
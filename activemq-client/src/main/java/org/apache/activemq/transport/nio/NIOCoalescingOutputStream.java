@@ -0,0 +1,345 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.nio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.transport.TransportStatistics;
+
+/**
+ * An NIOOutputStream that coalesces the frames flushed to it.
+ *
+ * A flush does not go to the channel straight away. The flushed frames are held
+ * in direct buffers for a short window and then written with a single gathering
+ * write, so that bursts of small frames cost one system call instead of one per
+ * frame. The drain never waits for the channel, when the socket buffer is full the
+ * drain is scheduled again with a growing delay and the writers only block once
+ * the pending buffers reach their limit.
+ */
+public class NIOCoalescingOutputStream extends NIOOutputStream {
+
+    private static final int MAX_PENDING_BUFFERS = 16;
+    private static final long MAX_RETRY_DELAY = 1000;
+
+    private static final ScheduledExecutorService COALESCING_EXECUTOR = createCoalescingExecutor();
+
+    private final WritableByteChannel out;
+    private final int bufferSize;
+    private final TransportStatistics statistics;
+
+    private long coalescingWindow = 50;
+    private final ArrayDeque<ByteBuffer> pendingBuffers = new ArrayDeque<ByteBuffer>();
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<ByteBuffer>();
+    private ByteBuffer currentBuffer;
+    private int pendingFrames;
+    private boolean drainScheduled;
+    private long retryDelay;
+    private IOException drainFailure;
+    private boolean closed;
+    private volatile long writeTimestamp = -1; // concurrent reads of this value
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            IOException failure = null;
+            synchronized (NIOCoalescingOutputStream.this) {
+                drainScheduled = false;
+                if (drainFailure == null && !closed) {
+                    try {
+                        drain();
+                    } catch (IOException e) {
+                        drainFailure = failure = e;
+                        NIOCoalescingOutputStream.this.notifyAll();
+                    }
+                }
+            }
+            if (failure != null) {
+                onCoalescedWriteFailure(failure);
+            }
+        }
+    };
+
+    /**
+     * @param out
+     *        the channel to write data to.
+     * @param size
+     *        the size of the buffers the flushed frames are held in.
+     * @param statistics
+     *        the statistics that the written frames and socket writes are
+     *        counted in, or null.
+     */
+    public NIOCoalescingOutputStream(WritableByteChannel out, int size, TransportStatistics statistics) {
+        super(out, size);
+        this.out = out;
+        this.bufferSize = size;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        checkWritable();
+        coalescingBuffer(1).put((byte) b);
+    }
+
+    @Override
+    public synchronized void write(byte b[], int off, int len) throws IOException {
+        checkWritable();
+        if (len > bufferSize) {
+            // large frames are queued as they are rather than split across
+            // direct buffers, the copy is needed as the caller may reuse b.
+            if (currentBuffer != null && currentBuffer.position() > 0) {
+                queueCurrentBuffer();
+            }
+            ByteBuffer large = ByteBuffer.allocate(len);
+            large.put(b, off, len);
+            large.flip();
+            pendingBuffers.add(large);
+            awaitPendingBuffers();
+            return;
+        }
+        while (len > 0) {
+            ByteBuffer target = coalescingBuffer(1);
+            int chunk = Math.min(len, target.remaining());
+            target.put(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Schedules the flushed frame to be written once the coalescing window has
+     * passed.
+     *
+     * @throws IOException if a previous coalesced write failed.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        checkWritable();
+        pendingFrames++;
+        if (!drainScheduled) {
+            drainScheduled = true;
+            COALESCING_EXECUTOR.schedule(drainTask, coalescingWindow, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Writes out everything still pending and closes the stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (!closed && drainFailure == null) {
+                drain();
+                while (!pendingBuffers.isEmpty()) {
+                    awaitDrain();
+                }
+            }
+        } finally {
+            closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * Writes out the frames still held in the coalescing window as far as the
+     * channel takes them without waiting.
+     *
+     * @throws IOException if the write fails.
+     */
+    public synchronized void drainPending() throws IOException {
+        if (!closed && drainFailure == null) {
+            drain();
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        checkClosed();
+        if (drainFailure != null) {
+            throw drainFailure;
+        }
+    }
+
+    /**
+     * @return a direct buffer with at least the requested room, queueing the
+     *         current buffer for the next gathering write when it is full.
+     */
+    private ByteBuffer coalescingBuffer(int required) throws IOException {
+        if (currentBuffer != null && currentBuffer.remaining() < required) {
+            queueCurrentBuffer();
+            awaitPendingBuffers();
+        }
+        if (currentBuffer == null) {
+            currentBuffer = freeBuffers.poll();
+            if (currentBuffer == null) {
+                currentBuffer = ByteBuffer.allocateDirect(bufferSize);
+            }
+        }
+        return currentBuffer;
+    }
+
+    private void queueCurrentBuffer() {
+        currentBuffer.flip();
+        pendingBuffers.add(currentBuffer);
+        currentBuffer = null;
+    }
+
+    /**
+     * Applies back pressure to the writer rather than queueing without bound,
+     * the writer waits for the scheduled drains once the socket stops taking
+     * the data.
+     */
+    private void awaitPendingBuffers() throws IOException {
+        if (pendingBuffers.size() >= MAX_PENDING_BUFFERS) {
+            drain();
+            while (pendingBuffers.size() >= MAX_PENDING_BUFFERS) {
+                awaitDrain();
+            }
+        }
+    }
+
+    private void awaitDrain() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        checkWritable();
+    }
+
+    /**
+     * Writes the pending buffers to the channel, using a single gathering write
+     * for as long as the channel accepts the data. When the channel stops taking
+     * data the rest is left pending and the drain is scheduled again.
+     */
+    private void drain() throws IOException {
+        if (currentBuffer != null && currentBuffer.position() > 0) {
+            queueCurrentBuffer();
+        }
+        if (pendingFrames > 0 && statistics != null) {
+            statistics.getFramesWritten().add(pendingFrames);
+        }
+        pendingFrames = 0;
+        if (pendingBuffers.isEmpty()) {
+            return;
+        }
+
+        if (writeTimestamp < 0) {
+            writeTimestamp = System.currentTimeMillis();
+        }
+        while (!pendingBuffers.isEmpty()) {
+            long written;
+            if (pendingBuffers.size() == 1 || !(out instanceof GatheringByteChannel)) {
+                written = out.write(pendingBuffers.peek());
+            } else {
+                written = ((GatheringByteChannel) out).write(pendingBuffers.toArray(new ByteBuffer[pendingBuffers.size()]));
+            }
+            if (statistics != null) {
+                statistics.getSocketWrites().increment();
+            }
+            if (written == 0) {
+                scheduleRetry();
+                return;
+            }
+            releaseWrittenBuffers();
+        }
+        writeTimestamp = -1;
+        retryDelay = 0;
+    }
+
+    private void releaseWrittenBuffers() {
+        ByteBuffer data;
+        while ((data = pendingBuffers.peek()) != null && !data.hasRemaining()) {
+            pendingBuffers.poll();
+            if (data.isDirect() && freeBuffers.size() < MAX_PENDING_BUFFERS) {
+                data.clear();
+                freeBuffers.add(data);
+            }
+        }
+        notifyAll();
+    }
+
+    private void scheduleRetry() {
+        retryDelay = retryDelay == 0 ? 1 : Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+        if (!drainScheduled) {
+            drainScheduled = true;
+            COALESCING_EXECUTOR.schedule(drainTask, retryDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Called when a coalesced write that was performed in the background
+     * fails, the failure is also thrown to the next caller of the stream.
+     *
+     * @param error
+     *        the failure that occurred writing to the channel.
+     */
+    protected void onCoalescedWriteFailure(IOException error) {
+    }
+
+    @Override
+    public boolean isWriting() {
+        return writeTimestamp > 0;
+    }
+
+    @Override
+    public long getWriteTimestamp() {
+        return writeTimestamp;
+    }
+
+    public synchronized long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    /**
+     * @param coalescingWindow
+     *        the time in microseconds that flushed frames are held before
+     *        being written to the channel.
+     */
+    public synchronized void setCoalescingWindow(long coalescingWindow) {
+        this.coalescingWindow = Math.max(0, coalescingWindow);
+    }
+
+    private static ScheduledExecutorService createCoalescingExecutor() {
+        int threads = Integer.getInteger("org.apache.activemq.transport.nio.NIOCoalescingOutputStream.coalescingThreads",
+                                         Runtime.getRuntime().availableProcessors());
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), new ThreadFactory() {
+
+            private long i = 0;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread t = new Thread(runnable, "ActiveMQ NIO Write Coalescer " + (i++));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
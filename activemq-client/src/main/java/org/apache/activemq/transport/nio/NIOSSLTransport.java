@@ -165,7 +165,7 @@ public class NIOSSLTransport extends NIOTransport {
                 doHandshake();
             }
 
-            selection = SelectorManager.getInstance().register(channel, new SelectorManager.Listener() {
+            selection = getSelectorManager().register(channel, new SelectorManager.Listener() {
                 @Override
                 public void onSelect(SelectorSelection selection) {
                     try {
@@ -32,6 +32,7 @@ import javax.net.SocketFactory;
 import org.apache.activemq.MaxFrameSizeExceededException;
 import org.apache.activemq.openwire.OpenWireFormat;
 import org.apache.activemq.transport.Transport;
+import org.apache.activemq.transport.TransportStatistics;
 import org.apache.activemq.transport.tcp.TcpTransport;
 import org.apache.activemq.util.IOExceptionSupport;
 import org.apache.activemq.util.ServiceStopper;
@@ -50,6 +51,11 @@ public class NIOTransport extends TcpTransport {
     protected ByteBuffer inputBuffer;
     protected ByteBuffer currentBuffer;
     protected int nextFrameSize;
+    protected NIOCoalescingOutputStream coalescingOutputStream;
+
+    private final TransportStatistics transportStatistics = new TransportStatistics();
+    private boolean writeCoalescing;
+    private long writeCoalescingWindow = 50;
 
     public NIOTransport(WireFormat wireFormat, SocketFactory socketFactory, URI remoteLocation, URI localLocation) throws UnknownHostException, IOException {
         super(wireFormat, socketFactory, remoteLocation, localLocation);
@@ -75,7 +81,7 @@ public class NIOTransport extends TcpTransport {
         channel.configureBlocking(false);
 
         // listen for events telling us when the socket is readable.
-        selection = SelectorManager.getInstance().register(channel, new SelectorManager.Listener() {
+        selection = getSelectorManager().register(channel, new SelectorManager.Listener() {
             @Override
             public void onSelect(SelectorSelection selection) {
                 serviceRead();
@@ -97,7 +103,19 @@ public class NIOTransport extends TcpTransport {
         currentBuffer = inputBuffer;
         nextFrameSize = -1;
         currentBuffer.limit(4);
-        NIOOutputStream outPutStream = new NIOOutputStream(channel, getIoBufferSize());
+        NIOOutputStream outPutStream;
+        if (writeCoalescing) {
+            coalescingOutputStream = new NIOCoalescingOutputStream(channel, getIoBufferSize(), transportStatistics) {
+                @Override
+                protected void onCoalescedWriteFailure(IOException error) {
+                    onException(error);
+                }
+            };
+            coalescingOutputStream.setCoalescingWindow(writeCoalescingWindow);
+            outPutStream = coalescingOutputStream;
+        } else {
+            outPutStream = new NIOOutputStream(channel, getIoBufferSize());
+        }
         this.dataOut = new DataOutputStream(outPutStream);
         this.buffOut = outPutStream;
     }
@@ -183,12 +201,56 @@ public class NIOTransport extends TcpTransport {
         selection.enable();
     }
 
+    public boolean isWriteCoalescing() {
+        return writeCoalescing;
+    }
+
+    /**
+     * When enabled, frames flushed within the coalescing window are written
+     * to the socket together using a single gathering write.
+     *
+     * @param writeCoalescing
+     *        true to enable write coalescing on this transport.
+     */
+    public void setWriteCoalescing(boolean writeCoalescing) {
+        this.writeCoalescing = writeCoalescing;
+    }
+
+    public long getWriteCoalescingWindow() {
+        return writeCoalescingWindow;
+    }
+
+    /**
+     * @param writeCoalescingWindow
+     *        the time in microseconds a flushed frame may wait for others
+     *        before being written when write coalescing is enabled.
+     */
+    public void setWriteCoalescingWindow(long writeCoalescingWindow) {
+        this.writeCoalescingWindow = writeCoalescingWindow;
+    }
+
+    /**
+     * @return the statistics of the frames this transport writes, these are
+     *         only gathered when write coalescing is enabled.
+     */
+    public TransportStatistics getTransportStatistics() {
+        return transportStatistics;
+    }
+
     @Override
     protected void doStop(ServiceStopper stopper) throws Exception {
         if (selection != null) {
             selection.close();
             selection = null;
         }
+        if (coalescingOutputStream != null) {
+            // write out the frames still held in the coalescing window before the socket is closed
+            try {
+                coalescingOutputStream.drainPending();
+            } catch (IOException e) {
+                stopper.onException(this, e);
+            }
+        }
         super.doStop(stopper);
     }
 }
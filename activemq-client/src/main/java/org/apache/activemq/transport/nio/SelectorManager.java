@@ -18,16 +18,21 @@ package org.apache.activemq.transport.nio;
 
 import java.io.IOException;
 import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The SelectorManager will manage one Selector and the thread that checks the
@@ -35,31 +40,86 @@ import java.util.concurrent.TimeUnit;
  *
  * We may need to consider running more than one thread to check the selector if
  * servicing the selector takes too long.
+ *
+ * Besides the shared {@link #getInstance() singleton}, an instance can be
+ * created as an event loop group with a fixed number of selectors, each pinned
+ * to its own thread. Channels are then assigned to the selectors round robin
+ * and their callbacks run on an executor owned by the group, so a transport
+ * connector using its own group is not affected by load on other connectors.
  */
 public final class SelectorManager {
 
     public static final SelectorManager SINGLETON = new SelectorManager();
 
-    private Executor selectorExecutor = createDefaultExecutor();
-    private Executor channelExecutor = selectorExecutor;
+    private Executor selectorExecutor;
+    private Executor channelExecutor;
     private final LinkedList<SelectorWorker> freeWorkers = new LinkedList<SelectorWorker>();
     private int maxChannelsPerWorker = -1;
 
+    private final List<SelectorWorker> eventLoops;
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    public SelectorManager() {
+        selectorExecutor = createDefaultExecutor("ActiveMQ NIO Worker ");
+        channelExecutor = selectorExecutor;
+        eventLoops = Collections.emptyList();
+    }
+
+    /**
+     * Creates an event loop group with a fixed number of selector threads.
+     *
+     * @param name
+     *        the name used for the threads of this group.
+     * @param selectorCount
+     *        the number of selectors, each serviced by its own thread.
+     *
+     * @throws IOException if a selector cannot be opened.
+     */
+    public SelectorManager(String name, int selectorCount) throws IOException {
+        if (selectorCount <= 0) {
+            throw new IllegalArgumentException("Selector count must be > 0");
+        }
+        selectorExecutor = Executors.newFixedThreadPool(selectorCount, newThreadFactory("ActiveMQ NIO Event Loop " + name + " "));
+        channelExecutor = createDefaultExecutor("ActiveMQ NIO Worker " + name + " ");
+
+        List<SelectorWorker> loops = new ArrayList<SelectorWorker>(selectorCount);
+        try {
+            for (int i = 0; i < selectorCount; i++) {
+                loops.add(new SelectorWorker(this, true));
+            }
+        } catch (IOException e) {
+            for (SelectorWorker loop : loops) {
+                loop.stop();
+            }
+            shutdownExecutors();
+            throw e;
+        }
+        eventLoops = Collections.unmodifiableList(loops);
+    }
+
     protected ExecutorService createDefaultExecutor() {
+        return createDefaultExecutor("ActiveMQ NIO Worker ");
+    }
+
+    private ExecutorService createDefaultExecutor(String threadName) {
         ThreadPoolExecutor rc = new ThreadPoolExecutor(getDefaultCorePoolSize(), getDefaultMaximumPoolSize(), getDefaultKeepAliveTime(), TimeUnit.SECONDS, newWorkQueue(),
-            new ThreadFactory() {
+            newThreadFactory(threadName), newRejectionHandler());
 
-                private long i = 0;
+        return rc;
+    }
 
-                @Override
-                public Thread newThread(Runnable runnable) {
-                    Thread t = new Thread(runnable, "ActiveMQ NIO Worker " + (i++));
-                    t.setDaemon(true);
-                    return t;
-                }
-            }, newRejectionHandler());
+    private static ThreadFactory newThreadFactory(final String threadName) {
+        return new ThreadFactory() {
 
-        return rc;
+            private long i = 0;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread t = new Thread(runnable, threadName + (i++));
+                t.setDaemon(true);
+                return t;
+            }
+        };
     }
 
     private RejectedExecutionHandler newRejectionHandler() {
@@ -105,7 +165,19 @@ public final class SelectorManager {
         void onError(SelectorSelection selection, Throwable error);
     }
 
-    public synchronized SelectorSelection register(AbstractSelectableChannel selectableChannel, Listener listener) throws IOException {
+    public SelectorSelection register(AbstractSelectableChannel selectableChannel, Listener listener) throws IOException {
+        if (!eventLoops.isEmpty()) {
+            SelectorWorker loop = eventLoops.get((nextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.size());
+            if (loop.isReleased()) {
+                throw new IOException("Selector event loop group has been shut down");
+            }
+            loop.retain();
+            return new SelectorSelection(loop, selectableChannel, listener);
+        }
+        return registerWithFreeWorker(selectableChannel, listener);
+    }
+
+    private synchronized SelectorSelection registerWithFreeWorker(AbstractSelectableChannel selectableChannel, Listener listener) throws IOException {
         SelectorSelection selection = null;
         while (selection == null) {
             if (freeWorkers.size() > 0) {
@@ -139,6 +211,43 @@ public final class SelectorManager {
         freeWorkers.addFirst(worker);
     }
 
+    /**
+     * @return true if this instance is an event loop group with pinned selectors.
+     */
+    public boolean isEventLoopGroup() {
+        return !eventLoops.isEmpty();
+    }
+
+    /**
+     * @return the selectors of this event loop group, empty for the shared instance.
+     */
+    public List<SelectorWorker> getEventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * Stops the selector threads and executors of an event loop group, the
+     * shared instance is never shut down.
+     */
+    public void shutdown() {
+        if (eventLoops.isEmpty()) {
+            return;
+        }
+        for (SelectorWorker loop : eventLoops) {
+            loop.stop();
+        }
+        shutdownExecutors();
+    }
+
+    private void shutdownExecutors() {
+        if (selectorExecutor instanceof ExecutorService) {
+            ((ExecutorService) selectorExecutor).shutdown();
+        }
+        if (channelExecutor != selectorExecutor && channelExecutor instanceof ExecutorService) {
+            ((ExecutorService) channelExecutor).shutdown();
+        }
+    }
+
     public Executor getChannelExecutor() {
         return channelExecutor;
     }
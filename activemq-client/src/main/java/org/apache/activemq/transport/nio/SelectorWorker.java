@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,24 +39,41 @@ public class SelectorWorker implements Runnable {
     final int id = NEXT_ID.getAndIncrement();
     private final int maxChannelsPerWorker;
 
-    final AtomicInteger retainCounter = new AtomicInteger(1);
+    final AtomicInteger retainCounter;
     private final ConcurrentLinkedQueue<Runnable> ioTasks = new ConcurrentLinkedQueue<Runnable>();
 
+    // event loop workers live until stopped rather than until their last channel is released
+    private final boolean pinned;
+    private volatile boolean stopped;
+
+    private final AtomicLong selectCount = new AtomicLong();
+    private final AtomicLong dispatchCount = new AtomicLong();
+    private final AtomicLong ioTaskCount = new AtomicLong();
+
     public SelectorWorker(SelectorManager manager) throws IOException {
+        this(manager, false);
+    }
+
+    SelectorWorker(SelectorManager manager, boolean pinned) throws IOException {
         this.manager = manager;
+        this.pinned = pinned;
+        this.retainCounter = new AtomicInteger(pinned ? 0 : 1);
         selector = Selector.open();
         maxChannelsPerWorker = manager.getMaxChannelsPerWorker();
         manager.getSelectorExecutor().execute(this);
     }
 
     void retain() {
-        if (retainCounter.incrementAndGet() == maxChannelsPerWorker) {
+        if (retainCounter.incrementAndGet() == maxChannelsPerWorker && !pinned) {
             manager.onWorkerFullEvent(this);
         }
     }
 
     void release() {
         int use = retainCounter.decrementAndGet();
+        if (pinned) {
+            return;
+        }
         if (use == 0) {
             manager.onWorkerEmptyEvent(this);
         } else if (use == maxChannelsPerWorker - 1) {
@@ -64,7 +82,12 @@ public class SelectorWorker implements Runnable {
     }
 
     boolean isReleased() {
-        return retainCounter.get() == 0;
+        return pinned ? stopped : retainCounter.get() == 0;
+    }
+
+    void stop() {
+        stopped = true;
+        selector.wakeup();
     }
 
     public void addIoTask(Runnable work) {
@@ -72,9 +95,49 @@ public class SelectorWorker implements Runnable {
         selector.wakeup();
     }
 
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the number of channels currently registered with this worker.
+     */
+    public int getChannelCount() {
+        return retainCounter.get();
+    }
+
+    /**
+     * @return the number of selects that returned ready channels.
+     */
+    public long getSelectCount() {
+        return selectCount.get();
+    }
+
+    /**
+     * @return the number of channel callbacks handed to the channel executor.
+     */
+    public long getDispatchCount() {
+        return dispatchCount.get();
+    }
+
+    /**
+     * @return the number of registration and interest changes processed.
+     */
+    public long getIoTaskCount() {
+        return ioTaskCount.get();
+    }
+
+    /**
+     * @return the number of registration and interest changes waiting to be processed.
+     */
+    public int getPendingIoTaskCount() {
+        return ioTasks.size();
+    }
+
     private void processIoTasks() {
         Runnable task;
         while ((task = ioTasks.poll()) != null) {
+            ioTaskCount.incrementAndGet();
             try {
                 task.run();
             } catch (Throwable e) {
@@ -88,7 +151,7 @@ public class SelectorWorker implements Runnable {
 
         String origName = Thread.currentThread().getName();
         try {
-            Thread.currentThread().setName("Selector Worker: " + id);
+            Thread.currentThread().setName((pinned ? "Selector Event Loop: " : "Selector Worker: ") + id);
             while (!isReleased()) {
 
                 processIoTasks();
@@ -98,6 +161,7 @@ public class SelectorWorker implements Runnable {
                 if (count == 0) {
                     continue;
                 }
+                selectCount.incrementAndGet();
 
                 // Get a java.util.Set containing the SelectionKey objects
                 // for all channels that are ready for I/O.
@@ -116,6 +180,7 @@ public class SelectorWorker implements Runnable {
                         // Kick off another thread to find newly selected keys
                         // while we process the
                         // currently selected keys
+                        dispatchCount.incrementAndGet();
                         manager.getChannelExecutor().execute(new Runnable() {
                             @Override
                             public void run() {
@@ -142,6 +207,7 @@ public class SelectorWorker implements Runnable {
                 s.onError(e);
             }
         } finally {
+            stopped = true;
             try {
                 manager.onWorkerEmptyEvent(this);
                 selector.close();
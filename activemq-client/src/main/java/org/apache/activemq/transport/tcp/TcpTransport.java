@@ -43,6 +43,7 @@ import org.apache.activemq.TransportLoggerSupport;
 import org.apache.activemq.thread.TaskRunnerFactory;
 import org.apache.activemq.transport.Transport;
 import org.apache.activemq.transport.TransportThreadSupport;
+import org.apache.activemq.transport.nio.SelectorManager;
 import org.apache.activemq.util.InetAddressUtil;
 import org.apache.activemq.util.IntrospectionSupport;
 import org.apache.activemq.util.ServiceStopper;
@@ -70,6 +71,7 @@ public class TcpTransport extends TransportThreadSupport implements Transport, S
     protected DataOutputStream dataOut;
     protected DataInputStream dataIn;
     protected TimeStampStream buffOut = null;
+    protected SelectorManager selectorManager;
 
     protected final InitBuffer initBuffer;
 
@@ -408,6 +410,21 @@ public class TcpTransport extends TransportThreadSupport implements Transport, S
         this.ioBufferSize = ioBufferSize;
     }
 
+    /**
+     * @return the SelectorManager that NIO based subclasses register their
+     *         channel with, the shared instance unless one was configured.
+     */
+    public SelectorManager getSelectorManager() {
+        return selectorManager != null ? selectorManager : SelectorManager.getInstance();
+    }
+
+    /**
+     * @param selectorManager the SelectorManager NIO based subclasses should use
+     */
+    public void setSelectorManager(SelectorManager selectorManager) {
+        this.selectorManager = selectorManager;
+    }
+
     /**
      * @return the closeAsync
      */
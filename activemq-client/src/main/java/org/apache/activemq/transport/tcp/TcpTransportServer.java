@@ -53,6 +53,7 @@ import org.apache.activemq.transport.Transport;
 import org.apache.activemq.transport.TransportFactory;
 import org.apache.activemq.transport.TransportServer;
 import org.apache.activemq.transport.TransportServerThreadSupport;
+import org.apache.activemq.transport.nio.SelectorManager;
 import org.apache.activemq.util.IOExceptionSupport;
 import org.apache.activemq.util.InetAddressUtil;
 import org.apache.activemq.util.IntrospectionSupport;
@@ -124,6 +125,8 @@ public class TcpTransportServer extends TransportServerThreadSupport implements
      * The maximum number of sockets allowed for this server
      */
     protected int maximumConnections = Integer.MAX_VALUE;
+    protected int selectorCount;
+    protected SelectorManager selectorManager;
     protected final AtomicLong maximumConnectionsExceededCount = new AtomicLong(0l);
     protected final AtomicInteger currentTransportCount = new AtomicInteger();
 
@@ -487,6 +490,9 @@ public class TcpTransportServer extends TransportServerThreadSupport implements
 
     @Override
     protected void doStart() throws Exception {
+        if (selectorCount > 0 && selectorManager == null) {
+            selectorManager = new SelectorManager(String.valueOf(getConnectURI()), selectorCount);
+        }
         if (useQueueForAccept) {
             Runnable run = new Runnable() {
                 @Override
@@ -551,6 +557,11 @@ public class TcpTransportServer extends TransportServerThreadSupport implements
             socketHandlerThread = null;
         }
 
+        if (selectorManager != null) {
+            selectorManager.shutdown();
+            selectorManager = null;
+        }
+
         try {
             super.doStop(stopper);
         } catch (Exception error) {
@@ -607,6 +618,9 @@ public class TcpTransportServer extends TransportServerThreadSupport implements
             options.put("dynamicManagement", dynamicManagement);
             options.put("startLogging", startLogging);
             options.put("jmxPort", jmxPort);
+            if (selectorManager != null) {
+                options.put("selectorManager", selectorManager);
+            }
             options.putAll(transportOptions);
 
             TransportInfo transportInfo = configureTransport(this, socket);
@@ -702,6 +716,30 @@ public class TcpTransportServer extends TransportServerThreadSupport implements
         this.maximumConnections = maximumConnections;
     }
 
+    public int getSelectorCount() {
+        return selectorCount;
+    }
+
+    /**
+     * Sets the number of selectors in the event loop group used by the NIO
+     * transports accepted by this server, when zero or less they use the
+     * shared SelectorManager.
+     *
+     * @param selectorCount
+     *            the number of selector threads for this server.
+     */
+    public void setSelectorCount(int selectorCount) {
+        this.selectorCount = selectorCount;
+    }
+
+    /**
+     * @return the event loop group of this server, or null if the shared
+     *         SelectorManager is used.
+     */
+    public SelectorManager getSelectorManager() {
+        return selectorManager;
+    }
+
     public AtomicInteger getCurrentTransportCount() {
         return currentTransportCount;
     }
@@ -16,7 +16,18 @@
  */
 package org.apache.activemq.console.command;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectInstance;
 import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import org.apache.activemq.broker.jmx.BrokerMBeanSupport;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.console.filter.MBeansAttributeQueryFilter;
+import org.apache.activemq.console.filter.MBeansObjectNameQueryFilter;
 import org.apache.activemq.console.util.JmxMBeansUtil;
 
 import java.util.*;
@@ -34,6 +45,24 @@ public class QueryCommand extends AbstractJmxCommand {
         PREDEFINED_OBJNAME_QUERY.setProperty("Topic", "destinationType=Topic,destinationName=%1");
     };
 
+    // Destination attributes a broker reports for all its destinations in one call, by statistics item
+    private static final Map<String, String> STATISTICS_ATTRIBUTES = new LinkedHashMap<String, String>();
+    private static final Set<String> DESTINATION_NAME_KEYS = new HashSet<String>(
+            Arrays.asList("type", "brokerName", "destinationType", "destinationName"));
+
+    static {
+        STATISTICS_ATTRIBUTES.put("QueueSize", "queueSize");
+        STATISTICS_ATTRIBUTES.put("EnqueueCount", "enqueueCount");
+        STATISTICS_ATTRIBUTES.put("DequeueCount", "dequeueCount");
+        STATISTICS_ATTRIBUTES.put("DispatchCount", "dispatchCount");
+        STATISTICS_ATTRIBUTES.put("ExpiredCount", "expiredCount");
+        STATISTICS_ATTRIBUTES.put("InFlightCount", "inFlightCount");
+        STATISTICS_ATTRIBUTES.put("ConsumerCount", "consumerCount");
+        STATISTICS_ATTRIBUTES.put("ProducerCount", "producerCount");
+        STATISTICS_ATTRIBUTES.put("MemoryUsageByteCount", "memoryUsageByteCount");
+        STATISTICS_ATTRIBUTES.put("AverageEnqueueTime", "averageEnqueueTime");
+    }
+
     protected String[] helpFile = new String[] {
         "Task Usage: Main query [query-options]",
         "Description: Display selected broker component's attributes and statistics.",
@@ -98,6 +127,8 @@ public class QueryCommand extends AbstractJmxCommand {
     private final List<String> querySubObjects = new ArrayList<String>(10);
     private final Set queryViews = new LinkedHashSet();
     private final List<String> opAndParams = new ArrayList<String>(10);
+    private final Set<String> statisticsTypes = new LinkedHashSet<String>();
+    private boolean statisticsQuery = true;
 
     @Override
     public String getName() {
@@ -116,6 +147,19 @@ public class QueryCommand extends AbstractJmxCommand {
      * @throws Exception
      */
     protected void runTask(List<String> tokens) throws Exception {
+        if (isStatisticsQuery()) {
+            List mbeans = null;
+            try {
+                mbeans = queryDestinationStatistics();
+            } catch (ReflectionException e) {
+                // the broker predates destination statistics queries, query the mbeans one by one
+            }
+            if (mbeans != null) {
+                context.printMBean(JmxMBeansUtil.filterMBeansView(mbeans, queryViews));
+                return;
+            }
+        }
+
         // Query for the mbeans to add
         Map<Object, List> addMBeans = JmxMBeansUtil.queryMBeansAsMap(createJmxConnection(), queryAddObjects, queryViews);
         // Query for the mbeans to sub
@@ -131,6 +175,66 @@ public class QueryCommand extends AbstractJmxCommand {
         }
     }
 
+    /**
+     * Only queue and topic queries that view destination statistics can be answered from the
+     * brokers' destination statistics instead of reading every destination mbean.
+     */
+    private boolean isStatisticsQuery() {
+        if (!statisticsQuery || statisticsTypes.isEmpty() || !opAndParams.isEmpty() || queryViews.isEmpty()) {
+            return false;
+        }
+        for (Object view : queryViews) {
+            if (!STATISTICS_ATTRIBUTES.containsKey(view) && !DESTINATION_NAME_KEYS.contains(view)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List queryDestinationStatistics() throws Exception {
+        MBeanServerConnection connection = createJmxConnection();
+        ObjectName addQuery = createObjectNameQuery(queryAddObjects);
+        ObjectName subQuery = querySubObjects.isEmpty() ? null : createObjectNameQuery(querySubObjects);
+
+        List<AttributeList> mbeans = new ArrayList<AttributeList>();
+        for (Object broker : JmxMBeansUtil.getAllBrokers(connection)) {
+            ObjectName brokerName = ((ObjectInstance) broker).getObjectName();
+            for (String type : statisticsTypes) {
+                String filter = "Topic".equals(type) ? "topic://>" : ">";
+                TabularData statistics = (TabularData) connection.invoke(brokerName, "queryDestinationStatistics",
+                        new Object[] { filter }, new String[] { String.class.getName() });
+                for (Object row : statistics.values()) {
+                    CompositeData data = (CompositeData) row;
+                    ActiveMQDestination destination = ActiveMQDestination.createDestination(
+                            (String) data.get("destination"), ActiveMQDestination.QUEUE_TYPE);
+                    ObjectName name = BrokerMBeanSupport.createDestinationName(brokerName, destination);
+                    if (!addQuery.apply(name) || (subQuery != null && subQuery.apply(name))) {
+                        continue;
+                    }
+                    AttributeList attributes = new AttributeList();
+                    attributes.add(new Attribute(MBeansAttributeQueryFilter.KEY_OBJECT_NAME_ATTRIBUTE, name));
+                    for (Map.Entry<String, String> attribute : STATISTICS_ATTRIBUTES.entrySet()) {
+                        if (queryViews.contains(attribute.getKey())) {
+                            attributes.add(new Attribute(attribute.getKey(), data.get(attribute.getValue())));
+                        }
+                    }
+                    mbeans.add(attributes);
+                }
+            }
+        }
+        return mbeans;
+    }
+
+    private ObjectName createObjectNameQuery(List<String> queries) throws Exception {
+        StringBuilder query = new StringBuilder(MBeansObjectNameQueryFilter.DEFAULT_JMX_DOMAIN).append(':');
+        String delimiter = "";
+        for (String property : queries) {
+            query.append(delimiter).append(property);
+            delimiter = ",";
+        }
+        return new ObjectName(query.toString());
+    }
+
     private Collection doInvoke(Set<Object> mBeans, List<String> opAndParams) throws Exception {
         LinkedList<String> results = new LinkedList<>();
         for (Object objectName : mBeans) {
@@ -184,6 +288,11 @@ public class QueryCommand extends AbstractJmxCommand {
                 context.printException(new IllegalArgumentException("Unknown query object type: " + key));
                 return;
             }
+            if (isDestinationQuery(key, value)) {
+                statisticsTypes.add(key);
+            } else {
+                statisticsQuery = false;
+            }
             String queryStr = JmxMBeansUtil.createQueryString(predefQuery, value);
             StringTokenizer queryTokens = new StringTokenizer(queryStr, COMMAND_OPTION_DELIMETER);
             while (queryTokens.hasMoreTokens()) {
@@ -206,6 +315,9 @@ public class QueryCommand extends AbstractJmxCommand {
                 context.printException(new IllegalArgumentException("Unknown query object type: " + key));
                 return;
             }
+            if (!isDestinationQuery(key, value)) {
+                statisticsQuery = false;
+            }
             String queryStr = JmxMBeansUtil.createQueryString(predefQuery, value);
             StringTokenizer queryTokens = new StringTokenizer(queryStr, COMMAND_OPTION_DELIMETER);
             while (queryTokens.hasMoreTokens()) {
@@ -222,6 +334,7 @@ public class QueryCommand extends AbstractJmxCommand {
                 return;
             }
 
+            statisticsQuery = false;
             StringTokenizer queryTokens = new StringTokenizer((String)tokens.remove(0), COMMAND_OPTION_DELIMETER);
             while (queryTokens.hasMoreTokens()) {
                 queryAddObjects.add(queryTokens.nextToken());
@@ -236,6 +349,7 @@ public class QueryCommand extends AbstractJmxCommand {
                 return;
             }
 
+            statisticsQuery = false;
             StringTokenizer queryTokens = new StringTokenizer((String)tokens.remove(0), COMMAND_OPTION_DELIMETER);
             while (queryTokens.hasMoreTokens()) {
                 querySubObjects.add(queryTokens.nextToken());
@@ -273,6 +387,11 @@ public class QueryCommand extends AbstractJmxCommand {
         }
     }
 
+    private boolean isDestinationQuery(String key, String value) {
+        return ("Queue".equals(key) || "Topic".equals(key)) && !value.isEmpty()
+                && value.indexOf(COMMAND_OPTION_DELIMETER) < 0;
+    }
+
     private void normaliseObjectName(List<String> queryAddObjects) {
         ensurePresent(queryAddObjects, "type", "Broker");
         ensurePresent(queryAddObjects, "brokerName", "*");
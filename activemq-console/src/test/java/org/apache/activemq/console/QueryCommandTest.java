@@ -113,6 +113,25 @@ public class QueryCommandTest {
 
     }
 
+    @Test
+    public void testQueryDestinationStatistics() throws Exception {
+        brokerService.getAdminView().addQueue("Other");
+
+        String result = executeQuery("-QQueue=Q? --view destinationName,QueueSize,ConsumerCount");
+        assertTrue("got Q1", result.contains("Q1"));
+        assertTrue("got Q2", result.contains("Q2"));
+        assertTrue("consumers present", result.contains("ConsumerCount = 0"));
+        assertFalse("!Other", result.contains("Other"));
+        assertFalse("!T1", result.contains("T1"));
+
+        result = executeQuery("-QTopic=T* -QQueue=* -xQQueue=Q2 --view destinationName,destinationType,EnqueueCount");
+        assertTrue("got Q1", result.contains("Q1"));
+        assertTrue("got Other", result.contains("Other"));
+        assertTrue("got T1", result.contains("T1"));
+        assertTrue("got type", result.contains("destinationType = Topic"));
+        assertFalse("!Q2", result.contains("Q2"));
+    }
+
     @Test
     public void testConnection() throws Exception {
 
@@ -136,6 +136,8 @@ abstract public class WebTransportServerSupport extends TransportServerSupport {
 
     protected static class HttpOptions {
         private boolean enableTrace = false;
+        private int maxBatchSize = 100;
+        private int maxBatchBytes = 64 * 1024;
 
         public boolean isEnableTrace() {
             return enableTrace;
@@ -144,6 +146,22 @@ abstract public class WebTransportServerSupport extends TransportServerSupport {
         public void setEnableTrace(boolean enableTrace) {
             this.enableTrace = enableTrace;
         }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getMaxBatchBytes() {
+            return maxBatchBytes;
+        }
+
+        public void setMaxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+        }
     }
 
     protected static class JettyOptions {
@@ -22,6 +22,7 @@ import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.activemq.openwire.OpenWireFormat;
 import org.apache.activemq.transport.TransportSupport;
 import org.apache.activemq.util.ServiceStopper;
 import org.apache.activemq.wireformat.WireFormat;
@@ -36,6 +37,7 @@ public class BlockingQueueTransport extends TransportSupport {
     public static final long MAX_TIMEOUT = 30000L;
 
     private BlockingQueue<Object> queue;
+    private volatile OpenWireFormat openWireFormat;
 
     public BlockingQueueTransport(BlockingQueue<Object> channel) {
         this.queue = channel;
@@ -45,6 +47,19 @@ public class BlockingQueueTransport extends TransportSupport {
         return queue;
     }
 
+    /**
+     * @return the OpenWire format of the given version used to frame this client's commands,
+     *         created when the client first asks for that version
+     */
+    OpenWireFormat getOpenWireFormat(int version) {
+        OpenWireFormat answer = openWireFormat;
+        if (answer == null || answer.getVersion() != version) {
+            answer = HttpTransportSupport.createOpenWireFormat(version);
+            openWireFormat = answer;
+        }
+        return answer;
+    }
+
     @Override
     public void oneway(Object command) throws IOException {
         try {
@@ -17,6 +17,7 @@
 package org.apache.activemq.transport.http;
 
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.*;
@@ -24,10 +25,15 @@ import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.activemq.command.ShutdownInfo;
+import org.apache.activemq.openwire.OpenWireFormat;
 import org.apache.activemq.transport.FutureResponse;
 import org.apache.activemq.transport.util.TextWireFormat;
 import org.apache.activemq.util.ByteArrayOutputStream;
@@ -91,6 +97,17 @@ public class HttpClientTransport extends HttpTransportSupport {
     protected boolean canSendCompressed = false;
     private int minSendAsCompressedSize = 0;
 
+    private OpenWireFormat openWireFormat;
+    private boolean useOpenWire;
+    private int openWireVersion = OpenWireFormat.DEFAULT_WIRE_VERSION;
+    private boolean batchCommands;
+    private int maxBatchSize = 100;
+    private int maxBatchBytes = 64 * 1024;
+    private BlockingQueue<Object> sendQueue;
+    private Thread sendThread;
+    private volatile IOException sendFailure;
+    private final CountDownLatch shutdownSent = new CountDownLatch(1);
+
     public HttpClientTransport(TextWireFormat wireFormat, URI remoteUrl) {
         super(wireFormat, remoteUrl);
     }
@@ -105,10 +122,47 @@ public class HttpClientTransport extends HttpTransportSupport {
         if (isStopped()) {
             throw new IOException("stopped.");
         }
+        if (sendQueue != null) {
+            if (sendFailure != null) {
+                throw sendFailure;
+            }
+            try {
+                sendQueue.put(command);
+                if (command instanceof ShutdownInfo) {
+                    // let the shutdown reach the broker before the connection stops us
+                    shutdownSent.await(soTimeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            return;
+        }
+
+        byte[] bytes;
+        if (openWireFormat != null) {
+            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytesOut);
+            openWireFormat.marshal(command, out);
+            out.close();
+            bytes = bytesOut.toByteArray();
+        } else {
+            String data = getTextWireFormat().marshalText(command);
+            bytes = data.getBytes("UTF-8");
+        }
+        post(bytes, openWireFormat != null ? 1 : 0, command);
+    }
+
+    /**
+     * Posts the marshalled commands, a commandCount of zero posts a single command in the
+     * unframed text format understood by older brokers
+     */
+    private void post(byte[] bytes, int commandCount, Object lastCommand) throws IOException {
         HttpPost httpMethod = new HttpPost(getRemoteUrl().toString());
         configureMethod(httpMethod);
-        String data = getTextWireFormat().marshalText(command);
-        byte[] bytes = data.getBytes("UTF-8");
+        if (commandCount > 0) {
+            httpMethod.setHeader(COMMAND_COUNT_HEADER, Integer.toString(commandCount));
+        }
         if (useCompression && canSendCompressed && bytes.length > minSendAsCompressedSize) {
             ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
             GZIPOutputStream stream = new GZIPOutputStream(bytesOut);
@@ -130,9 +184,10 @@ public class HttpClientTransport extends HttpTransportSupport {
             answer = client.execute(httpMethod);
             int status = answer.getStatusLine().getStatusCode();
             if (status != HttpStatus.SC_OK) {
-                throw new IOException("Failed to post command: " + command + " as response was: " + answer);
+                throw new IOException("Failed to post command: " + lastCommand + " as response was: " + answer);
             }
-            if (command instanceof ShutdownInfo) {
+            if (lastCommand instanceof ShutdownInfo) {
+                shutdownSent.countDown();
                 try {
                     stop();
                 } catch (Exception e) {
@@ -140,7 +195,7 @@ public class HttpClientTransport extends HttpTransportSupport {
                 }
             }
         } catch (IOException e) {
-            throw IOExceptionSupport.create("Could not post command: " + command + " due to: " + e, e);
+            throw IOExceptionSupport.create("Could not post command: " + lastCommand + " due to: " + e, e);
         } finally {
             if (answer != null) {
                 EntityUtils.consume(answer.getEntity());
@@ -148,6 +203,59 @@ public class HttpClientTransport extends HttpTransportSupport {
         }
     }
 
+    /**
+     * Drains the send queue posting up to maxBatchSize commands or maxBatchBytes per request
+     */
+    private void sendBatches() {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytesOut);
+        try {
+            while (!isStopped()) {
+                Object command = sendQueue.take();
+                Object last;
+                bytesOut.reset();
+                int count = 0;
+                do {
+                    marshal(command, out);
+                    last = command;
+                    count++;
+                    if (command instanceof ShutdownInfo || count >= maxBatchSize || bytesOut.size() >= maxBatchBytes) {
+                        break;
+                    }
+                    command = sendQueue.poll();
+                } while (command != null);
+                out.flush();
+                post(bytesOut.toByteArray(), count, last);
+                if (last instanceof ShutdownInfo) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            sendFailure = e;
+            shutdownSent.countDown();
+            if (!isStopped() && !isStopping()) {
+                onException(e);
+            }
+        }
+    }
+
+    private void marshal(Object command, DataOutputStream out) throws IOException {
+        if (openWireFormat != null) {
+            openWireFormat.marshal(command, out);
+        } else {
+            getTextWireFormat().marshal(command, out);
+        }
+    }
+
+    private Object unmarshal(DataInputStream in) throws IOException {
+        if (openWireFormat != null) {
+            return openWireFormat.unmarshal(in);
+        }
+        return getTextWireFormat().unmarshal(in);
+    }
+
     @Override
     public Object request(Object command) throws IOException {
         return null;
@@ -197,11 +305,15 @@ public class HttpClientTransport extends HttpTransportSupport {
                 } else {
                     receiveCounter++;
                     DataInputStream stream = createDataInputStream(answer);
-                    Object command = getTextWireFormat().unmarshal(stream);
-                    if (command == null) {
-                        LOG.debug("Received null command from url: " + remoteUrl);
-                    } else {
-                        doConsume(command);
+                    Header commandCount = answer.getFirstHeader(COMMAND_COUNT_HEADER);
+                    int count = commandCount != null ? Integer.parseInt(commandCount.getValue()) : 1;
+                    for (int i = 0; i < count; i++) {
+                        Object command = commandCount != null ? unmarshal(stream) : getTextWireFormat().unmarshal(stream);
+                        if (command == null) {
+                            LOG.debug("Received null command from url: " + remoteUrl);
+                        } else {
+                            doConsume(command);
+                        }
                     }
                     stream.close();
                 }
@@ -248,6 +360,10 @@ public class HttpClientTransport extends HttpTransportSupport {
     @Override
     protected void doStart() throws Exception {
 
+        if (useOpenWire && openWireFormat == null) {
+            openWireFormat = HttpTransportSupport.createOpenWireFormat(openWireVersion);
+        }
+
         if (LOG.isTraceEnabled()) {
             LOG.trace("HTTP GET consumer thread starting: " + this);
         }
@@ -286,11 +402,21 @@ public class HttpClientTransport extends HttpTransportSupport {
             throw new IOException("Failed to perform GET on: " + remoteUrl + " as response was: " + e.getMessage());
         }
 
+        if (batchCommands) {
+            sendQueue = new LinkedBlockingQueue<Object>(Math.max(maxBatchSize, 1) * 10);
+            sendThread = new Thread(this::sendBatches, "ActiveMQ HTTP Sender: " + toString());
+            sendThread.setDaemon(isDaemon());
+            sendThread.start();
+        }
+
         super.doStart();
     }
 
     @Override
     protected void doStop(ServiceStopper stopper) throws Exception {
+        if (sendThread != null && sendThread != Thread.currentThread()) {
+            sendThread.interrupt();
+        }
         if (httpMethod != null) {
             // In some versions of the JVM a race between the httpMethod and the completion
             // of the method when using HTTPS can lead to a deadlock.  This hack attempts to
@@ -374,6 +500,12 @@ public class HttpClientTransport extends HttpTransportSupport {
 
     protected void configureMethod(AbstractHttpMessage method) {
         method.setHeader("clientID", clientID);
+        if (openWireFormat != null) {
+            method.setHeader(OPENWIRE_VERSION_HEADER, Integer.toString(openWireFormat.getVersion()));
+        }
+        if (batchCommands) {
+            method.setHeader(BATCHED_HEADER, "true");
+        }
     }
 
     public boolean isTrace() {
@@ -422,6 +554,80 @@ public class HttpClientTransport extends HttpTransportSupport {
         this.minSendAsCompressedSize = minSendAsCompressedSize;
     }
 
+    public OpenWireFormat getOpenWireFormat() {
+        return openWireFormat;
+    }
+
+    /**
+     * Sets the OpenWire format used to marshal commands instead of the text wire format,
+     * the broker has to support framed bodies for this to work.
+     */
+    public void setOpenWireFormat(OpenWireFormat openWireFormat) {
+        this.openWireFormat = openWireFormat;
+    }
+
+    public boolean isUseOpenWire() {
+        return useOpenWire;
+    }
+
+    /**
+     * When enabled commands are marshaled with OpenWire instead of the text wire format, the
+     * broker has to support framed bodies for this to work.
+     *
+     * Default value is false.
+     */
+    public void setUseOpenWire(boolean useOpenWire) {
+        this.useOpenWire = useOpenWire;
+    }
+
+    public int getOpenWireVersion() {
+        return openWireVersion;
+    }
+
+    /**
+     * Sets the OpenWire version used when useOpenWire is enabled.
+     */
+    public void setOpenWireVersion(int openWireVersion) {
+        this.openWireVersion = openWireVersion;
+    }
+
+    public boolean isBatchCommands() {
+        return batchCommands;
+    }
+
+    /**
+     * When enabled commands are posted from a background thread which packs all the queued
+     * commands into one request, and the broker is asked to return all its queued commands
+     * in each GET response.
+     *
+     * Default value is false.
+     */
+    public void setBatchCommands(boolean batchCommands) {
+        this.batchCommands = batchCommands;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of commands posted in one request when batchCommands is enabled.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * Sets the size in bytes after which a batch is posted even if more commands are queued.
+     */
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
     @Override
     public X509Certificate[] getPeerCertificates() {
         return null;
@@ -433,7 +639,7 @@ public class HttpClientTransport extends HttpTransportSupport {
 
     @Override
     public WireFormat getWireFormat() {
-        return getTextWireFormat();
+        return openWireFormat != null ? openWireFormat : getTextWireFormat();
     }
 
     @Override
@@ -23,6 +23,7 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.activemq.openwire.OpenWireFormat;
 import org.apache.activemq.transport.Transport;
 import org.apache.activemq.transport.TransportFactory;
 import org.apache.activemq.transport.TransportLoggerFactory;
@@ -67,6 +68,18 @@ public class HttpTransportFactory extends TransportFactory {
         return new XStreamWireFormat();
     }
 
+    /**
+     * Passes the version of an OpenWire format the client was created with, wireFormat=default,
+     * on to the transport. The transport only marshals its commands with OpenWire when
+     * useOpenWire is enabled as well.
+     */
+    protected HttpClientTransport configureWireFormat(HttpClientTransport transport, WireFormat wireFormat) {
+        if (wireFormat instanceof OpenWireFormat) {
+            transport.setOpenWireVersion(((OpenWireFormat) wireFormat).getVersion());
+        }
+        return transport;
+    }
+
     @Override
     protected String getDefaultWireFormatType() {
         return "xstream";
@@ -84,7 +97,7 @@ public class HttpTransportFactory extends TransportFactory {
             cause.initCause(e);
             throw cause;
         }
-        return new HttpClientTransport(textWireFormat, uri);
+        return configureWireFormat(new HttpClientTransport(textWireFormat, uri), wf);
     }
 
     @Override
@@ -103,6 +103,8 @@ public class HttpTransportServer extends WebTransportServerSupport {
         contextHandler.setAttribute("transportFactory", transportFactory);
         contextHandler.setAttribute("transportOptions", transportOptions);
         contextHandler.setAttribute("wireFormatOptions", wireFormatOptions);
+        contextHandler.setAttribute("maxBatchSize", httpOptions.getMaxBatchSize());
+        contextHandler.setAttribute("maxBatchBytes", httpOptions.getMaxBatchBytes());
 
         //AMQ-6182 - disabling trace by default
         configureTraceMethod((ConstraintSecurityHandler) contextHandler.getSecurityHandler(),
@@ -18,6 +18,7 @@ package org.apache.activemq.transport.http;
 
 import java.net.URI;
 
+import org.apache.activemq.openwire.OpenWireFormat;
 import org.apache.activemq.transport.TransportThreadSupport;
 import org.apache.activemq.transport.util.TextWireFormat;
 
@@ -27,6 +28,19 @@ import org.apache.activemq.transport.util.TextWireFormat;
  *
  */
 public abstract class HttpTransportSupport extends TransportThreadSupport {
+    /**
+     * Request header asking the servlet to return as many queued commands as it can in one GET
+     */
+    public static final String BATCHED_HEADER = "batched";
+    /**
+     * Header holding the number of commands framed in the body of a request or response
+     */
+    public static final String COMMAND_COUNT_HEADER = "commandCount";
+    /**
+     * Header holding the OpenWire version used to marshal the body, when absent the text wire format is used
+     */
+    public static final String OPENWIRE_VERSION_HEADER = "openwireVersion";
+
     private static final int DEFAULT_PROXY_PORT = 8080;
     private static final String PROPERTY_PROXY_HOST = "proxyHost";
     private static final String PROPERTY_NON_PROXY_HOST = "nonProxyHosts";
@@ -113,6 +127,17 @@ public abstract class HttpTransportSupport extends TransportThreadSupport {
 
     protected abstract String getSystemPropertyPrefix();
 
+    /**
+     * Creates the OpenWire format used for HTTP bodies. The HTTP tunnel does not negotiate
+     * so both sides use tight encoding with the marshal cache disabled.
+     */
+    static OpenWireFormat createOpenWireFormat(int version) {
+        OpenWireFormat answer = new OpenWireFormat(version);
+        answer.setTightEncodingEnabled(true);
+        answer.setCacheEnabled(false);
+        return answer;
+    }
+
     private String getSystemProperty(String propertyName) {
         return System.getProperty(getSystemPropertyPrefix() + propertyName);
     }
@@ -34,10 +34,12 @@ import org.apache.activemq.command.Command;
 import org.apache.activemq.command.ConnectionInfo;
 import org.apache.activemq.command.ShutdownInfo;
 import org.apache.activemq.command.WireFormatInfo;
+import org.apache.activemq.openwire.OpenWireFormat;
 import org.apache.activemq.transport.Transport;
 import org.apache.activemq.transport.TransportAcceptListener;
 import org.apache.activemq.transport.util.TextWireFormat;
 import org.apache.activemq.transport.xstream.XStreamWireFormat;
+import org.apache.activemq.util.ByteArrayOutputStream;
 import org.apache.activemq.util.IOExceptionSupport;
 import org.apache.activemq.util.ServiceListener;
 import org.slf4j.Logger;
@@ -59,6 +61,8 @@ public class HttpTunnelServlet extends HttpServlet {
     private final long requestTimeout = 30000L;
     private HashMap<String, Object> transportOptions;
     private HashMap<String, Object> wireFormatOptions;
+    private int maxBatchSize = 100;
+    private int maxBatchBytes = 64 * 1024;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -78,6 +82,14 @@ public class HttpTunnelServlet extends HttpServlet {
         if (wireFormat == null) {
             wireFormat = createWireFormat();
         }
+        Integer maxBatchSize = (Integer)getServletContext().getAttribute("maxBatchSize");
+        if (maxBatchSize != null) {
+            this.maxBatchSize = maxBatchSize;
+        }
+        Integer maxBatchBytes = (Integer)getServletContext().getAttribute("maxBatchBytes");
+        if (maxBatchBytes != null) {
+            this.maxBatchBytes = maxBatchBytes;
+        }
     }
 
     @Override
@@ -96,6 +108,13 @@ public class HttpTunnelServlet extends HttpServlet {
         // lets return the next response
         Command packet = null;
         int count = 0;
+        OpenWireFormat openWireFormat;
+        try {
+            openWireFormat = getOpenWireFormat(request);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
         try {
             BlockingQueueTransport transportChannel = getTransportChannel(request, response);
             if (transportChannel == null) {
@@ -109,9 +128,33 @@ public class HttpTunnelServlet extends HttpServlet {
                 return;
             }
 
-            DataOutputStream stream = new DataOutputStream(response.getOutputStream());
-            wireFormat.marshal(packet, stream);
-            count++;
+            boolean batched = Boolean.parseBoolean(request.getHeader(HttpTransportSupport.BATCHED_HEADER));
+            if (batched || openWireFormat != null) {
+                // frame as many of the queued commands as the limits allow into this response
+                ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+                DataOutputStream stream = new DataOutputStream(bytesOut);
+                while (packet != null && !(packet instanceof ShutdownInfo)) {
+                    marshal(openWireFormat, packet, stream);
+                    count++;
+                    if (!batched || count >= maxBatchSize || bytesOut.size() >= maxBatchBytes) {
+                        break;
+                    }
+                    packet = (Command)transportChannel.getQueue().poll();
+                }
+                if (packet instanceof ShutdownInfo) {
+                    // put it back so the next poll still sees the shutdown once this batch is delivered
+                    transportChannel.getQueue().offer(packet);
+                }
+                stream.flush();
+                if (count > 0) {
+                    response.setHeader(HttpTransportSupport.COMMAND_COUNT_HEADER, Integer.toString(count));
+                    response.getOutputStream().write(bytesOut.toByteArray(), 0, bytesOut.size());
+                }
+            } else {
+                DataOutputStream stream = new DataOutputStream(response.getOutputStream());
+                wireFormat.marshal(packet, stream);
+                count++;
+            }
         } catch (InterruptedException ignore) {
         }
 
@@ -139,21 +182,46 @@ public class HttpTunnelServlet extends HttpServlet {
             stream = new GZIPInputStream(stream);
         }
 
-        // Read the command directly from the reader, assuming UTF8 encoding
-        Command command = (Command) wireFormat.unmarshalText(new InputStreamReader(stream, "UTF-8"));
+        String commandCount = request.getHeader(HttpTransportSupport.COMMAND_COUNT_HEADER);
+        if (commandCount != null) {
+            // a framed body carrying one or more commands
+            OpenWireFormat openWireFormat;
+            int count;
+            try {
+                openWireFormat = getOpenWireFormat(request);
+                count = parseHeader(HttpTransportSupport.COMMAND_COUNT_HEADER, commandCount);
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            DataInputStream in = new DataInputStream(stream);
+            for (int i = 0; i < count; i++) {
+                Command command = (Command) unmarshal(openWireFormat, in);
+                if (!processCommand(request, response, command)) {
+                    return;
+                }
+            }
+        } else {
+            // Read the command directly from the reader, assuming UTF8 encoding
+            Command command = (Command) wireFormat.unmarshalText(new InputStreamReader(stream, "UTF-8"));
+            processCommand(request, response, command);
+        }
+    }
 
+    private boolean processCommand(HttpServletRequest request, HttpServletResponse response, Command command) throws IOException {
         if (command instanceof WireFormatInfo) {
             WireFormatInfo info = (WireFormatInfo) command;
             if (!canProcessWireFormatVersion(info.getVersion())) {
                 response.sendError(HttpServletResponse.SC_NOT_FOUND, "Cannot process wire format of version: "
                         + info.getVersion());
+                return false;
             }
 
         } else {
 
             BlockingQueueTransport transport = getTransportChannel(request, response);
             if (transport == null) {
-                return;
+                return false;
             }
 
             if (command instanceof ConnectionInfo) {
@@ -161,6 +229,55 @@ public class HttpTunnelServlet extends HttpServlet {
             }
             transport.doConsume(command);
         }
+        return true;
+    }
+
+    /**
+     * @return the OpenWire format of the version named by the request, or null when the request
+     *         uses the text wire format
+     * @throws IllegalArgumentException if the header does not name a supported version
+     */
+    private OpenWireFormat getOpenWireFormat(HttpServletRequest request) {
+        String header = request.getHeader(HttpTransportSupport.OPENWIRE_VERSION_HEADER);
+        if (header == null) {
+            return null;
+        }
+        int version = parseHeader(HttpTransportSupport.OPENWIRE_VERSION_HEADER, header);
+        // each client marshals with its own format so requests of different clients never contend
+        String clientID = request.getHeader("clientID");
+        BlockingQueueTransport client = clientID != null ? clients.get(clientID) : null;
+        if (client == null) {
+            return HttpTransportSupport.createOpenWireFormat(version);
+        }
+        return client.getOpenWireFormat(version);
+    }
+
+    private static int parseHeader(String name, String value) {
+        int answer;
+        try {
+            answer = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " header: " + value);
+        }
+        if (answer < 0) {
+            throw new IllegalArgumentException("Invalid " + name + " header: " + value);
+        }
+        return answer;
+    }
+
+    private void marshal(OpenWireFormat openWireFormat, Object command, DataOutputStream out) throws IOException {
+        if (openWireFormat != null) {
+            openWireFormat.marshal(command, out);
+        } else {
+            wireFormat.marshal(command, out);
+        }
+    }
+
+    private Object unmarshal(OpenWireFormat openWireFormat, DataInputStream in) throws IOException {
+        if (openWireFormat != null) {
+            return openWireFormat.unmarshal(in);
+        }
+        return wireFormat.unmarshal(in);
     }
 
     private boolean canProcessWireFormatVersion(int version) {
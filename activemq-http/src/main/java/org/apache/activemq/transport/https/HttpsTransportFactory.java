@@ -71,6 +71,7 @@ public class HttpsTransportFactory extends HttpTransportFactory {
 
             HttpsClientTransport clientTransport = new HttpsClientTransport(asTextWireFormat(wf), uri);
             clientTransport.setVerifyHostName(verifyHostName);
+            configureWireFormat(clientTransport, wf);
             return clientTransport;
         } catch (URISyntaxException e) {
             MalformedURLException cause = new MalformedURLException("Error removing query on " + location);
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.Command;
+import org.apache.activemq.command.ConnectionId;
+import org.apache.activemq.command.ConnectionInfo;
+import org.apache.activemq.command.Response;
+import org.apache.activemq.command.SessionId;
+import org.apache.activemq.command.SessionInfo;
+import org.apache.activemq.openwire.OpenWireFormat;
+import org.apache.activemq.util.ByteArrayOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Talks to the tunnel servlet with framed OpenWire requests and batched polls.
+ */
+public class HttpTunnelServletBatchTest {
+
+    private static final String BROKER_URL = "http://localhost:8889";
+
+    private BrokerService brokerService;
+    private final OpenWireFormat wireFormat = HttpTransportSupport.createOpenWireFormat(OpenWireFormat.DEFAULT_WIRE_VERSION);
+
+    @Before
+    public void setUp() throws Exception {
+        brokerService = new BrokerService();
+        brokerService.setPersistent(false);
+        brokerService.setUseJmx(false);
+        brokerService.addConnector(BROKER_URL);
+        brokerService.start();
+        brokerService.waitUntilStarted();
+        WaitForJettyListener.waitForJettySocketToAccept(BROKER_URL);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        brokerService.stop();
+        brokerService.waitUntilStopped();
+    }
+
+    @Test(timeout = 60000)
+    public void testFramedPostAndBatchedPoll() throws Exception {
+        String clientId = "batch-client";
+        assertEquals(200, request("HEAD", clientId, null, null).getResponseCode());
+
+        ConnectionInfo connectionInfo = new ConnectionInfo(new ConnectionId(clientId));
+        connectionInfo.setClientId(clientId);
+        connectionInfo.setCommandId(1);
+        connectionInfo.setResponseRequired(true);
+        SessionInfo sessionInfo = new SessionInfo(new SessionId(connectionInfo.getConnectionId(), 1));
+        sessionInfo.setCommandId(2);
+        sessionInfo.setResponseRequired(true);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        wireFormat.marshal(connectionInfo, out);
+        wireFormat.marshal(sessionInfo, out);
+        out.flush();
+        HttpURLConnection post = request("POST", clientId, "2", body.toByteArray());
+        assertEquals(200, post.getResponseCode());
+
+        // both responses, and the broker info sent on connect, are picked up by batched polls
+        List<Integer> correlationIds = new ArrayList<>();
+        for (int polls = 0; polls < 10 && correlationIds.size() < 2; polls++) {
+            HttpURLConnection get = request("GET", clientId, null, null);
+            assertEquals(200, get.getResponseCode());
+            String commandCount = get.getHeaderField(HttpTransportSupport.COMMAND_COUNT_HEADER);
+            assertNotNull(commandCount);
+            try (InputStream in = get.getInputStream()) {
+                DataInputStream data = new DataInputStream(in);
+                for (int i = 0; i < Integer.parseInt(commandCount); i++) {
+                    Command command = (Command) wireFormat.unmarshal(data);
+                    if (command instanceof Response) {
+                        correlationIds.add(((Response) command).getCorrelationId());
+                    }
+                }
+                assertEquals(-1, data.read());
+            }
+        }
+        assertTrue(correlationIds.contains(1));
+        assertTrue(correlationIds.contains(2));
+    }
+
+    @Test(timeout = 60000)
+    public void testInvalidHeadersAreRejected() throws Exception {
+        String clientId = "invalid-client";
+        assertEquals(200, request("HEAD", clientId, null, null).getResponseCode());
+
+        HttpURLConnection post = request("POST", clientId, "many", new byte[0]);
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, post.getResponseCode());
+
+        post = request("POST", clientId, "-1", new byte[0]);
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, post.getResponseCode());
+
+        HttpURLConnection get = (HttpURLConnection) new URL(BROKER_URL).openConnection();
+        get.setRequestProperty("clientID", clientId);
+        get.setRequestProperty(HttpTransportSupport.OPENWIRE_VERSION_HEADER, "999");
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, get.getResponseCode());
+    }
+
+    @Test(timeout = 60000)
+    public void testSendAndReceiveWithBatchedOpenWireClient() throws Exception {
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(BROKER_URL + "?batchCommands=true&useOpenWire=true");
+        Connection connection = factory.createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            ActiveMQQueue queue = new ActiveMQQueue("HttpBatch");
+            MessageConsumer consumer = session.createConsumer(queue);
+            MessageProducer producer = session.createProducer(queue);
+            for (int i = 0; i < 20; i++) {
+                producer.send(session.createTextMessage("message " + i));
+            }
+            for (int i = 0; i < 20; i++) {
+                TextMessage message = (TextMessage) consumer.receive(5000);
+                assertNotNull(message);
+                assertEquals("message " + i, message.getText());
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private HttpURLConnection request(String method, String clientId, String commandCount, byte[] body) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BROKER_URL).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("clientID", clientId);
+        connection.setRequestProperty(HttpTransportSupport.OPENWIRE_VERSION_HEADER, Integer.toString(wireFormat.getVersion()));
+        if ("GET".equals(method)) {
+            connection.setRequestProperty(HttpTransportSupport.BATCHED_HEADER, "true");
+        }
+        if (commandCount != null) {
+            connection.setRequestProperty(HttpTransportSupport.COMMAND_COUNT_HEADER, commandCount);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        return connection;
+    }
+}
@@ -36,6 +36,7 @@ import org.apache.activemq.store.MessageStore;
 import org.apache.activemq.store.NoLocalSubscriptionAware;
 import org.apache.activemq.store.PersistenceAdapter;
 import org.apache.activemq.store.PersistenceAdapterStatistics;
+import org.apache.activemq.store.PersistenceAdapterStatisticsAware;
 import org.apache.activemq.store.SharedFileLocker;
 import org.apache.activemq.store.TopicMessageStore;
 import org.apache.activemq.store.TransactionIdTransformer;
@@ -64,7 +65,7 @@ import static org.apache.activemq.broker.jmx.BrokerMBeanSupport.createPersistenc
  *
  */
 public class KahaDBPersistenceAdapter extends LockableServiceSupport implements PersistenceAdapter,
-    JournaledStore, TransactionIdTransformerAware, NoLocalSubscriptionAware {
+    JournaledStore, TransactionIdTransformerAware, NoLocalSubscriptionAware, PersistenceAdapterStatisticsAware {
 
     private final KahaDBStore letter = new KahaDBStore();
 
@@ -368,6 +369,26 @@ public class KahaDBPersistenceAdapter extends LockableServiceSupport implements
         this.letter.setIndexWriteBatchSize(indexWriteBatchSize);
     }
 
+    /**
+     * Get the indexMaxCoalescedPageWrites
+     *
+     * @return the max number of contiguous index pages merged into a single write
+     */
+    public int getIndexMaxCoalescedPageWrites() {
+        return this.letter.getIndexMaxCoalescedPageWrites();
+    }
+
+    /**
+     * Set the max number of contiguous index pages merged into a single write when
+     * the index is flushed, 1 writes the pages one at a time.
+     *
+     * @param indexMaxCoalescedPageWrites
+     *            the indexMaxCoalescedPageWrites to set
+     */
+    public void setIndexMaxCoalescedPageWrites(int indexMaxCoalescedPageWrites) {
+        this.letter.setIndexMaxCoalescedPageWrites(indexMaxCoalescedPageWrites);
+    }
+
     /**
      * Get the journalMaxWriteBatchSize
      *
@@ -524,6 +545,27 @@ public class KahaDBPersistenceAdapter extends LockableServiceSupport implements
         this.letter.setIndexCacheSize(indexCacheSize);
     }
 
+    /**
+     * Get the indexCacheMaxBytes
+     *
+     * @return the indexCacheMaxBytes
+     */
+    public long getIndexCacheMaxBytes() {
+        return this.letter.getIndexCacheMaxBytes();
+    }
+
+    /**
+     * Bound the index page cache by the estimated bytes of the cached pages instead of
+     * the indexCacheSize page count, 0 (the default) uses the indexCacheSize.
+     * When set using Xbean, values of the form "20 Mb", "1024kb", and "1g" can be used
+     * @org.apache.xbean.Property propertyEditor="org.apache.activemq.util.MemoryPropertyEditor"
+     * @param indexCacheMaxBytes
+     *            the indexCacheMaxBytes to set
+     */
+    public void setIndexCacheMaxBytes(long indexCacheMaxBytes) {
+        this.letter.setIndexCacheMaxBytes(indexCacheMaxBytes);
+    }
+
     /**
      * Get the ignoreMissingJournalfiles
      *
@@ -555,6 +597,23 @@ public class KahaDBPersistenceAdapter extends LockableServiceSupport implements
         letter.setChecksumJournalFiles(checksumJournalFiles);
     }
 
+    public String getChecksumAlgorithm() {
+        return letter.getChecksumAlgorithm();
+    }
+
+    /**
+     * The checksum of journal batches and of the index recovery buffer:
+     * adler32 (the default) or crc32c, which is computed with CPU instructions
+     * where available. Journal batches written with crc32c use a new format
+     * version that older brokers can not read, both versions are read
+     * whatever the setting.
+     *
+     * @param checksumAlgorithm
+     */
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        letter.setChecksumAlgorithm(checksumAlgorithm);
+    }
+
     public void setCheckForCorruptJournalFiles(boolean checkForCorruptJournalFiles) {
         letter.setCheckForCorruptJournalFiles(checkForCorruptJournalFiles);
     }
@@ -589,6 +648,38 @@ public class KahaDBPersistenceAdapter extends LockableServiceSupport implements
         this.letter.setPreallocationStrategy(preallocationStrategy);
     }
 
+    public String getJournalWriteMode() {
+        return letter.getJournalWriteMode();
+    }
+
+    /**
+     * How journal appends are written: buffered (the default) goes through the
+     * page cache and syncs the file when a write must be on disk, dsync opens
+     * the data files with O_DSYNC so each write is synced without a separate
+     * fsync, and direct adds direct I/O that bypasses the page cache, where the
+     * platform supports it
+     *
+     * @param journalWriteMode
+     */
+    public void setJournalWriteMode(String journalWriteMode) {
+        this.letter.setJournalWriteMode(journalWriteMode);
+    }
+
+    public boolean isEnableJournalPipelinedAppender() {
+        return letter.isEnableJournalPipelinedAppender();
+    }
+
+    /**
+     * When enabled the journal assembles and checksums the next batch of
+     * writes while the previous one is being written and synced, so a sync
+     * no longer holds back the appends queued behind it
+     *
+     * @param enableJournalPipelinedAppender
+     */
+    public void setEnableJournalPipelinedAppender(boolean enableJournalPipelinedAppender) {
+        this.letter.setEnableJournalPipelinedAppender(enableJournalPipelinedAppender);
+    }
+
     public boolean isArchiveDataLogs() {
         return letter.isArchiveDataLogs();
     }
@@ -698,6 +789,18 @@ public class KahaDBPersistenceAdapter extends LockableServiceSupport implements
         return letter.isEnableIndexPageCaching();
     }
 
+    /**
+     * Let message lookups and browses read a snapshot of the index rather than
+     * wait for the index lock, defaults to false
+     */
+    public void setEnableIndexSnapshotReads(boolean enable) {
+        letter.setEnableIndexSnapshotReads(enable);
+    }
+
+    public boolean isEnableIndexSnapshotReads() {
+        return letter.isEnableIndexSnapshotReads();
+    }
+
     public int getCompactAcksAfterNoGC() {
         return letter.getCompactAcksAfterNoGC();
     }
@@ -749,6 +852,83 @@ public class KahaDBPersistenceAdapter extends LockableServiceSupport implements
         letter.setEnableAckCompaction(enableAckCompaction);
     }
 
+    /**
+     * Returns whether journal compaction is enabled
+     *
+     * @return enableJournalCompaction
+     */
+    public boolean isEnableJournalCompaction() {
+        return letter.isEnableJournalCompaction();
+    }
+
+    /**
+     * Configure if data files that mostly hold acked messages should have their remaining
+     * messages copied forward so the files can be removed, defaults to false
+     *
+     * @param enableJournalCompaction
+     */
+    public void setEnableJournalCompaction(boolean enableJournalCompaction) {
+        letter.setEnableJournalCompaction(enableJournalCompaction);
+    }
+
+    public float getJournalCompactionThreshold() {
+        return letter.getJournalCompactionThreshold();
+    }
+
+    /**
+     * The share of a data file that still referenced messages may take at most
+     * for the file to be compacted, defaults to 0.2
+     *
+     * @param journalCompactionThreshold
+     */
+    public void setJournalCompactionThreshold(float journalCompactionThreshold) {
+        letter.setJournalCompactionThreshold(journalCompactionThreshold);
+    }
+
+    public long getJournalCompactionMaxBytesPerSecond() {
+        return letter.getJournalCompactionMaxBytesPerSecond();
+    }
+
+    /**
+     * Limits the rate at which journal compaction copies messages, 0 for no
+     * limit, defaults to 10 MB per second
+     *
+     * @param journalCompactionMaxBytesPerSecond
+     */
+    public void setJournalCompactionMaxBytesPerSecond(long journalCompactionMaxBytesPerSecond) {
+        letter.setJournalCompactionMaxBytesPerSecond(journalCompactionMaxBytesPerSecond);
+    }
+
+    public File getJournalColdTierDirectory() {
+        return letter.getJournalColdTierDirectory();
+    }
+
+    /**
+     * Directory, typically on cheaper and slower storage, that journal data
+     * files holding only old messages are moved to. Reads of those messages
+     * go to the new location, appends and the index stay in the store
+     * directory. Disabled by default.
+     *
+     * @param journalColdTierDirectory
+     */
+    public void setJournalColdTierDirectory(File journalColdTierDirectory) {
+        letter.setJournalColdTierDirectory(journalColdTierDirectory);
+    }
+
+    public long getJournalColdTierAge() {
+        return letter.getJournalColdTierAge();
+    }
+
+    /**
+     * The time in milliseconds since its last write after which a journal data
+     * file is moved to the cold tier directory, defaults to one hour
+     *
+     * @param journalColdTierAge
+     */
+    public void setJournalColdTierAge(long journalColdTierAge) {
+        letter.setJournalColdTierAge(journalColdTierAge);
+    }
+
     /**
      * Whether non-blocking subscription statistics have been enabled
      *
@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -45,6 +46,9 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.activemq.broker.ConnectionContext;
 import org.apache.activemq.broker.region.BaseDestination;
+import org.apache.activemq.broker.region.ConnectorStatistics;
+import org.apache.activemq.broker.region.Destination;
+import org.apache.activemq.broker.region.DestinationStatistics;
 import org.apache.activemq.broker.scheduler.JobSchedulerStore;
 import org.apache.activemq.command.ActiveMQDestination;
 import org.apache.activemq.command.ActiveMQQueue;
@@ -305,7 +309,7 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             @Override
             public Location execute(Transaction tx) throws IOException {
                 StoredDestination sd = getStoredDestination(destination, tx);
-                Long sequence = sd.messageIdIndex.get(tx, key);
+                Long sequence = sd.getMessageSequence(tx, key);
                 if (sequence == null) {
                     return null;
                 }
@@ -314,6 +318,38 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
         });
     }
 
+    /**
+     * Runs a read only closure against a snapshot of the index without taking the indexLock. The
+     * closure may only use destinations that are already loaded and must not change them, it returns
+     * null when the snapshot cannot answer, and so does this method when snapshot reads are disabled
+     * or fail. Callers then fall back to the locked path.
+     */
+    private <R> R readIndexSnapshot(Transaction.CallableClosure<R, IOException> closure) {
+        if (!isEnableIndexSnapshotReads()) {
+            return null;
+        }
+        try {
+            return pageFile.snapshotTx().execute(closure);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Index snapshot read failed, retrying under the index lock", e);
+            return null;
+        }
+    }
+
+    /**
+     * The entries of a page-in read from an index snapshot, with the destination whose batch
+     * position is moved once they are recovered.
+     */
+    private static final class SnapshotBatch {
+        final StoredDestination sd;
+        final List<Entry<Long, MessageKeys>> entries;
+
+        SnapshotBatch(StoredDestination sd, List<Entry<Long, MessageKeys>> entries) {
+            this.sd = sd;
+            this.entries = entries;
+        }
+    }
+
     protected StoreQueueTask removeQueueTask(KahaDBMessageStore store, MessageId id) {
         StoreQueueTask task = null;
         synchronized (store.asyncTaskMap) {
@@ -409,7 +445,8 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
         protected KahaDestination dest;
         private final int maxAsyncJobs;
         private final Semaphore localDestinationSemaphore;
-        protected final HashMap<String, Set<String>> ackedAndPreparedMap = new HashMap<String, Set<String>>();
+        // read by snapshot readers that do not hold the indexLock
+        protected final ConcurrentHashMap<String, Set<String>> ackedAndPreparedMap = new ConcurrentHashMap<String, Set<String>>();
         protected final HashMap<String, Set<String>> rolledBackAcksMap = new HashMap<String, Set<String>>();
 
         double doneTasks, canceledTasks = 0;
@@ -441,7 +478,7 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
                     final String key = recoveredTxStateMapKey(destination, ack);
                     Set ackedAndPrepared = ackedAndPreparedMap.get(key);
                     if (ackedAndPrepared == null) {
-                        ackedAndPrepared = new LinkedHashSet<String>();
+                        ackedAndPrepared = ConcurrentHashMap.newKeySet();
                         ackedAndPreparedMap.put(key, ackedAndPrepared);
                     }
                     ackedAndPrepared.add(ack.getLastMessageId().toProducerKey());
@@ -552,7 +589,8 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             command.setPrioritySupported(isPrioritizedMessages());
             org.apache.activemq.util.ByteSequence packet = wireFormat.marshal(message);
             command.setMessage(new Buffer(packet.getData(), packet.getOffset(), packet.getLength()));
-            store(command, isEnableJournalDiskSyncs() && message.isResponseRequired(), new IndexAware() {
+            final boolean sync = isEnableJournalDiskSyncs() && message.isResponseRequired();
+            store(command, sync, new IndexAware() {
                 // sync add? (for async, future present from getFutureOrSequenceLong)
                 Object possibleFuture = message.getMessageId().getFutureOrSequenceLong();
 
@@ -571,7 +609,7 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
                         }
                     }
                 }
-            }, null);
+            }, null, null, storeLatencyListener(context, message, sync));
 
             /*
              * After we store the command in the journal we no longer need to keep the message
@@ -614,6 +652,43 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             store(updateMessageCommand, isEnableJournalDiskSyncs(), null, null);
         }
 
+        /**
+         * Records the store write, and for synchronous adds the journal sync it waited for, in the
+         * statistics of the destination and of the connector the message came in on.
+         */
+        private StoreLatencyListener storeLatencyListener(ConnectionContext context, Message message, final boolean sync) {
+            DestinationStatistics regionStatistics = message.getRegionDestination() instanceof Destination ?
+                ((Destination) message.getRegionDestination()).getDestinationStatistics() : null;
+            ConnectorStatistics contextStatistics = context != null && context.getConnector() != null ?
+                context.getConnector().getStatistics() : null;
+            // no listener, and no allocation per add, for statistics that do not record
+            final DestinationStatistics destinationStatistics = regionStatistics != null && regionStatistics.getStoreWriteLatency().isEnabled() ?
+                regionStatistics : null;
+            final ConnectorStatistics connectorStatistics = contextStatistics != null && contextStatistics.getStoreWriteLatency().isEnabled() ?
+                contextStatistics : null;
+            if (destinationStatistics == null && connectorStatistics == null) {
+                return null;
+            }
+            return new StoreLatencyListener() {
+                @Override
+                public void stored(long journalNanos, long totalMillis) {
+                    long journalMicros = TimeUnit.NANOSECONDS.toMicros(journalNanos);
+                    if (destinationStatistics != null) {
+                        destinationStatistics.getStoreWriteLatency().record(totalMillis);
+                        if (sync) {
+                            destinationStatistics.getJournalSyncLatency().record(journalMicros);
+                        }
+                    }
+                    if (connectorStatistics != null) {
+                        connectorStatistics.getStoreWriteLatency().record(totalMillis);
+                        if (sync) {
+                            connectorStatistics.getJournalSyncLatency().record(journalMicros);
+                        }
+                    }
+                }
+            };
+        }
+
         @Override
         public void removeMessage(ConnectionContext context, MessageAck ack) throws IOException {
             KahaRemoveMessageCommand command = new KahaRemoveMessageCommand();
@@ -637,8 +712,22 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
         public Message getMessage(MessageId identity) throws IOException {
             final String key = identity.toProducerKey();
 
-            // Hopefully one day the page file supports concurrent read
-            // operations... but for now we must
+            MessageKeys keys = readIndexSnapshot(tx -> {
+                StoredDestination sd = storedDestinations.get(key(dest));
+                if (sd == null) {
+                    return null;
+                }
+                Long sequence = sd.getMessageSequence(tx, key);
+                if (sequence == null) {
+                    return null;
+                }
+                return sd.orderIndex.find(tx, sequence);
+            });
+            if (keys != null) {
+                return loadSnapshotMessage(keys);
+            }
+
+            // the page cache is shared with the writers, so without a snapshot we must
             // externally synchronize...
             Location location;
             indexLock.writeLock().lock();
@@ -654,8 +743,52 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             return loadMessage(location);
         }
 
+        /**
+         * Loads a message found through an index snapshot. The snapshot does not keep its data file
+         * in the journal, so when the file was cleaned up or compacted since, the message is looked
+         * up again and null is returned when it has been removed in the meantime.
+         */
+        private Message loadSnapshotMessage(MessageKeys keys) throws IOException {
+            // the checkpoint lock keeps the data file from being removed while it is read
+            checkpointLock.readLock().lock();
+            try {
+                Location location = keys.location;
+                if (journal.getDataFileById(location.getDataFileId()) == null) {
+                    indexLock.writeLock().lock();
+                    try {
+                        location = findMessageLocation(keys.messageId, dest);
+                    } finally {
+                        indexLock.writeLock().unlock();
+                    }
+                    if (location == null) {
+                        return null;
+                    }
+                }
+                return loadMessage(location);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return true when the messages of the destination are all in the default priority index,
+         *         so that the order index returns them in sequence order
+         */
+        private boolean isSequenceOrdered(Transaction tx, StoredDestination sd) throws IOException {
+            return !isPrioritizedMessages()
+                && (sd.orderIndex.highPriorityIndex == null || sd.orderIndex.highPriorityIndex.isEmpty(tx))
+                && (sd.orderIndex.lowPriorityIndex == null || sd.orderIndex.lowPriorityIndex.isEmpty(tx));
+        }
+
         @Override
         public boolean isEmpty() throws IOException {
+            Boolean empty = readIndexSnapshot(tx -> {
+                StoredDestination sd = storedDestinations.get(key(dest));
+                return sd != null ? sd.locationIndex.isEmpty(tx) : null;
+            });
+            if (empty != null) {
+                return empty;
+            }
             indexLock.writeLock().lock();
             try {
                 return pageFile.tx().execute(new Transaction.CallableClosure<Boolean, IOException>() {
@@ -702,6 +835,42 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
 
         @Override
         public void recoverNextMessages(final int maxReturned, final MessageRecoveryListener listener) throws Exception {
+            // the batch position is only moved by the cursor paging in the store, one call at a time,
+            // so the snapshot reads from a copy of it and the position is moved past the messages
+            // recovered, the way the iterator of the locked path does
+            SnapshotBatch batch = readIndexSnapshot(tx -> {
+                StoredDestination sd = storedDestinations.get(key(dest));
+                if (sd == null || !rolledBackAcksMap.isEmpty() || !isSequenceOrdered(tx, sd)) {
+                    return null;
+                }
+                List<Entry<Long, MessageKeys>> entries = new ArrayList<>();
+                Set ackedAndPrepared = ackedAndPreparedMap.get(destination.getPhysicalName());
+                for (Iterator<Entry<Long, MessageKeys>> iterator = sd.orderIndex.iterator(tx, sd.orderIndex.cursor.copy(), false); iterator.hasNext() && entries.size() < maxReturned; ) {
+                    Entry<Long, MessageKeys> entry = iterator.next();
+                    if (ackedAndPrepared == null || !ackedAndPrepared.contains(entry.getValue().messageId)) {
+                        entries.add(entry);
+                    }
+                }
+                return new SnapshotBatch(sd, entries);
+            });
+            if (batch != null) {
+                int counter = 0;
+                for (Entry<Long, MessageKeys> entry : batch.entries) {
+                    Message msg = loadSnapshotMessage(entry.getValue());
+                    batch.sd.orderIndex.lastDefaultKey = entry.getKey();
+                    if (msg == null) {
+                        continue;
+                    }
+                    msg.getMessageId().setFutureOrSequenceLong(entry.getKey());
+                    listener.recoverMessage(msg);
+                    if (++counter >= maxReturned || !listener.canRecoveryNextMessage()) {
+                        break;
+                    }
+                }
+                batch.sd.orderIndex.stoppedIterating();
+                return;
+            }
+
             indexLock.writeLock().lock();
             try {
                 pageFile.tx().execute(new Transaction.Closure<Exception>() {
@@ -732,6 +901,74 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             }
         }
 
+        @Override
+        public boolean recoverMessagesAfter(final long sequence, final int maxReturned, final MessageRecoveryListener listener) throws Exception {
+            // reads through a private cursor so the batch position of the store is left alone
+            List<Entry<Long, MessageKeys>> entries = readIndexSnapshot(tx -> {
+                StoredDestination sd = storedDestinations.get(key(dest));
+                if (sd == null || !isSequenceOrdered(tx, sd)) {
+                    return null;
+                }
+                List<Entry<Long, MessageKeys>> rc = new ArrayList<>();
+                Set ackedAndPrepared = ackedAndPreparedMap.get(destination.getPhysicalName());
+                MessageOrderCursor position = new MessageOrderCursor(Math.max(sequence + 1, 0));
+                for (Iterator<Entry<Long, MessageKeys>> iterator = sd.orderIndex.iterator(tx, position, false); iterator.hasNext() && rc.size() < maxReturned; ) {
+                    Entry<Long, MessageKeys> entry = iterator.next();
+                    if (ackedAndPrepared == null || !ackedAndPrepared.contains(entry.getValue().messageId)) {
+                        rc.add(entry);
+                    }
+                }
+                return rc;
+            });
+            if (entries != null) {
+                // the journal is read after the snapshot is released
+                for (Entry<Long, MessageKeys> entry : entries) {
+                    Message msg = loadSnapshotMessage(entry.getValue());
+                    if (msg == null) {
+                        continue;
+                    }
+                    msg.getMessageId().setFutureOrSequenceLong(entry.getKey());
+                    listener.recoverMessage(msg);
+                    if (!listener.hasSpace()) {
+                        break;
+                    }
+                }
+                return true;
+            }
+
+            indexLock.writeLock().lock();
+            try {
+                return pageFile.tx().execute(new Transaction.CallableClosure<Boolean, Exception>() {
+                    @Override
+                    public Boolean execute(Transaction tx) throws Exception {
+                        StoredDestination sd = getStoredDestination(dest, tx);
+                        if (!isSequenceOrdered(tx, sd)) {
+                            // store order is not a single sequence across priorities
+                            return false;
+                        }
+                        int counter = 0;
+                        Set ackedAndPrepared = ackedAndPreparedMap.get(destination.getPhysicalName());
+                        MessageOrderCursor position = new MessageOrderCursor(Math.max(sequence + 1, 0));
+                        for (Iterator<Entry<Long, MessageKeys>> iterator = sd.orderIndex.iterator(tx, position); iterator.hasNext(); ) {
+                            Entry<Long, MessageKeys> entry = iterator.next();
+                            if (ackedAndPrepared != null && ackedAndPrepared.contains(entry.getValue().messageId)) {
+                                continue;
+                            }
+                            Message msg = loadMessage(entry.getValue().location);
+                            msg.getMessageId().setFutureOrSequenceLong(entry.getKey());
+                            listener.recoverMessage(msg);
+                            if (++counter >= maxReturned || !listener.hasSpace()) {
+                                break;
+                            }
+                        }
+                        return true;
+                    }
+                });
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        }
+
         protected int recoverRolledBackAcks(String recoveredTxStateMapKey, StoredDestination sd, Transaction tx, int maxReturned, MessageRecoveryListener listener) throws Exception {
             int counter = 0;
             String id;
@@ -743,7 +980,7 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             for (Iterator<String> iterator = rolledBackAcks.iterator(); iterator.hasNext(); ) {
                 id = iterator.next();
                 iterator.remove();
-                Long sequence = sd.messageIdIndex.get(tx, id);
+                Long sequence = sd.getMessageSequence(tx, id);
                 if (sequence != null) {
                     if (sd.orderIndex.alreadyDispatched(sequence)) {
                         listener.recoverMessage(loadMessage(sd.orderIndex.get(tx, sequence).location));
@@ -1047,6 +1284,17 @@ public class KahaDBStore extends MessageDatabase implements PersistenceAdapter,
             if (isEnableSubscriptionStatistics()) {
                 return (int)this.messageStoreSubStats.getMessageCount(subscriptionKey).getCount();
             } else {
+                Integer count = readIndexSnapshot(tx -> {
+                    StoredDestination sd = storedDestinations.get(key(dest));
+                    if (sd == null) {
+                        return null;
+                    }
+                    // the subscription might not exist
+                    return getLastAck(tx, sd, subscriptionKey) != null ? (int) getStoredMessageCount(tx, sd, subscriptionKey) : 0;
+                });
+                if (count != null) {
+                    return count;
+                }
 
                 indexLock.writeLock().lock();
                 try {
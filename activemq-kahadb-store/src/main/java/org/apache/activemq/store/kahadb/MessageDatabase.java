@@ -48,9 +48,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -79,6 +81,7 @@ import org.apache.activemq.store.kahadb.data.KahaAddMessageCommand;
 import org.apache.activemq.store.kahadb.data.KahaCommitCommand;
 import org.apache.activemq.store.kahadb.data.KahaDestination;
 import org.apache.activemq.store.kahadb.data.KahaEntryType;
+import org.apache.activemq.store.kahadb.data.KahaLocation;
 import org.apache.activemq.store.kahadb.data.KahaPrepareCommand;
 import org.apache.activemq.store.kahadb.data.KahaProducerAuditCommand;
 import org.apache.activemq.store.kahadb.data.KahaRemoveDestinationCommand;
@@ -100,6 +103,7 @@ import org.apache.activemq.store.kahadb.disk.journal.TargetedDataFileAppender;
 import org.apache.activemq.store.kahadb.disk.page.Page;
 import org.apache.activemq.store.kahadb.disk.page.PageFile;
 import org.apache.activemq.store.kahadb.disk.page.Transaction;
+import org.apache.activemq.store.kahadb.disk.util.ChecksumAlgorithm;
 import org.apache.activemq.store.kahadb.disk.util.LocationMarshaller;
 import org.apache.activemq.store.kahadb.disk.util.LongMarshaller;
 import org.apache.activemq.store.kahadb.disk.util.Marshaller;
@@ -136,7 +140,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
     static final int OPEN_STATE = 2;
     static final long NOT_ACKED = -1;
 
-    static final int VERSION = 7;
+    static final int VERSION = 8;
 
     static final byte COMPACTED_JOURNAL_FILE = DataFile.STANDARD_LOG_FILE + 1;
 
@@ -262,6 +266,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
     protected File directory = DEFAULT_DIRECTORY;
     protected File indexDirectory = null;
     protected ScheduledExecutorService scheduler;
+    private ExecutorService journalCompactionExecutor;
     private final Object schedulerLock = new Object();
 
     protected JournalDiskSyncStrategy journalDiskSyncStrategy = JournalDiskSyncStrategy.ALWAYS;
@@ -276,12 +281,17 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
     int journalMaxWriteBatchSize = Journal.DEFAULT_MAX_WRITE_BATCH_SIZE;
     boolean enableIndexWriteAsync = false;
     int setIndexWriteBatchSize = PageFile.DEFAULT_WRITE_BATCH_SIZE;
+    int indexMaxCoalescedPageWrites = PageFile.DEFAULT_MAX_COALESCED_PAGE_WRITES;
     private String preallocationScope = Journal.PreallocationScope.ENTIRE_JOURNAL.name();
     private String preallocationStrategy = Journal.PreallocationStrategy.SPARSE_FILE.name();
+    private String journalWriteMode = Journal.JournalWriteMode.BUFFERED.name();
+    private boolean enableJournalPipelinedAppender = false;
+    private String checksumAlgorithm = ChecksumAlgorithm.ADLER32.name();
 
     protected AtomicBoolean opened = new AtomicBoolean();
     private boolean ignoreMissingJournalfiles = false;
     private int indexCacheSize = 10000;
+    private long indexCacheMaxBytes = 0;
     private boolean checkForCorruptJournalFiles = false;
     protected PurgeRecoveredXATransactionStrategy purgeRecoveredXATransactionStrategy = PurgeRecoveredXATransactionStrategy.NEVER;
     private boolean checksumJournalFiles = true;
@@ -292,6 +302,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
     private boolean enableIndexDiskSyncs = true;
     private boolean enableIndexRecoveryFile = true;
     private boolean enableIndexPageCaching = true;
+    private boolean enableIndexSnapshotReads = false;
     ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
 
     private boolean enableAckCompaction = true;
@@ -299,6 +310,18 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
     private boolean compactAcksIgnoresStoreGrowth = false;
     private int checkPointCyclesWithNoGC;
     private int journalLogOnLastCompactionCheck;
+    private boolean enableJournalCompaction = false;
+    private float journalCompactionThreshold = 0.2f;
+    private long journalCompactionMaxBytesPerSecond = 10 * 1024 * 1024;
+    private final AtomicBoolean journalCompactionScheduled = new AtomicBoolean();
+    // the message bytes the index references per data file, counted by the first journal compaction
+    // and then kept up to date with the location index, guarded by the indexLock
+    private final Map<Integer, Long> referencedMessageBytes = new HashMap<>();
+    // the number of location index entries counted per index lock hold
+    private static final int REFERENCED_BYTES_COUNT_BATCH = 1000;
+    private static final Location ALL_REFERENCED_BYTES_COUNTED = new Location(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    private File journalColdTierDirectory;
+    private long journalColdTierAge = Journal.DEFAULT_COLD_TIER_AGE;
     private boolean enableSubscriptionStatistics = false;
 
     //only set when using JournalDiskSyncStrategy.PERIODIC
@@ -354,6 +377,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             // Load up all the destinations since we need to scan all the indexes to figure out which journal files can be deleted.
             // Perhaps we should just keep an index of file
             storedDestinations.clear();
+            referencedMessageBytes.clear();
             pageFile.tx().execute(new Transaction.Closure<IOException>() {
                 @Override
                 public void execute(Transaction tx) throws IOException {
@@ -371,6 +395,13 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                             }
                         }
                     }
+
+                    if (metadata.version < VERSION) {
+                        // the destinations were stored again in the current layout, record the
+                        // version in the same flush so a crash cannot leave them under the old one
+                        metadata.version = VERSION;
+                        tx.store(metadata.page, metadataMarshaller, true);
+                    }
                 }
             });
             pageFile.flush();
@@ -412,6 +443,27 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         }
     }
 
+    private ExecutorService getJournalCompactionExecutor() {
+        synchronized (schedulerLock) {
+            if (journalCompactionExecutor == null) {
+                // the compactor throttles its writes, so it must not hold up the checkpoints
+                journalCompactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread compactionThread = new Thread(r);
+
+                        compactionThread.setName("ActiveMQ Journal Compaction Worker");
+                        compactionThread.setDaemon(true);
+
+                        return compactionThread;
+                    }
+                });
+            }
+            return journalCompactionExecutor;
+        }
+    }
+
     private final class CheckpointRunner implements Runnable {
 
         private long lastCheckpoint = System.currentTimeMillis();
@@ -424,6 +476,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             try {
                 // Decide on cleanup vs full checkpoint here.
                 if (opened.get()) {
+                    updatePageCacheStatistics();
                     long now = System.currentTimeMillis();
                     if (journal.isJournalDiskSyncPeriodic() &&
                             journalDiskSyncInterval > 0 && (now - lastSync >= journalDiskSyncInterval)) {
@@ -456,6 +509,29 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         }
     }
 
+    private long publishedPageCacheHits;
+    private long publishedPageCacheMisses;
+    private long publishedPageCacheEvictions;
+
+    /**
+     * The page cache counts without locking, its counters are periodically added to the
+     * persistence adapter statistics.
+     */
+    protected void updatePageCacheStatistics() {
+        PageFile pageFile = this.pageFile;
+        if (pageFile == null) {
+            return;
+        }
+        long hits = pageFile.getPageCacheHitCount();
+        long misses = pageFile.getPageCacheMissCount();
+        long evictions = pageFile.getPageCacheEvictionCount();
+        persistenceAdapterStatistics.addPageCacheCounts(hits - publishedPageCacheHits,
+                misses - publishedPageCacheMisses, evictions - publishedPageCacheEvictions);
+        publishedPageCacheHits = hits;
+        publishedPageCacheMisses = misses;
+        publishedPageCacheEvictions = evictions;
+    }
+
     public void open() throws IOException {
         LOG.info("Opening MessageDatabase");
         if( opened.compareAndSet(false, true) ) {
@@ -528,6 +604,10 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                     ThreadPoolUtils.shutdownGraceful(scheduler, -1);
                     scheduler = null;
                 }
+                if (journalCompactionExecutor != null) {
+                    ThreadPoolUtils.shutdownGraceful(journalCompactionExecutor, -1);
+                    journalCompactionExecutor = null;
+                }
             }
             // clear the cache and journalSize on shutdown of the store
             storeCache.clear();
@@ -881,7 +961,8 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                 MessageKeys keys = sd.orderIndex.remove(tx, sequenceId);
                 if (keys != null) {
                     sd.locationIndex.remove(tx, keys.location);
-                    sd.messageIdIndex.remove(tx, keys.messageId);
+                    removeReferencedMessageBytes(sd, keys.location);
+                    sd.removeMessageSequence(tx, keys.messageId);
                     metadata.producerSequenceIdTracker.rollback(keys.messageId);
                     undoCounter++;
                     decrementAndSubSizeToStoreStat(tx, key, sd, keys.location.getSize());
@@ -997,7 +1078,8 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                         for (Long sequenceId : matches.keySet()) {
                             MessageKeys keys = sd.orderIndex.remove(tx, sequenceId);
                             sd.locationIndex.remove(tx, keys.location);
-                            sd.messageIdIndex.remove(tx, keys.messageId);
+                            removeReferencedMessageBytes(sd, keys.location);
+                            sd.removeMessageSequence(tx, keys.messageId);
                             LOG.info("[" + sdEntry.getKey() + "] dropped: " + keys.messageId + " at corrupt location: " + keys.location);
                             undoCounter++;
                             decrementAndSubSizeToStoreStat(tx, sdEntry.getKey(), sdEntry.getValue(), keys.location.getSize());
@@ -1142,6 +1224,10 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
      * during a recovery process.
      */
     public Location store(JournalCommand<?> data, boolean sync, IndexAware before, Runnable after, Runnable onJournalStoreComplete) throws IOException {
+        return store(data, sync, before, after, onJournalStoreComplete, null);
+    }
+
+    public Location store(JournalCommand<?> data, boolean sync, IndexAware before, Runnable after, Runnable onJournalStoreComplete, StoreLatencyListener latencyListener) throws IOException {
         try {
             ByteSequence sequence = toByteSequence(data);
             Location location;
@@ -1150,7 +1236,9 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             try {
 
                 long start = System.currentTimeMillis();
+                long journalStart = System.nanoTime();
                 location = onJournalStoreComplete == null ? journal.write(sequence, sync) : journal.write(sequence, onJournalStoreComplete) ;
+                long journalNanos = System.nanoTime() - journalStart;
                 long start2 = System.currentTimeMillis();
                 //Track the last async update so we know if we need to sync at the next checkpoint
                 if (!sync && journal.isJournalDiskSyncPeriodic()) {
@@ -1168,6 +1256,9 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                 }
 
                 persistenceAdapterStatistics.addWriteTime(totalTimeMillis);
+                if (latencyListener != null) {
+                    latencyListener.stored(journalNanos, totalTimeMillis);
+                }
 
             } finally {
                 checkpointLock.readLock().unlock();
@@ -1543,9 +1634,10 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         long id = sd.orderIndex.getNextMessageId();
         Long previous = sd.locationIndex.put(tx, location, id);
         if (previous == null) {
-            previous = sd.messageIdIndex.put(tx, command.getMessageId(), id);
+            previous = sd.putMessageSequence(tx, command.getMessageId(), id);
             if (previous == null) {
                 incrementAndAddSizeToStoreStat(tx, command.getDestination(), location.getSize());
+                addReferencedMessageBytes(sd, location);
                 sd.orderIndex.put(tx, priority, id, new MessageKeys(command.getMessageId(), location));
                 if (sd.subscriptions != null && !sd.subscriptions.isEmpty(tx)) {
                     addAckLocationForNewMessage(tx, command.getDestination(), sd, id);
@@ -1557,7 +1649,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                     // If the message ID is indexed, then the broker asked us to store a duplicate before the message was dispatched and acked, we ignore this add attempt
                     LOG.warn("Duplicate message add attempt rejected. Destination: {}://{}, Message id: {}", command.getDestination().getType(), command.getDestination().getName(), command.getMessageId());
                 }
-                sd.messageIdIndex.put(tx, command.getMessageId(), previous);
+                sd.putMessageSequence(tx, command.getMessageId(), previous);
                 sd.locationIndex.remove(tx, location);
                 // ensure sequence is not broken
                 sd.orderIndex.revertNextMessageId();
@@ -1594,9 +1686,18 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
 
     void updateIndex(Transaction tx, KahaUpdateMessageCommand updateMessageCommand, Location location) throws IOException {
         KahaAddMessageCommand command = updateMessageCommand.getMessage();
+        if (updateMessageCommand.hasPreviousLocation() && journal.getFileMap().containsKey(updateMessageCommand.getPreviousLocation().getLogId())) {
+            // a copy made by journal compaction, no ack precedes it in the journal. While the source
+            // file is there a missing message was acked after the copy, which a replay can meet, and
+            // must not be added back. Without the source file the copy is the message.
+            StoredDestination sd = getExistingStoredDestination(command.getDestination(), tx);
+            if (sd == null || sd.getMessageSequence(tx, command.getMessageId()) == null) {
+                return;
+            }
+        }
         StoredDestination sd = getStoredDestination(command.getDestination(), tx);
 
-        Long id = sd.messageIdIndex.get(tx, command.getMessageId());
+        Long id = sd.getMessageSequence(tx, command.getMessageId());
         if (id != null) {
             MessageKeys previousKeys = sd.orderIndex.put(
                     tx,
@@ -1604,7 +1705,9 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                     id,
                     new MessageKeys(command.getMessageId(), location)
             );
-            sd.locationIndex.put(tx, location, id);
+            if (sd.locationIndex.put(tx, location, id) == null) {
+                addReferencedMessageBytes(sd, location);
+            }
             incrementAndAddSizeToStoreStat(tx, command.getDestination(), location.getSize());
 
             if (previousKeys != null) {
@@ -1626,6 +1729,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                 // on first update previous is original location, on recovery/replay it may be the updated location
                 if(!previousKeys.location.equals(location)) {
                     sd.locationIndex.remove(tx, previousKeys.location);
+                    removeReferencedMessageBytes(sd, previousKeys.location);
                 }
             }
             metadata.lastUpdate = location;
@@ -1640,11 +1744,12 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         if (!command.hasSubscriptionKey()) {
 
             // In the queue case we just remove the message from the index..
-            Long sequenceId = sd.messageIdIndex.remove(tx, command.getMessageId());
+            Long sequenceId = sd.removeMessageSequence(tx, command.getMessageId());
             if (sequenceId != null) {
                 MessageKeys keys = sd.orderIndex.remove(tx, sequenceId);
                 if (keys != null) {
                     sd.locationIndex.remove(tx, keys.location);
+                    removeReferencedMessageBytes(sd, keys.location);
                     decrementAndSubSizeToStoreStat(tx, command.getDestination(), keys.location.getSize());
                     recordAckMessageReferenceLocation(ackLocation, keys.location);
                     metadata.lastUpdate = ackLocation;
@@ -1657,7 +1762,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         } else {
             // In the topic case we need remove the message once it's been acked
             // by all the subs
-            Long sequence = sd.messageIdIndex.get(tx, command.getMessageId());
+            Long sequence = sd.getMessageSequence(tx, command.getMessageId());
 
             // Make sure it's a valid message id...
             if (sequence != null) {
@@ -1682,6 +1787,21 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         }
     }
 
+    private void addReferencedMessageBytes(StoredDestination sd, Location location) {
+        if (sd.isReferencedBytesCounted(location)) {
+            referencedMessageBytes.merge(location.getDataFileId(), (long) location.getSize(), Long::sum);
+        }
+    }
+
+    private void removeReferencedMessageBytes(StoredDestination sd, Location location) {
+        if (sd.isReferencedBytesCounted(location)) {
+            referencedMessageBytes.computeIfPresent(location.getDataFileId(), (dataFileId, bytes) -> {
+                long remaining = bytes - location.getSize();
+                return remaining > 0 ? remaining : null;
+            });
+        }
+    }
+
     private void recordAckMessageReferenceLocation(Location ackLocation, Location messageLocation) {
         Set<Integer> referenceFileIds = metadata.ackMessageFileMap.get(ackLocation.getDataFileId());
         if (referenceFileIds == null) {
@@ -1702,6 +1822,11 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         StoredDestination sd = getStoredDestination(command.getDestination(), tx);
         sd.orderIndex.remove(tx);
 
+        if (sd.referencedBytesCountedTo != null) {
+            for (Iterator<Entry<Location, Long>> iterator = sd.locationIndex.iterator(tx); iterator.hasNext(); ) {
+                removeReferencedMessageBytes(sd, iterator.next().getKey());
+            }
+        }
         sd.locationIndex.clear(tx);
         sd.locationIndex.unload(tx);
         tx.free(sd.locationIndex.getPageId());
@@ -1710,6 +1835,10 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         sd.messageIdIndex.unload(tx);
         tx.free(sd.messageIdIndex.getPageId());
 
+        sd.producerIdIndex.clear(tx);
+        sd.producerIdIndex.unload(tx);
+        tx.free(sd.producerIdIndex.getPageId());
+
         tx.free(sd.messageStoreStatistics.getPageId());
         sd.messageStoreStatistics = null;
 
@@ -1830,6 +1959,10 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         final TreeSet<Integer> gcCandidateSet = new TreeSet<>();
         if (cleanup) {
 
+            for (StoredDestination sd : storedDestinations.values()) {
+                sd.pruneProducerIds(tx);
+            }
+
             final TreeSet<Integer> completeFileSet = new TreeSet<>(journal.getFileMap().keySet());
             gcCandidateSet.addAll(completeFileSet);
 
@@ -2053,6 +2186,15 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
 
                 journalLogOnLastCompactionCheck = journal.getCurrentDataFileId();
             }
+
+            if (isEnableJournalCompaction() && journalCompactionScheduled.compareAndSet(false, true)) {
+                try {
+                    getJournalCompactionExecutor().execute(new JournalCompactionRunner());
+                } catch (Exception ex) {
+                    journalCompactionScheduled.set(false);
+                    LOG.warn("Error on queueing the journal compactor", ex);
+                }
+            }
         }
         MDC.remove("activemq.persistenceDir");
 
@@ -2233,6 +2375,269 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         LOG.trace("ACK File Map following updates: {}", metadata.ackMessageFileMap);
     }
 
+    /**
+     * Copies the messages that are still referenced out of a data file that is mostly made of
+     * acked messages, so that the file can be removed on the next cleanup instead of waiting for
+     * its last message to be consumed.
+     */
+    private final class JournalCompactionRunner implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                int dataFileId = selectJournalCompactionCandidate();
+                if (dataFileId != -1 && compactDataFile(dataFileId)) {
+                    // removes the data file that no longer has referenced messages
+                    checkpointCleanup(true);
+                }
+            } catch (IOException ioe) {
+                LOG.error("Journal compaction failed", ioe);
+                brokerService.handleIOException(ioe);
+            } catch (Throwable e) {
+                LOG.error("Journal compaction failed", e);
+                brokerService.handleIOException(IOExceptionSupport.create(e));
+            } finally {
+                journalCompactionScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return the data file with the lowest share of referenced message bytes when that share is
+     *         below the journalCompactionThreshold, or -1
+     */
+    private int selectJournalCompactionCandidate() throws IOException {
+        if (!countReferencedMessageBytes()) {
+            return -1;
+        }
+
+        final TreeSet<Integer> candidates = new TreeSet<>();
+        final Map<Integer, Long> referencedBytes = new HashMap<>();
+        this.indexLock.writeLock().lock();
+        try {
+            if (!opened.get()) {
+                return -1;
+            }
+            candidates.addAll(journal.getFileMap().keySet());
+            Location lastUpdate = metadata.lastUpdate;
+            if (lastUpdate != null) {
+                candidates.removeAll(new TreeSet<Integer>(candidates.tailSet(lastUpdate.getDataFileId())));
+            }
+            candidates.removeAll(journalFilesBeingReplicated);
+            for (Iterator<Integer> iterator = candidates.iterator(); iterator.hasNext(); ) {
+                if (blockedFromCompaction(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            if (candidates.isEmpty()) {
+                return -1;
+            }
+
+            for (StoredDestination sd : storedDestinations.values()) {
+                if (sd.referencedBytesCountedTo != ALL_REFERENCED_BYTES_COUNTED) {
+                    // loaded since the count, it is counted on the next run
+                    return -1;
+                }
+            }
+            for (Integer candidate : candidates) {
+                Long bytes = referencedMessageBytes.get(candidate);
+                if (bytes != null) {
+                    referencedBytes.put(candidate, bytes);
+                }
+            }
+        } finally {
+            this.indexLock.writeLock().unlock();
+        }
+
+        int selected = -1;
+        double selectedRatio = journalCompactionThreshold;
+        for (Entry<Integer, Long> entry : referencedBytes.entrySet()) {
+            DataFile dataFile = journal.getDataFileById(entry.getKey());
+            if (dataFile == null || dataFile.getLength() == 0) {
+                continue;
+            }
+            double ratio = (double) entry.getValue() / dataFile.getLength();
+            if (ratio < selectedRatio) {
+                selected = entry.getKey();
+                selectedRatio = ratio;
+            }
+        }
+        if (selected != -1) {
+            LOG.debug("Journal compaction candidate: {}, referenced bytes ratio: {}", selected, selectedRatio);
+        }
+        return selected;
+    }
+
+    /**
+     * Counts the message bytes the location indexes reference, a batch of locations at a time so
+     * the index lock is not held for the whole scan. The locations below the counted position of
+     * a destination are kept up to date by the index updates.
+     *
+     * @return true when every destination has been counted
+     */
+    private boolean countReferencedMessageBytes() throws IOException {
+        final List<StoredDestination> uncounted = new ArrayList<>();
+        this.indexLock.writeLock().lock();
+        try {
+            for (StoredDestination sd : storedDestinations.values()) {
+                if (sd.referencedBytesCountedTo != ALL_REFERENCED_BYTES_COUNTED) {
+                    uncounted.add(sd);
+                }
+            }
+        } finally {
+            this.indexLock.writeLock().unlock();
+        }
+
+        for (final StoredDestination sd : uncounted) {
+            while (sd.referencedBytesCountedTo != ALL_REFERENCED_BYTES_COUNTED) {
+                this.indexLock.writeLock().lock();
+                try {
+                    if (!opened.get()) {
+                        return false;
+                    }
+                    if (!storedDestinations.containsValue(sd)) {
+                        break;
+                    }
+                    pageFile.tx().execute(new Transaction.Closure<IOException>() {
+                        @Override
+                        public void execute(Transaction tx) throws IOException {
+                            Iterator<Entry<Location, Long>> iterator = sd.referencedBytesCountedTo == null ?
+                                sd.locationIndex.iterator(tx) : sd.locationIndex.iterator(tx, sd.referencedBytesCountedTo);
+                            Location countedTo = ALL_REFERENCED_BYTES_COUNTED;
+                            for (int counted = 0; iterator.hasNext(); counted++) {
+                                Location location = iterator.next().getKey();
+                                if (counted == REFERENCED_BYTES_COUNT_BATCH) {
+                                    countedTo = location;
+                                    break;
+                                }
+                                referencedMessageBytes.merge(location.getDataFileId(), (long) location.getSize(), Long::sum);
+                            }
+                            sd.referencedBytesCountedTo = countedTo;
+                        }
+                    });
+                } finally {
+                    this.indexLock.writeLock().unlock();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a copy of each message still referenced in the data file to the journal. The copies
+     * are update commands that carry the location they were copied from. Each copy is written under
+     * the checkpoint write lock once the index still holds the message, so no ack for the message
+     * can be in the journal before the copy, and the copy can add the message back when the journal
+     * is replayed without the data file.
+     *
+     * @return true when the messages of the data file have been copied
+     */
+    private boolean compactDataFile(int dataFileId) throws IOException {
+        final Location start = new Location(dataFileId, 0);
+        final Map<Location, StoredDestination> locations = new TreeMap<>();
+        this.indexLock.writeLock().lock();
+        try {
+            pageFile.tx().execute(new Transaction.Closure<IOException>() {
+                @Override
+                public void execute(Transaction tx) throws IOException {
+                    for (StoredDestination sd : storedDestinations.values()) {
+                        for (Iterator<Entry<Location, Long>> iterator = sd.locationIndex.iterator(tx, start); iterator.hasNext(); ) {
+                            Location location = iterator.next().getKey();
+                            if (location.getDataFileId() != dataFileId) {
+                                break;
+                            }
+                            locations.put(location, sd);
+                        }
+                    }
+                }
+            });
+        } finally {
+            this.indexLock.writeLock().unlock();
+        }
+
+        LOG.debug("Compacting journal file: {}, copying {} messages", dataFileId, locations.size());
+        long copiedBytes = 0;
+        long started = System.currentTimeMillis();
+        for (Entry<Location, StoredDestination> entry : locations.entrySet()) {
+            if (!opened.get()) {
+                return false;
+            }
+            if (!copyMessage(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            copiedBytes += entry.getKey().getSize();
+
+            if (journalCompactionMaxBytesPerSecond > 0) {
+                long due = started + copiedBytes * 1000 / journalCompactionMaxBytesPerSecond;
+                long delay = due - System.currentTimeMillis();
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+        }
+
+        // the source file is only removed once the copies are on disk
+        store(new KahaTraceCommand().setMessage("compacted journal file: " + dataFileId), true, null, null);
+        persistenceAdapterStatistics.addJournalCompaction(copiedBytes);
+        LOG.info("Compacted journal file: {}, copied {} messages ({} bytes) in {} ms", dataFileId, locations.size(), copiedBytes, System.currentTimeMillis() - started);
+        return true;
+    }
+
+    /**
+     * Appends a copy of the message at the location while the index of the destination still
+     * holds it. The checkpoint write lock keeps other journal writes out between the check and
+     * the append.
+     *
+     * @return true when the copy has been written
+     */
+    private boolean copyMessage(final Location location, final StoredDestination sd) throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            if (!opened.get()) {
+                return false;
+            }
+            final AtomicBoolean referenced = new AtomicBoolean();
+            this.indexLock.readLock().lock();
+            try {
+                if (storedDestinations.containsValue(sd)) {
+                    pageFile.tx().execute(new Transaction.Closure<IOException>() {
+                        @Override
+                        public void execute(Transaction tx) throws IOException {
+                            referenced.set(sd.locationIndex.get(tx, location) != null);
+                        }
+                    });
+                }
+            } finally {
+                this.indexLock.readLock().unlock();
+            }
+            if (!referenced.get()) {
+                return false;
+            }
+
+            JournalCommand<?> command = load(location);
+            KahaAddMessageCommand message;
+            if (command instanceof KahaAddMessageCommand) {
+                message = (KahaAddMessageCommand) command;
+            } else if (command instanceof KahaUpdateMessageCommand) {
+                message = ((KahaUpdateMessageCommand) command).getMessage();
+            } else {
+                return false;
+            }
+            KahaUpdateMessageCommand copy = new KahaUpdateMessageCommand();
+            copy.setMessage(message);
+            copy.setPreviousLocation(new KahaLocation().setLogId(location.getDataFileId()).setOffset(location.getOffset()));
+            store(copy, false, null, null);
+            return true;
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
     private boolean shouldForward(JournalCommand<?> command) {
         if (command == null) {
             return false;
@@ -2322,7 +2727,8 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
     // StoredDestination related implementation methods.
     // /////////////////////////////////////////////////////////////////
 
-    protected final HashMap<String, StoredDestination> storedDestinations = new HashMap<>();
+    // read without the index lock by snapshot readers
+    protected final ConcurrentHashMap<String, StoredDestination> storedDestinations = new ConcurrentHashMap<>();
 
     static class MessageKeys {
         final String messageId;
@@ -2468,7 +2874,18 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
 
         MessageOrderIndex orderIndex = new MessageOrderIndex();
         BTreeIndex<Location, Long> locationIndex;
-        BTreeIndex<String, Long> messageIdIndex;
+        BTreeIndex<MessageIdKey, Long> messageIdIndex;
+        // Dictionary of the producer id prefixes of the message ids in messageIdIndex
+        BTreeIndex<String, Long> producerIdIndex;
+        long nextProducerKey;
+        // In memory copy of the producerIdIndex, so message id lookups don't search it
+        final HashMap<String, Long> producerKeys = new HashMap<>();
+        // Producers that had a message removed since the last prune
+        final HashSet<String> prunableProducerIds = new HashSet<>();
+        // The locations below this one are counted in referencedMessageBytes, null before counting starts
+        Location referencedBytesCountedTo;
+        // Only set while a store older than version 8 is upgraded
+        BTreeIndex<String, Long> legacyMessageIdIndex;
 
         // These bits are only set for Topics
         BTreeIndex<String, KahaSubscriptionCommand> subscriptions;
@@ -2486,6 +2903,87 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             orderIndex.trackPendingAdd(seq);
         }
 
+        Long getMessageSequence(Transaction tx, String messageId) throws IOException {
+            MessageIdKey key = messageIdKey(tx, messageId, false);
+            return key != null ? messageIdIndex.get(tx, key) : null;
+        }
+
+        Long putMessageSequence(Transaction tx, String messageId, Long sequence) throws IOException {
+            return messageIdIndex.put(tx, messageIdKey(tx, messageId, true), sequence);
+        }
+
+        Long removeMessageSequence(Transaction tx, String messageId) throws IOException {
+            MessageIdKey key = messageIdKey(tx, messageId, false);
+            if (key == null) {
+                return null;
+            }
+            Long sequence = messageIdIndex.remove(tx, key);
+            if (sequence != null) {
+                prunableProducerIds.add(producerId(messageId));
+            }
+            return sequence;
+        }
+
+        /**
+         * Splits a message id of the form producerId:sequence into the key of its producer id
+         * in the dictionary and the sequence. Ids in any other form are stored whole in the
+         * dictionary with a sequence of -1.
+         */
+        private MessageIdKey messageIdKey(Transaction tx, String messageId, boolean create) throws IOException {
+            String producerId = messageId;
+            long sequence = -1;
+            int separator = messageId.lastIndexOf(':');
+            if (separator > 0) {
+                long parsed = MessageIdKey.parseSequence(messageId, separator + 1);
+                if (parsed >= 0) {
+                    producerId = messageId.substring(0, separator);
+                    sequence = parsed;
+                }
+            }
+
+            Long producerKey = producerKeys.get(producerId);
+            if (producerKey == null) {
+                if (!create) {
+                    return null;
+                }
+                producerKey = nextProducerKey++;
+                producerIdIndex.put(tx, producerId, producerKey);
+                producerKeys.put(producerId, producerKey);
+            }
+            return new MessageIdKey(producerKey, sequence);
+        }
+
+        private String producerId(String messageId) {
+            int separator = messageId.lastIndexOf(':');
+            if (separator > 0 && MessageIdKey.parseSequence(messageId, separator + 1) >= 0) {
+                return messageId.substring(0, separator);
+            }
+            return messageId;
+        }
+
+        /**
+         * Removes the dictionary entries of the producers that had a message removed since
+         * the last prune and no longer have a message in the messageIdIndex.
+         */
+        void pruneProducerIds(Transaction tx) throws IOException {
+            for (String producerId : prunableProducerIds) {
+                Long producerKey = producerKeys.get(producerId);
+                if (producerKey == null) {
+                    continue;
+                }
+                Iterator<Entry<MessageIdKey, Long>> messages = messageIdIndex.iterator(tx, new MessageIdKey(producerKey, Long.MIN_VALUE));
+                if (!messages.hasNext() || messages.next().getKey().producerKey != producerKey) {
+                    producerIdIndex.remove(tx, producerId);
+                    producerKeys.remove(producerId);
+                }
+            }
+            prunableProducerIds.clear();
+        }
+
+        boolean isReferencedBytesCounted(Location location) {
+            return referencedBytesCountedTo != null && location.compareTo(referencedBytesCountedTo) < 0;
+        }
+
         public void trackPendingAddComplete(Long seq) {
             orderIndex.trackPendingAddComplete(seq);
         }
@@ -2537,7 +3035,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             final StoredDestination value = new StoredDestination();
             value.orderIndex.defaultPriorityIndex = new BTreeIndex<>(pageFile, dataIn.readLong());
             value.locationIndex = new BTreeIndex<>(pageFile, dataIn.readLong());
-            value.messageIdIndex = new BTreeIndex<>(pageFile, dataIn.readLong());
+            final long messageIdIndexPageId = dataIn.readLong();
 
             if (dataIn.readBoolean()) {
                 value.subscriptions = new BTreeIndex<>(pageFile, dataIn.readLong());
@@ -2637,6 +3135,14 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                 });
             }
 
+            if (metadata.version >= 8) {
+                value.messageIdIndex = new BTreeIndex<>(pageFile, messageIdIndexPageId);
+                value.producerIdIndex = new BTreeIndex<>(pageFile, dataIn.readLong());
+            } else {
+                // upgrade, the string keyed index is converted when the destination is loaded
+                value.legacyMessageIdIndex = new BTreeIndex<>(pageFile, messageIdIndexPageId);
+            }
+
             return value;
         }
 
@@ -2657,6 +3163,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             dataOut.writeLong(value.orderIndex.lowPriorityIndex.getPageId());
             dataOut.writeLong(value.orderIndex.highPriorityIndex.getPageId());
             dataOut.writeLong(value.messageStoreStatistics.getPageId());
+            dataOut.writeLong(value.producerIdIndex.getPageId());
         }
     }
 
@@ -2717,9 +3224,11 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         if (rc == null) {
             // Brand new destination.. allocate indexes for it.
             rc = new StoredDestination();
+            rc.referencedBytesCountedTo = ALL_REFERENCED_BYTES_COUNTED;
             rc.orderIndex.allocate(tx);
             rc.locationIndex = new BTreeIndex<>(pageFile, tx.allocate());
             rc.messageIdIndex = new BTreeIndex<>(pageFile, tx.allocate());
+            rc.producerIdIndex = new BTreeIndex<>(pageFile, tx.allocate());
 
             if (topic) {
                 rc.subscriptions = new BTreeIndex<>(pageFile, tx.allocate());
@@ -2745,10 +3254,44 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         rc.locationIndex.setValueMarshaller(LongMarshaller.INSTANCE);
         rc.locationIndex.load(tx);
 
-        rc.messageIdIndex.setKeyMarshaller(StringMarshaller.INSTANCE);
+        if (rc.legacyMessageIdIndex != null) {
+            rc.messageIdIndex = new BTreeIndex<>(pageFile, tx.allocate());
+            rc.producerIdIndex = new BTreeIndex<>(pageFile, tx.allocate());
+        }
+
+        rc.messageIdIndex.setKeyMarshaller(MessageIdKeyMarshaller.INSTANCE);
         rc.messageIdIndex.setValueMarshaller(LongMarshaller.INSTANCE);
         rc.messageIdIndex.load(tx);
 
+        rc.producerIdIndex.setKeyMarshaller(StringMarshaller.INSTANCE);
+        rc.producerIdIndex.setValueMarshaller(LongMarshaller.INSTANCE);
+        rc.producerIdIndex.load(tx);
+
+        rc.nextProducerKey = 0;
+        rc.producerKeys.clear();
+        for (Iterator<Entry<String, Long>> iterator = rc.producerIdIndex.iterator(tx); iterator.hasNext(); ) {
+            Entry<String, Long> entry = iterator.next();
+            rc.producerKeys.put(entry.getKey(), entry.getValue());
+            // Removals from before the restart are not tracked, check every producer once
+            rc.prunableProducerIds.add(entry.getKey());
+            rc.nextProducerKey = Math.max(rc.nextProducerKey, entry.getValue() + 1);
+        }
+
+        //go through an upgrade of the string keyed message id index if older than version 8
+        if (rc.legacyMessageIdIndex != null) {
+            rc.legacyMessageIdIndex.setKeyMarshaller(StringMarshaller.INSTANCE);
+            rc.legacyMessageIdIndex.setValueMarshaller(LongMarshaller.INSTANCE);
+            rc.legacyMessageIdIndex.load(tx);
+            for (Iterator<Entry<String, Long>> iterator = rc.legacyMessageIdIndex.iterator(tx); iterator.hasNext(); ) {
+                Entry<String, Long> entry = iterator.next();
+                rc.putMessageSequence(tx, entry.getKey(), entry.getValue());
+            }
+            rc.legacyMessageIdIndex.clear(tx);
+            rc.legacyMessageIdIndex.unload(tx);
+            tx.free(rc.legacyMessageIdIndex.getPageId());
+            rc.legacyMessageIdIndex = null;
+        }
+
         //go through an upgrade old index if older than version 6
         if (metadata.version < 6) {
             for (Iterator<Entry<Location, Long>> iterator = rc.locationIndex.iterator(tx); iterator.hasNext(); ) {
@@ -3049,6 +3592,99 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         }
     }
 
+    /**
+     * Fixed width key of the messageIdIndex, the producer id part of the message id is
+     * replaced by its key in the producer id dictionary of the destination.
+     */
+    static final class MessageIdKey implements Comparable<MessageIdKey> {
+        final long producerKey;
+        final long sequence;
+
+        MessageIdKey(long producerKey, long sequence) {
+            this.producerKey = producerKey;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return the sequence starting at the given offset of the message id, or -1 if the
+         *         remainder is not the canonical form of a non negative long.
+         */
+        static long parseSequence(String messageId, int offset) {
+            int length = messageId.length() - offset;
+            if (length <= 0 || length > 18 || (length > 1 && messageId.charAt(offset) == '0')) {
+                return -1;
+            }
+            long result = 0;
+            for (int i = offset; i < messageId.length(); i++) {
+                char c = messageId.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                result = result * 10 + (c - '0');
+            }
+            return result;
+        }
+
+        @Override
+        public int compareTo(MessageIdKey other) {
+            int rc = Long.compare(producerKey, other.producerKey);
+            return rc != 0 ? rc : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MessageIdKey)) {
+                return false;
+            }
+            MessageIdKey other = (MessageIdKey) o;
+            return producerKey == other.producerKey && sequence == other.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(producerKey) * 31 + Long.hashCode(sequence);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + producerKey + ":" + sequence + "]";
+        }
+    }
+
+    static class MessageIdKeyMarshaller implements Marshaller<MessageIdKey> {
+
+        static final MessageIdKeyMarshaller INSTANCE = new MessageIdKeyMarshaller();
+
+        @Override
+        public MessageIdKey readPayload(DataInput dataIn) throws IOException {
+            return new MessageIdKey(dataIn.readLong(), dataIn.readLong());
+        }
+
+        @Override
+        public void writePayload(MessageIdKey object, DataOutput dataOut) throws IOException {
+            dataOut.writeLong(object.producerKey);
+            dataOut.writeLong(object.sequence);
+        }
+
+        @Override
+        public int getFixedSize() {
+            return 16;
+        }
+
+        @Override
+        public MessageIdKey deepCopy(MessageIdKey source) {
+            return source;
+        }
+
+        @Override
+        public boolean isDeepCopySupported() {
+            return true;
+        }
+    }
+
     private void addAckLocation(Transaction tx, StoredDestination sd, Long messageSequence, String subscriptionKey) throws IOException {
         SequenceSet sequences = sd.ackPositions.get(tx, subscriptionKey);
         if (sequences == null) {
@@ -3117,7 +3753,8 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                 // Do the actual deletes.
                 for (Entry<Long, MessageKeys> entry : deletes) {
                     sd.locationIndex.remove(tx, entry.getValue().location);
-                    sd.messageIdIndex.remove(tx, entry.getValue().messageId);
+                    removeReferencedMessageBytes(sd, entry.getValue().location);
+                    sd.removeMessageSequence(tx, entry.getValue().messageId);
                     sd.orderIndex.remove(tx, entry.getKey());
                     decrementAndSubSizeToStoreStat(tx, command.getDestination(), entry.getValue().location.getSize());
                 }
@@ -3183,7 +3820,8 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
                 // Do the actual deletes.
                 for (Entry<Long, MessageKeys> entry : deletes) {
                     sd.locationIndex.remove(tx, entry.getValue().location);
-                    sd.messageIdIndex.remove(tx, entry.getValue().messageId);
+                    removeReferencedMessageBytes(sd, entry.getValue().location);
+                    sd.removeMessageSequence(tx, entry.getValue().messageId);
                     sd.orderIndex.remove(tx, entry.getKey());
                     decrementAndSubSizeToStoreStat(tx, command.getDestination(), entry.getValue().location.getSize());
                 }
@@ -3394,11 +4032,14 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         PageFile index = new PageFile(indexDirectory, "db");
         index.setEnableWriteThread(isEnableIndexWriteAsync());
         index.setWriteBatchSize(getIndexWriteBatchSize());
+        index.setMaxCoalescedPageWrites(getIndexMaxCoalescedPageWrites());
         index.setPageCacheSize(indexCacheSize);
+        index.setPageCacheMaxBytes(indexCacheMaxBytes);
         index.setUseLFRUEviction(isUseIndexLFRUEviction());
         index.setLFUEvictionFactor(getIndexLFUEvictionFactor());
         index.setEnableDiskSyncs(isEnableIndexDiskSyncs());
         index.setEnableRecoveryFile(isEnableIndexRecoveryFile());
+        index.setRecoveryChecksumAlgorithm(getChecksumAlgorithmEnum());
         index.setEnablePageCaching(isEnableIndexPageCaching());
         return index;
     }
@@ -3409,6 +4050,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         manager.setMaxFileLength(getJournalMaxFileLength());
         manager.setCheckForCorruptionOnStartup(checkForCorruptJournalFiles);
         manager.setChecksum(checksumJournalFiles || checkForCorruptJournalFiles);
+        manager.setChecksumAlgorithm(getChecksumAlgorithmEnum());
         manager.setWriteBatchSize(getJournalMaxWriteBatchSize());
         manager.setArchiveDataLogs(isArchiveDataLogs());
         manager.setSizeAccumulator(journalSize);
@@ -3417,10 +4059,18 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         manager.setPreallocationStrategy(
                 Journal.PreallocationStrategy.valueOf(preallocationStrategy.trim().toUpperCase()));
         manager.setJournalDiskSyncStrategy(journalDiskSyncStrategy);
+        manager.setJournalWriteMode(Journal.JournalWriteMode.valueOf(journalWriteMode.trim().toUpperCase()));
+        manager.setPipelinedAppender(isEnableJournalPipelinedAppender());
+        manager.setSyncLatency(persistenceAdapterStatistics.getJournalSyncLatency());
         if (getDirectoryArchive() != null) {
             IOHelper.mkdirs(getDirectoryArchive());
             manager.setDirectoryArchive(getDirectoryArchive());
         }
+        if (getJournalColdTierDirectory() != null) {
+            IOHelper.mkdirs(getJournalColdTierDirectory());
+            manager.setDirectoryColdTier(getJournalColdTierDirectory());
+            manager.setColdTierAge(getJournalColdTierAge());
+        }
         return manager;
     }
 
@@ -3465,6 +4115,14 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         return setIndexWriteBatchSize;
     }
 
+    public void setIndexMaxCoalescedPageWrites(int indexMaxCoalescedPageWrites) {
+        this.indexMaxCoalescedPageWrites = indexMaxCoalescedPageWrites;
+    }
+
+    public int getIndexMaxCoalescedPageWrites() {
+        return indexMaxCoalescedPageWrites;
+    }
+
     public void setEnableIndexWriteAsync(boolean enableIndexWriteAsync) {
         this.enableIndexWriteAsync = enableIndexWriteAsync;
     }
@@ -3605,6 +4263,14 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         this.indexCacheSize = indexCacheSize;
     }
 
+    public long getIndexCacheMaxBytes() {
+        return indexCacheMaxBytes;
+    }
+
+    public void setIndexCacheMaxBytes(long indexCacheMaxBytes) {
+        this.indexCacheMaxBytes = indexCacheMaxBytes;
+    }
+
     public boolean isCheckForCorruptJournalFiles() {
         return checkForCorruptJournalFiles;
     }
@@ -3634,6 +4300,18 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         this.checksumJournalFiles = checksumJournalFiles;
     }
 
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithmEnum() {
+        return ChecksumAlgorithm.valueOf(checksumAlgorithm.trim().toUpperCase());
+    }
+
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
     @Override
     public void setBrokerService(BrokerService brokerService) {
         this.brokerService = brokerService;
@@ -3715,6 +4393,18 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         return enableIndexPageCaching;
     }
 
+    public boolean isEnableIndexSnapshotReads() {
+        return enableIndexSnapshotReads;
+    }
+
+    /**
+     * When enabled, message lookups and browses read a snapshot of the index pages instead of
+     * waiting for the index lock held by writers and checkpoints.
+     */
+    public void setEnableIndexSnapshotReads(boolean enableIndexSnapshotReads) {
+        this.enableIndexSnapshotReads = enableIndexSnapshotReads;
+    }
+
     public PersistenceAdapterStatistics getPersistenceAdapterStatistics() {
         return this.persistenceAdapterStatistics;
     }
@@ -3784,9 +4474,9 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         static final byte DEF = 4;
 
         long nextMessageId;
-        BTreeIndex<Long, MessageKeys> defaultPriorityIndex;
-        BTreeIndex<Long, MessageKeys> lowPriorityIndex;
-        BTreeIndex<Long, MessageKeys> highPriorityIndex;
+        volatile BTreeIndex<Long, MessageKeys> defaultPriorityIndex;
+        volatile BTreeIndex<Long, MessageKeys> lowPriorityIndex;
+        volatile BTreeIndex<Long, MessageKeys> highPriorityIndex;
         final MessageOrderCursor cursor = new MessageOrderCursor();
         Long lastDefaultKey;
         Long lastHighKey;
@@ -3972,6 +4662,21 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             return result;
         }
 
+        /**
+         * Like get but does not record the priority of the match, for readers that do not hold the
+         * index lock.
+         */
+        MessageKeys find(Transaction tx, Long key) throws IOException {
+            MessageKeys result = defaultPriorityIndex.get(tx, key);
+            if (result == null && highPriorityIndex != null) {
+                result = highPriorityIndex.get(tx, key);
+                if (result == null && lowPriorityIndex != null) {
+                    result = lowPriorityIndex.get(tx, key);
+                }
+            }
+            return result;
+        }
+
         MessageKeys put(Transaction tx, int priority, Long key, MessageKeys value) throws IOException {
             if (priority == jakarta.jms.Message.DEFAULT_PRIORITY) {
                 return defaultPriorityIndex.put(tx, key, value);
@@ -3990,6 +4695,15 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             return new MessageOrderIterator(tx,m,this);
         }
 
+        /**
+         * @param trackPosition false to leave the last iterated keys of the store cursor alone
+         */
+        Iterator<Entry<Long, MessageKeys>> iterator(Transaction tx, MessageOrderCursor m, boolean trackPosition) throws IOException{
+            MessageOrderIterator iterator = new MessageOrderIterator(tx,m,this);
+            iterator.trackPosition = trackPosition;
+            return iterator;
+        }
+
         public byte lastGetPriority() {
             return lastGetPriority;
         }
@@ -4027,6 +4741,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             final Iterator<Entry<Long, MessageKeys>>highIterator;
             final Iterator<Entry<Long, MessageKeys>>defaultIterator;
             final Iterator<Entry<Long, MessageKeys>>lowIterator;
+            boolean trackPosition = true;
 
             MessageOrderIterator(Transaction tx, MessageOrderCursor m, MessageOrderIndex messageOrderIndex) throws IOException {
                 Long pendingAddLimiter = messageOrderIndex.minPendingAdd();
@@ -4095,7 +4810,7 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
             @Override
             public Entry<Long, MessageKeys> next() {
                 Entry<Long, MessageKeys> result = currentIterator.next();
-                if (result != null) {
+                if (result != null && trackPosition) {
                     Long key = result.getKey();
                     if (highIterator != null) {
                         if (currentIterator == defaultIterator) {
@@ -4164,6 +4879,17 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         public void sequenceAssignedWithIndexLocked(long index);
     }
 
+    /**
+     * Told the time a store took, so it can be kept per destination and connector as well
+     */
+    public interface StoreLatencyListener {
+        /**
+         * @param journalNanos the time of the journal write, with the sync of a synchronous write
+         * @param totalMillis the time of the journal write and the index update
+         */
+        public void stored(long journalNanos, long totalMillis);
+    }
+
     public String getPreallocationScope() {
         return preallocationScope;
     }
@@ -4180,6 +4906,22 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         this.preallocationStrategy = preallocationStrategy;
     }
 
+    public String getJournalWriteMode() {
+        return journalWriteMode;
+    }
+
+    public void setJournalWriteMode(String journalWriteMode) {
+        this.journalWriteMode = journalWriteMode;
+    }
+
+    public boolean isEnableJournalPipelinedAppender() {
+        return enableJournalPipelinedAppender;
+    }
+
+    public void setEnableJournalPipelinedAppender(boolean enableJournalPipelinedAppender) {
+        this.enableJournalPipelinedAppender = enableJournalPipelinedAppender;
+    }
+
     public int getCompactAcksAfterNoGC() {
         return compactAcksAfterNoGC;
     }
@@ -4237,6 +4979,72 @@ public abstract class MessageDatabase extends ServiceSupport implements BrokerSe
         this.enableAckCompaction = enableAckCompaction;
     }
 
+    public boolean isEnableJournalCompaction() {
+        return enableJournalCompaction;
+    }
+
+    /**
+     * Configure if data files in which few messages are still referenced should have those
+     * messages copied to the head of the journal, so the files can be removed.
+     *
+     * @param enableJournalCompaction
+     */
+    public void setEnableJournalCompaction(boolean enableJournalCompaction) {
+        this.enableJournalCompaction = enableJournalCompaction;
+    }
+
+    public float getJournalCompactionThreshold() {
+        return journalCompactionThreshold;
+    }
+
+    /**
+     * The share of a data file that referenced messages may take at most for the file to be
+     * compacted, 0.2 by default.
+     *
+     * @param journalCompactionThreshold
+     */
+    public void setJournalCompactionThreshold(float journalCompactionThreshold) {
+        this.journalCompactionThreshold = journalCompactionThreshold;
+    }
+
+    public long getJournalCompactionMaxBytesPerSecond() {
+        return journalCompactionMaxBytesPerSecond;
+    }
+
+    /**
+     * Limits the rate at which journal compaction copies messages, 0 for no limit.
+     *
+     * @param journalCompactionMaxBytesPerSecond
+     */
+    public void setJournalCompactionMaxBytesPerSecond(long journalCompactionMaxBytesPerSecond) {
+        this.journalCompactionMaxBytesPerSecond = journalCompactionMaxBytesPerSecond;
+    }
+
+    public File getJournalColdTierDirectory() {
+        return journalColdTierDirectory;
+    }
+
+    /**
+     * Directory that journal data files are moved to once they were not written
+     * to for journalColdTierAge, null to keep them all in the store directory.
+     *
+     * @param journalColdTierDirectory
+     */
+    public void setJournalColdTierDirectory(File journalColdTierDirectory) {
+        this.journalColdTierDirectory = journalColdTierDirectory;
+    }
+
+    public long getJournalColdTierAge() {
+        return journalColdTierAge;
+    }
+
+    /**
+     * @param journalColdTierAge
+     */
+    public void setJournalColdTierAge(long journalColdTierAge) {
+        this.journalColdTierAge = journalColdTierAge;
+    }
+
     /**
      * @return
      */
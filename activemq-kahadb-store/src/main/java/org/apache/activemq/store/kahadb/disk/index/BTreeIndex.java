@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.activemq.store.kahadb.disk.page.Page;
 import org.apache.activemq.store.kahadb.disk.page.PageFile;
 import org.apache.activemq.store.kahadb.disk.page.Transaction;
+import org.apache.activemq.store.kahadb.disk.util.LongMarshaller;
 import org.apache.activemq.store.kahadb.disk.util.Marshaller;
 
 /**
@@ -312,6 +313,14 @@ public class BTreeIndex<Key,Value> implements Index<Key,Value> {
         this.keyMarshaller = keyMarshaller;
     }
 
+    /**
+     * @return true if the keys are Longs stored with the LongMarshaller, in which
+     *         case the nodes keep their keys in primitive long arrays.
+     */
+    boolean isLongKeyed() {
+        return keyMarshaller != null && keyMarshaller.getClass() == LongMarshaller.class;
+    }
+
     public Marshaller<Value> getValueMarshaller() {
         return valueMarshaller;
     }
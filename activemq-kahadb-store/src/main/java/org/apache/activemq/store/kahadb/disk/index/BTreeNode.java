@@ -20,8 +20,10 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Map.Entry;
@@ -45,8 +47,12 @@ public final class BTreeNode<Key,Value> {
     // The page associated with this node
     private Page<BTreeNode<Key,Value>> page;
     
-    // Order list of keys in the node
+    // True if the index is keyed by Longs, the keys are then held in longKeys
+    private final boolean longKeyed;
+    // Order list of keys in the node. Null if the node is long keyed.
     private Key[] keys;
+    // Order list of primitive keys in the node. Null unless the node is long keyed.
+    private long[] longKeys;
     // Values associated with the Keys. Null if this is a branch node.
     private Value[] values;
     // nodeId pointers to children BTreeNodes. Null if this is a leaf node.
@@ -102,7 +108,7 @@ public final class BTreeNode<Key,Value> {
             
             try {
                 while( current!=null ) {
-                    if( nextIndex >= current.keys.length ) {
+                    if( nextIndex >= current.keyCount() ) {
                         // we need to roll to the next leaf..
                         if( current.next >= 0 ) {
                             current = index.loadNode(tx, current.next, null);
@@ -112,10 +118,10 @@ public final class BTreeNode<Key,Value> {
                             break;
                         }
                     }  else {
-                        if (endKey != null && current.keys[nextIndex].equals(endKey)) {
+                        if (endKey != null && current.keyAt(nextIndex).equals(endKey)) {
                             break;
                         }
-                        nextEntry = new KeyValueEntry(current.keys[nextIndex], current.values[nextIndex]);
+                        nextEntry = new KeyValueEntry(current.keyAt(nextIndex), current.values[nextIndex]);
                         nextIndex++;
                         break;
                     }
@@ -161,14 +167,22 @@ public final class BTreeNode<Key,Value> {
 
         public void writePayload(BTreeNode<Key,Value> node, DataOutput os) throws IOException {
             // Write the keys
-            short count = (short)node.keys.length; // cast may truncate value...
-            if( count != node.keys.length ) {
+            int keyCount = node.keyCount();
+            short count = (short)keyCount; // cast may truncate value...
+            if( count != keyCount ) {
                 throw new IOException("Too many keys");
             }
             
             os.writeShort(count);
-            for (int i = 0; i < node.keys.length; i++) {
-                index.getKeyMarshaller().writePayload(node.keys[i], os);
+            if( node.longKeyed ) {
+                // Same encoding as the LongMarshaller without boxing each key
+                for (int i = 0; i < keyCount; i++) {
+                    os.writeLong(node.longKeys[i]);
+                }
+            } else {
+                for (int i = 0; i < keyCount; i++) {
+                    index.getKeyMarshaller().writePayload(node.keys[i], os);
+                }
             }
             
             if( node.isBranch() ) {
@@ -193,9 +207,16 @@ public final class BTreeNode<Key,Value> {
             BTreeNode<Key,Value>  node = new BTreeNode<Key,Value>(index);
             int count = is.readShort();
             
-            node.keys = (Key[])new Object[count];
-            for (int i = 0; i < count; i++) {
-                node.keys[i] = index.getKeyMarshaller().readPayload(is);
+            if( node.longKeyed ) {
+                node.longKeys = new long[count];
+                for (int i = 0; i < count; i++) {
+                    node.longKeys[i] = is.readLong();
+                }
+            } else {
+                node.keys = (Key[])new Object[count];
+                for (int i = 0; i < count; i++) {
+                    node.keys[i] = index.getKeyMarshaller().readPayload(is);
+                }
             }
             
             if( is.readBoolean() ) {
@@ -216,10 +237,12 @@ public final class BTreeNode<Key,Value> {
 
     public BTreeNode(BTreeIndex<Key,Value> index) {
         this.index = index;
+        this.longKeyed = index.isLongKeyed();
     }
     
     public void setEmpty() {
-        setLeafData(createKeyArray(0), createValueArray(0));
+        clearKeys();
+        setLeafData(createValueArray(0));
     }
     
 
@@ -245,7 +268,7 @@ public final class BTreeNode<Key,Value> {
     private BTreeNode<Key,Value> getRightLeaf(Transaction tx) throws IOException {
         BTreeNode<Key,Value> cur = this;
         while(cur.isBranch()) {
-            cur = cur.getChild(tx, cur.keys.length);
+            cur = cur.getChild(tx, cur.keyCount());
         }
         return cur;
     }
@@ -286,7 +309,7 @@ public final class BTreeNode<Key,Value> {
     public Value remove(Transaction tx, Key key) throws IOException {
 
         if(isBranch()) {
-            int idx = Arrays.binarySearch(keys, key);
+            int idx = searchKey(key);
             idx = idx < 0 ? -(idx + 1) : idx + 1;
             BTreeNode<Key, Value> child = getChild(tx, idx);
             if( child.getPageId() == index.getPageId() ) {
@@ -295,7 +318,7 @@ public final class BTreeNode<Key,Value> {
             Value rc = child.remove(tx, key);
             
             // child node is now empty.. remove it from the branch node.
-            if( child.keys.length == 0 ) {
+            if( child.keyCount() == 0 ) {
                 
                 // If the child node is a branch, promote
                 if( child.isBranch() ) {
@@ -327,17 +350,19 @@ public final class BTreeNode<Key,Value> {
 
                     if( idx < children.length-1 ) {
                         // Delete it and key to the right.
-                        setBranchData(arrayDelete(keys, idx), arrayDelete(children, idx));
+                        deleteKey(idx);
                     } else {
                         // It was the last child.. Then delete it and key to the left
-                        setBranchData(arrayDelete(keys, idx-1), arrayDelete(children, idx));
+                        deleteKey(idx-1);
                     }
+                    setBranchData(arrayDelete(children, idx));
                     
                     // If we are the root node, and only have 1 child left.  Then 
                     // make the root be the leaf node.
                     if( children.length == 1 && parent==null ) {
                         child = getChild(tx, 0);
                         keys = child.keys;
+                        longKeys = child.longKeys;
                         children = child.children;
                         values = child.values;
                         // free up the page..
@@ -350,14 +375,15 @@ public final class BTreeNode<Key,Value> {
             
             return rc;
         } else {
-            int idx = Arrays.binarySearch(keys, key);
+            int idx = searchKey(key);
             if (idx < 0) {
                 return null;
             } else {
                 Value oldValue = values[idx];
-                setLeafData(arrayDelete(keys, idx), arrayDelete(values, idx));
+                deleteKey(idx);
+                setLeafData(arrayDelete(values, idx));
                 
-                if( keys.length==0 && parent!=null) {
+                if( keyCount()==0 && parent!=null) {
                     tx.free(getPage());
                 } else {
                     index.storeNode(tx, this, true);
@@ -376,18 +402,19 @@ public final class BTreeNode<Key,Value> {
         if( isBranch() ) {
             return getLeafNode(tx, this, key).put(tx, key, value);
         } else {
-            int idx = Arrays.binarySearch(keys, key);
+            int idx = searchKey(key);
             
             Value oldValue=null;
             if (idx >= 0) {
                 // Key was found... Overwrite
                 oldValue = values[idx];
                 values[idx] = value;
-                setLeafData(keys, values);
+                setLeafData(values);
             } else {
                 // Key was not found, Insert it
                 idx = -(idx + 1);
-                setLeafData(arrayInsert(keys, key, idx), arrayInsert(values, value, idx));
+                insertKey(idx, key);
+                setLeafData(arrayInsert(values, value, idx));
             }
             
             try {
@@ -403,9 +430,10 @@ public final class BTreeNode<Key,Value> {
 
     private void promoteValue(Transaction tx, Key key, long nodeId) throws IOException {
 
-        int idx = Arrays.binarySearch(keys, key);
+        int idx = searchKey(key);
         idx = idx < 0 ? -(idx + 1) : idx + 1;
-        setBranchData(arrayInsert(keys, key, idx), arrayInsert(children, nodeId, idx + 1));
+        insertKey(idx, key);
+        setBranchData(arrayInsert(children, nodeId, idx + 1));
 
         try {
             index.storeNode(tx, this, allowOverflow());
@@ -419,54 +447,53 @@ public final class BTreeNode<Key,Value> {
      * Internal to the BTreeNode method
      */
     private void split(Transaction tx) throws IOException {
-        Key[] leftKeys;
-        Key[] rightKeys;
+        int leftKeyCount;
+        int rightKeyStart;
+        int rightKeyCount;
         Value[] leftValues=null;
         Value[] rightValues=null;
         long[] leftChildren=null;
         long[] rightChildren=null;
         Key separator;
 
-        int vc = keys.length;
+        int vc = keyCount();
         int pivot = vc / 2;
 
         // Split the node into two nodes
         if( isBranch() ) {
 
-            leftKeys = createKeyArray(pivot);
-            leftChildren = new long[leftKeys.length + 1];
-            rightKeys = createKeyArray(vc - (pivot + 1));
-            rightChildren = new long[rightKeys.length + 1];
+            leftKeyCount = pivot;
+            leftChildren = new long[leftKeyCount + 1];
+            rightKeyStart = pivot + 1;
+            rightKeyCount = vc - (pivot + 1);
+            rightChildren = new long[rightKeyCount + 1];
 
-            System.arraycopy(keys, 0, leftKeys, 0, leftKeys.length);
             System.arraycopy(children, 0, leftChildren, 0, leftChildren.length);
-            System.arraycopy(keys, leftKeys.length + 1, rightKeys, 0, rightKeys.length);
             System.arraycopy(children, leftChildren.length, rightChildren, 0, rightChildren.length);
 
             // Is it a Simple Prefix BTree??
             Prefixer<Key> prefixer = index.getPrefixer();
             if(prefixer!=null) {
-                separator = prefixer.getSimplePrefix(leftKeys[leftKeys.length - 1], rightKeys[0]);
+                separator = prefixer.getSimplePrefix(keyAt(leftKeyCount - 1), keyAt(rightKeyStart));
             } else {
-                separator = keys[leftKeys.length];
+                separator = keyAt(leftKeyCount);
             }
                 
             
         } else {
 
-            leftKeys = createKeyArray(pivot);
-            leftValues = createValueArray(leftKeys.length);
-            rightKeys = createKeyArray(vc - pivot);
-            rightValues = createValueArray(rightKeys.length);
+            leftKeyCount = pivot;
+            leftValues = createValueArray(leftKeyCount);
+            rightKeyStart = pivot;
+            rightKeyCount = vc - pivot;
+            rightValues = createValueArray(rightKeyCount);
 
-            System.arraycopy(keys, 0, leftKeys, 0, leftKeys.length);
             System.arraycopy(values, 0, leftValues, 0, leftValues.length);
-            System.arraycopy(keys, leftKeys.length, rightKeys, 0, rightKeys.length);
             System.arraycopy(values, leftValues.length, rightValues, 0, rightValues.length);
 
             // separator = getSeparator(leftVals[leftVals.length - 1],
             // rightVals[0]);
-            separator = rightKeys[0];
+            separator = keyAt(rightKeyStart);
 
         }
 
@@ -477,18 +504,20 @@ public final class BTreeNode<Key,Value> {
             BTreeNode<Key,Value> rNode = this.index.createNode(tx, this);
             BTreeNode<Key,Value> lNode = this.index.createNode(tx, this);
 
+            copyKeys(rNode, rightKeyStart, rightKeyCount);
+            copyKeys(lNode, 0, leftKeyCount);
             if( isBranch() ) {
-                rNode.setBranchData(rightKeys, rightChildren);
-                lNode.setBranchData(leftKeys, leftChildren);
+                rNode.setBranchData(rightChildren);
+                lNode.setBranchData(leftChildren);
             } else {
-                rNode.setLeafData(rightKeys, rightValues);
-                lNode.setLeafData(leftKeys, leftValues);
+                rNode.setLeafData(rightValues);
+                lNode.setLeafData(leftValues);
                 lNode.setNext(rNode.getPageId());
             }
 
-            Key[] v = createKeyArray(1);
-            v[0]=separator;
-            setBranchData(v, new long[] { lNode.getPageId(), rNode.getPageId() });
+            clearKeys();
+            insertKey(0, separator);
+            setBranchData(new long[] { lNode.getPageId(), rNode.getPageId() });
 
             index.storeNode(tx, this, true);
             index.storeNode(tx, rNode, true);
@@ -497,14 +526,16 @@ public final class BTreeNode<Key,Value> {
         } else {
             BTreeNode<Key,Value> rNode = this.index.createNode(tx, parent);
             
+            copyKeys(rNode, rightKeyStart, rightKeyCount);
+            copyKeys(this, 0, leftKeyCount);
             if( isBranch() ) {
-                setBranchData(leftKeys, leftChildren);
-                rNode.setBranchData(rightKeys, rightChildren);
+                setBranchData(leftChildren);
+                rNode.setBranchData(rightChildren);
             } else {
                 rNode.setNext(next);
                 next = rNode.getPageId();
-                setLeafData(leftKeys, leftValues);
-                rNode.setLeafData(rightKeys, rightValues);
+                setLeafData(leftValues);
+                rNode.setLeafData(rightValues);
             }
 
             index.storeNode(tx, this, true);
@@ -528,7 +559,7 @@ public final class BTreeNode<Key,Value> {
                     out.println(prefix+"\\- "+child.getPageId()+(child.isBranch()?" ("+child.children.length+")":""));
                     child.printStructure(tx, out, prefix+"   ");
                 } else {
-                    out.println(prefix+"|- "+child.getPageId()+(child.isBranch()?" ("+child.children.length+")":"")+" : "+keys[i]);
+                    out.println(prefix+"|- "+child.getPageId()+(child.isBranch()?" ("+child.children.length+")":"")+" : "+keyAt(i));
                     child.printStructure(tx, out, prefix+"   ");
                 }
             }
@@ -569,7 +600,7 @@ public final class BTreeNode<Key,Value> {
         if( isBranch() ) {
             return getLeafNode(tx, this, key).get(tx, key);
         } else {
-            int idx = Arrays.binarySearch(keys, key);
+            int idx = searchKey(key);
             if (idx < 0) {
                 return null;
             } else {
@@ -579,7 +610,7 @@ public final class BTreeNode<Key,Value> {
     }
     
     public boolean isEmpty(final Transaction tx) throws IOException {
-        return keys.length==0;
+        return keyCount()==0;
     }
 
     public void visit(Transaction tx, BTreeVisitor<Key, Value> visitor) throws IOException {
@@ -590,11 +621,11 @@ public final class BTreeNode<Key,Value> {
             for(int i=0; i < this.children.length; i++) {
                 Key key1 = null;
                 if( i!=0 ) {
-                    key1 = keys[i-1];
+                    key1 = keyAt(i-1);
                 }
                 Key key2 = null;
                 if( i!=this.children.length-1 ) {
-                    key2 = keys[i];
+                    key2 = keyAt(i);
                 }
                 if( visitor.isInterestedInKeysBetween(key1, key2) ) {
                     BTreeNode<Key, Value> child = getChild(tx, i);
@@ -602,7 +633,7 @@ public final class BTreeNode<Key,Value> {
                 }
             }
         } else {
-            visitor.visit(Arrays.asList(keys), Arrays.asList(values));
+            visitor.visit(keyList(), Arrays.asList(values));
         }
     }
     
@@ -612,7 +643,7 @@ public final class BTreeNode<Key,Value> {
             node = node.getChild(tx, 0);
         }
         if( node.values.length>0 ) {
-            return new KeyValueEntry(node.keys[0], node.values[0]);
+            return new KeyValueEntry(node.keyAt(0), node.values[0]);
         } else {
             return null;
         }
@@ -625,7 +656,7 @@ public final class BTreeNode<Key,Value> {
         }
         if( node.values.length>0 ) {
             int idx = node.values.length-1;
-            return new KeyValueEntry(node.keys[idx], node.values[idx]);
+            return new KeyValueEntry(node.keyAt(idx), node.values[idx]);
         } else {
             return null;
         }
@@ -646,7 +677,7 @@ public final class BTreeNode<Key,Value> {
         if( isBranch() ) {
             return getLeafNode(tx, this, startKey).iterator(tx, startKey, endKey);
         } else {
-            int idx = Arrays.binarySearch(keys, startKey);
+            int idx = searchKey(startKey);
             if (idx < 0) {
                 idx = -(idx + 1);
             }
@@ -668,7 +699,8 @@ public final class BTreeNode<Key,Value> {
         }
         // Reset the root node to be a leaf.
         if( parent == null ) {
-            setLeafData(createKeyArray(0), createValueArray(0));
+            clearKeys();
+            setLeafData(createValueArray(0));
             next=-1;
             index.storeNode(tx, this, true);
         }
@@ -679,7 +711,7 @@ public final class BTreeNode<Key,Value> {
         BTreeNode<Key, Value> current = node;
         while( true ) {
             if( current.isBranch() ) {
-                int idx = Arrays.binarySearch(current.keys, key);
+                int idx = current.searchKey(key);
                 idx = idx < 0 ? -(idx + 1) : idx + 1;
                 BTreeNode<Key, Value> child = current.getChild(tx, idx);        
 
@@ -704,7 +736,7 @@ public final class BTreeNode<Key,Value> {
         if( isBranch() ) {
             return getLeafNode(tx, this, key).contains(tx, key);
         } else {
-            int idx = Arrays.binarySearch(keys, key);
+            int idx = searchKey(key);
             if (idx < 0) {
                 return false;
             } else {
@@ -720,22 +752,99 @@ public final class BTreeNode<Key,Value> {
 
     private boolean allowOverflow() {
         // Only allow page overflow if there are <= 3 keys in the node.  Otherwise a split will occur on overflow
-        return this.keys.length<=3;
+        return keyCount()<=3;
     }
 
 
-    private void setLeafData(Key[] keys, Value[] values) {
-        this.keys = keys;
+    private void setLeafData(Value[] values) {
         this.values = values;
         this.children = null;
     }
     
-    private void setBranchData(Key[] keys, long[] nodeIds) {
-        this.keys = keys;
+    private void setBranchData(long[] nodeIds) {
         this.children = nodeIds;
         this.values = null;
     }
 
+    ///////////////////////////////////////////////////////////////////
+    // Key storage, long keyed nodes keep their keys in a primitive array
+    // so that searches and page loads do not box every key.
+    ///////////////////////////////////////////////////////////////////
+
+    private int keyCount() {
+        return longKeyed ? longKeys.length : keys.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Key keyAt(int idx) {
+        return longKeyed ? (Key) Long.valueOf(longKeys[idx]) : keys[idx];
+    }
+
+    private int searchKey(Key key) {
+        if (longKeyed) {
+            return Arrays.binarySearch(longKeys, ((Long) key).longValue());
+        }
+        return Arrays.binarySearch(keys, key);
+    }
+
+    private void insertKey(int idx, Key key) {
+        if (longKeyed) {
+            longKeys = arrayInsert(longKeys, ((Long) key).longValue(), idx);
+        } else {
+            keys = arrayInsert(keys, key, idx);
+        }
+    }
+
+    private void deleteKey(int idx) {
+        if (longKeyed) {
+            longKeys = arrayDelete(longKeys, idx);
+        } else {
+            keys = arrayDelete(keys, idx);
+        }
+    }
+
+    private void clearKeys() {
+        if (longKeyed) {
+            longKeys = new long[0];
+        } else {
+            keys = createKeyArray(0);
+        }
+    }
+
+    /**
+     * Replaces the keys of the target node with a copy of a range of this node's keys.
+     */
+    private void copyKeys(BTreeNode<Key,Value> target, int from, int length) {
+        if (longKeyed) {
+            long[] copy = new long[length];
+            System.arraycopy(longKeys, from, copy, 0, length);
+            target.longKeys = copy;
+        } else {
+            Key[] copy = createKeyArray(length);
+            System.arraycopy(keys, from, copy, 0, length);
+            target.keys = copy;
+        }
+    }
+
+    private List<Key> keyList() {
+        if (!longKeyed) {
+            return Arrays.asList(keys);
+        }
+        final long[] snapshot = longKeys;
+        return new AbstractList<Key>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Key get(int idx) {
+                return (Key) Long.valueOf(snapshot[idx]);
+            }
+
+            @Override
+            public int size() {
+                return snapshot.length;
+            }
+        };
+    }
+
     @SuppressWarnings("unchecked")
     private Key[] createKeyArray(int size) {
         return (Key[])new Object[size];
@@ -833,7 +942,7 @@ public final class BTreeNode<Key,Value> {
     
     @Override
     public String toString() {
-        return "[BTreeNode "+(isBranch()?"branch":"leaf")+": "+Arrays.asList(keys)+"]";
+        return "[BTreeNode "+(isBranch()?"branch":"leaf")+": "+keyList()+"]";
     }
 
 }
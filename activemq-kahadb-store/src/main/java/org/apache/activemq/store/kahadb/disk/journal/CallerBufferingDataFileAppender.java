@@ -17,7 +17,6 @@
 package org.apache.activemq.store.kahadb.disk.journal;
 
 import java.io.IOException;
-import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 
 import org.apache.activemq.store.kahadb.disk.util.DataByteArrayOutputStream;
@@ -68,9 +67,7 @@ class CallerBufferingDataFileAppender extends DataFileAppender {
     private void initBuffer(DataByteArrayOutputStream buff) throws IOException {
         // Write an empty batch control record.
         buff.reset();
-        buff.write(Journal.BATCH_CONTROL_RECORD_HEADER);
-        buff.writeInt(0);
-        buff.writeLong(0);
+        buff.write(journal.getEmptyBatchControlRecord());
     }
 
     public CallerBufferingDataFileAppender(Journal dataManager) {
@@ -119,7 +116,7 @@ class CallerBufferingDataFileAppender extends DataFileAppender {
                             if (logger.isTraceEnabled()) {
                                 logger.trace("Syning file {} on rotate", dataFile.getFile().getName());
                             }
-                            file.sync();
+                            syncFile(file);
                         }
                         dataFile.closeRandomAccessFile(file);
                     }
@@ -137,7 +134,7 @@ class CallerBufferingDataFileAppender extends DataFileAppender {
                 buff.skip(5+Journal.BATCH_CONTROL_RECORD_MAGIC.length);
                 buff.writeInt(sequence.getLength()-Journal.BATCH_CONTROL_RECORD_SIZE);
                 if( journal.isChecksum() ) {
-                    Checksum checksum = new Adler32();
+                    Checksum checksum = journal.newBatchChecksum();
                     checksum.update(sequence.getData(), sequence.getOffset()+Journal.BATCH_CONTROL_RECORD_SIZE, sequence.getLength()-Journal.BATCH_CONTROL_RECORD_SIZE);
                     buff.writeLong(checksum.getValue());
                 }
@@ -162,7 +159,7 @@ class CallerBufferingDataFileAppender extends DataFileAppender {
                 }
 
                 if (forceToDisk) {
-                    file.sync();
+                    syncFile(file);
                 }
 
                 Journal.WriteCommand lastWrite = wb.writes.getTail();
@@ -191,7 +188,7 @@ class CallerBufferingDataFileAppender extends DataFileAppender {
                         if (logger.isTraceEnabled()) {
                             logger.trace("Syning file {} on close", dataFile.getFile().getName());
                         }
-                        file.sync();
+                        syncFile(file);
                     }
                     dataFile.closeRandomAccessFile(file);
                 }
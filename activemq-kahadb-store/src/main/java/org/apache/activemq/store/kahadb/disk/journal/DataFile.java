@@ -18,6 +18,10 @@ package org.apache.activemq.store.kahadb.disk.journal;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.activemq.store.kahadb.disk.util.LinkedNode;
 import org.apache.activemq.store.kahadb.disk.util.SequenceSet;
@@ -31,12 +35,14 @@ public class DataFile extends LinkedNode<DataFile> implements Comparable<DataFil
 
     public final static byte STANDARD_LOG_FILE = 0x0;
 
-    protected final File file;
+    // changes when the file is relocated to another directory
+    protected volatile File file;
     protected final Integer dataFileId;
     protected volatile int length;
     protected int typeCode = STANDARD_LOG_FILE;
     protected final SequenceSet corruptedBlocks = new SequenceSet();
     protected RecoverableRandomAccessFile appendRandomAccessFile;
+    private boolean removed;
 
     DataFile(File file, int number) {
         this.file = file;
@@ -88,6 +94,18 @@ public class DataFile extends LinkedNode<DataFile> implements Comparable<DataFil
         return appendRandomAccessFile;
     }
 
+    /**
+     * Opens a writer that appends with O_DSYNC, and with direct I/O when asked, instead of
+     * the random access file used for buffered appends, which is closed if it is open.
+     */
+    public synchronized DataFileChannelWriter openChannelWriter(boolean direct) throws IOException {
+        if (appendRandomAccessFile != null) {
+            appendRandomAccessFile.close();
+            appendRandomAccessFile = null;
+        }
+        return new DataFileChannelWriter(file, direct);
+    }
+
     public synchronized RecoverableRandomAccessFile openRandomAccessFile() throws IOException {
         return new RecoverableRandomAccessFile(file.getCanonicalPath(), "rw");
     }
@@ -100,13 +118,46 @@ public class DataFile extends LinkedNode<DataFile> implements Comparable<DataFil
     }
 
     public synchronized boolean delete() throws IOException {
+        removed = true;
         return file.delete();
     }
 
     public synchronized void move(File targetDirectory) throws IOException{
+        removed = true;
         IOHelper.moveFile(file, targetDirectory);
     }
 
+    /**
+     * Moves the file to another directory while it stays in use.  The content is copied without
+     * holding the lock of the data file, readers then open the file at its new location while
+     * the ones that opened it before keep reading the previous copy.  Must not be used on a file
+     * that is still appended to.
+     *
+     * @return false if the data file got removed meanwhile
+     */
+    public boolean relocate(File targetDirectory) throws IOException {
+        File source = file;
+        File target = new File(targetDirectory, source.getName());
+        File tmp = new File(targetDirectory, source.getName() + ".tmp");
+        Files.copy(source.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        synchronized (this) {
+            if (removed || file != source) {
+                tmp.delete();
+                return false;
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            file = target;
+            if (!source.delete()) {
+                throw new IOException("Failed to remove " + source + " after copying it to " + target);
+            }
+        }
+        return true;
+    }
+
     public SequenceSet getCorruptedBlocks() {
         return corruptedBlocks;
     }
@@ -117,6 +117,19 @@ public class DataFileAccessorPool {
         }
     }
 
+    /**
+     * Drops the idle readers of a data file that moved to another directory, so the next reads
+     * open it at its new location.  Readers in use keep reading the previous copy until the pool
+     * is disposed as unused.
+     */
+    synchronized void disposeRelocatedDataFileAccessors(DataFile dataFile) {
+        Pool pool = pools.get(dataFile.getDataFileId());
+        if (pool != null && !pool.isUsed()) {
+            pool.dispose();
+            pools.remove(dataFile.getDataFileId());
+        }
+    }
+
     synchronized DataFileAccessor openDataFileAccessor(DataFile dataFile) throws IOException {
         if (closed) {
             throw new IOException("Closed.");
@@ -20,11 +20,13 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 
+import org.apache.activemq.management.HistogramStatisticImpl;
 import org.apache.activemq.store.kahadb.disk.journal.Journal.JournalDiskSyncStrategy;
+import org.apache.activemq.store.kahadb.disk.journal.Journal.JournalWriteMode;
 import org.apache.activemq.store.kahadb.disk.util.DataByteArrayOutputStream;
 import org.apache.activemq.store.kahadb.disk.util.LinkedNodeList;
 import org.apache.activemq.util.ByteSequence;
@@ -33,7 +35,6 @@ import org.apache.activemq.util.RecoverableRandomAccessFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.apache.activemq.store.kahadb.disk.journal.Journal.EMPTY_BATCH_CONTROL_RECORD;
 import static org.apache.activemq.store.kahadb.disk.journal.Journal.RECORD_HEAD_SPACE;
 
 /**
@@ -56,6 +57,7 @@ class DataFileAppender implements FileAppender {
     protected int maxWriteBatchSize;
     protected final boolean syncOnComplete;
     protected final boolean periodicSync;
+    protected final JournalWriteMode writeMode;
 
     protected boolean running;
     private Thread thread;
@@ -112,6 +114,7 @@ class DataFileAppender implements FileAppender {
         this.syncOnComplete = this.journal.isEnableAsyncDiskSync();
         this.periodicSync = JournalDiskSyncStrategy.PERIODIC.equals(
                 this.journal.getJournalDiskSyncStrategy());
+        this.writeMode = this.journal.getJournalWriteMode();
     }
 
     @Override
@@ -252,8 +255,7 @@ class DataFileAppender implements FileAppender {
      * request in a group.
      */
     protected void processQueue() {
-        DataFile dataFile = null;
-        RecoverableRandomAccessFile file = null;
+        BatchWriter writer = new BatchWriter();
         WriteBatch wb = null;
         try (DataByteArrayOutputStream buff = new DataByteArrayOutputStream(maxWriteBatchSize);) {
 
@@ -275,73 +277,10 @@ class DataFileAppender implements FileAppender {
                     enqueueMutex.notifyAll();
                 }
 
-                if (dataFile != wb.dataFile) {
-                    if (file != null) {
-                        if (periodicSync) {
-                            if (logger.isTraceEnabled()) {
-                                logger.trace("Syncing file {} on rotate", dataFile.getFile().getName());
-                            }
-                            file.sync();
-                        }
-                        dataFile.closeRandomAccessFile(file);
-                    }
-                    dataFile = wb.dataFile;
-                    file = dataFile.appendRandomAccessFile();
-                }
-
-                Journal.WriteCommand write = wb.writes.getHead();
-
-                // Write an empty batch control record.
-                buff.reset();
-                buff.write(EMPTY_BATCH_CONTROL_RECORD);
-
-                boolean forceToDisk = false;
-                while (write != null) {
-                    forceToDisk |= write.sync | (syncOnComplete && write.onComplete != null);
-                    buff.writeInt(write.location.getSize());
-                    buff.writeByte(write.location.getType());
-                    buff.write(write.data.getData(), write.data.getOffset(), write.data.getLength());
-                    write = write.getNext();
-                }
-
-                // append 'unset', zero length next batch so read can always find eof
-                buff.write(Journal.EOF_RECORD);
-
-                ByteSequence sequence = buff.toByteSequence();
-
-                // Now we can fill in the batch control record properly.
-                buff.reset();
-                buff.skip(RECORD_HEAD_SPACE + Journal.BATCH_CONTROL_RECORD_MAGIC.length);
-                buff.writeInt(sequence.getLength() - Journal.BATCH_CONTROL_RECORD_SIZE - Journal.EOF_RECORD.length);
-                if( journal.isChecksum() ) {
-                    Checksum checksum = new Adler32();
-                    checksum.update(sequence.getData(), sequence.getOffset()+Journal.BATCH_CONTROL_RECORD_SIZE, sequence.getLength()-Journal.BATCH_CONTROL_RECORD_SIZE-Journal.EOF_RECORD.length);
-                    buff.writeLong(checksum.getValue());
-                }
+                ByteSequence sequence = assembleBatch(wb, buff);
 
                 // Now do the 1 big write.
-                file.seek(wb.offset);
-                if (maxStat > 0) {
-                    if (statIdx < maxStat) {
-                        stats[statIdx++] = sequence.getLength();
-                    } else {
-                        long all = 0;
-                        for (;statIdx > 0;) {
-                            all+= stats[--statIdx];
-                        }
-                        logger.info("Ave writeSize: " + all/maxStat);
-                    }
-                }
-                file.write(sequence.getData(), sequence.getOffset(), sequence.getLength());
-
-                ReplicationTarget replicationTarget = journal.getReplicationTarget();
-                if( replicationTarget!=null ) {
-                    replicationTarget.replicate(wb.writes.getHead().location, sequence, forceToDisk);
-                }
-
-                if (forceToDisk) {
-                    file.sync();
-                }
+                writer.write(wb, sequence, isForceToDisk(wb));
 
                 Journal.WriteCommand lastWrite = wb.writes.getTail();
                 journal.setLastAppendLocation(lastWrite.location);
@@ -362,15 +301,7 @@ class DataFileAppender implements FileAppender {
             }
         } finally {
             try {
-                if (file != null) {
-                    if (periodicSync) {
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Syning file {} on close", dataFile.getFile().getName());
-                        }
-                        file.sync();
-                    }
-                    dataFile.closeRandomAccessFile(file);
-                }
+                writer.close();
             } catch (Throwable ignore) {
             }
             shutdownDone.countDown();
@@ -378,6 +309,138 @@ class DataFileAppender implements FileAppender {
         }
     }
 
+    protected boolean isForceToDisk(WriteBatch wb) {
+        boolean forceToDisk = false;
+        Journal.WriteCommand write = wb.writes.getHead();
+        while (write != null) {
+            forceToDisk |= write.sync | (syncOnComplete && write.onComplete != null);
+            write = write.getNext();
+        }
+        return forceToDisk;
+    }
+
+    /**
+     * Copies the writes of a batch into the buffer, between the batch control record, with the
+     * size and checksum of the batch, and the EOF record.
+     */
+    protected ByteSequence assembleBatch(WriteBatch wb, DataByteArrayOutputStream buff) throws IOException {
+        Journal.WriteCommand write = wb.writes.getHead();
+
+        // Write an empty batch control record.
+        buff.reset();
+        buff.write(journal.getEmptyBatchControlRecord());
+
+        while (write != null) {
+            buff.writeInt(write.location.getSize());
+            buff.writeByte(write.location.getType());
+            buff.write(write.data.getData(), write.data.getOffset(), write.data.getLength());
+            write = write.getNext();
+        }
+
+        // append 'unset', zero length next batch so read can always find eof
+        buff.write(Journal.EOF_RECORD);
+
+        ByteSequence sequence = buff.toByteSequence();
+
+        // Now we can fill in the batch control record properly.
+        buff.reset();
+        buff.skip(RECORD_HEAD_SPACE + Journal.BATCH_CONTROL_RECORD_MAGIC.length);
+        buff.writeInt(sequence.getLength() - Journal.BATCH_CONTROL_RECORD_SIZE - Journal.EOF_RECORD.length);
+        if( journal.isChecksum() ) {
+            Checksum checksum = journal.newBatchChecksum();
+            checksum.update(sequence.getData(), sequence.getOffset()+Journal.BATCH_CONTROL_RECORD_SIZE, sequence.getLength()-Journal.BATCH_CONTROL_RECORD_SIZE-Journal.EOF_RECORD.length);
+            buff.writeLong(checksum.getValue());
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes assembled batches to their data files, moving on to the next file as the journal
+     * rotates.  Only used by one thread at a time.
+     */
+    protected class BatchWriter {
+
+        private DataFile dataFile;
+        private RecoverableRandomAccessFile file;
+        private DataFileChannelWriter channelWriter;
+
+        public void write(WriteBatch wb, ByteSequence sequence, boolean forceToDisk) throws IOException {
+            if (dataFile != wb.dataFile) {
+                closeFile("rotate");
+                dataFile = wb.dataFile;
+                if (writeMode == JournalWriteMode.BUFFERED) {
+                    file = dataFile.appendRandomAccessFile();
+                } else {
+                    channelWriter = dataFile.openChannelWriter(writeMode == JournalWriteMode.DIRECT);
+                }
+            }
+
+            if (maxStat > 0) {
+                if (statIdx < maxStat) {
+                    stats[statIdx++] = sequence.getLength();
+                } else {
+                    long all = 0;
+                    for (;statIdx > 0;) {
+                        all+= stats[--statIdx];
+                    }
+                    logger.info("Ave writeSize: " + all/maxStat);
+                }
+            }
+            if (channelWriter != null) {
+                // every write is synced, with O_DSYNC, by the time it returns
+                long start = System.nanoTime();
+                channelWriter.write(wb.offset, sequence.getData(), sequence.getOffset(), sequence.getLength());
+                recordSyncLatency(start);
+            } else {
+                file.seek(wb.offset);
+                file.write(sequence.getData(), sequence.getOffset(), sequence.getLength());
+            }
+
+            ReplicationTarget replicationTarget = journal.getReplicationTarget();
+            if( replicationTarget!=null ) {
+                replicationTarget.replicate(wb.writes.getHead().location, sequence, forceToDisk);
+            }
+
+            if (forceToDisk && file != null) {
+                syncFile(file);
+            }
+        }
+
+        public void close() throws IOException {
+            closeFile("close");
+        }
+
+        private void closeFile(String reason) throws IOException {
+            if (file != null) {
+                if (periodicSync) {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Syncing file {} on {}", dataFile.getFile().getName(), reason);
+                    }
+                    syncFile(file);
+                }
+                dataFile.closeRandomAccessFile(file);
+                file = null;
+            }
+            if (channelWriter != null) {
+                channelWriter.close();
+                channelWriter = null;
+            }
+        }
+    }
+
+    protected void syncFile(RecoverableRandomAccessFile file) throws IOException {
+        long start = System.nanoTime();
+        file.sync();
+        recordSyncLatency(start);
+    }
+
+    protected void recordSyncLatency(long start) {
+        HistogramStatisticImpl syncLatency = journal.getSyncLatency();
+        if (syncLatency != null) {
+            syncLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
     protected void signalDone(WriteBatch wb) {
         // Now that the data is on disk, remove the writes from the in
         // flight
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+/**
+ * Writes to a data file through a channel opened with DSYNC, so the data is on disk when a
+ * write returns and no separate sync of the file, with its metadata, is needed.
+ *
+ * With direct I/O the page cache is bypassed as well.  Writes then have to start at a block
+ * boundary, be a multiple of the block size and come from a buffer aligned to it, so the part
+ * of the block that a write starts in is written again, from the copy kept of the previous
+ * write or else read back from the file, and the last block is padded with zeros.  The padding
+ * is overwritten by the next write, a reader stops at the EOF record that ends every batch.
+ */
+public class DataFileChannelWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final boolean direct;
+    private final int blockSize;
+    private ByteBuffer buffer;
+
+    // the content of the file from tailPosition up to the end of the last write
+    private final byte[] tail;
+    private long tailPosition = -1;
+    private int tailLength;
+
+    public DataFileChannelWriter(File file, boolean direct) throws IOException {
+        Path path = file.toPath();
+        this.direct = direct;
+        if (direct) {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DSYNC, ExtendedOpenOption.DIRECT);
+            this.blockSize = (int) Files.getFileStore(path).getBlockSize();
+            this.tail = new byte[blockSize * 2];
+        } else {
+            this.blockSize = 1;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.DSYNC);
+            this.tail = null;
+        }
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Writes the data at the given position of the file, the data is on disk when this returns.
+     */
+    public void write(long position, byte[] data, int offset, int length) throws IOException {
+        if (!direct) {
+            ByteBuffer source = ByteBuffer.wrap(data, offset, length);
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+            return;
+        }
+
+        long start = position - position % blockSize;
+        int head = (int) (position - start);
+        int size = roundUp(head + length);
+        ByteBuffer buf = buffer(size);
+        if (head > 0) {
+            if (start >= tailPosition && start + head <= tailPosition + tailLength) {
+                buf.put(tail, (int) (start - tailPosition), head);
+            } else {
+                readBlock(start, buf);
+            }
+        }
+        buf.position(head);
+        buf.put(data, offset, length);
+        while (buf.position() < size) {
+            buf.put((byte) 0);
+        }
+        buf.flip();
+        long writePosition = start;
+        while (buf.hasRemaining()) {
+            writePosition += channel.write(buf, writePosition);
+        }
+
+        // keep the last two blocks, the next batch starts in them as it overwrites the EOF record
+        long end = position + length;
+        long lastBlock = end - end % blockSize;
+        tailPosition = Math.max(start, lastBlock - blockSize);
+        tailLength = (int) (end - tailPosition);
+        buf.position((int) (tailPosition - start));
+        buf.get(tail, 0, tailLength);
+    }
+
+    private void readBlock(long position, ByteBuffer buf) throws IOException {
+        buf.clear();
+        buf.limit(blockSize);
+        // a single aligned read, it comes back short at the end of the file
+        channel.read(buf, position);
+        while (buf.hasRemaining()) {
+            buf.put((byte) 0);
+        }
+        buf.clear();
+    }
+
+    private ByteBuffer buffer(int size) {
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size + blockSize).alignedSlice(blockSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private int roundUp(int size) {
+        return (size + blockSize - 1) / blockSize * blockSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -21,20 +21,26 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -43,15 +49,17 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 
+import org.apache.activemq.management.HistogramStatisticImpl;
+import org.apache.activemq.store.kahadb.disk.util.ChecksumAlgorithm;
 import org.apache.activemq.store.kahadb.disk.util.LinkedNode;
 import org.apache.activemq.store.kahadb.disk.util.LinkedNodeList;
 import org.apache.activemq.store.kahadb.disk.util.Sequence;
 import org.apache.activemq.util.ByteSequence;
 import org.apache.activemq.util.DataByteArrayInputStream;
 import org.apache.activemq.util.DataByteArrayOutputStream;
+import org.apache.activemq.util.IOExceptionSupport;
 import org.apache.activemq.util.IOHelper;
 import org.apache.activemq.util.RecoverableRandomAccessFile;
 import org.apache.activemq.util.ThreadPoolUtils;
@@ -74,9 +82,14 @@ public class Journal {
     public static final byte BATCH_CONTROL_RECORD_TYPE = 2;
     // Batch Control Item holds a 4 byte size of the batch and a 8 byte checksum of the batch.
     public static final byte[] BATCH_CONTROL_RECORD_MAGIC = bytes("WRITE BATCH");
+    // The magic of the batches of format version 2, their checksum is a CRC32C. Same length as
+    // the original magic, so the batch control records of both versions have the same size.
+    public static final byte[] BATCH_CONTROL_RECORD_MAGIC_CRC32C = bytes("WRITE CRC32");
     public static final int BATCH_CONTROL_RECORD_SIZE = RECORD_HEAD_SPACE + BATCH_CONTROL_RECORD_MAGIC.length + 4 + 8;
-    public static final byte[] BATCH_CONTROL_RECORD_HEADER = createBatchControlRecordHeader();
-    public static final byte[] EMPTY_BATCH_CONTROL_RECORD = createEmptyBatchControlRecordHeader();
+    public static final byte[] BATCH_CONTROL_RECORD_HEADER = createBatchControlRecordHeader(BATCH_CONTROL_RECORD_MAGIC);
+    public static final byte[] BATCH_CONTROL_RECORD_HEADER_CRC32C = createBatchControlRecordHeader(BATCH_CONTROL_RECORD_MAGIC_CRC32C);
+    public static final byte[] EMPTY_BATCH_CONTROL_RECORD = createEmptyBatchControlRecordHeader(BATCH_CONTROL_RECORD_MAGIC);
+    public static final byte[] EMPTY_BATCH_CONTROL_RECORD_CRC32C = createEmptyBatchControlRecordHeader(BATCH_CONTROL_RECORD_MAGIC_CRC32C);
     public static final int EOF_INT = ByteBuffer.wrap(new byte[]{'-', 'q', 'M', 'a'}).getInt();
     public static final byte EOF_EOT = '4';
     public static final byte[] EOF_RECORD = createEofBatchAndLocationRecord();
@@ -151,11 +164,17 @@ public class Journal {
         NEVER;
     }
 
-    private static byte[] createBatchControlRecordHeader() {
+    public enum JournalWriteMode {
+        BUFFERED,
+        DSYNC,
+        DIRECT;
+    }
+
+    private static byte[] createBatchControlRecordHeader(byte[] magic) {
         try (DataByteArrayOutputStream os = new DataByteArrayOutputStream();) {
             os.writeInt(BATCH_CONTROL_RECORD_SIZE);
             os.writeByte(BATCH_CONTROL_RECORD_TYPE);
-            os.write(BATCH_CONTROL_RECORD_MAGIC);
+            os.write(magic);
             ByteSequence sequence = os.toByteSequence();
             sequence.compact();
             return sequence.getData();
@@ -164,11 +183,11 @@ public class Journal {
         }
     }
 
-    private static byte[] createEmptyBatchControlRecordHeader() {
+    private static byte[] createEmptyBatchControlRecordHeader(byte[] magic) {
         try (DataByteArrayOutputStream os = new DataByteArrayOutputStream();) {
             os.writeInt(BATCH_CONTROL_RECORD_SIZE);
             os.writeByte(BATCH_CONTROL_RECORD_TYPE);
-            os.write(BATCH_CONTROL_RECORD_MAGIC);
+            os.write(magic);
             os.writeInt(0);
             os.writeLong(0l);
             ByteSequence sequence = os.toByteSequence();
@@ -197,6 +216,7 @@ public class Journal {
     public static final String DEFAULT_FILE_SUFFIX = ".log";
     public static final int DEFAULT_MAX_FILE_LENGTH = 1024 * 1024 * 32;
     public static final int DEFAULT_CLEANUP_INTERVAL = 1000 * 30;
+    public static final long DEFAULT_COLD_TIER_AGE = 1000 * 60 * 60;
     public static final int DEFAULT_MAX_WRITE_BATCH_SIZE = 1024 * 1024 * 4;
 
     private static final Logger LOG = LoggerFactory.getLogger(Journal.class);
@@ -223,10 +243,16 @@ public class Journal {
 
     protected final AtomicReference<Location> lastAppendLocation = new AtomicReference<Location>();
     protected ScheduledFuture cleanupTask;
+    protected ScheduledFuture tieringTask;
+    protected File directoryColdTier;
+    private long coldTierAge = DEFAULT_COLD_TIER_AGE;
     protected AtomicLong totalLength = new AtomicLong();
     protected boolean archiveDataLogs;
     private ReplicationTarget replicationTarget;
+    private HistogramStatisticImpl syncLatency;
     protected boolean checksum;
+    protected ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.ADLER32;
+    private int recoveryCheckThreads = Runtime.getRuntime().availableProcessors();
     protected boolean checkForCorruptionOnStartup;
     protected boolean enableAsyncDiskSync = true;
     private int nextDataFileId = 1;
@@ -241,6 +267,8 @@ public class Journal {
     private long cleanupInterval = DEFAULT_CLEANUP_INTERVAL;
 
     protected JournalDiskSyncStrategy journalDiskSyncStrategy = JournalDiskSyncStrategy.ALWAYS;
+    protected JournalWriteMode journalWriteMode = JournalWriteMode.BUFFERED;
+    protected boolean pipelinedAppender;
 
     public interface DataFileRemovedListener {
         void fileRemoved(DataFile datafile);
@@ -257,21 +285,26 @@ public class Journal {
         accessorPool = new DataFileAccessorPool(this);
         started = true;
 
-        appender = callerBufferAppender ? new CallerBufferingDataFileAppender(this) : new DataFileAppender(this);
+        appender = createAppender();
 
-        File[] files = directory.listFiles(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String n) {
-                return dir.equals(directory) && n.startsWith(filePrefix) && n.endsWith(fileSuffix);
-            }
-        });
+        List<File> files = listDataFiles(directory);
+        if (directoryColdTier != null) {
+            // the data files of the hot directory come first, they win over a copy left behind
+            // by a relocation that did not complete
+            files.addAll(listDataFiles(directoryColdTier));
+        }
 
-        if (files != null) {
+        if (!files.isEmpty()) {
             for (File file : files) {
                 try {
                     String n = file.getName();
                     String numStr = n.substring(filePrefix.length(), n.length()-fileSuffix.length());
                     int num = Integer.parseInt(numStr);
+                    if (fileMap.containsKey(num)) {
+                        LOG.info("Removing incomplete relocation of journal data file: {}", file);
+                        file.delete();
+                        continue;
+                    }
                     DataFile dataFile = new DataFile(file, num);
                     fileMap.put(dataFile.getDataFileId(), dataFile);
                     totalLength.addAndGet(dataFile.getLength());
@@ -284,6 +317,7 @@ public class Journal {
             // right order.
             LinkedList<DataFile> l = new LinkedList<>(fileMap.values());
             Collections.sort(l);
+            List<DataFile> toCheck = new ArrayList<>();
             for (DataFile df : l) {
                 if (df.getLength() == 0) {
                     // possibly the result of a previous failed write
@@ -296,9 +330,13 @@ public class Journal {
                 fileByFileMap.put(df.getFile(), df);
 
                 if( isCheckForCorruptionOnStartup() ) {
-                    lastAppendLocation.set(recoveryCheck(df));
+                    toCheck.add(df);
                 }
             }
+
+            if (!toCheck.isEmpty()) {
+                lastAppendLocation.set(recoveryCheck(toCheck));
+            }
         }
 
         if (preallocationScope != PreallocationScope.NONE) {
@@ -356,6 +394,31 @@ public class Journal {
             }
         }, cleanupInterval, cleanupInterval, TimeUnit.MILLISECONDS);
 
+        if (directoryColdTier != null) {
+            IOHelper.mkdirs(directoryColdTier);
+            File[] partialCopies = directoryColdTier.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String n) {
+                    return n.startsWith(filePrefix) && n.endsWith(fileSuffix + ".tmp");
+                }
+            });
+            if (partialCopies != null) {
+                for (File partialCopy : partialCopies) {
+                    partialCopy.delete();
+                }
+            }
+            tieringTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        relocateColdDataFiles();
+                    } catch (Throwable e) {
+                        LOG.warn("Failed to move cold journal data files to: {}", directoryColdTier, e);
+                    }
+                }
+            }, cleanupInterval, cleanupInterval, TimeUnit.MILLISECONDS);
+        }
+
         long end = System.currentTimeMillis();
         LOG.trace("Startup took: "+(end-start)+" ms");
     }
@@ -495,6 +558,56 @@ public class Journal {
         return false;
     }
 
+    /**
+     * Checks the data files on as many threads as recoveryCheckThreads allows, the files do not
+     * depend on each other.
+     *
+     * @return the end of the last data file
+     */
+    private Location recoveryCheck(List<DataFile> dataFiles) throws IOException {
+        int threads = Math.max(1, Math.min(dataFiles.size(), recoveryCheckThreads));
+        if (threads == 1) {
+            Location last = null;
+            for (DataFile dataFile : dataFiles) {
+                last = recoveryCheck(dataFile);
+            }
+            return last;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ActiveMQ Journal Recovery Check");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Location>> results = new ArrayList<>(dataFiles.size());
+            for (final DataFile dataFile : dataFiles) {
+                results.add(executor.submit(new Callable<Location>() {
+                    @Override
+                    public Location call() throws Exception {
+                        return recoveryCheck(dataFile);
+                    }
+                }));
+            }
+            Location last = null;
+            for (Future<Location> result : results) {
+                try {
+                    last = result.get();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } catch (ExecutionException e) {
+                    throw IOExceptionSupport.create(e.getCause());
+                }
+            }
+            return last;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     protected Location recoveryCheck(DataFile dataFile) throws IOException {
         Location location = new Location();
         location.setDataFileId(dataFile.getDataFileId());
@@ -550,9 +663,14 @@ public class Journal {
 
     private int findNextBatchRecord(ByteSequence bs, RandomAccessFile reader) throws IOException {
         final ByteSequence header = new ByteSequence(BATCH_CONTROL_RECORD_HEADER);
+        final ByteSequence headerCrc32c = new ByteSequence(BATCH_CONTROL_RECORD_HEADER_CRC32C);
         int pos = 0;
         while (true) {
             pos = bs.indexOf(header, 0);
+            int posCrc32c = bs.indexOf(headerCrc32c, 0);
+            if (posCrc32c >= 0 && (pos < 0 || posCrc32c < pos)) {
+                pos = posCrc32c;
+            }
             if (pos >= 0) {
                 bs.setOffset(bs.offset + pos);
                 return pos;
@@ -577,9 +695,14 @@ public class Journal {
         ensureAvailable(bs, reader, BATCH_CONTROL_RECORD_SIZE);
         try (DataByteArrayInputStream controlIs = new DataByteArrayInputStream(bs)) {
 
-            // Assert that it's a batch record.
+            // Assert that it's a batch record, of either format version.
+            boolean adler32 = true;
+            boolean crc32c = true;
             for (int i = 0; i < BATCH_CONTROL_RECORD_HEADER.length; i++) {
-                if (controlIs.readByte() != BATCH_CONTROL_RECORD_HEADER[i]) {
+                byte b = controlIs.readByte();
+                adler32 &= b == BATCH_CONTROL_RECORD_HEADER[i];
+                crc32c &= b == BATCH_CONTROL_RECORD_HEADER_CRC32C[i];
+                if (!adler32 && !crc32c) {
                     return -1;
                 }
             }
@@ -592,7 +715,7 @@ public class Journal {
             long expectedChecksum = controlIs.readLong();
             Checksum checksum = null;
             if (isChecksum() && expectedChecksum > 0) {
-                checksum = new Adler32();
+                checksum = crc32c ? ChecksumAlgorithm.CRC32C.newChecksum() : ChecksumAlgorithm.ADLER32.newChecksum();
             }
 
             // revert to bs to consume data
@@ -736,6 +859,10 @@ public class Journal {
                 return;
             }
             cleanupTask.cancel(true);
+            if (tieringTask != null) {
+                tieringTask.cancel(true);
+                tieringTask = null;
+            }
             if (preAllocateNextDataFileFuture != null) {
                 preAllocateNextDataFileFuture.cancel(true);
             }
@@ -753,6 +880,74 @@ public class Journal {
         }
     }
 
+    private FileAppender createAppender() {
+        if (callerBufferAppender) {
+            return new CallerBufferingDataFileAppender(this);
+        }
+        return pipelinedAppender ? new PipelinedDataFileAppender(this) : new DataFileAppender(this);
+    }
+
+    private List<File> listDataFiles(final File dataDirectory) {
+        List<File> rc = new ArrayList<>();
+        File[] files = dataDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String n) {
+                return dir.equals(dataDirectory) && n.startsWith(filePrefix) && n.endsWith(fileSuffix);
+            }
+        });
+        if (files != null) {
+            Collections.addAll(rc, files);
+        }
+        return rc;
+    }
+
+    /**
+     * Moves the data files that have not been written to for coldTierAge to the cold tier
+     * directory, one file per call.  Appends only go to the newest data file, so the files that
+     * are moved hold old messages that are still referenced, like those of a DLQ, that are
+     * read rarely if ever.
+     *
+     * @return true if a data file was moved
+     */
+    public boolean relocateColdDataFiles() throws IOException {
+        if (directoryColdTier == null) {
+            return false;
+        }
+        long coldBefore = System.currentTimeMillis() - coldTierAge;
+        DataFile coldest = null;
+        synchronized (currentDataFile) {
+            Location appendLocation = lastAppendLocation.get();
+            for (DataFile dataFile : fileMap.values()) {
+                // leave the file that is appended to, and those reserved for compaction after it
+                if (appendLocation == null || dataFile.getDataFileId() >= appendLocation.getDataFileId()) {
+                    continue;
+                }
+                File file = dataFile.getFile();
+                if (!directoryColdTier.equals(file.getParentFile()) && file.lastModified() <= coldBefore &&
+                    (coldest == null || dataFile.getDataFileId() < coldest.getDataFileId())) {
+                    coldest = dataFile;
+                }
+            }
+        }
+        if (coldest == null) {
+            return false;
+        }
+
+        File previous = coldest.getFile();
+        long start = System.currentTimeMillis();
+        if (!coldest.relocate(directoryColdTier)) {
+            return false;
+        }
+        synchronized (currentDataFile) {
+            if (fileByFileMap.remove(previous) != null) {
+                fileByFileMap.put(coldest.getFile(), coldest);
+            }
+        }
+        accessorPool.disposeRelocatedDataFileAccessors(coldest);
+        LOG.debug("Moved data file {} to {} in {} ms", coldest, directoryColdTier, System.currentTimeMillis() - start);
+        return true;
+    }
+
     public synchronized void cleanup() {
         if (accessorPool != null) {
             accessorPool.disposeUnused();
@@ -790,7 +985,7 @@ public class Journal {
         }
         // reopen open file handles...
         accessorPool = new DataFileAccessorPool(this);
-        appender = new DataFileAppender(this);
+        appender = createAppender();
         return result;
     }
 
@@ -1039,6 +1234,30 @@ public class Journal {
         return archiveDataLogs;
     }
 
+    public File getDirectoryColdTier() {
+        return directoryColdTier;
+    }
+
+    /**
+     * @param directoryColdTier where data files are moved to once they turn cold, null to keep
+     *        all data files in the journal directory
+     */
+    public void setDirectoryColdTier(File directoryColdTier) {
+        this.directoryColdTier = directoryColdTier;
+    }
+
+    public long getColdTierAge() {
+        return coldTierAge;
+    }
+
+    /**
+     * @param coldTierAge the time in milliseconds since the last write after which a data file
+     *        is moved to the cold tier directory
+     */
+    public void setColdTierAge(long coldTierAge) {
+        this.coldTierAge = coldTierAge;
+    }
+
     public void setArchiveDataLogs(boolean archiveDataLogs) {
         this.archiveDataLogs = archiveDataLogs;
     }
@@ -1104,6 +1323,17 @@ public class Journal {
         return replicationTarget;
     }
 
+    public HistogramStatisticImpl getSyncLatency() {
+        return syncLatency;
+    }
+
+    /**
+     * @param syncLatency optional histogram that records the time, in microseconds, of each journal sync
+     */
+    public void setSyncLatency(HistogramStatisticImpl syncLatency) {
+        this.syncLatency = syncLatency;
+    }
+
     public String getFileSuffix() {
         return fileSuffix;
     }
@@ -1120,6 +1350,43 @@ public class Journal {
         this.checksum = checksumWrites;
     }
 
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * @param checksumAlgorithm the checksum of the batches that are written, CRC32C batches
+     *        are written in format version 2 that older versions can not read.  Batches of
+     *        both versions are read whatever the setting.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * @return the empty batch control record a batch starts with, which gives the format
+     *         version of the batch
+     */
+    byte[] getEmptyBatchControlRecord() {
+        return checksum && checksumAlgorithm == ChecksumAlgorithm.CRC32C ? EMPTY_BATCH_CONTROL_RECORD_CRC32C : EMPTY_BATCH_CONTROL_RECORD;
+    }
+
+    Checksum newBatchChecksum() {
+        return checksumAlgorithm.newChecksum();
+    }
+
+    public int getRecoveryCheckThreads() {
+        return recoveryCheckThreads;
+    }
+
+    /**
+     * @param recoveryCheckThreads the number of data files checked at the same time when
+     *        checkForCorruptionOnStartup is set, defaults to the number of processors
+     */
+    public void setRecoveryCheckThreads(int recoveryCheckThreads) {
+        this.recoveryCheckThreads = recoveryCheckThreads;
+    }
+
     public boolean isCheckForCorruptionOnStartup() {
         return checkForCorruptionOnStartup;
     }
@@ -1156,6 +1423,32 @@ public class Journal {
         this.journalDiskSyncStrategy = journalDiskSyncStrategy;
     }
 
+    public JournalWriteMode getJournalWriteMode() {
+        return journalWriteMode;
+    }
+
+    /**
+     * @param journalWriteMode how appends are written: BUFFERED through the page cache with a
+     *        sync when one is needed, DSYNC with each write synced by the file system, or
+     *        DIRECT with O_DSYNC and direct I/O that bypasses the page cache.  Only applies
+     *        to the default appender, not to the caller buffering one.
+     */
+    public void setJournalWriteMode(JournalWriteMode journalWriteMode) {
+        this.journalWriteMode = journalWriteMode;
+    }
+
+    public boolean isPipelinedAppender() {
+        return pipelinedAppender;
+    }
+
+    /**
+     * @param pipelinedAppender when true the next batch is assembled and checksummed while the
+     *        previous one is written and synced, by a second thread
+     */
+    public void setPipelinedAppender(boolean pipelinedAppender) {
+        this.pipelinedAppender = pipelinedAppender;
+    }
+
     public boolean isJournalDiskSyncPeriodic() {
         return JournalDiskSyncStrategy.PERIODIC.equals(journalDiskSyncStrategy);
     }
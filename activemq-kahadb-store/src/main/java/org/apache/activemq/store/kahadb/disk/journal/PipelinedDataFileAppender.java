@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.journal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.activemq.store.kahadb.disk.util.DataByteArrayOutputStream;
+import org.apache.activemq.util.ByteSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A batch appender that splits the work of the writer thread in two stages, with a buffer for
+ * each.  The thread that takes the batches off the queue copies the writes of the next batch
+ * into one buffer and computes its checksum while a second thread writes and syncs the previous
+ * batch from the other buffer.  The write and the sync of a batch then no longer hold back the
+ * assembly of the next one, while batches are still written, and their completions signalled,
+ * in the order they were queued.
+ */
+class PipelinedDataFileAppender extends DataFileAppender {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedDataFileAppender.class);
+
+    private static final int BUFFERS = 2;
+    private static final AssembledBatch END = new AssembledBatch(null, null, null, false);
+
+    private final BlockingQueue<DataByteArrayOutputStream> freeBuffers = new ArrayBlockingQueue<DataByteArrayOutputStream>(BUFFERS);
+    private final BlockingQueue<AssembledBatch> assembled = new LinkedBlockingQueue<AssembledBatch>();
+
+    private static final class AssembledBatch {
+        final WriteBatch batch;
+        final DataByteArrayOutputStream buff;
+        final ByteSequence sequence;
+        final boolean forceToDisk;
+
+        AssembledBatch(WriteBatch batch, DataByteArrayOutputStream buff, ByteSequence sequence, boolean forceToDisk) {
+            this.batch = batch;
+            this.buff = buff;
+            this.sequence = sequence;
+            this.forceToDisk = forceToDisk;
+        }
+    }
+
+    public PipelinedDataFileAppender(Journal dataManager) {
+        super(dataManager);
+    }
+
+    /**
+     * The assembly stage, it hands the batches over to the write stage.
+     */
+    @Override
+    protected void processQueue() {
+        Thread writeThread = new Thread() {
+            @Override
+            public void run() {
+                writeQueue();
+            }
+        };
+        writeThread.setPriority(Thread.MAX_PRIORITY);
+        writeThread.setDaemon(true);
+        writeThread.setName("ActiveMQ Data File Sync Writer");
+        writeThread.start();
+
+        WriteBatch wb = null;
+        try {
+            freeBuffers.clear();
+            for (int i = 0; i < BUFFERS; i++) {
+                freeBuffers.add(new DataByteArrayOutputStream(maxWriteBatchSize));
+            }
+
+            while (true) {
+
+                // waits while the write stage holds the other buffer, the next batch keeps
+                // growing meanwhile
+                DataByteArrayOutputStream buff = freeBuffers.take();
+
+                // Block till we get a command.
+                synchronized (enqueueMutex) {
+                    while (true) {
+                        if (nextWriteBatch != null) {
+                            wb = nextWriteBatch;
+                            nextWriteBatch = null;
+                            break;
+                        }
+                        if (shutdown) {
+                            return;
+                        }
+                        enqueueMutex.wait();
+                    }
+                    enqueueMutex.notifyAll();
+                }
+
+                ByteSequence sequence;
+                try {
+                    sequence = assembleBatch(wb, buff);
+                } catch (Throwable error) {
+                    freeBuffers.add(buff);
+                    throw error;
+                }
+                assembled.put(new AssembledBatch(wb, buff, sequence, isForceToDisk(wb)));
+                wb = null;
+            }
+        } catch (Throwable error) {
+            logger.warn("Journal failed while assembling a batch", error);
+            failed(wb, error);
+        } finally {
+            assembled.add(END);
+            try {
+                writeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            shutdownDone.countDown();
+            running = false;
+        }
+    }
+
+    /**
+     * The write stage, once a write failed the batches that follow fail as well.
+     */
+    private void writeQueue() {
+        BatchWriter writer = new BatchWriter();
+        Throwable failure = null;
+        try {
+            while (true) {
+                AssembledBatch next;
+                try {
+                    next = assembled.take();
+                } catch (InterruptedException e) {
+                    // keep draining, the batches that are handed over still need to complete
+                    failure = e;
+                    failed(null, e);
+                    continue;
+                }
+                if (next == END) {
+                    return;
+                }
+                try {
+                    if (failure != null) {
+                        signalError(next.batch, failure);
+                        continue;
+                    }
+                    writer.write(next.batch, next.sequence, next.forceToDisk);
+
+                    Journal.WriteCommand lastWrite = next.batch.writes.getTail();
+                    journal.setLastAppendLocation(lastWrite.location);
+
+                    signalDone(next.batch);
+                } catch (Throwable error) {
+                    logger.warn("Journal failed while writing at: " + next.batch.dataFile.getDataFileId() + ":" + next.batch.offset, error);
+                    failure = error;
+                    failed(next.batch, error);
+                } finally {
+                    freeBuffers.add(next.buff);
+                }
+            }
+        } finally {
+            try {
+                writer.close();
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+
+    private void failed(WriteBatch wb, Throwable error) {
+        synchronized (enqueueMutex) {
+            shutdown = true;
+            signalError(wb, error);
+            if (nextWriteBatch != null) {
+                signalError(nextWriteBatch, error);
+                nextWriteBatch = null;
+            }
+            enqueueMutex.notifyAll();
+        }
+    }
+}
@@ -19,7 +19,6 @@ package org.apache.activemq.store.kahadb.disk.journal;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 
 import org.apache.activemq.store.kahadb.disk.util.DataByteArrayOutputStream;
@@ -213,11 +212,7 @@ public class TargetedDataFileAppender implements FileAppender {
 
             // Write an empty batch control record.
             buff.reset();
-            buff.writeInt(Journal.BATCH_CONTROL_RECORD_SIZE);
-            buff.writeByte(Journal.BATCH_CONTROL_RECORD_TYPE);
-            buff.write(Journal.BATCH_CONTROL_RECORD_MAGIC);
-            buff.writeInt(0);
-            buff.writeLong(0);
+            buff.write(journal.getEmptyBatchControlRecord());
 
             while (write != null) {
                 buff.writeInt(write.location.getSize());
@@ -235,7 +230,7 @@ public class TargetedDataFileAppender implements FileAppender {
             buff.skip(5 + Journal.BATCH_CONTROL_RECORD_MAGIC.length);
             buff.writeInt(sequence.getLength() - Journal.BATCH_CONTROL_RECORD_SIZE - Journal.EOF_RECORD.length);
             if (journal.isChecksum()) {
-                Checksum checksum = new Adler32();
+                Checksum checksum = journal.newBatchChecksum();
                 checksum.update(sequence.getData(),
                                 sequence.getOffset() + Journal.BATCH_CONTROL_RECORD_SIZE,
                                 sequence.getLength() - Journal.BATCH_CONTROL_RECORD_SIZE - Journal.EOF_RECORD.length);
@@ -0,0 +1,369 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.page;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A page cache that can be read without locking, using a W-TinyLFU style policy.
+ *
+ * Lookups only touch a ConcurrentHashMap, a reference bit on the entry and an approximate
+ * frequency sketch.  Inserts, updates and removals are serialized by a lock that maintains two
+ * CLOCK ordered regions: a small admission window that every new page enters, and a main region
+ * that a page leaving the window only joins when the sketch says it is used more often than the
+ * page it would evict.  A burst of pages that are read once (a scan) therefore does not flush the
+ * pages that are used all the time.
+ *
+ * The size of the cache is the sum of the weights of its pages, so it can be bounded in number of
+ * pages (a weight of 1 per page) or in bytes.
+ */
+class ConcurrentPageCache extends AbstractMap<Long, Page> {
+
+    // percentage of the maximum weight used for the admission window
+    private static final int WINDOW_PERCENT = 1;
+    // bounds the CLOCK sweep when readers keep setting the reference bits
+    private static final int MAX_SECOND_CHANCES = 64;
+
+    private final ConcurrentHashMap<Long, Node> data = new ConcurrentHashMap<Long, Node>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final ToIntFunction<Page> weigher;
+    private final long maximumWeight;
+    private final long windowMaximumWeight;
+
+    // guarded by evictionLock
+    private final Node window = new Node(null, null, 0);
+    private final Node main = new Node(null, null, 0);
+    private long windowWeight;
+    private long mainWeight;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maximumWeight the max total weight of the cached pages
+     * @param expectedSize the expected number of cached pages, used to size the frequency sketch
+     * @param weigher computes the weight of a page, it must not change while the page is cached
+     */
+    ConcurrentPageCache(long maximumWeight, long expectedSize, ToIntFunction<Page> weigher) {
+        this.maximumWeight = Math.max(1, maximumWeight);
+        this.windowMaximumWeight = Math.max(1, this.maximumWeight * WINDOW_PERCENT / 100);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedSize);
+        window.prev = window.next = window;
+        main.prev = main.next = main;
+    }
+
+    @Override
+    public Page get(Object key) {
+        Node node = data.get(key);
+        if (key instanceof Long) {
+            sketch.increment((Long) key);
+        }
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        node.referenced = true;
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public Page put(Long key, Page value) {
+        int weight = weigher.applyAsInt(value);
+        evictionLock.lock();
+        try {
+            Node node = data.get(key);
+            if (node != null) {
+                Page previous = node.value;
+                node.value = value;
+                adjustWeight(node, weight - node.weight);
+                node.weight = weight;
+                node.referenced = true;
+                evict();
+                return previous;
+            }
+
+            node = new Node(key, value, weight);
+            data.put(key, node);
+            node.linkBefore(window);
+            windowWeight += weight;
+            evict();
+            return null;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Page remove(Object key) {
+        evictionLock.lock();
+        try {
+            Node node = data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return node.value;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            data.clear();
+            window.prev = window.next = window;
+            main.prev = main.next = main;
+            windowWeight = 0;
+            mainWeight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * @return a snapshot of the cached pages.
+     */
+    @Override
+    public Set<Entry<Long, Page>> entrySet() {
+        Map<Long, Page> snapshot = new HashMap<Long, Page>();
+        for (Node node : data.values()) {
+            snapshot.put(node.key, node.value);
+        }
+        return snapshot.entrySet();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return windowWeight + mainWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    private void adjustWeight(Node node, long delta) {
+        if (node.inMain) {
+            mainWeight += delta;
+        } else {
+            windowWeight += delta;
+        }
+    }
+
+    private void unlink(Node node) {
+        node.unlink();
+        adjustWeight(node, -node.weight);
+    }
+
+    /**
+     * Moves the pages that overflow the window to the main region, where they either replace a
+     * page that is used less often or are dropped.
+     */
+    private void evict() {
+        while (windowWeight > windowMaximumWeight && window.next != window) {
+            Node candidate = nextVictim(window);
+            candidate.unlink();
+            windowWeight -= candidate.weight;
+            candidate.inMain = true;
+            candidate.linkBefore(main);
+            mainWeight += candidate.weight;
+
+            boolean admitted = true;
+            while (windowWeight + mainWeight > maximumWeight && main.next != main) {
+                Node victim = nextVictim(main);
+                if (admitted && victim != candidate &&
+                    sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    // the new page is not used more often than what it would replace
+                    victim = candidate;
+                }
+                if (victim == candidate) {
+                    admitted = false;
+                }
+                evict(victim);
+            }
+        }
+
+        // the window alone may exceed the max when pages are heavier than the max window weight
+        while (windowWeight + mainWeight > maximumWeight && window.next != window) {
+            evict(nextVictim(window));
+        }
+    }
+
+    private void evict(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictionCount.increment();
+    }
+
+    /**
+     * CLOCK: pages referenced since the hand last passed get a second chance at the tail.
+     */
+    private Node nextVictim(Node region) {
+        for (int scanned = 0; ; scanned++) {
+            Node node = region.next;
+            if (!node.referenced || node.next == region || scanned >= MAX_SECOND_CHANCES) {
+                node.referenced = false;
+                return node;
+            }
+            node.referenced = false;
+            node.unlink();
+            node.linkBefore(region);
+        }
+    }
+
+    private static final class Node {
+        final Long key;
+        volatile Page value;
+        volatile boolean referenced;
+        int weight;
+        boolean inMain;
+        Node prev;
+        Node next;
+
+        Node(Long key, Page value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        void linkBefore(Node head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+
+    /**
+     * A count-min sketch of 4 bit counters that estimates how often a page was accessed recently.
+     * The counters are halved once enough accesses were recorded so old popularity fades out.
+     * Updates are not atomic, an occasional lost increment does not matter for an estimate.
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int counterMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long expectedSize) {
+            int counters = 16;
+            while (counters < expectedSize && counters < (1 << 26)) {
+                counters <<= 1;
+            }
+            table = new long[Math.max(1, counters / 4)];
+            counterMask = table.length * 16 - 1;
+            sampleSize = 10 * counters;
+        }
+
+        void increment(long key) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(key, i);
+                int slot = index >>> 4;
+                int shift = (index & 15) << 2;
+                long mask = 0xfL << shift;
+                if ((table[slot] & mask) != mask) {
+                    table[slot] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(long key) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(key, i);
+                int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = additions >>> 1;
+        }
+
+        private int indexOf(long key, int i) {
+            long hash = (key + SEEDS[i]) * SEEDS[i];
+            hash ^= hash >>> 29;
+            return (int) hash & counterMask;
+        }
+    }
+}
@@ -26,6 +26,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -33,17 +35,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 
+import org.apache.activemq.store.kahadb.disk.util.ChecksumAlgorithm;
 import org.apache.activemq.store.kahadb.disk.util.Sequence;
 import org.apache.activemq.store.kahadb.disk.util.SequenceSet;
 import org.apache.activemq.util.DataByteArrayOutputStream;
@@ -51,7 +55,6 @@ import org.apache.activemq.util.IOExceptionSupport;
 import org.apache.activemq.util.IOHelper;
 import org.apache.activemq.util.IntrospectionSupport;
 import org.apache.activemq.util.LFUCache;
-import org.apache.activemq.util.LRUCache;
 import org.apache.activemq.util.RecoverableRandomAccessFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +78,7 @@ public class PageFile {
     public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("defaultPageSize", 1024*4);
     public static final int DEFAULT_WRITE_BATCH_SIZE = Integer.getInteger("defaultWriteBatchSize", 1000);
     public static final int DEFAULT_PAGE_CACHE_SIZE = Integer.getInteger("defaultPageCacheSize", 100);;
+    public static final int DEFAULT_MAX_COALESCED_PAGE_WRITES = Integer.getInteger("defaultMaxCoalescedPageWrites", 64);
 
     private static final int RECOVERY_FILE_HEADER_SIZE = 1024 * 4;
     private static final int PAGE_FILE_HEADER_SIZE = 1024 * 4;
@@ -116,14 +120,22 @@ public class PageFile {
     private boolean enablePageCaching = true;
     // How many pages will we keep in the cache?
     private int pageCacheSize = DEFAULT_PAGE_CACHE_SIZE;
+    // When set the cache is bounded by the estimated bytes of the cached pages instead of pageCacheSize
+    private long pageCacheMaxBytes = 0;
 
     // Should first log the page write to the recovery buffer? Avoids partial
     // page write failures..
     private boolean enableRecoveryFile = true;
+    // The checksum of the batches in the recovery file, recorded in its header
+    private ChecksumAlgorithm recoveryChecksumAlgorithm = ChecksumAlgorithm.ADLER32;
     // Will we sync writes to disk. Ensures that data will not be lost after a checkpoint()
     private boolean enableDiskSyncs = true;
     // Will writes be done in an async thread?
     private boolean enabledWriteThread = false;
+    // The max number of contiguous pages that are merged into a single write, 1 writes page by page.
+    private int maxCoalescedPageWrites = DEFAULT_MAX_COALESCED_PAGE_WRITES;
+    // Direct buffer used to stage coalesced writes, only touched by the thread doing the writeBatch.
+    private ByteBuffer coalescingBuffer;
 
     // These are used if enableAsyncWrites==true
     private final AtomicBoolean stopWriter = new AtomicBoolean();
@@ -132,6 +144,15 @@ public class PageFile {
 
     // Keeps track of writes that are being written to disk.
     private final TreeMap<Long, PageWrite> writes = new TreeMap<Long, PageWrite>();
+    // Same content as writes, lets page reads find a pending write without locking writes.
+    private final ConcurrentHashMap<Long, PageWrite> pendingWrites = new ConcurrentHashMap<Long, PageWrite>();
+
+    // Snapshot reads, all guarded by writes.  Every commit of page writes creates a new version, a
+    // snapshot transaction reads the pages as they were at the version it pinned.  While snapshots are
+    // pinned the content that commits replace is kept in supersededPages for as long as they need it.
+    private long committedVersion;
+    private final TreeMap<Long, Integer> pinnedSnapshots = new TreeMap<Long, Integer>();
+    private final HashMap<Long, LinkedList<SupersededPage>> supersededPages = new HashMap<Long, LinkedList<SupersededPage>>();
 
     // Keeps track of free pages.
     private final AtomicLong nextFreePageId = new AtomicLong();
@@ -154,11 +175,11 @@ public class PageFile {
      * Use to keep track of updated pages which have not yet been committed.
      */
     static class PageWrite {
-        Page page;
+        volatile Page page;
         byte[] current;
         byte[] diskBound;
         long currentLocation = -1;
-        long diskBoundLocation = -1;
+        volatile long diskBoundLocation = -1;
         File tmpFile;
         int length;
 
@@ -215,6 +236,33 @@ public class PageFile {
             return diskBound;
         }
 
+        /**
+         * @return the latest committed content of the page, or null once that content is only on
+         *         disk.  Must be called holding the writes lock.
+         */
+        byte[] getCommitted() throws IOException {
+            if (current != null) {
+                return current;
+            }
+            if (currentLocation != -1) {
+                return readTmpFile(currentLocation);
+            }
+            // diskBoundLocation is reset after diskBound got loaded from the tmp file
+            long location = diskBoundLocation;
+            if (location != -1) {
+                return readTmpFile(location);
+            }
+            return diskBound;
+        }
+
+        private byte[] readTmpFile(long location) throws IOException {
+            byte[] data = new byte[length];
+            try (RandomAccessFile file = new RandomAccessFile(tmpFile, "r")) {
+                file.getChannel().read(ByteBuffer.wrap(data), location);
+            }
+            return data;
+        }
+
         void begin() {
             if (currentLocation != -1) {
                 diskBoundLocation = currentLocation;
@@ -239,6 +287,20 @@ public class PageFile {
         }
     }
 
+    /**
+     * The content a page had before the commit of version supersededAt replaced it.
+     */
+    private static final class SupersededPage {
+        final long supersededAt;
+        // null when the page had never been written
+        final byte[] data;
+
+        SupersededPage(long supersededAt, byte[] data) {
+            this.supersededAt = supersededAt;
+            this.data = data;
+        }
+    }
+
     /**
      * The MetaData object hold the persistent data associated with a PageFile object.
      */
@@ -315,6 +377,120 @@ public class PageFile {
         return new Transaction(this);
     }
 
+    /**
+     * Creates a read only transaction that sees the pages as they were committed when it was
+     * created.  It neither waits for nor blocks concurrent writers, and must be ended with
+     * commit() or rollback() to release the snapshot.
+     */
+    public Transaction snapshotTx() {
+        assertLoaded();
+        synchronized (writes) {
+            long version = committedVersion;
+            Integer count = pinnedSnapshots.get(version);
+            pinnedSnapshots.put(version, count == null ? 1 : count + 1);
+            return new Transaction(this, version);
+        }
+    }
+
+    void releaseSnapshot(long version) {
+        synchronized (writes) {
+            Integer count = pinnedSnapshots.get(version);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                pinnedSnapshots.put(version, count - 1);
+                return;
+            }
+            pinnedSnapshots.remove(version);
+            if (pinnedSnapshots.isEmpty()) {
+                supersededPages.clear();
+            } else if (version < pinnedSnapshots.firstKey()) {
+                // no remaining snapshot needs the content replaced up to the oldest pinned version
+                long oldest = pinnedSnapshots.firstKey();
+                for (Iterator<LinkedList<SupersededPage>> iterator = supersededPages.values().iterator(); iterator.hasNext(); ) {
+                    LinkedList<SupersededPage> versions = iterator.next();
+                    while (!versions.isEmpty() && versions.getFirst().supersededAt <= oldest) {
+                        versions.removeFirst();
+                    }
+                    if (versions.isEmpty()) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a page as it was at the given version, used by snapshot transactions.
+     */
+    void readPage(long pageId, byte[] data, long version) throws IOException {
+        synchronized (writes) {
+            if (copySuperseded(pageId, data, version)) {
+                return;
+            }
+            PageWrite pending = writes.get(pageId);
+            byte[] committed = pending != null ? pending.getCommitted() : null;
+            if (committed != null) {
+                System.arraycopy(committed, 0, data, 0, Math.min(committed.length, data.length));
+                return;
+            }
+        }
+
+        readFile.getChannel().read(ByteBuffer.wrap(data), toOffset(pageId));
+
+        synchronized (writes) {
+            // a commit may have replaced the page while it was read, it kept the content we need
+            copySuperseded(pageId, data, version);
+        }
+    }
+
+    private boolean copySuperseded(long pageId, byte[] data, long version) {
+        LinkedList<SupersededPage> versions = supersededPages.get(pageId);
+        if (versions != null) {
+            for (SupersededPage superseded : versions) {
+                if (superseded.supersededAt > version) {
+                    if (superseded.data != null) {
+                        System.arraycopy(superseded.data, 0, data, 0, Math.min(superseded.data.length, data.length));
+                    } else {
+                        Arrays.fill(data, (byte) 0);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the content a commit is about to replace when a pinned snapshot may still read it.
+     */
+    private void recordSuperseded(long pageId, long version) throws IOException {
+        LinkedList<SupersededPage> versions = supersededPages.get(pageId);
+        long currentSince = versions == null || versions.isEmpty() ? Long.MIN_VALUE : versions.getLast().supersededAt;
+        if (pinnedSnapshots.lastKey() < currentSince) {
+            return;
+        }
+
+        byte[] data;
+        PageWrite pending = writes.get(pageId);
+        byte[] committed = pending != null ? pending.getCommitted() : null;
+        if (committed != null) {
+            data = Arrays.copyOf(committed, pageSize);
+        } else if (toOffset(pageId) + pageSize <= readFile.length()) {
+            data = new byte[pageSize];
+            readFile.getChannel().read(ByteBuffer.wrap(data), toOffset(pageId));
+        } else {
+            data = null;
+        }
+
+        if (versions == null) {
+            versions = new LinkedList<SupersededPage>();
+            supersededPages.put(pageId, versions);
+        }
+        versions.add(new SupersededPage(version, data));
+    }
+
     /**
      * Creates a PageFile in the specified directory who's data files are named by name.
      */
@@ -381,8 +557,10 @@ public class PageFile {
             if (enablePageCaching) {
                 if (isUseLFRUEviction()) {
                     pageCache = Collections.synchronizedMap(new LFUCache<Long, Page>(pageCacheSize, getLFUEvictionFactor()));
+                } else if (pageCacheMaxBytes > 0) {
+                    pageCache = new ConcurrentPageCache(pageCacheMaxBytes, pageCacheMaxBytes / pageSize, this::estimatePageBytes);
                 } else {
-                    pageCache = Collections.synchronizedMap(new LRUCache<Long, Page>(pageCacheSize, pageCacheSize, 0.75f, true));
+                    pageCache = new ConcurrentPageCache(pageCacheSize, pageCacheSize, page -> 1);
                 }
             }
 
@@ -547,8 +725,12 @@ public class PageFile {
                 if (pageCache != null) {
                     pageCache = null;
                 }
+                coalescingBuffer = null;
                 synchronized (writes) {
                     writes.clear();
+                    pendingWrites.clear();
+                    pinnedSnapshots.clear();
+                    supersededPages.clear();
                 }
             }
         } else {
@@ -751,6 +933,18 @@ public class PageFile {
         this.enableRecoveryFile = doubleBuffer;
     }
 
+    public ChecksumAlgorithm getRecoveryChecksumAlgorithm() {
+        return recoveryChecksumAlgorithm;
+    }
+
+    /**
+     * @param recoveryChecksumAlgorithm the checksum of the page writes landed in the recovery
+     *        file. The recovery file records it, so a file written with either one is recovered.
+     */
+    public void setRecoveryChecksumAlgorithm(ChecksumAlgorithm recoveryChecksumAlgorithm) {
+        this.recoveryChecksumAlgorithm = recoveryChecksumAlgorithm;
+    }
+
     /**
      * @return Are page writes synced to disk?
      */
@@ -823,6 +1017,38 @@ public class PageFile {
         this.pageCacheSize = pageCacheSize;
     }
 
+    /**
+     * @return the max estimated bytes of the pages in the read page cache, 0 when bounded by page count.
+     */
+    public long getPageCacheMaxBytes() {
+        return pageCacheMaxBytes;
+    }
+
+    /**
+     * @param pageCacheMaxBytes bounds the read page cache by the estimated bytes of the cached pages
+     *        instead of the page count, 0 (the default) uses the pageCacheSize.  Not used with LFRU eviction.
+     */
+    public void setPageCacheMaxBytes(long pageCacheMaxBytes) {
+        assertNotLoaded();
+        this.pageCacheMaxBytes = pageCacheMaxBytes;
+    }
+
+    /**
+     * @return the max number of contiguous pages merged into a single write when a batch is flushed.
+     */
+    public int getMaxCoalescedPageWrites() {
+        return maxCoalescedPageWrites;
+    }
+
+    /**
+     * Sets the max number of contiguous pages that are merged into a single write when a batch is
+     * flushed to the page file and the recovery file.  A value of 1 writes the pages one at a time.
+     */
+    public void setMaxCoalescedPageWrites(int maxCoalescedPageWrites) {
+        assertNotLoaded();
+        this.maxCoalescedPageWrites = Math.max(1, maxCoalescedPageWrites);
+    }
+
     public boolean isEnabledWriteThread() {
         return enabledWriteThread;
     }
@@ -1020,12 +1246,20 @@ public class PageFile {
 
             boolean longTx = false;
 
+            long version = ++committedVersion;
+            if (!pinnedSnapshots.isEmpty()) {
+                for (Map.Entry<Long, PageWrite> entry : updates) {
+                    recordSuperseded(entry.getKey(), version);
+                }
+            }
+
             for (Map.Entry<Long, PageWrite> entry : updates) {
                 Long key = entry.getKey();
                 PageWrite value = entry.getValue();
                 PageWrite write = writes.get(key);
                 if (write == null) {
                     writes.put(key, value);
+                    pendingWrites.put(key, value);
                 } else {
                     if (value.currentLocation != -1) {
                         write.setCurrentLocation(value.page, value.currentLocation, value.length);
@@ -1067,11 +1301,9 @@ public class PageFile {
     ///////////////////////////////////////////////////////////////////
     @SuppressWarnings("unchecked")
     <T> Page<T> getFromCache(long pageId) {
-        synchronized (writes) {
-            PageWrite pageWrite = writes.get(pageId);
-            if (pageWrite != null) {
-                return pageWrite.page;
-            }
+        PageWrite pageWrite = pendingWrites.get(pageId);
+        if (pageWrite != null) {
+            return pageWrite.page;
         }
 
         Page<T> result = null;
@@ -1093,6 +1325,42 @@ public class PageFile {
         }
     }
 
+    /**
+     * Estimates the bytes a cached page stands for from the size it takes on disk.
+     */
+    private int estimatePageBytes(Page page) {
+        if (page.getType() == Page.PAGE_END_TYPE) {
+            return (int) Math.max(Page.PAGE_HEADER_SIZE, Math.min(page.getNext(), pageSize));
+        } else if (page.getType() == Page.PAGE_PART_TYPE) {
+            return pageSize;
+        }
+        return Page.PAGE_HEADER_SIZE;
+    }
+
+    /**
+     * @return the number of page cache lookups that found the page, only tracked by the default cache.
+     */
+    public long getPageCacheHitCount() {
+        Map<Long, Page> cache = pageCache;
+        return cache instanceof ConcurrentPageCache ? ((ConcurrentPageCache) cache).getHitCount() : 0;
+    }
+
+    /**
+     * @return the number of page cache lookups that missed, only tracked by the default cache.
+     */
+    public long getPageCacheMissCount() {
+        Map<Long, Page> cache = pageCache;
+        return cache instanceof ConcurrentPageCache ? ((ConcurrentPageCache) cache).getMissCount() : 0;
+    }
+
+    /**
+     * @return the number of pages evicted from the page cache, only tracked by the default cache.
+     */
+    public long getPageCacheEvictionCount() {
+        Map<Long, Page> cache = pageCache;
+        return cache instanceof ConcurrentPageCache ? ((ConcurrentPageCache) cache).getEvictionCount() : 0;
+    }
+
     ///////////////////////////////////////////////////////////////////
     // Internal Double write implementation follows...
     ///////////////////////////////////////////////////////////////////
@@ -1151,18 +1419,23 @@ public class PageFile {
 
             // First land the writes in the recovery file
             if (enableRecoveryFile) {
-                Checksum checksum = new Adler32();
+                ChecksumAlgorithm checksumAlgorithm = recoveryChecksumAlgorithm;
+                Checksum checksum = checksumAlgorithm.newChecksum();
 
-                recoveryFile.seek(RECOVERY_FILE_HEADER_SIZE);
+                if (maxCoalescedPageWrites > 1) {
+                    writeRecoveryRecords(batch, checksum);
+                } else {
+                    recoveryFile.seek(RECOVERY_FILE_HEADER_SIZE);
 
-                for (PageWrite w : batch) {
-                    try {
-                        checksum.update(w.getDiskBound(tmpFilesForRemoval), 0, pageSize);
-                    } catch (Throwable t) {
-                        throw IOExceptionSupport.create("Cannot create recovery file. Reason: " + t, t);
+                    for (PageWrite w : batch) {
+                        try {
+                            checksum.update(w.getDiskBound(tmpFilesForRemoval), 0, pageSize);
+                        } catch (Throwable t) {
+                            throw IOExceptionSupport.create("Cannot create recovery file. Reason: " + t, t);
+                        }
+                        recoveryFile.writeLong(w.page.getPageId());
+                        recoveryFile.write(w.getDiskBound(tmpFilesForRemoval), 0, pageSize);
                     }
-                    recoveryFile.writeLong(w.page.getPageId());
-                    recoveryFile.write(w.getDiskBound(tmpFilesForRemoval), 0, pageSize);
                 }
 
                 // Can we shrink the recovery buffer??
@@ -1181,16 +1454,22 @@ public class PageFile {
                 recoveryFile.writeLong(checksum.getValue());
                 // Write the # of pages that will follow
                 recoveryFile.writeInt(batch.size());
+                // and the checksum algorithm, 0 for the Adler32 of the files written before it was recorded
+                recoveryFile.writeInt(checksumAlgorithm.ordinal());
 
                 if (enableDiskSyncs) {
                     recoveryFile.sync();
                 }
             }
 
-            for (PageWrite w : batch) {
-                writeFile.seek(toOffset(w.page.getPageId()));
-                writeFile.write(w.getDiskBound(tmpFilesForRemoval), 0, pageSize);
-                w.done();
+            if (maxCoalescedPageWrites > 1) {
+                writeCoalescedPages(batch);
+            } else {
+                for (PageWrite w : batch) {
+                    writeFile.seek(toOffset(w.page.getPageId()));
+                    writeFile.write(w.getDiskBound(tmpFilesForRemoval), 0, pageSize);
+                    w.done();
+                }
             }
 
             if (enableDiskSyncs) {
@@ -1210,6 +1489,7 @@ public class PageFile {
                     // the write cache.
                     if (w.isDone()) {
                         writes.remove(w.page.getPageId());
+                        pendingWrites.remove(w.page.getPageId());
                         if (w.tmpFile != null && tmpFilesForRemoval.containsKey(w.tmpFile)) {
                             tmpFilesForRemoval.get(w.tmpFile).close();
                             if (!w.tmpFile.delete()) {
@@ -1227,6 +1507,78 @@ public class PageFile {
         }
     }
 
+    /**
+     * Lands the (pageId, page) records of the batch in the recovery file using a few large
+     * sequential writes instead of two writes per page.
+     */
+    private void writeRecoveryRecords(ArrayList<PageWrite> batch, Checksum checksum) throws IOException {
+        ByteBuffer buffer = getCoalescingBuffer();
+        FileChannel channel = recoveryFile.getChannel();
+        long position = RECOVERY_FILE_HEADER_SIZE;
+
+        buffer.clear();
+        for (PageWrite w : batch) {
+            byte[] data;
+            try {
+                data = w.getDiskBound(tmpFilesForRemoval);
+                checksum.update(data, 0, pageSize);
+            } catch (Throwable t) {
+                throw IOExceptionSupport.create("Cannot create recovery file. Reason: " + t, t);
+            }
+            if (buffer.remaining() < pageSize + 8) {
+                position += writeFully(channel, buffer, position);
+            }
+            buffer.putLong(w.page.getPageId());
+            buffer.put(data, 0, pageSize);
+        }
+        writeFully(channel, buffer, position);
+    }
+
+    /**
+     * Writes the batch to the page file merging runs of contiguous pages into a single
+     * positional write. The batch comes out of the writes map so it is already in page id order.
+     */
+    private void writeCoalescedPages(ArrayList<PageWrite> batch) throws IOException {
+        ByteBuffer buffer = getCoalescingBuffer();
+        FileChannel channel = writeFile.getChannel();
+
+        int runStart = 0;
+        while (runStart < batch.size()) {
+            long firstPageId = batch.get(runStart).page.getPageId();
+            int runEnd = runStart;
+            buffer.clear();
+            do {
+                buffer.put(batch.get(runEnd).getDiskBound(tmpFilesForRemoval), 0, pageSize);
+                runEnd++;
+            } while (runEnd < batch.size() && runEnd - runStart < maxCoalescedPageWrites &&
+                     batch.get(runEnd).page.getPageId() == firstPageId + (runEnd - runStart));
+
+            writeFully(channel, buffer, toOffset(firstPageId));
+            for (int i = runStart; i < runEnd; i++) {
+                batch.get(i).done();
+            }
+            runStart = runEnd;
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private ByteBuffer getCoalescingBuffer() {
+        int capacity = maxCoalescedPageWrites * (pageSize + 8);
+        if (coalescingBuffer == null || coalescingBuffer.capacity() < capacity) {
+            coalescingBuffer = ByteBuffer.allocateDirect(capacity);
+        }
+        return coalescingBuffer;
+    }
+
     public void removeTmpFile(File file, RandomAccessFile randomAccessFile) throws IOException {
         if (!tmpFilesForRemoval.containsKey(file)) {
             tmpFilesForRemoval.put(file, randomAccessFile);
@@ -1272,9 +1624,14 @@ public class PageFile {
         long nextTxId = recoveryFile.readLong();
         long expectedChecksum = recoveryFile.readLong();
         int pageCounter = recoveryFile.readInt();
+        int algorithm = recoveryFile.readInt();
+        if (algorithm < 0 || algorithm >= ChecksumAlgorithm.values().length) {
+            LOG.debug("Redo buffer has an unknown checksum algorithm: {}", algorithm);
+            return nextTxId;
+        }
 
         recoveryFile.seek(RECOVERY_FILE_HEADER_SIZE);
-        Checksum checksum = new Adler32();
+        Checksum checksum = ChecksumAlgorithm.values()[algorithm].newChecksum();
         LinkedHashMap<Long, byte[]> batch = new LinkedHashMap<Long, byte[]>();
         try {
             for (int i = 0; i < pageCounter; i++) {
@@ -108,10 +108,20 @@ public class Transaction implements Iterable<Page> {
 
     private long size = 0;
 
+    // The page version a snapshot transaction reads, -1 for a regular transaction
+    private long snapshotVersion = -1;
+    // Set once a snapshot transaction ended and released its version
+    private boolean released;
+
     Transaction(PageFile pageFile) {
         this.pageFile = pageFile;
     }
 
+    Transaction(PageFile pageFile, long snapshotVersion) {
+        this.pageFile = pageFile;
+        this.snapshotVersion = snapshotVersion;
+    }
+
     /**
      * @return the page file that created this Transaction
      */
@@ -143,6 +153,7 @@ public class Transaction implements Iterable<Page> {
      *         if the PageFile is not loaded
      */
     public <T> Page<T> allocate(int count) throws IOException {
+        assertWritable();
         Page<T> rc = pageFile.allocate(count);
         allocateList.add(new Sequence(rc.getPageId(), rc.getPageId()+count-1));
         return rc;
@@ -212,6 +223,7 @@ public class Transaction implements Iterable<Page> {
      */
     public <T> void free(Page<T> page) throws IOException {
         pageFile.assertLoaded();
+        assertWritable();
 
         // We may need loop to free up a page chain.
         while (page != null) {
@@ -269,6 +281,7 @@ public class Transaction implements Iterable<Page> {
      */
     public OutputStream openOutputStream(Page page, final boolean overflow) throws IOException {
         pageFile.assertLoaded();
+        assertWritable();
 
         // Copy to protect against the end user changing
         // the page instance while we are doing a write.
@@ -405,6 +418,23 @@ public class Transaction implements Iterable<Page> {
             throw new InvalidPageIOException("Page id is not valid", pageId);
         }
 
+        if (isSnapshot()) {
+            // the shared cache holds the latest pages and the instances writers modify in place,
+            // so a snapshot reads its own copies and never caches them
+            if (marshaller != null) {
+                InputStream is = openInputStream(page);
+                DataInputStream dataIn = new DataInputStream(is);
+                page.set(marshaller.readPayload(dataIn));
+                is.close();
+            } else {
+                DataByteArrayInputStream in = new DataByteArrayInputStream(new byte[Page.PAGE_HEADER_SIZE]);
+                readPage(pageId, in.getRawData());
+                page.read(in);
+                page.set(null);
+            }
+            return;
+        }
+
         // It might be a page this transaction has modified...
         PageWrite update = writes.get(pageId);
         if (update != null) {
@@ -457,7 +487,7 @@ public class Transaction implements Iterable<Page> {
             private Page readPage(Page page) throws IOException {
                 // Read the page data
 
-                pageFile.readPage(page.getPageId(), chunk.getData());
+                Transaction.this.readPage(page.getPageId(), chunk.getData());
 
                 chunk.setOffset(0);
                 chunk.setLength(pageFile.getPageSize());
@@ -658,6 +688,10 @@ public class Transaction implements Iterable<Page> {
      * with the transaction are written to disk or none will.
      */
     public void commit() throws IOException {
+        if (isSnapshot()) {
+            releaseSnapshot();
+            return;
+        }
         if( writeTransactionId!=-1 ) {
             if (tmpFile != null) {
                 LOG.debug("Committing transaction {}: Size {} kb", writeTransactionId, tmpFile.length() / (1024));
@@ -684,6 +718,10 @@ public class Transaction implements Iterable<Page> {
      * Rolls back the transaction.
      */
     public void rollback() throws IOException {
+        if (isSnapshot()) {
+            releaseSnapshot();
+            return;
+        }
         if( writeTransactionId!=-1 ) {
             if (tmpFile != null) {
                 tmpFile.close();
@@ -704,6 +742,37 @@ public class Transaction implements Iterable<Page> {
         size = 0;
     }
 
+    private void releaseSnapshot() {
+        if (!released) {
+            released = true;
+            pageFile.releaseSnapshot(snapshotVersion);
+        }
+    }
+
+    private void readPage(long pageId, byte[] data) throws IOException {
+        if (isSnapshot()) {
+            if (released) {
+                throw new IllegalStateException("Snapshot transaction already ended");
+            }
+            pageFile.readPage(pageId, data, snapshotVersion);
+        } else {
+            pageFile.readPage(pageId, data);
+        }
+    }
+
+    private void assertWritable() {
+        if (isSnapshot()) {
+            throw new IllegalStateException("Snapshot transactions are read only");
+        }
+    }
+
+    /**
+     * @return true if this is a read only transaction created by {@link PageFile#snapshotTx()}.
+     */
+    public boolean isSnapshot() {
+        return snapshotVersion != -1;
+    }
+
     private long getWriteTransactionId() {
         if( writeTransactionId==-1 ) {
             writeTransactionId = pageFile.getNextWriteTransactionId();
@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.util;
+
+import java.util.zip.Adler32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * The checksums used to detect torn or corrupt writes in the journal and the page file
+ * recovery buffer.  ADLER32 is the original format, CRC32C is computed with the CRC32
+ * instructions of the CPU where the JVM has an intrinsic for them and detects more errors.
+ */
+public enum ChecksumAlgorithm {
+    // the page file recovery buffer records the ordinal, new algorithms go at the end
+    ADLER32,
+    CRC32C;
+
+    public Checksum newChecksum() {
+        return this == CRC32C ? new CRC32C() : new Adler32();
+    }
+}
@@ -21,6 +21,8 @@ import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import org.apache.activemq.store.kahadb.disk.journal.DataFileChannelWriter;
+import org.apache.activemq.store.kahadb.disk.journal.Journal.JournalWriteMode;
 import org.apache.activemq.util.RecoverableRandomAccessFile;
 
 /**
@@ -37,6 +39,8 @@ public class DiskBenchmark {
     // Work with 100 meg file.
     long size = 1024 * 1024 * 500;
     long sampleInterval = 10 * 1000;
+    // how the sync writes are done, like the journal does its appends
+    String writeMode = JournalWriteMode.BUFFERED.name();
 
     public static void main(String[] args) {
 
@@ -240,7 +244,10 @@ public class DiskBenchmark {
         rc.writes = ioCount;
         rc.writeDuration = (now - start);
 
-        try(RecoverableRandomAccessFile raf = new RecoverableRandomAccessFile(file, "rw")) {
+        JournalWriteMode mode = JournalWriteMode.valueOf(writeMode.trim().toUpperCase());
+        try(RecoverableRandomAccessFile raf = new RecoverableRandomAccessFile(file, "rw");
+            DataFileChannelWriter writer = mode == JournalWriteMode.BUFFERED ? null :
+                new DataFileChannelWriter(file, mode == JournalWriteMode.DIRECT)) {
             start = System.currentTimeMillis();
             now = System.currentTimeMillis();
             ioCount = 0;
@@ -249,9 +256,13 @@ public class DiskBenchmark {
                     break;
                 }
                 for (long i = 0; i + data.length < size; i += data.length) {
-                    raf.seek(i);
-                    raf.write(data);
-                    raf.getChannel().force(!SKIP_METADATA_UPDATE);
+                    if (writer != null) {
+                        writer.write(i, data, 0, data.length);
+                    } else {
+                        raf.seek(i);
+                        raf.write(data);
+                        raf.getChannel().force(!SKIP_METADATA_UPDATE);
+                    }
                     ioCount++;
                     now = System.currentTimeMillis();
                     if ((now - start) > sampleInterval) {
@@ -332,6 +343,17 @@ public class DiskBenchmark {
         this.size = size;
     }
 
+    public String getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * @param writeMode buffered, dsync or direct, see {@link JournalWriteMode}
+     */
+    public void setWriteMode(String writeMode) {
+        this.writeMode = writeMode;
+    }
+
     public long getSampleInterval() {
         return sampleInterval;
     }
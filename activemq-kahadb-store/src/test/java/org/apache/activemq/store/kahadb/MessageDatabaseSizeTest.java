@@ -178,7 +178,7 @@ public class MessageDatabaseSizeTest {
             @Override
             public Location execute(Transaction tx) throws IOException {
                 StoredDestination sd = store.getStoredDestination(destination, tx);
-                Long sequence = sd.messageIdIndex.get(tx, key);
+                Long sequence = sd.getMessageSequence(tx, key);
                 if (sequence == null) {
                     return null;
                 }
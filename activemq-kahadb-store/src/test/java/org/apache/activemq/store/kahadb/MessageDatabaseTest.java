@@ -19,14 +19,28 @@ package org.apache.activemq.store.kahadb;
 
 import org.apache.activemq.ActiveMQMessageAuditNoSync;
 import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.ConnectionContext;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.apache.activemq.command.MessageAck;
+import org.apache.activemq.command.MessageId;
+import org.apache.activemq.store.MessageStore;
+import org.apache.activemq.store.kahadb.MessageDatabase.StoredDestination;
 import org.apache.activemq.store.kahadb.disk.journal.Journal;
+import org.apache.activemq.store.kahadb.disk.page.Transaction;
 import org.apache.activemq.util.ByteSequence;
+import org.apache.activemq.util.Wait;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -154,4 +168,162 @@ public class MessageDatabaseTest {
         assertTrue(size.get() > 0);
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testMessageIdIndexSplitsProducerIdAndSequence() throws Exception {
+        KahaDBStore kaha = new KahaDBStore();
+        kaha.setDirectory(new File(temporaryFolder.getRoot(), "kaha4"));
+        kaha.setCheckpointInterval(0l); // disable periodic checkpoint
+        kaha.start();
+
+        final String[] messageIds = new String[] {"ID:host-1234-1:1:1:1:1", "ID:host-1234-1:1:1:1:2",
+            "ID:host-1234-1:1:1:2:1", "custom-id", "custom:007", "custom:7", "custom:"};
+        try {
+            kaha.indexLock.writeLock().lock();
+            try {
+                kaha.getPageFile().tx().execute(new Transaction.Closure<IOException>() {
+                    @Override
+                    public void execute(Transaction tx) throws IOException {
+                        StoredDestination sd = kaha.getStoredDestination(kaha.convert(new ActiveMQQueue("test")), tx);
+                        for (int i = 0; i < messageIds.length; i++) {
+                            assertNull(sd.putMessageSequence(tx, messageIds[i], (long) i));
+                        }
+                        for (int i = 0; i < messageIds.length; i++) {
+                            assertEquals(messageIds[i], Long.valueOf(i), sd.getMessageSequence(tx, messageIds[i]));
+                        }
+                        assertNull(sd.getMessageSequence(tx, "ID:host-1234-1:1:1:1:3"));
+                        assertNull(sd.getMessageSequence(tx, "unknown:1"));
+                        assertEquals(6, countProducerIds(tx, sd));
+
+                        assertEquals(Long.valueOf(2), sd.removeMessageSequence(tx, messageIds[2]));
+                        assertNull(sd.removeMessageSequence(tx, messageIds[2]));
+                        sd.pruneProducerIds(tx);
+                        assertEquals(5, countProducerIds(tx, sd));
+                        assertEquals(5, sd.producerKeys.size());
+                        assertEquals(Long.valueOf(0), sd.getMessageSequence(tx, messageIds[0]));
+
+                        // the producer still has a message, so it stays in the dictionary
+                        assertEquals(Long.valueOf(0), sd.removeMessageSequence(tx, messageIds[0]));
+                        sd.pruneProducerIds(tx);
+                        assertEquals(5, countProducerIds(tx, sd));
+                        assertEquals(Long.valueOf(1), sd.getMessageSequence(tx, messageIds[1]));
+
+                        assertNull(sd.putMessageSequence(tx, messageIds[2], 2L));
+                        assertEquals(Long.valueOf(2), sd.getMessageSequence(tx, messageIds[2]));
+                        assertEquals(6, countProducerIds(tx, sd));
+                        assertEquals(6, sd.producerKeys.size());
+                    }
+                });
+            } finally {
+                kaha.indexLock.writeLock().unlock();
+            }
+        } finally {
+            kaha.stop();
+        }
+    }
+
+    @Test
+    public void testJournalCompactionRemovesSparseDataFile() throws Exception {
+        final KahaDBStore kaha = createJournalCompactionStore("kaha5");
+        kaha.start();
+
+        try {
+            MessageStore messageStore = kaha.createQueueMessageStore(new ActiveMQQueue("test"));
+            ActiveMQTextMessage remaining = compactFirstDataFile(kaha, messageStore);
+
+            assertEquals(1, kaha.getPersistenceAdapterStatistics().getJournalCompactions().getCount());
+            assertEquals(1, messageStore.getMessageCount());
+            assertEquals(remaining.getText(), ((ActiveMQTextMessage) messageStore.getMessage(remaining.getMessageId())).getText());
+        } finally {
+            kaha.stop();
+        }
+    }
+
+    @Test
+    public void testJournalCompactionCopiesSurviveIndexRebuild() throws Exception {
+        KahaDBStore kaha = createJournalCompactionStore("kaha6");
+        kaha.start();
+
+        ActiveMQTextMessage remaining;
+        try {
+            MessageStore messageStore = kaha.createQueueMessageStore(new ActiveMQQueue("test"));
+            remaining = compactFirstDataFile(kaha, messageStore);
+        } finally {
+            kaha.stop();
+        }
+
+        // the index is rebuilt from the journal, which no longer has the original message
+        File indexFile = new File(kaha.getDirectory(), "db.data");
+        assertTrue(indexFile.delete());
+        new File(kaha.getDirectory(), "db.redo").delete();
+
+        kaha = createJournalCompactionStore("kaha6");
+        kaha.start();
+        try {
+            MessageStore messageStore = kaha.createQueueMessageStore(new ActiveMQQueue("test"));
+            assertEquals(1, messageStore.getMessageCount());
+            assertEquals(remaining.getText(), ((ActiveMQTextMessage) messageStore.getMessage(remaining.getMessageId())).getText());
+        } finally {
+            kaha.stop();
+        }
+    }
+
+    private KahaDBStore createJournalCompactionStore(String directory) {
+        KahaDBStore kaha = new KahaDBStore();
+        kaha.setDirectory(new File(temporaryFolder.getRoot(), directory));
+        kaha.setJournalMaxFileLength(64 * 1024);
+        // cleanups are triggered by the test
+        kaha.setCheckpointInterval(Long.MAX_VALUE);
+        kaha.setCleanupInterval(Long.MAX_VALUE);
+        kaha.setEnableAckCompaction(false);
+        kaha.setEnableJournalCompaction(true);
+        return kaha;
+    }
+
+    /**
+     * Leaves a single message in the first data file and waits for the journal compaction to
+     * remove that file.
+     *
+     * @return the message left in the store
+     */
+    private ActiveMQTextMessage compactFirstDataFile(final KahaDBStore kaha, MessageStore messageStore) throws Exception {
+        List<ActiveMQTextMessage> messages = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1024) {
+            text.append("compaction");
+        }
+        for (int i = 1; i <= 200; i++) {
+            ActiveMQTextMessage message = new ActiveMQTextMessage();
+            message.setText(text.toString());
+            MessageId messageId = new MessageId("ID:localhost-56913-1254499826208-0:0:1:1:" + i);
+            messageId.setBrokerSequenceId(i);
+            message.setMessageId(messageId);
+            messageStore.addMessage(new ConnectionContext(), message);
+            messages.add(message);
+        }
+
+        // only the first message is left in the first data file
+        for (int i = 1; i < messages.size(); i++) {
+            messageStore.removeMessage(new ConnectionContext(), new MessageAck(messages.get(i), MessageAck.STANDARD_ACK_TYPE, 1));
+        }
+        final int firstDataFile = Collections.min(kaha.getJournal().getFileMap().keySet());
+
+        kaha.checkpoint(true);
+
+        assertTrue("first data file removed", Wait.waitFor(new Wait.Condition() {
+            @Override
+            public boolean isSatisified() throws Exception {
+                return !kaha.getJournal().getFileMap().containsKey(firstDataFile);
+            }
+        }));
+        return messages.get(0);
+    }
+
+    private int countProducerIds(Transaction tx, StoredDestination sd) throws IOException {
+        int count = 0;
+        for (Iterator<Map.Entry<String, Long>> iterator = sd.producerIdIndex.iterator(tx); iterator.hasNext(); iterator.next()) {
+            count++;
+        }
+        return count;
+    }
+}
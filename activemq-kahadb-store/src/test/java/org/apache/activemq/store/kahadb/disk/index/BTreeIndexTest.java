@@ -25,12 +25,14 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
 import org.apache.activemq.store.kahadb.disk.page.PageFile;
 import org.apache.activemq.store.kahadb.disk.page.Transaction;
@@ -503,6 +505,69 @@ public class BTreeIndexTest extends IndexTestSupport {
         }
     }
 
+    @Test(timeout=60000)
+    public void testLongKeyedIndexMatchesSortedMap() throws Exception {
+        pf = new PageFile(getDirectory(), getClass().getName());
+        pf.setPageSize(1024);
+        pf.load();
+
+        tx = pf.tx();
+        long id = tx.allocate().getPageId();
+
+        BTreeIndex<Long, String> test = new BTreeIndex<Long, String>(pf, id);
+        test.setKeyMarshaller(LongMarshaller.INSTANCE);
+        test.setValueMarshaller(StringMarshaller.INSTANCE);
+        test.load(tx);
+        tx.commit();
+
+        TreeMap<Long, String> expected = new TreeMap<Long, String>();
+        Random random = new Random(42);
+        tx = pf.tx();
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), test.remove(tx, key));
+            } else {
+                String value = "value:" + i;
+                assertEquals(expected.put(key, value), test.put(tx, key, value));
+            }
+        }
+        tx.commit();
+        assertTrue("should have split into several levels", test.getMaxLeafDepth(tx) > 1);
+
+        // the primitive keys must round trip through the page file
+        pf.unload();
+        pf.load();
+        tx = pf.tx();
+        test = new BTreeIndex<Long, String>(pf, id);
+        test.setKeyMarshaller(LongMarshaller.INSTANCE);
+        test.setValueMarshaller(StringMarshaller.INSTANCE);
+        test.load(tx);
+
+        Iterator<Map.Entry<Long, String>> actual = test.iterator(tx);
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertTrue(actual.hasNext());
+            Map.Entry<Long, String> next = actual.next();
+            assertEquals(entry.getKey(), next.getKey());
+            assertEquals(entry.getValue(), next.getValue());
+            assertEquals(entry.getValue(), test.get(tx, entry.getKey()));
+        }
+        assertFalse(actual.hasNext());
+
+        assertEquals(expected.firstKey(), test.getFirst(tx).getKey());
+        assertEquals(expected.lastKey(), test.getLast(tx).getKey());
+
+        final List<Long> visited = new ArrayList<Long>();
+        test.visit(tx, new BTreeVisitor.GTVisitor<Long, String>(0L) {
+            @Override
+            protected void matched(Long key, String value) {
+                visited.add(key);
+            }
+        });
+        assertEquals(new ArrayList<Long>(expected.tailMap(0L, false).keySet()), visited);
+        tx.commit();
+    }
+
     @Test(timeout=60000)
     public void testListIndexConsistancyOverTime() throws Exception {
 
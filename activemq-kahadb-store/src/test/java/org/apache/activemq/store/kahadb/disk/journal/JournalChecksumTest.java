@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.journal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.activemq.store.kahadb.disk.util.ChecksumAlgorithm;
+import org.apache.activemq.util.ByteSequence;
+import org.apache.activemq.util.IOHelper;
+
+public class JournalChecksumTest extends TestCase {
+
+    Journal dataManager;
+    File dir;
+
+    @Override
+    public void setUp() throws Exception {
+        dir = new File("target/tests/JournalChecksumTest");
+        IOHelper.delete(dir);
+        dir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (dataManager != null) {
+            dataManager.close();
+        }
+        IOHelper.delete(dir);
+    }
+
+    private void startJournal(ChecksumAlgorithm checksumAlgorithm, int recoveryCheckThreads) throws Exception {
+        dataManager = new Journal();
+        dataManager.setDirectory(dir);
+        dataManager.setMaxFileLength(32 * 1024);
+        dataManager.setChecksum(true);
+        dataManager.setChecksumAlgorithm(checksumAlgorithm);
+        dataManager.setCheckForCorruptionOnStartup(true);
+        dataManager.setRecoveryCheckThreads(recoveryCheckThreads);
+        dataManager.start();
+    }
+
+    public void testBatchesOfBothFormatsAreVerifiedAndRead() throws Exception {
+        List<Location> locations = new ArrayList<Location>();
+        startJournal(ChecksumAlgorithm.ADLER32, 1);
+        for (int i = 0; i < 100; i++) {
+            locations.add(dataManager.write(new ByteSequence(payload(i)), true));
+        }
+        dataManager.close();
+
+        startJournal(ChecksumAlgorithm.CRC32C, 1);
+        for (int i = 100; i < 200; i++) {
+            locations.add(dataManager.write(new ByteSequence(payload(i)), true));
+        }
+        Location last = locations.get(locations.size() - 1);
+        dataManager.close();
+
+        byte[] lastFile = Files.readAllBytes(dataManager.getFile(last.getDataFileId()).toPath());
+        assertTrue(new ByteSequence(lastFile).indexOf(new ByteSequence(Journal.BATCH_CONTROL_RECORD_HEADER_CRC32C), 0) >= 0);
+        assertTrue(new ByteSequence(lastFile).indexOf(new ByteSequence(Journal.BATCH_CONTROL_RECORD_HEADER), 0) < 0);
+
+        startJournal(ChecksumAlgorithm.ADLER32, 4);
+        assertTrue(dataManager.getFileMap().size() > 4);
+        for (DataFile dataFile : dataManager.getFileMap().values()) {
+            assertTrue(dataFile + " is intact", dataFile.getCorruptedBlocks().isEmpty());
+        }
+        assertEquals(last.getDataFileId(), dataManager.getLastAppendLocation().getDataFileId());
+        assertReadable(locations);
+    }
+
+    public void testCorruptCrc32cBatchIsDetectedByParallelCheck() throws Exception {
+        startJournal(ChecksumAlgorithm.CRC32C, 1);
+        Location corrupted = null;
+        for (int i = 0; i < 200; i++) {
+            Location location = dataManager.write(new ByteSequence(payload(i)), true);
+            if (i == 10) {
+                corrupted = location;
+            }
+        }
+        dataManager.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(dataManager.getFile(corrupted.getDataFileId()), "rw")) {
+            file.seek(corrupted.getOffset() + Journal.RECORD_HEAD_SPACE + 20);
+            file.write('!');
+        }
+
+        startJournal(ChecksumAlgorithm.CRC32C, 4);
+        for (DataFile dataFile : dataManager.getFileMap().values()) {
+            if (dataFile.getDataFileId() == corrupted.getDataFileId()) {
+                assertFalse(dataFile.getCorruptedBlocks().isEmpty());
+            } else {
+                assertTrue(dataFile + " is intact", dataFile.getCorruptedBlocks().isEmpty());
+            }
+        }
+    }
+
+    private void assertReadable(List<Location> locations) throws Exception {
+        for (int i = 0; i < locations.size(); i++) {
+            ByteSequence data = dataManager.read(locations.get(i));
+            assertEquals(new String(payload(i)), new String(data.getData(), data.getOffset(), data.getLength()));
+        }
+    }
+
+    private byte[] payload(int i) {
+        StringBuilder builder = new StringBuilder("record-" + i + "-");
+        while (builder.length() < 1000) {
+            builder.append('x');
+        }
+        return builder.toString().getBytes();
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.journal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.activemq.util.ByteSequence;
+import org.apache.activemq.util.IOHelper;
+
+public class JournalColdTierTest extends TestCase {
+
+    Journal dataManager;
+    File dir;
+    File coldDir;
+
+    @Override
+    public void setUp() throws Exception {
+        dir = new File("target/tests/JournalColdTierTest");
+        coldDir = new File("target/tests/JournalColdTierTest-cold");
+        IOHelper.delete(dir);
+        IOHelper.delete(coldDir);
+        dir.mkdirs();
+        startJournal();
+    }
+
+    private void startJournal() throws Exception {
+        dataManager = new Journal();
+        dataManager.setDirectory(dir);
+        dataManager.setDirectoryColdTier(coldDir);
+        dataManager.setColdTierAge(0);
+        dataManager.setMaxFileLength(16 * 1024);
+        dataManager.start();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        dataManager.close();
+        IOHelper.delete(dir);
+        IOHelper.delete(coldDir);
+    }
+
+    public void testColdDataFilesAreMovedAndStayReadable() throws Exception {
+        List<Location> locations = new ArrayList<Location>();
+        for (int i = 0; i < 100; i++) {
+            locations.add(dataManager.write(new ByteSequence(payload(i)), true));
+        }
+        int dataFiles = dataManager.getFileMap().size();
+        assertTrue("several data files: " + dataFiles, dataFiles > 2);
+
+        // read once so the first data file has an idle accessor that must be reopened
+        assertReadable(locations.subList(0, 1));
+
+        int moved = 0;
+        while (dataManager.relocateColdDataFiles()) {
+            moved++;
+        }
+        assertEquals("all but the current data file moved", dataFiles - 1, moved);
+        assertEquals(dataFiles - 1, coldDir.list().length);
+        assertEquals(dataFiles, dataManager.getFileMap().size());
+        assertReadable(locations);
+
+        dataManager.close();
+        startJournal();
+        assertEquals(dataFiles, dataManager.getFileMap().size());
+        assertReadable(locations);
+    }
+
+    public void testIncompleteRelocationIsIgnoredOnStart() throws Exception {
+        Location location = null;
+        for (int i = 0; i < 100; i++) {
+            location = dataManager.write(new ByteSequence(payload(i)), true);
+        }
+        int dataFiles = dataManager.getFileMap().size();
+        dataManager.close();
+
+        // a copy of the first data file that was not yet removed from the hot directory
+        File first = new File(dir, "db-1.log");
+        IOHelper.copyFile(first, new File(coldDir, first.getName()));
+        IOHelper.copyFile(first, new File(coldDir, first.getName() + ".tmp"));
+
+        startJournal();
+        assertEquals(dataFiles, dataManager.getFileMap().size());
+        assertEquals(first.getCanonicalFile(), dataManager.getFileMap().get(1).getFile().getCanonicalFile());
+        assertEquals(0, coldDir.list().length);
+        ByteSequence data = dataManager.read(location);
+        assertEquals(new String(payload(99)), new String(data.getData(), data.getOffset(), data.getLength()));
+    }
+
+    private void assertReadable(List<Location> locations) throws Exception {
+        for (int i = 0; i < locations.size(); i++) {
+            ByteSequence data = dataManager.read(locations.get(i));
+            assertEquals(new String(payload(i)), new String(data.getData(), data.getOffset(), data.getLength()));
+        }
+    }
+
+    private byte[] payload(int i) {
+        StringBuilder builder = new StringBuilder("record-" + i + "-");
+        while (builder.length() < 1000) {
+            builder.append('x');
+        }
+        return builder.toString().getBytes();
+    }
+}
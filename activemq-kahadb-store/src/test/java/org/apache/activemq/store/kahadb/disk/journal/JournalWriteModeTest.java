@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.journal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.activemq.store.kahadb.disk.journal.Journal.JournalWriteMode;
+import org.apache.activemq.util.ByteSequence;
+import org.apache.activemq.util.IOHelper;
+
+public class JournalWriteModeTest extends TestCase {
+
+    Journal dataManager;
+    File dir;
+
+    @Override
+    public void setUp() throws Exception {
+        dir = new File("target/tests/JournalWriteModeTest");
+        IOHelper.delete(dir);
+        dir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (dataManager != null) {
+            dataManager.close();
+        }
+        IOHelper.delete(dir);
+    }
+
+    private void startJournal(JournalWriteMode writeMode) throws Exception {
+        dataManager = new Journal();
+        dataManager.setDirectory(dir);
+        dataManager.setMaxFileLength(64 * 1024);
+        dataManager.setJournalWriteMode(writeMode);
+        dataManager.setCheckForCorruptionOnStartup(true);
+        dataManager.start();
+    }
+
+    public void testDsyncAppendsAreReadableAfterRestart() throws Exception {
+        doTestAppendsAreReadableAfterRestart(JournalWriteMode.DSYNC);
+    }
+
+    public void testDirectAppendsAreReadableAfterRestart() throws Exception {
+        try {
+            new DataFileChannelWriter(new File(dir, "probe.dat"), true).close();
+        } catch (Exception unsupported) {
+            // the file system of the build does not support direct I/O
+            return;
+        }
+        doTestAppendsAreReadableAfterRestart(JournalWriteMode.DIRECT);
+    }
+
+    private void doTestAppendsAreReadableAfterRestart(JournalWriteMode writeMode) throws Exception {
+        startJournal(writeMode);
+        List<Location> locations = new ArrayList<Location>();
+        for (int i = 0; i < 300; i++) {
+            // sizes that do not line up with the block size, async writes are batched
+            locations.add(dataManager.write(new ByteSequence(payload(i)), i % 3 == 0));
+        }
+        dataManager.write(new ByteSequence(payload(300)), true);
+        assertTrue(dataManager.getFileMap().size() > 1);
+        assertReadable(locations);
+
+        dataManager.close();
+        startJournal(writeMode);
+        assertReadable(locations);
+
+        // appends continue after the recovered end of the last data file
+        Location location = dataManager.write(new ByteSequence(payload(301)), true);
+        locations.add(location);
+        assertEquals(dataManager.getLastAppendLocation(), location);
+        dataManager.close();
+        startJournal(JournalWriteMode.BUFFERED);
+        ByteSequence data = dataManager.read(location);
+        assertEquals(new String(payload(301)), new String(data.getData(), data.getOffset(), data.getLength()));
+    }
+
+    private void assertReadable(List<Location> locations) throws Exception {
+        for (int i = 0; i < locations.size(); i++) {
+            ByteSequence data = dataManager.read(locations.get(i));
+            assertEquals(new String(payload(i)), new String(data.getData(), data.getOffset(), data.getLength()));
+        }
+    }
+
+    private byte[] payload(int i) {
+        StringBuilder builder = new StringBuilder("record-" + i + "-");
+        int length = 100 + (i * 37) % 900;
+        while (builder.length() < length) {
+            builder.append((char) ('a' + builder.length() % 26));
+        }
+        return builder.toString().getBytes();
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.journal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.util.ByteSequence;
+
+public class PipelinedJournalTest extends JournalTest {
+
+    @Override
+    protected void configure(Journal dataManager) {
+        dataManager.setPipelinedAppender(true);
+        dataManager.setMaxFileLength(64 * 1024);
+    }
+
+    public void testCallbacksCompleteInOrderAcrossDataFiles() throws Exception {
+        final int iterations = 2000;
+        final CountDownLatch latch = new CountDownLatch(iterations);
+        final List<Integer> completed = new ArrayList<Integer>();
+        List<Location> locations = new ArrayList<Location>();
+        for (int i = 0; i < iterations; i++) {
+            final int index = i;
+            locations.add(dataManager.write(new ByteSequence(payload(i)), new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (completed) {
+                        completed.add(index);
+                    }
+                    latch.countDown();
+                }
+            }));
+            if (i % 100 == 0) {
+                dataManager.write(new ByteSequence("sync".getBytes()), true);
+            }
+        }
+        assertTrue("all callbacks complete", latch.await(10, TimeUnit.SECONDS));
+        assertTrue(dataManager.getFileMap().size() > 1);
+        for (int i = 0; i < iterations; i++) {
+            assertEquals(i, completed.get(i).intValue());
+        }
+
+        dataManager.close();
+        dataManager.start();
+        for (int i = 0; i < iterations; i++) {
+            ByteSequence data = dataManager.read(locations.get(i));
+            assertEquals(new String(payload(i)), new String(data.getData(), data.getOffset(), data.getLength()));
+        }
+    }
+
+    private byte[] payload(int i) {
+        StringBuilder builder = new StringBuilder("record-" + i + "-");
+        while (builder.length() < 100) {
+            builder.append('x');
+        }
+        return builder.toString().getBytes();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.store.kahadb.disk.page;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class ConcurrentPageCacheTest extends TestCase {
+
+    public void testBoundedByPageCount() {
+        ConcurrentPageCache cache = new ConcurrentPageCache(100, 100, page -> 1);
+        for (long i = 0; i < 1000; i++) {
+            cache.put(i, new Page<Object>(i));
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(cache.size(), cache.getWeightedSize());
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    public void testBoundedByWeight() {
+        ConcurrentPageCache cache = new ConcurrentPageCache(4096 * 10, 10, page -> 4096);
+        for (long i = 0; i < 100; i++) {
+            cache.put(i, new Page<Object>(i));
+        }
+        assertTrue(cache.getWeightedSize() <= 4096 * 10);
+        assertEquals(cache.size() * 4096L, cache.getWeightedSize());
+    }
+
+    public void testFrequentlyUsedPagesSurviveScan() {
+        ConcurrentPageCache cache = new ConcurrentPageCache(100, 100, page -> 1);
+        for (long i = 0; i < 50; i++) {
+            cache.put(i, new Page<Object>(i));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (long i = 0; i < 50; i++) {
+                assertNotNull(cache.get(i));
+            }
+        }
+
+        // a scan of pages read only once
+        for (long i = 1000; i < 1500; i++) {
+            if (cache.get(i) == null) {
+                cache.put(i, new Page<Object>(i));
+            }
+        }
+
+        int hot = 0;
+        for (long i = 0; i < 50; i++) {
+            if (cache.containsKey(i)) {
+                hot++;
+            }
+        }
+        assertTrue("hot pages retained: " + hot, hot >= 45);
+    }
+
+    public void testRemoveAndUpdate() {
+        ConcurrentPageCache cache = new ConcurrentPageCache(10, 10, page -> 1);
+        Page<Object> first = new Page<Object>(1);
+        Page<Object> second = new Page<Object>(1);
+        assertNull(cache.put(1L, first));
+        assertSame(first, cache.put(1L, second));
+        assertSame(second, cache.get(1L));
+        assertEquals(1, cache.getWeightedSize());
+
+        assertSame(second, cache.remove(1L));
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.getWeightedSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testConcurrentReadersAndWriters() throws Exception {
+        final ConcurrentPageCache cache = new ConcurrentPageCache(500, 500, page -> 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch done = new CountDownLatch(8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            long pageId = (i * 31L + seed) % 2000;
+                            Page page = cache.get(pageId);
+                            if (page == null) {
+                                cache.put(pageId, new Page<Object>(pageId));
+                            } else if (page.getPageId() != pageId) {
+                                throw new AssertionError("wrong page " + page.getPageId() + " for " + pageId);
+                            } else if (i % 10 == 0) {
+                                cache.remove(pageId);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertNull(failure.get());
+        assertTrue(cache.getWeightedSize() <= 500);
+        assertEquals(cache.size(), cache.getWeightedSize());
+    }
+}
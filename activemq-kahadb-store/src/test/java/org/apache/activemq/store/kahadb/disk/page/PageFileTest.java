@@ -17,6 +17,7 @@
 package org.apache.activemq.store.kahadb.disk.page;
 
 import junit.framework.TestCase;
+import org.apache.activemq.store.kahadb.disk.util.ChecksumAlgorithm;
 import org.apache.activemq.store.kahadb.disk.util.StringMarshaller;
 import org.apache.activemq.util.Wait;
 import org.apache.logging.log4j.Level;
@@ -35,6 +36,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -137,6 +139,136 @@ public class PageFileTest extends TestCase {
         pf.unload();
     }
 
+    public void testCoalescedWritesOfSparseBatch() throws IOException {
+
+        PageFile pf = new PageFile(new File("target/test-data"), getName());
+        pf.delete();
+        pf.setMaxCoalescedPageWrites(4);
+        pf.load();
+
+        Transaction tx = pf.tx();
+        List<Page<String>> pages = new LinkedList<Page<String>>();
+        for (int i = 0; i < 50; i++) {
+            pages.add(tx.<String>allocate());
+        }
+        tx.commit();
+
+        // store a batch with gaps and runs longer than the coalescing limit
+        tx = pf.tx();
+        HashSet<String> expected = new HashSet<String>();
+        for (Page<String> page : pages) {
+            if (page.getPageId() % 7 == 3) {
+                continue;
+            }
+            String t = "page:" + page.getPageId();
+            expected.add(t);
+            page.set(t);
+            tx.store(page, StringMarshaller.INSTANCE, false);
+        }
+        tx.commit();
+        pf.flush();
+
+        pf.unload();
+        pf.setEnablePageCaching(false);
+        pf.load();
+        tx = pf.tx();
+
+        HashSet<String> actual = new HashSet<String>();
+        for (Page<String> page : pages) {
+            if (page.getPageId() % 7 != 3) {
+                tx.load(page, StringMarshaller.INSTANCE);
+                actual.add(page.get());
+            }
+        }
+        assertEquals(expected, actual);
+
+        pf.unload();
+    }
+
+    public void testRecoveryFileRedoWithCrc32c() throws IOException {
+
+        PageFile pf = new PageFile(new File("target/test-data"), getName());
+        pf.delete();
+        pf.setRecoveryChecksumAlgorithm(ChecksumAlgorithm.CRC32C);
+        pf.load();
+
+        Transaction tx = pf.tx();
+        Page<String> page = tx.allocate();
+        page.set("landed through the recovery file");
+        tx.store(page, StringMarshaller.INSTANCE, false);
+        tx.commit();
+        pf.flush();
+
+        // tear the page write, the recovery file still holds the last batch
+        try (RandomAccessFile file = new RandomAccessFile(pf.getFile(), "rw")) {
+            file.seek(pf.toOffset(page.getPageId()));
+            file.write(new byte[pf.getPageSize()]);
+        }
+
+        // a second instance on the same directory simulates an unclean shutdown, it learns
+        // the checksum algorithm from the recovery file
+        PageFile pf2 = new PageFile(new File("target/test-data"), getName());
+        pf2.load();
+        try {
+            tx = pf2.tx();
+            Page<String> recovered = tx.load(page.getPageId(), StringMarshaller.INSTANCE);
+            assertEquals("landed through the recovery file", recovered.get());
+        } finally {
+            pf2.unload();
+            pf.unload();
+        }
+    }
+
+    public void testSnapshotReadsCommittedVersion() throws IOException {
+
+        PageFile pf = new PageFile(new File("target/test-data"), getName());
+        pf.delete();
+        pf.load();
+
+        Transaction tx = pf.tx();
+        Page<String> page = tx.allocate();
+        page.set("v1");
+        tx.store(page, StringMarshaller.INSTANCE, false);
+        tx.commit();
+        pf.flush();
+
+        Transaction snapshot = pf.snapshotTx();
+
+        tx = pf.tx();
+        page.set("v2");
+        tx.store(page, StringMarshaller.INSTANCE, false);
+        Page<String> added = tx.allocate();
+        added.set("new");
+        tx.store(added, StringMarshaller.INSTANCE, false);
+        tx.commit();
+
+        Transaction laterSnapshot = pf.snapshotTx();
+        tx = pf.tx();
+        page.set("v3");
+        tx.store(page, StringMarshaller.INSTANCE, false);
+        tx.commit();
+        pf.flush();
+
+        assertEquals("v1", snapshot.load(page.getPageId(), StringMarshaller.INSTANCE).get());
+        assertEquals("v2", laterSnapshot.load(page.getPageId(), StringMarshaller.INSTANCE).get());
+        assertEquals("new", laterSnapshot.load(added.getPageId(), StringMarshaller.INSTANCE).get());
+        assertEquals("v3", pf.tx().load(page.getPageId(), StringMarshaller.INSTANCE).get());
+
+        try {
+            snapshot.allocate();
+            fail("snapshot transactions are read only");
+        } catch (IllegalStateException expected) {
+        }
+
+        snapshot.commit();
+        laterSnapshot.rollback();
+        Transaction current = pf.snapshotTx();
+        assertEquals("v3", current.load(page.getPageId(), StringMarshaller.INSTANCE).get());
+        current.rollback();
+
+        pf.unload();
+    }
+
     public void testStreams() throws IOException {
 
         PageFile pf = new PageFile(new File("target/test-data"), getName());
@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.mqtt;
+
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.MessageAck;
+import org.apache.activemq.command.MessageId;
+
+/**
+ * Tracks the QoS 1 and 2 PUBLISH packets of a client session that are waiting for the
+ * client to acknowledge them.
+ *
+ * Entries are held in parallel arrays indexed by the packet id masked to the current
+ * capacity, and an open addressing index maps message ids to their slot. Packet ids are
+ * handed out in sequence so consecutive ids land in separate slots. The capacity is
+ * doubled when an id maps onto a slot that is still in use, up to the power of two that
+ * covers maxInFlight; past that the entry in the slot is the oldest one tracked and is
+ * evicted, so packets a persistent session never gets acknowledged do not pile up.
+ * Tracking a publish does not allocate.
+ */
+public class MQTTInFlightWindow {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 16;
+
+    private final int maxCapacity;
+    private short lastSequenceId;
+
+    private short[] packetIds = new short[INITIAL_CAPACITY];
+    private MessageId[] messageIds = new MessageId[INITIAL_CAPACITY];
+    private ActiveMQDestination[] destinations = new ActiveMQDestination[INITIAL_CAPACITY];
+    private MessageAck[] acks = new MessageAck[INITIAL_CAPACITY];
+    // slot + 1 of the entries that have a message id, zero marks a free index position
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+    private int size;
+
+    public MQTTInFlightWindow() {
+        this(MQTTProtocolConverter.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxInFlight
+     *        the number of packets that are tracked before the oldest ones are evicted,
+     *        rounded up to a power of two.
+     */
+    public MQTTInFlightWindow(int maxInFlight) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < maxInFlight && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        this.maxCapacity = capacity;
+    }
+
+    /**
+     * @return the next packet id of this session, never zero.
+     */
+    public synchronized short getNextSequenceId() {
+        final short val = ++lastSequenceId;
+        return val != 0 ? val : ++lastSequenceId;
+    }
+
+    /**
+     * Looks up the packet id a message was published with to a subscription.
+     *
+     * @param destination
+     *        the destination of the subscription the message was published for.
+     * @param messageId
+     *        the id of the message.
+     *
+     * @return the packet id or zero when the message is not in flight.
+     */
+    public synchronized short getPacketId(ActiveMQDestination destination, MessageId messageId) {
+        int mask = index.length - 1;
+        for (int i = hash(messageId) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (messageId.equals(messageIds[slot]) && destination.equals(destinations[slot])) {
+                return packetIds[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Records a message as published with the given packet id.
+     */
+    public synchronized void add(short packetId, ActiveMQDestination destination, MessageId messageId) {
+        int slot = slotFor(packetId);
+        unindex(slot);
+        messageIds[slot] = messageId;
+        destinations[slot] = destination;
+        acks[slot] = null;
+        index(slot);
+    }
+
+    /**
+     * Stores the ack to send to the broker once the client has acknowledged the packet.
+     */
+    public synchronized void setAck(short packetId, MessageAck ack) {
+        int slot = indexOf(packetId);
+        if (slot < 0) {
+            slot = slotFor(packetId);
+            unindex(slot);
+            messageIds[slot] = null;
+            destinations[slot] = null;
+        }
+        acks[slot] = ack;
+    }
+
+    /**
+     * Removes a packet that the client has acknowledged.
+     *
+     * @return the ack to send to the broker or null if there is none.
+     */
+    public synchronized MessageAck remove(short packetId) {
+        int slot = indexOf(packetId);
+        if (slot < 0) {
+            return null;
+        }
+        MessageAck ack = acks[slot];
+        clear(slot);
+        return ack;
+    }
+
+    /**
+     * Drops the acks that belong to a previous connection of the session, the packet ids
+     * stay in place so that redelivered messages are published with the same id.
+     */
+    public synchronized void clearAcks() {
+        for (int i = 0; i < packetIds.length; i++) {
+            if (packetIds[i] != 0 && acks[i] != null) {
+                acks[i] = null;
+                if (messageIds[i] == null) {
+                    clear(i);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int indexOf(short packetId) {
+        int slot = packetId & (packetIds.length - 1);
+        return packetIds[slot] == packetId ? slot : -1;
+    }
+
+    private int slotFor(short packetId) {
+        int slot = packetId & (packetIds.length - 1);
+        while (packetIds[slot] != 0 && packetIds[slot] != packetId && packetIds.length < maxCapacity) {
+            grow();
+            slot = packetId & (packetIds.length - 1);
+        }
+        if (packetIds[slot] != 0 && packetIds[slot] != packetId) {
+            // the window is full, the entry in the slot is the oldest one tracked
+            clear(slot);
+        }
+        if (packetIds[slot] == 0) {
+            size++;
+        }
+        packetIds[slot] = packetId;
+        return slot;
+    }
+
+    private void clear(int slot) {
+        unindex(slot);
+        packetIds[slot] = 0;
+        messageIds[slot] = null;
+        destinations[slot] = null;
+        acks[slot] = null;
+        size--;
+    }
+
+    private static int hash(MessageId messageId) {
+        int h = messageId.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void index(int slot) {
+        if (messageIds[slot] != null) {
+            int mask = index.length - 1;
+            int i = hash(messageIds[slot]) & mask;
+            while (index[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            index[i] = slot + 1;
+        }
+    }
+
+    private void unindex(int slot) {
+        if (messageIds[slot] == null) {
+            return;
+        }
+        int mask = index.length - 1;
+        int i = hash(messageIds[slot]) & mask;
+        while (index[i] != slot + 1) {
+            if (index[i] == 0) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        // shift back the entries of the probe sequence that follows the freed position
+        index[i] = 0;
+        for (int j = (i + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int home = hash(messageIds[index[j] - 1]) & mask;
+            boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!reachable) {
+                index[i] = index[j];
+                index[j] = 0;
+                i = j;
+            }
+        }
+    }
+
+    private void grow() {
+        short[] oldPacketIds = packetIds;
+        MessageId[] oldMessageIds = messageIds;
+        ActiveMQDestination[] oldDestinations = destinations;
+        MessageAck[] oldAcks = acks;
+
+        int capacity = oldPacketIds.length << 1;
+        packetIds = new short[capacity];
+        messageIds = new MessageId[capacity];
+        destinations = new ActiveMQDestination[capacity];
+        acks = new MessageAck[capacity];
+        index = new int[capacity * 2];
+
+        for (int i = 0; i < oldPacketIds.length; i++) {
+            if (oldPacketIds[i] != 0) {
+                int slot = oldPacketIds[i] & (capacity - 1);
+                packetIds[slot] = oldPacketIds[i];
+                messageIds[slot] = oldMessageIds[i];
+                destinations[slot] = oldDestinations[i];
+                acks[slot] = oldAcks[i];
+                index(slot);
+            }
+        }
+    }
+}
@@ -21,8 +21,9 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.activemq.Service;
 import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQDestination;
 import org.apache.activemq.command.ActiveMQMessage;
-import org.apache.activemq.util.LRUCache;
+import org.apache.activemq.command.MessageId;
 import org.apache.activemq.util.ServiceStopper;
 import org.apache.activemq.util.ServiceSupport;
 import org.fusesource.mqtt.codec.PUBLISH;
@@ -39,7 +40,7 @@ public class MQTTPacketIdGenerator extends ServiceSupport {
     private static final Logger LOG = LoggerFactory.getLogger(MQTTPacketIdGenerator.class);
     private static final Object LOCK = new Object();
 
-    Map<String, PacketIdMaps> clientIdMap = new ConcurrentHashMap<String, PacketIdMaps>();
+    Map<String, MQTTInFlightWindow> clientIdMap = new ConcurrentHashMap<String, MQTTInFlightWindow>();
 
     private final NonZeroSequenceGenerator messageIdGenerator = new NonZeroSequenceGenerator();
 
@@ -49,7 +50,7 @@ public class MQTTPacketIdGenerator extends ServiceSupport {
     @Override
     protected void doStop(ServiceStopper stopper) throws Exception {
         synchronized (this) {
-            clientIdMap = new ConcurrentHashMap<String, PacketIdMaps>();
+            clientIdMap = new ConcurrentHashMap<String, MQTTInFlightWindow>();
         }
     }
 
@@ -57,10 +58,21 @@ public class MQTTPacketIdGenerator extends ServiceSupport {
     protected void doStart() throws Exception {
     }
 
-    public void startClientSession(String clientId) {
-        if (!clientIdMap.containsKey(clientId)) {
-            clientIdMap.put(clientId, new PacketIdMaps());
+    /**
+     * Starts or resumes the session of a client that connected with cleanSession=false.
+     *
+     * @return the in-flight window of the session, a resumed session keeps the packet
+     *         ids of the messages that were not acknowledged yet.
+     */
+    public MQTTInFlightWindow startClientSession(String clientId) {
+        MQTTInFlightWindow window = clientIdMap.get(clientId);
+        if (window == null) {
+            window = new MQTTInFlightWindow();
+            clientIdMap.put(clientId, window);
+        } else {
+            window.clearAcks();
         }
+        return window;
     }
 
     public boolean stopClientSession(String clientId) {
@@ -68,27 +80,42 @@ public class MQTTPacketIdGenerator extends ServiceSupport {
     }
 
     public short setPacketId(String clientId, MQTTSubscription subscription, ActiveMQMessage message, PUBLISH publish) {
-        final PacketIdMaps idMaps = clientIdMap.get(clientId);
-        if (idMaps == null) {
+        final MQTTInFlightWindow window = clientIdMap.get(clientId);
+        if (window == null) {
             // maybe its a cleansession=true client id, use session less message id
             final short id = messageIdGenerator.getNextSequenceId();
             publish.messageId(id);
             return id;
+        }
+
+        final ActiveMQDestination destination = subscription.getConsumerInfo().getDestination();
+        final MessageId messageId = message.getMessageId();
+        short packetId = 0;
+        // only a redelivered message can still be in flight for the subscription
+        if (message.isRedelivered()) {
+            packetId = window.getPacketId(destination, messageId);
+        }
+        if (packetId == 0) {
+            packetId = window.getNextSequenceId();
+            window.add(packetId, destination, messageId);
         } else {
-            return idMaps.setPacketId(subscription, message, publish);
+            // mark publish as duplicate!
+            publish.dup(true);
         }
+        publish.messageId(packetId);
+        return packetId;
     }
 
     public void ackPacketId(String clientId, short packetId) {
-        final PacketIdMaps idMaps = clientIdMap.get(clientId);
-        if (idMaps != null) {
-            idMaps.ackPacketId(packetId);
+        final MQTTInFlightWindow window = clientIdMap.get(clientId);
+        if (window != null) {
+            window.remove(packetId);
         }
     }
 
     public short getNextSequenceId(String clientId) {
-        final PacketIdMaps idMaps = clientIdMap.get(clientId);
-        return idMaps != null ? idMaps.getNextSequenceId(): messageIdGenerator.getNextSequenceId();
+        final MQTTInFlightWindow window = clientIdMap.get(clientId);
+        return window != null ? window.getNextSequenceId(): messageIdGenerator.getNextSequenceId();
     }
 
     public static MQTTPacketIdGenerator getMQTTPacketIdGenerator(BrokerService broker) {
@@ -119,49 +146,6 @@ public class MQTTPacketIdGenerator extends ServiceSupport {
         return result;
     }
 
-    private class PacketIdMaps {
-
-        private final NonZeroSequenceGenerator messageIdGenerator = new NonZeroSequenceGenerator();
-        final Map<String, Short> activemqToPacketIds = new LRUCache<String, Short>(MQTTProtocolConverter.DEFAULT_CACHE_SIZE);
-        final Map<Short, String> packetIdsToActivemq = new LRUCache<Short, String>(MQTTProtocolConverter.DEFAULT_CACHE_SIZE);
-
-        short setPacketId(MQTTSubscription subscription, ActiveMQMessage message, PUBLISH publish) {
-            // subscription key
-            final StringBuilder subscriptionKey = new StringBuilder();
-            subscriptionKey.append(subscription.getConsumerInfo().getDestination().getPhysicalName())
-                .append(':').append(message.getJMSMessageID());
-            final String keyStr = subscriptionKey.toString();
-            Short packetId;
-            synchronized (activemqToPacketIds) {
-                packetId = activemqToPacketIds.get(keyStr);
-                if (packetId == null) {
-                    packetId = getNextSequenceId();
-                    activemqToPacketIds.put(keyStr, packetId);
-                    packetIdsToActivemq.put(packetId, keyStr);
-                } else {
-                    // mark publish as duplicate!
-                    publish.dup(true);
-                }
-            }
-            publish.messageId(packetId);
-            return packetId;
-        }
-
-        void ackPacketId(short packetId) {
-            synchronized (activemqToPacketIds) {
-                final String subscriptionKey = packetIdsToActivemq.remove(packetId);
-                if (subscriptionKey != null) {
-                    activemqToPacketIds.remove(subscriptionKey);
-                }
-            }
-        }
-
-        short getNextSequenceId() {
-            return messageIdGenerator.getNextSequenceId();
-        }
-
-    }
-
     private class NonZeroSequenceGenerator {
 
         private short lastSequenceId;
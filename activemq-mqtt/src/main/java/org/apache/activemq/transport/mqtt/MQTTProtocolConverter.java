@@ -107,7 +107,8 @@ public class MQTTProtocolConverter {
     private final Map<String, ActiveMQDestination> activeMQDestinationMap = new LRUCache<String, ActiveMQDestination>(DEFAULT_CACHE_SIZE);
     private final Map<ActiveMQDestination, String> mqttTopicMap = new LRUCache<ActiveMQDestination, String>(DEFAULT_CACHE_SIZE);
 
-    private final Map<Short, MessageAck> consumerAcks = new LRUCache<Short, MessageAck>(DEFAULT_CACHE_SIZE);
+    // replaced by the window of the session when a client resumes a persistent session
+    private volatile MQTTInFlightWindow inFlightWindow = new MQTTInFlightWindow();
     private final Map<Short, PUBREC> publisherRecs = new LRUCache<Short, PUBREC>(DEFAULT_CACHE_SIZE);
 
     private final MQTTTransport mqttTransport;
@@ -355,7 +356,7 @@ public class MQTTProtocolConverter {
                         if (connect.cleanSession()) {
                             packetIdGenerator.stopClientSession(getClientId());
                         } else {
-                            packetIdGenerator.startClientSession(getClientId());
+                            inFlightWindow = packetIdGenerator.startClientSession(getClientId());
                         }
 
                         findSubscriptionStrategy().onConnect(connect);
@@ -367,12 +368,21 @@ public class MQTTProtocolConverter {
 
     void onMQTTDisconnect() throws MQTTProtocolException {
         if (connected.compareAndSet(true, false)) {
+            onDisconnect();
             sendToActiveMQ(connectionInfo.createRemoveCommand(), null);
             sendToActiveMQ(new ShutdownInfo(), null);
         }
         stopTransport();
     }
 
+    private void onDisconnect() {
+        try {
+            findSubscriptionStrategy().onDisconnect();
+        } catch (IOException e) {
+            LOG.warn("Failed to end the subscriptions of client {}", getClientId(), e);
+        }
+    }
+
     void onSubscribe(SUBSCRIBE command) throws MQTTProtocolException {
         checkConnected();
         LOG.trace("MQTT SUBSCRIBE message:{} client:{} connection:{}",
@@ -455,9 +465,7 @@ public class MQTTProtocolConverter {
                     case AT_MOST_ONCE:
                 }
                 if (ack != null && sub.expectAck(publish)) {
-                    synchronized (consumerAcks) {
-                        consumerAcks.put(publish.messageId(), ack);
-                    }
+                    inFlightWindow.setAck(publish.messageId(), ack);
                 }
                 LOG.trace("MQTT Snd PUBLISH message:{} client:{} connection:{}",
                           publish.messageId(), clientId, connectionInfo.getConnectionId());
@@ -477,6 +485,17 @@ public class MQTTProtocolConverter {
         }
     }
 
+    /**
+     * Publishes a retained message that was read from the broker's retained message store
+     * to a subscription, there is no broker side delivery to acknowledge for it.
+     */
+    public void publishRetained(MQTTSubscription sub, ActiveMQMessage message) throws IOException, JMSException, DataFormatException {
+        PUBLISH publish = sub.createPublish(message);
+        LOG.trace("MQTT Snd retained PUBLISH message:{} client:{} connection:{}",
+                  publish.messageId(), clientId, connectionInfo.getConnectionId());
+        getMQTTTransport().sendToMQTT(publish.encode());
+    }
+
     void onMQTTPublish(PUBLISH command) throws IOException, JMSException {
         checkConnected();
         LOG.trace("MQTT Rcv PUBLISH message:{} client:{} connection:{}",
@@ -497,11 +516,7 @@ public class MQTTProtocolConverter {
         short messageId = command.messageId();
         LOG.trace("MQTT Rcv PUBACK message:{} client:{} connection:{}",
                   messageId, clientId, connectionInfo.getConnectionId());
-        packetIdGenerator.ackPacketId(getClientId(), messageId);
-        MessageAck ack;
-        synchronized (consumerAcks) {
-            ack = consumerAcks.remove(messageId);
-        }
+        MessageAck ack = inFlightWindow.remove(messageId);
         if (ack != null) {
             getMQTTTransport().sendToActiveMQ(ack);
         }
@@ -529,11 +544,7 @@ public class MQTTProtocolConverter {
 
     void onMQTTPubComp(PUBCOMP command) {
         short messageId = command.messageId();
-        packetIdGenerator.ackPacketId(getClientId(), messageId);
-        MessageAck ack;
-        synchronized (consumerAcks) {
-            ack = consumerAcks.remove(messageId);
-        }
+        MessageAck ack = inFlightWindow.remove(messageId);
         if (ack != null) {
             getMQTTTransport().sendToActiveMQ(ack);
         }
@@ -675,6 +686,7 @@ public class MQTTProtocolConverter {
                             LOG.warn("Failed to publish Will Message " + connect.willMessage());
                         }
                     }
+                    onDisconnect();
                     // remove connection info
                     sendToActiveMQ(connectionInfo.createRemoveCommand(), null);
                 }
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -35,14 +36,17 @@ import org.apache.activemq.broker.region.Subscription;
 import org.apache.activemq.broker.region.TopicRegion;
 import org.apache.activemq.broker.region.virtual.VirtualTopicInterceptor;
 import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQMessage;
 import org.apache.activemq.command.ActiveMQTopic;
 import org.apache.activemq.command.ConsumerId;
 import org.apache.activemq.command.ConsumerInfo;
 import org.apache.activemq.command.ExceptionResponse;
+import org.apache.activemq.command.Message;
 import org.apache.activemq.command.RemoveInfo;
 import org.apache.activemq.command.RemoveSubscriptionInfo;
 import org.apache.activemq.command.Response;
 import org.apache.activemq.command.SubscriptionInfo;
+import org.apache.activemq.store.RetainedMessageStore;
 import org.apache.activemq.transport.mqtt.MQTTProtocolConverter;
 import org.apache.activemq.transport.mqtt.MQTTProtocolException;
 import org.apache.activemq.transport.mqtt.MQTTProtocolSupport;
@@ -62,7 +66,7 @@ public abstract class AbstractMQTTSubscriptionStrategy implements MQTTSubscripti
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractMQTTSubscriptionStrategy.class);
 
-    private static final byte SUBSCRIBE_ERROR = (byte) 0x80;
+    protected static final byte SUBSCRIBE_ERROR = (byte) 0x80;
 
     protected MQTTProtocolConverter protocol;
     protected BrokerService brokerService;
@@ -93,6 +97,10 @@ public abstract class AbstractMQTTSubscriptionStrategy implements MQTTSubscripti
         return protocol;
     }
 
+    @Override
+    public void onDisconnect() throws MQTTProtocolException {
+    }
+
     @Override
     public byte onSubscribe(final Topic topic) throws MQTTProtocolException {
 
@@ -172,6 +180,8 @@ public abstract class AbstractMQTTSubscriptionStrategy implements MQTTSubscripti
                 }
             }
         }
+
+        recoverRetainedMessages(mqttSubscription);
     }
 
     @Override
@@ -231,11 +241,44 @@ public abstract class AbstractMQTTSubscriptionStrategy implements MQTTSubscripti
             // remove from local maps if subscribe failed
             subscriptionsByConsumerId.remove(consumerInfo.getConsumerId());
             mqttSubscriptionByTopic.remove(topicName);
+        } else {
+            recoverRetainedMessages(mqttSubscription);
         }
 
         return qos[0];
     }
 
+    /**
+     * Publishes the retained messages of the topics that match the subscription but are not
+     * loaded in the broker straight from the broker's {@link RetainedMessageStore}. Loaded
+     * topics recover their retained message to the subscription themselves, the others are
+     * not created so that a wildcard subscription does not load every retained topic.
+     *
+     * @param subscription the new subscription
+     */
+    protected void recoverRetainedMessages(MQTTSubscription subscription) throws MQTTProtocolException {
+        final RetainedMessageStore retainedMessageStore = brokerService.getRetainedMessageStore();
+        final ActiveMQDestination destination = subscription.getDestination();
+        if (retainedMessageStore == null || destination == null || !destination.isTopic()) {
+            return;
+        }
+
+        try {
+            RegionBroker regionBroker = (RegionBroker) brokerService.getBroker().getAdaptor(RegionBroker.class);
+            Map<ActiveMQDestination, org.apache.activemq.broker.region.Destination> loaded = regionBroker.getTopicRegion().getDestinationMap();
+            for (ActiveMQDestination retained : retainedMessageStore.getRetainedDestinations(destination)) {
+                if (!loaded.containsKey(retained)) {
+                    Message message = retainedMessageStore.getRetainedMessage(retained);
+                    if (message instanceof ActiveMQMessage) {
+                        protocol.publishRetained(subscription, (ActiveMQMessage) message);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new MQTTProtocolException("Error recovering retained messages for " + destination.getPhysicalName() + ": " + e.getMessage(), false, e);
+        }
+    }
+
     public void doUnSubscribe(MQTTSubscription subscription) {
         mqttSubscriptionByTopic.remove(subscription.getTopicName());
         ConsumerInfo info = subscription.getConsumerInfo();
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.mqtt.strategy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.activemq.Service;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.util.ServiceStopper;
+import org.apache.activemq.util.ServiceSupport;
+import org.fusesource.mqtt.client.QoS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the members of the shared subscription groups of a broker.
+ *
+ * A client stays a member of a group until it unsubscribes or its session ends, so the
+ * shared subscriptions of a client that connected with cleanSession=false are restored
+ * when it reconnects, and the queue of a group can be removed once no members are left.
+ */
+class MQTTSharedSubscriptionGroups extends ServiceSupport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MQTTSharedSubscriptionGroups.class);
+    private static final Object LOCK = new Object();
+
+    private final Map<ActiveMQQueue, Set<String>> members = new HashMap<ActiveMQQueue, Set<String>>();
+    private final Map<String, Map<String, QoS>> sessions = new HashMap<String, Map<String, QoS>>();
+
+    private MQTTSharedSubscriptionGroups() {
+    }
+
+    @Override
+    protected synchronized void doStop(ServiceStopper stopper) throws Exception {
+        members.clear();
+        sessions.clear();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+    }
+
+    /**
+     * Adds the client to the group of the shared subscription, or updates the QoS of its
+     * subscription when it is already a member.
+     */
+    public synchronized void join(String clientId, String topicName, QoS qos, ActiveMQQueue queue) {
+        Set<String> clients = members.get(queue);
+        if (clients == null) {
+            clients = new HashSet<String>();
+            members.put(queue, clients);
+        }
+        clients.add(clientId);
+
+        Map<String, QoS> subscriptions = sessions.get(clientId);
+        if (subscriptions == null) {
+            subscriptions = new LinkedHashMap<String, QoS>();
+            sessions.put(clientId, subscriptions);
+        }
+        subscriptions.put(topicName, qos);
+    }
+
+    /**
+     * Removes the client from the group of the shared subscription.
+     *
+     * @return true if the client was the last member of the group.
+     */
+    public synchronized boolean leave(String clientId, String topicName, ActiveMQQueue queue) {
+        Map<String, QoS> subscriptions = sessions.get(clientId);
+        if (subscriptions != null) {
+            subscriptions.remove(topicName);
+            if (subscriptions.isEmpty()) {
+                sessions.remove(clientId);
+            }
+        }
+        return removeMember(clientId, queue);
+    }
+
+    /**
+     * @return the shared subscriptions of the session of the client, by topic filter.
+     */
+    public synchronized Map<String, QoS> getSubscriptions(String clientId) {
+        Map<String, QoS> subscriptions = sessions.get(clientId);
+        return subscriptions != null ? new LinkedHashMap<String, QoS>(subscriptions) : new LinkedHashMap<String, QoS>();
+    }
+
+    /**
+     * Removes the client from all of the groups it is a member of.
+     *
+     * @return the queues of the groups that have no members left.
+     */
+    public synchronized List<ActiveMQQueue> endSession(String clientId) {
+        List<ActiveMQQueue> result = new ArrayList<ActiveMQQueue>();
+        Map<String, QoS> subscriptions = sessions.remove(clientId);
+        if (subscriptions != null) {
+            for (String topicName : subscriptions.keySet()) {
+                ActiveMQQueue queue = MQTTSharedSubscriptionStrategy.getSharedQueue(topicName);
+                if (queue != null && removeMember(clientId, queue)) {
+                    result.add(queue);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean removeMember(String clientId, ActiveMQQueue queue) {
+        Set<String> clients = members.get(queue);
+        if (clients == null) {
+            return false;
+        }
+        clients.remove(clientId);
+        if (clients.isEmpty()) {
+            members.remove(queue);
+            return true;
+        }
+        return false;
+    }
+
+    public static MQTTSharedSubscriptionGroups getSharedSubscriptionGroups(BrokerService broker) {
+        synchronized (LOCK) {
+            Service[] services = broker.getServices();
+            if (services != null) {
+                for (Service service : services) {
+                    if (service instanceof MQTTSharedSubscriptionGroups) {
+                        return (MQTTSharedSubscriptionGroups) service;
+                    }
+                }
+            }
+            MQTTSharedSubscriptionGroups result = new MQTTSharedSubscriptionGroups();
+            broker.addService(result);
+            if (broker.isStarted()) {
+                try {
+                    result.start();
+                } catch (Exception e) {
+                    LOG.warn("Couldn't start MQTTSharedSubscriptionGroups");
+                }
+            }
+            return result;
+        }
+    }
+}
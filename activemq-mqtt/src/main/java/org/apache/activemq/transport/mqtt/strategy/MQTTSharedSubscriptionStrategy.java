@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.mqtt.strategy;
+
+import static org.apache.activemq.transport.mqtt.MQTTProtocolSupport.convertMQTTToActiveMQ;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.activemq.ActiveMQPrefetchPolicy;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ConsumerInfo;
+import org.apache.activemq.command.DestinationInfo;
+import org.apache.activemq.command.Response;
+import org.apache.activemq.transport.mqtt.MQTTProtocolConverter;
+import org.apache.activemq.transport.mqtt.MQTTProtocolException;
+import org.apache.activemq.transport.mqtt.MQTTSubscription;
+import org.apache.activemq.transport.mqtt.ResponseHandler;
+import org.fusesource.mqtt.client.QoS;
+import org.fusesource.mqtt.client.Topic;
+import org.fusesource.mqtt.codec.CONNECT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscription strategy that adds shared subscriptions on top of the Virtual Topic
+ * mapping of {@link MQTTVirtualTopicSubscriptionStrategy}.
+ *
+ * A subscription to {@code $share/<group>/<filter>} is mapped onto the Virtual Topic
+ * consumer queue {@code Consumer.$share-<group>.VirtualTopic.<filter>}, all clients that
+ * subscribe with the same group consume from that one queue so each message published
+ * to the filter is dispatched to only one of them. A client stays a member of the group
+ * until it unsubscribes or its session ends, the shared subscriptions of a client that
+ * connects with cleanSession=false are restored from its session and the queue is removed
+ * once the group has no members left. Group membership is kept in memory so it does not
+ * survive a restart of the broker. As the Virtual Topic forwards by exact name the filter
+ * of a shared subscription cannot contain wildcards.
+ */
+public class MQTTSharedSubscriptionStrategy extends MQTTVirtualTopicSubscriptionStrategy {
+
+    public static final String SHARED_SUBSCRIPTION_PREFIX = "$share/";
+
+    private static final String SHARED_QUEUE_PREFIX = "$share-";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MQTTSharedSubscriptionStrategy.class);
+
+    @Override
+    public void onConnect(CONNECT connect) throws MQTTProtocolException {
+        super.onConnect(connect);
+
+        MQTTSharedSubscriptionGroups groups = getGroups();
+        if (connect.cleanSession()) {
+            deleteSharedQueues(groups.endSession(getSessionId()));
+        } else {
+            restoreSharedSubscriptions(groups.getSubscriptions(getSessionId()));
+        }
+    }
+
+    @Override
+    public void onDisconnect() throws MQTTProtocolException {
+        if (!protocol.isCleanSession()) {
+            return;
+        }
+
+        // the session ends with the connection, release the groups before the queues are removed
+        for (MQTTSubscription subscription : mqttSubscriptionByTopic.values()) {
+            if (isSharedSubscription(subscription.getTopicName())) {
+                doUnSubscribe(subscription);
+            }
+        }
+        deleteSharedQueues(getGroups().endSession(getSessionId()));
+    }
+
+    @Override
+    public byte onSubscribe(Topic topic) throws MQTTProtocolException {
+        String topicName = topic.name().toString();
+        MQTTSubscription subscription = mqttSubscriptionByTopic.get(topicName);
+        if (subscription != null && isSharedSubscription(topicName) && subscription.getQoS() != topic.qos()) {
+            // keep the group membership so the queue is not dropped while the QoS changes
+            doUnSubscribe(subscription);
+            try {
+                return onSubscribe(topicName, topic.qos());
+            } catch (IOException e) {
+                throw new MQTTProtocolException("Failed while intercepting subscribe", true, e);
+            }
+        }
+        return super.onSubscribe(topic);
+    }
+
+    @Override
+    public byte onSubscribe(String topicName, QoS requestedQoS) throws MQTTProtocolException {
+        if (!isSharedSubscription(topicName)) {
+            return super.onSubscribe(topicName, requestedQoS);
+        }
+
+        ActiveMQQueue queue = getSharedQueue(topicName);
+        if (queue == null) {
+            LOG.warn("Invalid shared subscription {}, the group and the filter must be set and cannot contain wildcards", topicName);
+            return protocol.version == MQTTProtocolConverter.V3_1_1 ? SUBSCRIBE_ERROR : (byte) requestedQoS.ordinal();
+        }
+
+        // join before subscribing so a member leaving concurrently does not remove the queue
+        MQTTSharedSubscriptionGroups groups = getGroups();
+        groups.join(getSessionId(), topicName, requestedQoS, queue);
+
+        byte result = doSubscribe(createConsumerInfo(queue), topicName, requestedQoS);
+        if (result == SUBSCRIBE_ERROR && groups.leave(getSessionId(), topicName, queue)) {
+            deleteSharedQueue(queue);
+        }
+        return result;
+    }
+
+    @Override
+    public void onUnSubscribe(String topicName) throws MQTTProtocolException {
+        if (!isSharedSubscription(topicName)) {
+            super.onUnSubscribe(topicName);
+            return;
+        }
+
+        MQTTSubscription subscription = mqttSubscriptionByTopic.remove(topicName);
+        if (subscription != null) {
+            doUnSubscribe(subscription);
+            ActiveMQQueue queue = (ActiveMQQueue) subscription.getDestination();
+            restoredQueues.remove(queue);
+            if (getGroups().leave(getSessionId(), topicName, queue)) {
+                deleteSharedQueue(queue);
+            }
+        }
+    }
+
+    /**
+     * @return true if the topic filter names a shared subscription.
+     */
+    public static boolean isSharedSubscription(String topicName) {
+        return topicName.startsWith(SHARED_SUBSCRIPTION_PREFIX);
+    }
+
+    /**
+     * @return the queue that the members of a shared subscription group consume from.
+     */
+    public static ActiveMQQueue getSharedQueue(String group, String filter) {
+        return new ActiveMQQueue(VIRTUALTOPIC_CONSUMER_PREFIX + convertMQTTToActiveMQ(SHARED_QUEUE_PREFIX + group) + "." +
+                                 VIRTUALTOPIC_PREFIX + convertMQTTToActiveMQ(filter));
+    }
+
+    /**
+     * @return the queue of the shared subscription {@code $share/<group>/<filter>}, or null
+     *         if the group or the filter is missing or contains wildcards.
+     */
+    static ActiveMQQueue getSharedQueue(String topicName) {
+        int separator = topicName.indexOf('/', SHARED_SUBSCRIPTION_PREFIX.length());
+        if (separator < 0) {
+            return null;
+        }
+        String group = topicName.substring(SHARED_SUBSCRIPTION_PREFIX.length(), separator);
+        String filter = topicName.substring(separator + 1);
+        if (group.isEmpty() || filter.isEmpty() || containsWildcard(group) || containsWildcard(filter)) {
+            return null;
+        }
+        return getSharedQueue(group, filter);
+    }
+
+    private void restoreSharedSubscriptions(Map<String, QoS> subscriptions) throws MQTTProtocolException {
+        for (Map.Entry<String, QoS> entry : subscriptions.entrySet()) {
+            ActiveMQQueue queue = getSharedQueue(entry.getKey());
+            LOG.trace("Restoring shared subscription: {}:{}", entry.getKey(), entry.getValue());
+            if (doSubscribe(createConsumerInfo(queue), entry.getKey(), entry.getValue()) != SUBSCRIBE_ERROR) {
+                // mark this shared subscription as restored for a duplicate subscribe
+                restoredQueues.add(queue);
+            }
+        }
+    }
+
+    private void deleteSharedQueues(Iterable<ActiveMQQueue> queues) {
+        for (ActiveMQQueue queue : queues) {
+            deleteSharedQueue(queue);
+        }
+    }
+
+    private void deleteSharedQueue(ActiveMQQueue queue) {
+        LOG.debug("Removing shared subscription queue {} as its group has no members left", queue.getPhysicalName());
+        DestinationInfo remove = new DestinationInfo();
+        remove.setConnectionId(protocol.getConnectionId());
+        remove.setDestination(queue);
+        remove.setOperationType(DestinationInfo.REMOVE_OPERATION_TYPE);
+
+        protocol.sendToActiveMQ(remove, new ResponseHandler() {
+            @Override
+            public void onResponse(MQTTProtocolConverter converter, Response response) throws IOException {
+                // ignore failures, the queue is still in use if a member subscribed meanwhile
+            }
+        });
+    }
+
+    private ConsumerInfo createConsumerInfo(ActiveMQQueue queue) {
+        ConsumerInfo consumerInfo = new ConsumerInfo(getNextConsumerId());
+        consumerInfo.setDestination(queue);
+        if (protocol.getActiveMQSubscriptionPrefetch() > 0) {
+            consumerInfo.setPrefetchSize(protocol.getActiveMQSubscriptionPrefetch());
+        } else {
+            consumerInfo.setPrefetchSize(ActiveMQPrefetchPolicy.DEFAULT_QUEUE_PREFETCH);
+        }
+        consumerInfo.setDispatchAsync(true);
+        return consumerInfo;
+    }
+
+    private String getSessionId() {
+        // zero-byte client ids are only allowed with a clean session, use the connection id
+        String clientId = protocol.getClientId();
+        return clientId != null && !clientId.isEmpty() ? clientId : protocol.getConnectionId().toString();
+    }
+
+    private MQTTSharedSubscriptionGroups getGroups() {
+        return MQTTSharedSubscriptionGroups.getSharedSubscriptionGroups(brokerService);
+    }
+
+    private static boolean containsWildcard(String name) {
+        return name.indexOf('#') >= 0 || name.indexOf('+') >= 0;
+    }
+}
@@ -51,6 +51,14 @@ public interface MQTTSubscriptionStrategy {
      */
     public void onConnect(CONNECT connect) throws MQTTProtocolException;
 
+    /**
+     * Allows the strategy to perform any needed actions when the client disconnects
+     * or its connection fails, such as ending the subscriptions of a clean session.
+     *
+     * @throws MQTTProtocolException if an error occurs while processing the disconnect actions.
+     */
+    public void onDisconnect() throws MQTTProtocolException;
+
     /**
      * Called for each Topic that a client requests to subscribe to.  The strategy needs
      * check each Topic for duplicate subscription requests and change of QoS state.
@@ -55,12 +55,12 @@ import org.slf4j.LoggerFactory;
  */
 public class MQTTVirtualTopicSubscriptionStrategy extends AbstractMQTTSubscriptionStrategy {
 
-    private static final String VIRTUALTOPIC_PREFIX = "VirtualTopic.";
-    private static final String VIRTUALTOPIC_CONSUMER_PREFIX = "Consumer.";
+    protected static final String VIRTUALTOPIC_PREFIX = "VirtualTopic.";
+    protected static final String VIRTUALTOPIC_CONSUMER_PREFIX = "Consumer.";
 
     private static final Logger LOG = LoggerFactory.getLogger(MQTTVirtualTopicSubscriptionStrategy.class);
 
-    private final Set<ActiveMQQueue> restoredQueues = Collections.synchronizedSet(new HashSet<ActiveMQQueue>());
+    protected final Set<ActiveMQQueue> restoredQueues = Collections.synchronizedSet(new HashSet<ActiveMQQueue>());
 
     @Override
     public void onConnect(CONNECT connect) throws MQTTProtocolException {
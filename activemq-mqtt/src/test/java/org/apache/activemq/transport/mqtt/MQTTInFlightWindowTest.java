@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.command.MessageAck;
+import org.apache.activemq.command.MessageId;
+import org.junit.Test;
+
+public class MQTTInFlightWindowTest {
+
+    private final ActiveMQTopic destination = new ActiveMQTopic("foo.bar");
+
+    @Test
+    public void testAckIsReturnedOnce() {
+        MQTTInFlightWindow window = new MQTTInFlightWindow();
+        MessageAck ack = new MessageAck();
+
+        short packetId = window.getNextSequenceId();
+        window.add(packetId, destination, new MessageId("ID:producer:1:1:1"));
+        window.setAck(packetId, ack);
+
+        assertSame(ack, window.remove(packetId));
+        assertNull(window.remove(packetId));
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    public void testGrowsWhileManyPacketsAreInFlight() {
+        MQTTInFlightWindow window = new MQTTInFlightWindow();
+        final int count = 1000;
+
+        for (int i = 1; i <= count; i++) {
+            short packetId = window.getNextSequenceId();
+            window.add(packetId, destination, new MessageId("ID:producer:1:1:" + i));
+            window.setAck(packetId, new MessageAck());
+        }
+        assertEquals(count, window.size());
+
+        assertEquals(500, window.getPacketId(destination, new MessageId("ID:producer:1:1:500")));
+        assertEquals(0, window.getPacketId(new ActiveMQTopic("other"), new MessageId("ID:producer:1:1:500")));
+
+        for (short packetId = 1; packetId <= count; packetId++) {
+            assertEquals(MessageAck.class, window.remove(packetId).getClass());
+        }
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    public void testOldestPacketsAreEvictedOnceFull() {
+        MQTTInFlightWindow window = new MQTTInFlightWindow(64);
+
+        for (int i = 1; i <= 100; i++) {
+            short packetId = window.getNextSequenceId();
+            window.add(packetId, destination, new MessageId("ID:producer:1:1:" + i));
+        }
+        assertEquals(64, window.size());
+
+        assertEquals(0, window.getPacketId(destination, new MessageId("ID:producer:1:1:36")));
+        for (int i = 37; i <= 100; i++) {
+            assertEquals(i, window.getPacketId(destination, new MessageId("ID:producer:1:1:" + i)));
+        }
+    }
+
+    @Test
+    public void testLookupAfterRemovals() {
+        MQTTInFlightWindow window = new MQTTInFlightWindow();
+
+        for (int i = 1; i <= 200; i++) {
+            short packetId = window.getNextSequenceId();
+            window.add(packetId, destination, new MessageId("ID:producer:1:1:" + i));
+        }
+        for (short packetId = 1; packetId <= 200; packetId += 2) {
+            window.remove(packetId);
+        }
+        assertEquals(100, window.size());
+
+        for (int i = 1; i <= 200; i++) {
+            assertEquals(i % 2 == 0 ? i : 0, window.getPacketId(destination, new MessageId("ID:producer:1:1:" + i)));
+        }
+    }
+
+    @Test
+    public void testSequenceSkipsZero() {
+        MQTTInFlightWindow window = new MQTTInFlightWindow();
+        for (int i = 0; i < 0xFFFF; i++) {
+            window.getNextSequenceId();
+        }
+        assertEquals(1, window.getNextSequenceId());
+    }
+
+    @Test
+    public void testClearAcksKeepsPacketIds() {
+        MQTTInFlightWindow window = new MQTTInFlightWindow();
+        MessageId messageId = new MessageId("ID:producer:1:1:1");
+        window.add((short) 7, destination, messageId);
+        window.setAck((short) 7, new MessageAck());
+        window.setAck((short) 8, new MessageAck());
+
+        window.clearAcks();
+
+        assertEquals(1, window.size());
+        assertEquals(7, window.getPacketId(destination, messageId));
+        assertNull(window.remove((short) 7));
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.store.FileRetainedMessageStore;
+import org.apache.activemq.util.IOHelper;
+import org.fusesource.mqtt.client.BlockingConnection;
+import org.fusesource.mqtt.client.MQTT;
+import org.fusesource.mqtt.client.Message;
+import org.fusesource.mqtt.client.QoS;
+import org.fusesource.mqtt.client.Topic;
+import org.junit.Test;
+
+public class MQTTRetainedMessageStoreTest extends MQTTTestSupport {
+
+    @Override
+    protected BrokerService createBroker(boolean deleteAllMessages) throws Exception {
+        BrokerService brokerService = super.createBroker(deleteAllMessages);
+        File directory = new File(KAHADB_DIRECTORY + getTestName() + "-retained");
+        if (deleteAllMessages) {
+            IOHelper.deleteChildren(directory);
+        }
+        FileRetainedMessageStore retainedMessageStore = new FileRetainedMessageStore();
+        retainedMessageStore.setDirectory(directory);
+        brokerService.setRetainedMessageStore(retainedMessageStore);
+        return brokerService;
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testRetainedMessageSurvivesRestart() throws Exception {
+        publishRetained("sensors/1/temp", "21");
+
+        restartBroker();
+
+        BlockingConnection connection = subscribe("sensors/1/temp");
+        Message message = connection.receive(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals("21", new String(message.getPayload()));
+        message.ack();
+        connection.disconnect();
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testWildcardRecoversRetainedMessagesOfUnloadedTopics() throws Exception {
+        publishRetained("sensors/1/temp", "21");
+        publishRetained("sensors/2/temp", "22");
+        publishRetained("sensors/2/humidity", "60");
+
+        restartBroker();
+        assertFalse(brokerService.getRegionBroker().getDestinationMap().containsKey(new ActiveMQTopic("sensors.1.temp")));
+
+        BlockingConnection connection = subscribe("sensors/+/temp");
+        Set<String> received = new HashSet<String>();
+        for (int i = 0; i < 2; i++) {
+            Message message = connection.receive(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            received.add(message.getTopic() + "=" + new String(message.getPayload()));
+            message.ack();
+        }
+        assertNull(connection.receive(500, TimeUnit.MILLISECONDS));
+        connection.disconnect();
+
+        assertTrue(received.contains("sensors/1/temp=21"));
+        assertTrue(received.contains("sensors/2/temp=22"));
+        // the retained messages are published from the store without loading their topics
+        assertFalse(brokerService.getRegionBroker().getDestinationMap().containsKey(new ActiveMQTopic("sensors.1.temp")));
+        assertFalse(brokerService.getRegionBroker().getDestinationMap().containsKey(new ActiveMQTopic("sensors.2.temp")));
+        assertFalse(brokerService.getRegionBroker().getDestinationMap().containsKey(new ActiveMQTopic("sensors.2.humidity")));
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testClearedRetainedMessageIsRemovedFromStore() throws Exception {
+        publishRetained("sensors/1/temp", "21");
+        assertEquals(1, brokerService.getRetainedMessageStore().size());
+
+        publishRetained("sensors/1/temp", "");
+        assertEquals(0, brokerService.getRetainedMessageStore().size());
+
+        restartBroker();
+        assertEquals(0, brokerService.getRetainedMessageStore().size());
+
+        BlockingConnection connection = subscribe("sensors/#");
+        assertNull(connection.receive(500, TimeUnit.MILLISECONDS));
+        connection.disconnect();
+    }
+
+    private void publishRetained(String topic, String payload) throws Exception {
+        MQTT mqtt = createMQTTConnection(null, true);
+        BlockingConnection connection = mqtt.blockingConnection();
+        connection.connect();
+        connection.publish(topic, payload.getBytes(), QoS.AT_LEAST_ONCE, true);
+        connection.disconnect();
+    }
+
+    private BlockingConnection subscribe(String topic) throws Exception {
+        MQTT mqtt = createMQTTConnection(null, true);
+        BlockingConnection connection = mqtt.blockingConnection();
+        connection.connect();
+        connection.subscribe(new Topic[] { new Topic(topic, QoS.AT_LEAST_ONCE) });
+        return connection;
+    }
+}
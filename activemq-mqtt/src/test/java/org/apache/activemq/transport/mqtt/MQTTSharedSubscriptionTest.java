@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.transport.mqtt.strategy.MQTTSharedSubscriptionStrategy;
+import org.apache.activemq.util.Wait;
+import org.fusesource.mqtt.client.BlockingConnection;
+import org.fusesource.mqtt.client.Message;
+import org.fusesource.mqtt.client.QoS;
+import org.fusesource.mqtt.client.Topic;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MQTTSharedSubscriptionTest extends MQTTTestSupport {
+
+    private static final String TOPIC = "workers/jobs";
+    private static final String SHARED_TOPIC = "$share/group1/" + TOPIC;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        protocolConfig = "transport.subscriptionStrategy=mqtt-shared-subscriptions";
+        super.setUp();
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testMessagesAreSharedAcrossGroupMembers() throws Exception {
+        BlockingConnection worker1 = createMQTTConnection("worker1", true).blockingConnection();
+        worker1.connect();
+        worker1.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+
+        BlockingConnection worker2 = createMQTTConnection("worker2", true).blockingConnection();
+        worker2.connect();
+        worker2.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+
+        BlockingConnection observer = createMQTTConnection("observer", true).blockingConnection();
+        observer.connect();
+        observer.subscribe(new Topic[] { new Topic(TOPIC, QoS.AT_LEAST_ONCE) });
+
+        final int count = 20;
+        BlockingConnection publisher = createMQTTConnection("publisher", true).blockingConnection();
+        publisher.connect();
+        for (int i = 0; i < count; i++) {
+            publisher.publish(TOPIC, ("job-" + i).getBytes(), QoS.AT_LEAST_ONCE, false);
+        }
+
+        Set<String> received = new HashSet<String>();
+        int fromWorker1 = receiveAll(worker1, received);
+        int fromWorker2 = receiveAll(worker2, received);
+
+        assertEquals(count, fromWorker1 + fromWorker2);
+        assertEquals(count, received.size());
+        assertTrue("worker1 got no messages", fromWorker1 > 0);
+        assertTrue("worker2 got no messages", fromWorker2 > 0);
+
+        // a plain subscription still sees every message
+        assertEquals(count, receiveAll(observer, new HashSet<String>()));
+
+        worker1.disconnect();
+        worker2.disconnect();
+        observer.disconnect();
+        publisher.disconnect();
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testUnsubscribeKeepsQueueForRemainingMembers() throws Exception {
+        BlockingConnection worker1 = createMQTTConnection("worker1", true).blockingConnection();
+        worker1.connect();
+        worker1.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+
+        BlockingConnection worker2 = createMQTTConnection("worker2", true).blockingConnection();
+        worker2.connect();
+        worker2.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+
+        worker1.unsubscribe(new String[] { SHARED_TOPIC });
+
+        BlockingConnection publisher = createMQTTConnection("publisher", true).blockingConnection();
+        publisher.connect();
+        publisher.publish(TOPIC, "job".getBytes(), QoS.AT_LEAST_ONCE, false);
+
+        Message message = worker2.receive(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals(TOPIC, message.getTopic());
+        message.ack();
+        assertNull(worker1.receive(500, TimeUnit.MILLISECONDS));
+
+        assertNotNull(brokerService.getDestination(MQTTSharedSubscriptionStrategy.getSharedQueue("group1", TOPIC)));
+
+        worker1.disconnect();
+        worker2.disconnect();
+        publisher.disconnect();
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testSharedSubscriptionRestoredForPersistentSession() throws Exception {
+        BlockingConnection worker = createMQTTConnection("worker1", false).blockingConnection();
+        worker.connect();
+        worker.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+        worker.disconnect();
+
+        BlockingConnection publisher = createMQTTConnection("publisher", true).blockingConnection();
+        publisher.connect();
+        publisher.publish(TOPIC, "job".getBytes(), QoS.AT_LEAST_ONCE, false);
+
+        // the subscription is restored from the session without subscribing again
+        worker = createMQTTConnection("worker1", false).blockingConnection();
+        worker.connect();
+        Message message = worker.receive(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals("job", new String(message.getPayload()));
+        message.ack();
+
+        worker.disconnect();
+        publisher.disconnect();
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testQueueRemovedWhenLastMemberLeaves() throws Exception {
+        final ActiveMQQueue queue = MQTTSharedSubscriptionStrategy.getSharedQueue("group1", TOPIC);
+
+        BlockingConnection worker1 = createMQTTConnection("worker1", true).blockingConnection();
+        worker1.connect();
+        worker1.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+
+        BlockingConnection worker2 = createMQTTConnection("worker2", false).blockingConnection();
+        worker2.connect();
+        worker2.subscribe(new Topic[] { new Topic(SHARED_TOPIC, QoS.AT_LEAST_ONCE) });
+        worker2.disconnect();
+
+        // the session of worker2 keeps the group alive after worker1 unsubscribes
+        worker1.unsubscribe(new String[] { SHARED_TOPIC });
+        assertTrue(brokerService.getRegionBroker().getDestinationMap().containsKey(queue));
+
+        // ending the session of the last member removes the queue
+        worker2 = createMQTTConnection("worker2", true).blockingConnection();
+        worker2.connect();
+        assertTrue("queue not removed", Wait.waitFor(new Wait.Condition() {
+            @Override
+            public boolean isSatisified() throws Exception {
+                return !brokerService.getRegionBroker().getDestinationMap().containsKey(queue);
+            }
+        }));
+
+        worker1.disconnect();
+        worker2.disconnect();
+    }
+
+    private int receiveAll(BlockingConnection connection, Set<String> received) throws Exception {
+        int count = 0;
+        Message message;
+        while ((message = connection.receive(2, TimeUnit.SECONDS)) != null) {
+            received.add(new String(message.getPayload()));
+            message.ack();
+            count++;
+        }
+        return count;
+    }
+}
@@ -16,32 +16,41 @@
  */
 package org.apache.activemq.transport.stomp;
 
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.activemq.transport.tcp.TcpTransport;
 import org.apache.activemq.util.ByteArrayOutputStream;
-import org.apache.activemq.util.DataByteArrayInputStream;
+import org.apache.activemq.util.ByteSequence;
 
+/**
+ * Incrementally parses STOMP frames out of the buffers read by the NIO transports.
+ *
+ * The bytes are consumed straight from the buffer: a header section that arrives in a
+ * single read is parsed in place, only sections and bodies that span several reads are
+ * collected in an intermediate buffer, and bodies with a content-length are copied once
+ * into the array handed to the frame.
+ */
 public class StompCodec {
 
-    final static byte[] crlfcrlf = new byte[]{'\r','\n','\r','\n'};
+    private static final int CRLFCRLF = ('\r' << 24) | ('\n' << 16) | ('\r' << 8) | '\n';
+
     TcpTransport transport;
     StompWireFormat wireFormat;
 
-    AtomicLong frameSize = new AtomicLong(); 
+    AtomicLong frameSize = new AtomicLong();
     ByteArrayOutputStream currentCommand = new ByteArrayOutputStream();
     boolean processedHeaders = false;
-    String action;
-    HashMap<String, String> headers;
+    StompFrame frame;
+    byte[] content;
     int contentLength = -1;
     int readLength = 0;
     int previousByte = -1;
+    int headerTail = 0;
     boolean awaitingCommandStart = true;
     String version = Stomp.DEFAULT_VERSION;
 
@@ -50,92 +59,165 @@ public class StompCodec {
         this.wireFormat = (StompWireFormat) transport.getWireFormat();
     }
 
-    public void parse(ByteArrayInputStream input, int readSize) throws Exception {
-       int i = 0;
-       int b;
-       while(i++ < readSize) {
-           b = input.read();
-           // skip repeating nulls
-           if (!processedHeaders && previousByte == 0 && b == 0) {
-               continue;
-           }
-
-           if (!processedHeaders) {
-
-               // skip heart beat commands.
-               if (awaitingCommandStart && b == '\n') {
-                   continue;
-               } else {
-                   awaitingCommandStart = false;   // non-newline indicates next frame.
-               }
-
-               currentCommand.write(b);
-               // end of headers section, parse action and header
-               if (b == '\n' && (previousByte == '\n' || currentCommand.endsWith(crlfcrlf))) {
-                   DataByteArrayInputStream data = new DataByteArrayInputStream(currentCommand.toByteArray());
-
-                   try {
-                       action = wireFormat.parseAction(data, frameSize);
-                       headers = wireFormat.parseHeaders(data, frameSize);
-                       
-                       String contentLengthHeader = headers.get(Stomp.Headers.CONTENT_LENGTH);
-                       if ((action.equals(Stomp.Commands.SEND) || action.equals(Stomp.Responses.MESSAGE)) && contentLengthHeader != null) {
-                           contentLength = wireFormat.parseContentLength(contentLengthHeader, frameSize);
-                       } else {
-                           contentLength = -1;
-                       }
-                   } catch (ProtocolException e) {
-                       transport.doConsume(new StompFrameError(e));
-                       return;
-                   }
-                   processedHeaders = true;
-                   currentCommand.reset();
-               }
-
-           } else {
-
-               if (contentLength == -1) {
-                   // end of command reached, unmarshal
-                   if (b == 0) {
-                       processCommand();
-                   } else {
-                       currentCommand.write(b);
-                       if (currentCommand.size() > wireFormat.getMaxDataLength()) {
-                           StompFrameError errorFrame = new StompFrameError(new ProtocolException("The maximum data length was exceeded", true));
-                           errorFrame.setAction(this.action);
-                           transport.doConsume(errorFrame);
-                           return;
-                       }
-                       if (frameSize.incrementAndGet() > wireFormat.getMaxFrameSize()) {
-                           StompFrameError errorFrame = new StompFrameError(new ProtocolException("The maximum frame size was exceeded", true));
-                           errorFrame.setAction(this.action);
-                           transport.doConsume(errorFrame);
-                           return;
-                       }
-                   }
-               } else {
-                   // read desired content length
-                   if (readLength++ == contentLength) {
-                       processCommand();
-                       readLength = 0;
-                   } else {
-                       currentCommand.write(b);
-                   }
-               }
-           }
-
-           previousByte = b;
-       }
+    /**
+     * Parses the remaining bytes of the given buffer, frames are passed on to the transport
+     * as soon as they are complete and a partial frame is kept until the next call.
+     */
+    public void parse(ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            if (!processedHeaders) {
+                if (!parseHeaders(buffer)) {
+                    return;
+                }
+            } else if (contentLength == -1) {
+                if (!parseUnsizedContent(buffer)) {
+                    return;
+                }
+            } else if (readLength < contentLength) {
+                int size = Math.min(buffer.remaining(), contentLength - readLength);
+                buffer.get(content, readLength, size);
+                readLength += size;
+            } else {
+                // the byte following the content terminates the frame
+                previousByte = buffer.get() & 0xFF;
+                processCommand(content);
+            }
+        }
+    }
+
+    private boolean parseHeaders(ByteBuffer buffer) throws Exception {
+        int start = -1;
+        while (buffer.hasRemaining()) {
+            int position = buffer.position();
+            int b = buffer.get() & 0xFF;
+
+            // skip repeating nulls and the line breaks sent as heart beats
+            if ((previousByte == 0 && b == 0) || (awaitingCommandStart && b == '\n')) {
+                if (start >= 0) {
+                    append(buffer, start, position);
+                    start = -1;
+                }
+                continue;
+            }
+            awaitingCommandStart = false;
+            if (start < 0) {
+                start = position;
+            }
+
+            headerTail = (headerTail << 8) | b;
+            boolean endOfHeaders = b == '\n' && (previousByte == '\n' || headerTail == CRLFCRLF);
+            previousByte = b;
+
+            // end of headers section, parse action and header
+            if (endOfHeaders) {
+                try {
+                    if (currentCommand.size() == 0 && buffer.hasArray()) {
+                        frame = wireFormat.parseHeaderSection(buffer.array(), buffer.arrayOffset() + start, position + 1 - start, frameSize);
+                    } else {
+                        append(buffer, start, position + 1);
+                        ByteSequence section = currentCommand.toByteSequence();
+                        frame = wireFormat.parseHeaderSection(section.getData(), section.getOffset(), section.getLength(), frameSize);
+                    }
+                    currentCommand.reset();
+                    headerTail = 0;
+
+                    if (frame == null) {
+                        awaitingCommandStart = true;
+                        frameSize.set(0);
+                        return true;
+                    }
+
+                    String action = frame.getAction();
+                    String contentLengthHeader = frame.getHeaders().get(Stomp.Headers.CONTENT_LENGTH);
+                    if ((action.equals(Stomp.Commands.SEND) || action.equals(Stomp.Responses.MESSAGE)) && contentLengthHeader != null) {
+                        contentLength = wireFormat.parseContentLength(contentLengthHeader, frameSize);
+                        content = new byte[contentLength];
+                        readLength = 0;
+                    } else {
+                        contentLength = -1;
+                    }
+                } catch (ProtocolException e) {
+                    currentCommand.reset();
+                    buffer.position(buffer.limit());
+                    transport.doConsume(new StompFrameError(e));
+                    return false;
+                }
+                processedHeaders = true;
+                return true;
+            }
+        }
+
+        if (start >= 0) {
+            append(buffer, start, buffer.position());
+        }
+        return false;
+    }
+
+    private boolean parseUnsizedContent(ByteBuffer buffer) throws Exception {
+        int start = buffer.position();
+        int end = buffer.limit();
+        int terminator = -1;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == 0) {
+                terminator = i;
+                break;
+            }
+        }
+
+        int size = (terminator < 0 ? end : terminator) - start;
+        if (size > 0) {
+            append(buffer, start, start + size);
+            if (currentCommand.size() > wireFormat.getMaxDataLength()) {
+                StompFrameError errorFrame = new StompFrameError(new ProtocolException("The maximum data length was exceeded", true));
+                errorFrame.setAction(frame.getAction());
+                buffer.position(end);
+                transport.doConsume(errorFrame);
+                return false;
+            }
+            if (frameSize.addAndGet(size) > wireFormat.getMaxFrameSize()) {
+                StompFrameError errorFrame = new StompFrameError(new ProtocolException("The maximum frame size was exceeded", true));
+                errorFrame.setAction(frame.getAction());
+                buffer.position(end);
+                transport.doConsume(errorFrame);
+                return false;
+            }
+        }
+
+        if (terminator < 0) {
+            buffer.position(end);
+            return false;
+        }
+
+        // end of command reached, unmarshal
+        buffer.position(terminator + 1);
+        previousByte = 0;
+        processCommand(currentCommand.toByteArray());
+        return true;
+    }
+
+    private void append(ByteBuffer buffer, int start, int end) {
+        if (buffer.hasArray()) {
+            currentCommand.write(buffer.array(), buffer.arrayOffset() + start, end - start);
+        } else {
+            for (int i = start; i < end; i++) {
+                currentCommand.write(buffer.get(i));
+            }
+        }
     }
 
-    protected void processCommand() throws Exception {
-        StompFrame frame = new StompFrame(action, headers, currentCommand.toByteArray());
-        transport.doConsume(frame);
+    protected void processCommand(byte[] data) throws Exception {
+        StompFrame command = frame;
+        command.setContent(data);
+        frame = null;
+        content = null;
         processedHeaders = false;
         awaitingCommandStart = true;
         currentCommand.reset();
         contentLength = -1;
+        readLength = 0;
+        headerTail = 0;
         frameSize.set(0);
+        transport.doConsume(command);
     }
 
     public static String detectVersion(Map<String, String> headers) throws ProtocolException {
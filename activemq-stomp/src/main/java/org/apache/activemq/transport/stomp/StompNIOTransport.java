@@ -16,7 +16,6 @@
  */
 package org.apache.activemq.transport.stomp;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
@@ -67,7 +66,7 @@ public class StompNIOTransport extends TcpTransport {
         channel.configureBlocking(false);
 
         // listen for events telling us when the socket is readable.
-        selection = SelectorManager.getInstance().register(channel, new SelectorManager.Listener() {
+        selection = getSelectorManager().register(channel, new SelectorManager.Listener() {
             @Override
             public void onSelect(SelectorSelection selection) {
                 serviceRead();
@@ -132,8 +131,7 @@ public class StompNIOTransport extends TcpTransport {
 
         buffer.flip();
 
-        ByteArrayInputStream input = new ByteArrayInputStream(buffer.array());
-        codec.parse(input, readSize);
+        codec.parse(buffer);
 
         // clear the buffer
         buffer.clear();
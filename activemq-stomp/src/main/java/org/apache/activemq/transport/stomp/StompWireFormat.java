@@ -21,8 +21,8 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -45,6 +45,27 @@ public class StompWireFormat implements WireFormat {
     private static final int MAX_HEADER_LENGTH = 1024 * 10;
     private static final int MAX_HEADERS = 1000;
 
+    // commands and header names are looked up here by length so that the parser can
+    // hand out the shared String instances instead of decoding a new one per frame
+    private static final String[][] KNOWN_NAMES = createKnownNames(
+        Stomp.Commands.STOMP, Stomp.Commands.CONNECT, Stomp.Commands.SEND, Stomp.Commands.DISCONNECT,
+        Stomp.Commands.SUBSCRIBE, Stomp.Commands.UNSUBSCRIBE, Stomp.Commands.BEGIN, Stomp.Commands.COMMIT,
+        Stomp.Commands.ABORT, Stomp.Commands.ACK, Stomp.Commands.NACK, Stomp.Responses.CONNECTED,
+        Stomp.Responses.ERROR, Stomp.Responses.MESSAGE, Stomp.Responses.RECEIPT,
+        Stomp.Headers.RECEIPT_REQUESTED, Stomp.Headers.TRANSACTION, Stomp.Headers.CONTENT_LENGTH,
+        Stomp.Headers.CONTENT_TYPE, Stomp.Headers.TRANSFORMATION, Stomp.Headers.TRANSFORMATION_ERROR,
+        Stomp.Headers.AMQ_MESSAGE_TYPE, Stomp.Headers.Response.RECEIPT_ID, Stomp.Headers.Send.DESTINATION,
+        Stomp.Headers.Send.CORRELATION_ID, Stomp.Headers.Send.REPLY_TO, Stomp.Headers.Send.EXPIRATION_TIME,
+        Stomp.Headers.Send.PRIORITY, Stomp.Headers.Send.TYPE, Stomp.Headers.Send.PERSISTENT,
+        Stomp.Headers.Message.MESSAGE_ID, Stomp.Headers.Message.ACK_ID, Stomp.Headers.Message.REDELIVERED,
+        Stomp.Headers.Message.TIMESTAMP, Stomp.Headers.Message.SUBSCRIPTION, Stomp.Headers.Message.BROWSER,
+        Stomp.Headers.Message.USERID, Stomp.Headers.Message.ORIGINAL_DESTINATION, Stomp.Headers.Subscribe.ID,
+        Stomp.Headers.Subscribe.SELECTOR, Stomp.Headers.Connect.LOGIN, Stomp.Headers.Connect.PASSCODE,
+        Stomp.Headers.Connect.CLIENT_ID, Stomp.Headers.Connect.REQUEST_ID, Stomp.Headers.Connect.ACCEPT_VERSION,
+        Stomp.Headers.Connect.HOST, Stomp.Headers.Connect.HEART_BEAT, Stomp.Headers.Connected.SESSION,
+        Stomp.Headers.Connected.RESPONSE_ID, Stomp.Headers.Connected.SERVER, Stomp.Headers.Connected.VERSION,
+        "JMSXGroupID", "JMSXGroupSeq");
+
     public static final int MAX_DATA_LENGTH = 1024 * 1024 * 100;
     public static final long DEFAULT_MAX_FRAME_SIZE = Long.MAX_VALUE;
     public static final long DEFAULT_CONNECTION_TIMEOUT = 30000;
@@ -82,7 +103,7 @@ public class StompWireFormat implements WireFormat {
         for (Map.Entry<String, String> entry : stomp.getHeaders().entrySet()) {
             buffer.append(entry.getKey());
             buffer.append(Stomp.Headers.SEPERATOR);
-            buffer.append(encodeHeader(entry.getValue()));
+            appendHeaderValue(buffer, entry.getValue());
             buffer.append(Stomp.NEWLINE);
         }
 
@@ -101,13 +122,71 @@ public class StompWireFormat implements WireFormat {
             return;
         }
 
-        StringBuilder builder = new StringBuilder();
-
-        os.write(marshalHeaders(stomp, builder).toString().getBytes("UTF-8"));
+        // the frame is written straight into the transport buffer rather than being
+        // staged in a String and encoded again
+        writeString(os, stomp.getAction(), false);
+        os.write(Stomp.BREAK);
+        boolean escape = !stompVersion.equals(Stomp.V1_0);
+        for (Map.Entry<String, String> entry : stomp.getHeaders().entrySet()) {
+            writeString(os, entry.getKey(), false);
+            os.write(Stomp.COLON);
+            writeString(os, entry.getValue(), escape);
+            os.write(Stomp.BREAK);
+        }
+        os.write(Stomp.BREAK);
         os.write(stomp.getContent());
         os.write(END_OF_FRAME);
     }
 
+    private void writeString(DataOutput os, String value, boolean escape) throws IOException {
+        // encoded as UTF-8 on the fly, only the ASCII characters can need escaping
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                writeByte(os, (byte) c, escape);
+            } else if (c < 0x800) {
+                os.write(0xC0 | (c >> 6));
+                os.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                os.write(0xF0 | (codePoint >> 18));
+                os.write(0x80 | ((codePoint >> 12) & 0x3F));
+                os.write(0x80 | ((codePoint >> 6) & 0x3F));
+                os.write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is replaced like String.getBytes does
+                os.write('?');
+            } else {
+                os.write(0xE0 | (c >> 12));
+                os.write(0x80 | ((c >> 6) & 0x3F));
+                os.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeByte(DataOutput os, byte value, boolean escape) throws IOException {
+        if (escape) {
+            switch (value) {
+            case Stomp.ESCAPE:
+                os.write(Stomp.ESCAPE_ESCAPE_SEQ);
+                return;
+            case Stomp.BREAK:
+                os.write(Stomp.NEWLINE_ESCAPE_SEQ);
+                return;
+            case Stomp.COLON:
+                os.write(Stomp.COLON_ESCAPE_SEQ);
+                return;
+            case Stomp.CARRIAGE_RETURN:
+                if (stompVersion.equals(Stomp.V1_2)) {
+                    os.write(Stomp.CARRIAGE_ESCAPE_SEQ);
+                    return;
+                }
+            }
+        }
+        os.write(value);
+    }
+
     public String marshalToString(StompFrame stomp) throws IOException {
         if (stomp.getAction().equals(Stomp.Commands.KEEPALIVE)) {
             return String.valueOf((char)Stomp.BREAK);
@@ -185,7 +264,7 @@ public class StompWireFormat implements WireFormat {
 
     private String readLine(DataInput in, int maxLength, String errorMessage) throws IOException {
         ByteSequence sequence = readHeaderLine(in, maxLength, errorMessage);
-        return new String(sequence.getData(), sequence.getOffset(), sequence.getLength(), "UTF-8").trim();
+        return decodeName(sequence.getData(), sequence.getOffset(), sequence.getLength(), true);
     }
 
     private ByteSequence readHeaderLine(DataInput in, int maxLength, String errorMessage) throws IOException {
@@ -242,43 +321,152 @@ public class StompWireFormat implements WireFormat {
                 }
                 frameSize.addAndGet(line.length);
 
-                try {
+                parseHeaderLine(line.getData(), line.getOffset(), line.getLength(), headers);
+            } else {
+                break;
+            }
+        }
+        return headers;
+    }
 
-                    ByteArrayInputStream headerLine = new ByteArrayInputStream(line);
-                    ByteArrayOutputStream stream = new ByteArrayOutputStream(line.length);
+    /**
+     * Parses the command and the headers of a frame from a header section that is held
+     * in full in the given array, ending with the empty line that separates it from the body.
+     *
+     * @return a frame holding the command and headers, its content is left to the caller,
+     *         or null when the section only held line breaks sent as heart beats
+     */
+    protected StompFrame parseHeaderSection(byte[] data, int offset, int length, AtomicLong frameSize) throws ProtocolException {
+        int end = offset + length;
 
-                    // First complete the name
-                    int result = -1;
-                    while ((result = headerLine.read()) != -1) {
-                        if (result != ':') {
-                            stream.write(result);
-                        } else {
-                            break;
-                        }
-                    }
+        // skip white space to next real action line
+        String action = null;
+        while (action == null) {
+            int lineEnd = indexOf(data, offset, end, Stomp.BREAK);
+            if (lineEnd < 0) {
+                return null;
+            }
+            if (lineEnd - offset > MAX_COMMAND_LENGTH) {
+                throw new ProtocolException("The maximum command length was exceeded", true);
+            }
+            action = decodeName(data, offset, lineEnd - offset, true);
+            if (action.isEmpty()) {
+                action = null;
+            }
+            offset = lineEnd + 1;
+        }
+        frameSize.addAndGet(action.length());
 
-                    ByteSequence nameSeq = stream.toByteSequence();
+        HashMap<String, String> headers = new HashMap<>(25);
+        while (offset < end) {
+            int lineEnd = indexOf(data, offset, end, Stomp.BREAK);
+            if (lineEnd < 0) {
+                lineEnd = end;
+            }
+            int lineLength = lineEnd - offset;
+            if (lineLength > MAX_HEADER_LENGTH) {
+                throw new ProtocolException("The maximum header length was exceeded", true);
+            }
+            if (lineLength > 0 && data[lineEnd - 1] == Stomp.CARRIAGE_RETURN &&
+                (stompVersion.equals(Stomp.V1_0) || stompVersion.equals(Stomp.V1_2))) {
+                lineLength--;
+            }
+            if (lineLength <= 1) {
+                break;
+            }
+            if (headers.size() > MAX_HEADERS) {
+                throw new ProtocolException("The maximum number of headers was exceeded", true);
+            }
+            frameSize.addAndGet(lineLength);
+            parseHeaderLine(data, offset, lineLength, headers);
+            offset = lineEnd + 1;
+        }
 
-                    String name = new String(nameSeq.getData(), nameSeq.getOffset(), nameSeq.getLength(), "UTF-8");
-                    String value = decodeHeader(headerLine);
-                    if (stompVersion.equals(Stomp.V1_0)) {
-                        value = value.trim();
-                    }
+        return new StompFrame(action, headers, NO_DATA);
+    }
 
-                    if (!headers.containsKey(name)) {
-                        headers.put(name, value);
-                    }
+    private void parseHeaderLine(byte[] data, int offset, int length, Map<String, String> headers) throws ProtocolException {
+        try {
+            int end = offset + length;
+            int separator = indexOf(data, offset, end, Stomp.COLON);
+            String name;
+            String value;
+            if (separator < 0) {
+                name = decodeName(data, offset, length, false);
+                value = "";
+            } else {
+                name = decodeName(data, offset, separator - offset, false);
+                value = decodeHeader(data, separator + 1, end - separator - 1);
+            }
+            if (stompVersion.equals(Stomp.V1_0)) {
+                value = value.trim();
+            }
 
-                    stream.close();
+            if (!headers.containsKey(name)) {
+                headers.put(name, value);
+            }
+        } catch (Exception e) {
+            throw new ProtocolException("Unable to parser header line [" + new ByteSequence(data, offset, length) + "]", true);
+        }
+    }
 
-                } catch (Exception e) {
-                    throw new ProtocolException("Unable to parser header line [" + line + "]", true);
+    private static int indexOf(byte[] data, int offset, int end, byte value) {
+        for (int i = offset; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a command or header name, returning the shared instance when it is one
+     * of the names defined by the protocol
+     */
+    private static String decodeName(byte[] data, int offset, int length, boolean trim) {
+        if (trim) {
+            while (length > 0 && (data[offset] & 0xFF) <= ' ') {
+                offset++;
+                length--;
+            }
+            while (length > 0 && (data[offset + length - 1] & 0xFF) <= ' ') {
+                length--;
+            }
+        }
+        if (length < KNOWN_NAMES.length) {
+            for (String candidate : KNOWN_NAMES[length]) {
+                if (matches(candidate, data, offset)) {
+                    return candidate;
                 }
-            } else {
-                break;
             }
         }
-        return headers;
+        return new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean matches(String candidate, byte[] data, int offset) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[][] createKnownNames(String... names) {
+        int longest = 0;
+        for (String name : names) {
+            longest = Math.max(longest, name.length());
+        }
+        String[][] table = new String[longest + 1][0];
+        for (String name : names) {
+            String[] current = table[name.length()];
+            if (!Arrays.asList(current).contains(name)) {
+                String[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = name;
+                table[name.length()] = updated;
+            }
+        }
+        return table;
     }
 
     protected int parseContentLength(String contentLength, AtomicLong frameSize) throws ProtocolException {
@@ -300,79 +488,84 @@ public class StompWireFormat implements WireFormat {
         return length;
     }
 
-    private String encodeHeader(String header) throws IOException {
-        String result = header;
-        if (!stompVersion.equals(Stomp.V1_0)) {
-            byte[] utf8buf = header.getBytes("UTF-8");
-            ByteArrayOutputStream stream = new ByteArrayOutputStream(utf8buf.length);
-            for(byte val : utf8buf) {
-                switch(val) {
-                case Stomp.ESCAPE:
-                    stream.write(Stomp.ESCAPE_ESCAPE_SEQ);
-                    break;
-                case Stomp.BREAK:
-                    stream.write(Stomp.NEWLINE_ESCAPE_SEQ);
-                    break;
-                case Stomp.COLON:
-                    stream.write(Stomp.COLON_ESCAPE_SEQ);
+    private void appendHeaderValue(StringBuilder buffer, String value) {
+        if (stompVersion.equals(Stomp.V1_0)) {
+            buffer.append(value);
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case Stomp.ESCAPE:
+                buffer.append("\\\\");
+                break;
+            case Stomp.BREAK:
+                buffer.append("\\n");
+                break;
+            case Stomp.COLON:
+                buffer.append("\\c");
+                break;
+            case Stomp.CARRIAGE_RETURN:
+                if (stompVersion.equals(Stomp.V1_2)) {
+                    buffer.append("\\r");
                     break;
-                case Stomp.CARRIAGE_RETURN:
-                    if(stompVersion.equals(Stomp.V1_2)) {
-                        stream.write(Stomp.CARRIAGE_ESCAPE_SEQ);
-                        break;
-                    }
-                default:
-                    stream.write(val);
                 }
+            default:
+                buffer.append(c);
             }
-            result =  new String(stream.toByteArray(), "UTF-8");
-            stream.close();
         }
-
-        return result;
     }
 
-    private String decodeHeader(InputStream header) throws IOException {
-        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
-        PushbackInputStream stream = new PushbackInputStream(header);
-
-        int value = -1;
-        while( (value = stream.read()) != -1) {
-            if (value == 92) {
-
-                int next = stream.read();
-                if (next != -1) {
-                    switch(next) {
-                    case 110:
-                        decoded.write(Stomp.BREAK);
-                        break;
-                    case 99:
-                        decoded.write(Stomp.COLON);
-                        break;
-                    case 92:
-                        decoded.write(Stomp.ESCAPE);
-                        break;
-                    case 114:
-                        if(stompVersion.equals(Stomp.V1_2)) {
-                            decoded.write(Stomp.CARRIAGE_RETURN);
-                            break;
-                        }
-                    default:
-                        stream.unread(next);
-                        decoded.write(value);
+    private String decodeHeader(byte[] data, int offset, int length) {
+        int end = offset + length;
+        boolean ascii = true;
+        int escape = -1;
+        for (int i = offset; i < end; i++) {
+            if (data[i] == Stomp.ESCAPE) {
+                escape = i;
+                break;
+            } else if (data[i] < 0) {
+                ascii = false;
+            }
+        }
+
+        // values without escape sequences, the common case, are decoded in a single step
+        if (escape < 0) {
+            return new String(data, offset, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        }
+
+        byte[] decoded = new byte[length];
+        int size = escape - offset;
+        System.arraycopy(data, offset, decoded, 0, size);
+        for (int i = escape; i < end; i++) {
+            byte value = data[i];
+            if (value == Stomp.ESCAPE && i + 1 < end) {
+                switch (data[i + 1]) {
+                case 'n':
+                    decoded[size++] = Stomp.BREAK;
+                    i++;
+                    continue;
+                case 'c':
+                    decoded[size++] = Stomp.COLON;
+                    i++;
+                    continue;
+                case '\\':
+                    decoded[size++] = Stomp.ESCAPE;
+                    i++;
+                    continue;
+                case 'r':
+                    if (stompVersion.equals(Stomp.V1_2)) {
+                        decoded[size++] = Stomp.CARRIAGE_RETURN;
+                        i++;
+                        continue;
                     }
-                } else {
-                    decoded.write(value);
                 }
-
-            } else {
-                decoded.write(value);
             }
+            decoded[size++] = value;
         }
 
-        decoded.close();
-
-        return new String(decoded.toByteArray(), "UTF-8");
+        return new String(decoded, 0, size, StandardCharsets.UTF_8);
     }
 
     @Override
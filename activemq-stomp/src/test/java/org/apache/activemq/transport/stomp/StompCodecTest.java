@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.stomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.activemq.transport.DefaultTransportListener;
+import org.apache.activemq.transport.tcp.TcpTransport;
+import org.apache.activemq.util.ByteSequence;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StompCodecTest {
+
+    private final List<Object> frames = new ArrayList<Object>();
+    private StompWireFormat wireFormat;
+    private StompCodec codec;
+
+    @Before
+    public void setUp() throws Exception {
+        wireFormat = new StompWireFormat();
+        wireFormat.setStompVersion(Stomp.V1_1);
+        TcpTransport transport = new TcpTransport(wireFormat, new Socket());
+        transport.setTransportListener(new DefaultTransportListener() {
+            @Override
+            public void onCommand(Object command) {
+                frames.add(command);
+            }
+        });
+        codec = new StompCodec(transport);
+    }
+
+    @Test
+    public void testFramesInSingleBuffer() throws Exception {
+        String data = "\n\nSEND\ndestination:/queue/test\ncontent-length:5\n\nhello\0\n" +
+                      "SEND\ndestination:/queue/test\nkey:a\\cb\\nc\\\\d\n\nworld\0\n";
+        codec.parse(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, frames.size());
+        assertFrame(frames.get(0), "hello");
+        StompFrame second = assertFrame(frames.get(1), "world");
+        assertEquals("a:b\nc\\d", second.getHeaders().get("key"));
+    }
+
+    @Test
+    public void testFramesSplitAcrossBuffers() throws Exception {
+        wireFormat.setStompVersion(Stomp.V1_2);
+        String data = "SEND\r\ndestination:/queue/test\r\ncontent-length:5\r\n\r\nhello\0\n" +
+                      "SEND\ndestination:/queue/test\nvalue:café\n\nworld\0";
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            codec.parse(ByteBuffer.wrap(new byte[] { b }));
+        }
+
+        assertEquals(2, frames.size());
+        assertFrame(frames.get(0), "hello");
+        StompFrame second = assertFrame(frames.get(1), "world");
+        assertEquals("café", second.getHeaders().get("value"));
+    }
+
+    @Test
+    public void testWellKnownNamesAreShared() throws Exception {
+        codec.parse(ByteBuffer.wrap("SEND\ndestination:/queue/test\n\n\0".getBytes(StandardCharsets.UTF_8)));
+
+        StompFrame frame = (StompFrame) frames.get(0);
+        assertSame(Stomp.Commands.SEND, frame.getAction());
+        assertSame(Stomp.Headers.Send.DESTINATION, frame.getHeaders().keySet().iterator().next());
+    }
+
+    @Test
+    public void testMaxDataLengthExceeded() throws Exception {
+        wireFormat.setMaxDataLength(4);
+        codec.parse(ByteBuffer.wrap("SEND\ndestination:/queue/test\n\nhello\0".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, frames.size());
+        assertTrue(frames.get(0) instanceof StompFrameError);
+    }
+
+    @Test
+    public void testMarshalRoundTrip() throws Exception {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put(Stomp.Headers.Send.DESTINATION, "/queue/test");
+        headers.put("key", "a:b\nc\\d café");
+        headers.put("wide", "\u65e5\u672c \ud83d\ude00");
+        StompFrame frame = new StompFrame(Stomp.Commands.SEND, headers, "hello".getBytes(StandardCharsets.UTF_8));
+
+        ByteSequence marshaled = wireFormat.marshal(frame);
+        codec.parse(ByteBuffer.wrap(marshaled.getData(), marshaled.getOffset(), marshaled.getLength()));
+
+        assertEquals(1, frames.size());
+        StompFrame parsed = assertFrame(frames.get(0), "hello");
+        assertEquals(headers, parsed.getHeaders());
+        assertEquals(frame.getHeaders(), ((StompFrame) wireFormat.unmarshal(marshaled)).getHeaders());
+
+        byte[] text = wireFormat.marshalToString(frame).getBytes(StandardCharsets.UTF_8);
+        assertEquals(headers, ((StompFrame) wireFormat.unmarshal(new ByteSequence(text))).getHeaders());
+    }
+
+    private StompFrame assertFrame(Object command, String body) throws IOException {
+        assertTrue(command instanceof StompFrame);
+        StompFrame frame = (StompFrame) command;
+        assertEquals(Stomp.Commands.SEND, frame.getAction());
+        assertEquals("/queue/test", frame.getHeaders().get(Stomp.Headers.Send.DESTINATION));
+        assertEquals(body, new String(frame.getContent(), StandardCharsets.UTF_8));
+        return frame;
+    }
+}
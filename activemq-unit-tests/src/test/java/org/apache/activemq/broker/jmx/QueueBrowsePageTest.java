@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.jms.Connection;
+import jakarta.jms.DeliveryMode;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import javax.management.MBeanServerInvocationHandler;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueueBrowsePageTest {
+
+    private static final String QUEUE_NAME = "Browse.Paged";
+    private static final int MESSAGE_COUNT = 25;
+
+    private BrokerService broker;
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setPersistent(true);
+        broker.setDeleteAllMessagesOnStartup(true);
+        broker.setUseJmx(true);
+        broker.getManagementContext().setCreateConnector(false);
+        broker.setSchedulerSupport(false);
+        broker.start();
+        broker.waitUntilStarted();
+
+        connection = new ActiveMQConnectionFactory(broker.getVmConnectorURI()).createConnection();
+        connection.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testBrowseInPages() throws Exception {
+        sendMessages(QUEUE_NAME, MESSAGE_COUNT);
+        QueueViewMBean queue = getQueueView(QUEUE_NAME);
+
+        List<String> browsed = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            CompositeData page = queue.browsePage(null, token, 10);
+            TabularData messages = (TabularData) page.get("messages");
+            for (Object row : messages.values()) {
+                browsed.add((String) ((CompositeData) row).get("JMSMessageID"));
+            }
+            token = (String) page.get("resumeToken");
+            pages++;
+        } while (token != null && pages < 10);
+
+        assertEquals(MESSAGE_COUNT, browsed.size());
+        assertEquals(MESSAGE_COUNT, browsed.stream().distinct().count());
+        assertEquals(MESSAGE_COUNT, queue.getQueueSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testBrowseInPagesIncludesNonPersistentMessages() throws Exception {
+        sendMessages(QUEUE_NAME, 10);
+        sendMessages(QUEUE_NAME, 5, DeliveryMode.NON_PERSISTENT);
+        QueueViewMBean queue = getQueueView(QUEUE_NAME);
+
+        List<String> browsed = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            CompositeData page = queue.browsePage(null, token, 4);
+            TabularData messages = (TabularData) page.get("messages");
+            for (Object row : messages.values()) {
+                browsed.add((String) ((CompositeData) row).get("JMSMessageID"));
+            }
+            token = (String) page.get("resumeToken");
+            pages++;
+        } while (token != null && pages < 10);
+
+        assertEquals(15, browsed.size());
+        assertEquals(15, browsed.stream().distinct().count());
+        assertEquals(15, queue.getQueueSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testBrowseNonPersistentPastMaxBrowsePageSize() throws Exception {
+        sendMessages(QUEUE_NAME, 5);
+        sendMessages(QUEUE_NAME, 30, DeliveryMode.NON_PERSISTENT);
+        broker.getDestination(new ActiveMQQueue(QUEUE_NAME)).setMaxBrowsePageSize(10);
+        QueueViewMBean queue = getQueueView(QUEUE_NAME);
+
+        List<String> browsed = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            CompositeData page = queue.browsePage(null, token, 4);
+            TabularData messages = (TabularData) page.get("messages");
+            for (Object row : messages.values()) {
+                browsed.add((String) ((CompositeData) row).get("JMSMessageID"));
+            }
+            token = (String) page.get("resumeToken");
+            pages++;
+        } while (token != null && pages < 20);
+
+        assertEquals(35, browsed.size());
+        assertEquals(35, browsed.stream().distinct().count());
+        assertEquals(35, queue.getQueueSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testBrowsePageWithSelector() throws Exception {
+        sendMessages(QUEUE_NAME, MESSAGE_COUNT);
+        QueueViewMBean queue = getQueueView(QUEUE_NAME);
+
+        CompositeData page = queue.browsePage("index >= 20", null, 10);
+        assertEquals(5, ((TabularData) page.get("messages")).size());
+        assertNull(page.get("resumeToken"));
+
+        page = queue.browsePage(null, null, MESSAGE_COUNT);
+        assertEquals(MESSAGE_COUNT, ((TabularData) page.get("messages")).size());
+        assertNotNull(page.get("resumeToken"));
+        String token = (String) page.get("resumeToken");
+        assertEquals(0, ((TabularData) queue.browsePage(null, token, 10).get("messages")).size());
+    }
+
+    @Test(timeout = 60000)
+    public void testQueryDestinationStatistics() throws Exception {
+        sendMessages("Stats.A", 3);
+        sendMessages("Stats.B", 2);
+        sendMessages("Other", 1);
+        broker.getAdminView().addTopic("Stats.T");
+
+        TabularData queues = broker.getAdminView().queryDestinationStatistics("Stats.>");
+        assertEquals(2, queues.size());
+        CompositeData stats = queues.get(new Object[] { new ActiveMQQueue("Stats.A").getQualifiedName() });
+        assertNotNull(stats);
+        assertEquals(3L, stats.get("queueSize"));
+        assertEquals(3L, stats.get("enqueueCount"));
+
+        TabularData topics = broker.getAdminView().queryDestinationStatistics("topic://Stats.>");
+        assertEquals(1, topics.size());
+        assertNotNull(topics.get(new Object[] { new ActiveMQTopic("Stats.T").getQualifiedName() }));
+    }
+
+    private void sendMessages(String queueName, int count) throws Exception {
+        sendMessages(queueName, count, DeliveryMode.PERSISTENT);
+    }
+
+    private void sendMessages(String queueName, int count, int deliveryMode) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(new ActiveMQQueue(queueName));
+        producer.setDeliveryMode(deliveryMode);
+        for (int i = 0; i < count; i++) {
+            TextMessage message = session.createTextMessage("message " + i);
+            message.setIntProperty("index", i);
+            producer.send(message);
+        }
+        session.close();
+    }
+
+    private QueueViewMBean getQueueView(String queueName) throws Exception {
+        ObjectName name = BrokerMBeanSupport.createDestinationName(broker.getBrokerObjectName(), new ActiveMQQueue(queueName));
+        return MBeanServerInvocationHandler.newProxyInstance(broker.getManagementContext().getMBeanServer(), name, QueueViewMBean.class, true);
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.region;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.thread.Task;
+import org.apache.activemq.thread.TaskRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DispatchSchedulerTest {
+
+    private BrokerService broker;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setSchedulerSupport(false);
+        broker.setDispatchSchedulerPoolSize(2);
+        broker.start();
+        broker.waitUntilStarted();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testQueuesDispatchThroughScheduler() throws Exception {
+        final int queueCount = 20;
+        final int messageCount = 50;
+
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(broker.getVmConnectorURI());
+        Connection connection = factory.createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            for (int i = 0; i < queueCount; i++) {
+                MessageProducer producer = session.createProducer(new ActiveMQQueue("Dispatch." + i));
+                for (int j = 0; j < messageCount; j++) {
+                    producer.send(session.createTextMessage("message " + j));
+                }
+                producer.close();
+            }
+
+            for (int i = 0; i < queueCount; i++) {
+                MessageConsumer consumer = session.createConsumer(new ActiveMQQueue("Dispatch." + i));
+                for (int j = 0; j < messageCount; j++) {
+                    assertNotNull("message " + j + " on queue " + i, consumer.receive(5000));
+                }
+                consumer.close();
+            }
+        } finally {
+            connection.close();
+        }
+
+        assertNotNull(broker.getDispatchScheduler());
+        Destination queue = broker.getDestination(new ActiveMQQueue("Dispatch.0"));
+        assertTrue("cpu time recorded", queue.getDestinationStatistics().getDispatchCpuTime().getCount() > 0);
+        assertEquals(messageCount, queue.getDestinationStatistics().getDequeues().getCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testHeavierWeightGetsLargerShare() throws Exception {
+        DispatchScheduler scheduler = new DispatchScheduler("test", 1, Thread.NORM_PRIORITY);
+        try {
+            final AtomicInteger heavyRuns = new AtomicInteger();
+            final AtomicInteger lightRuns = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(1);
+
+            TaskRunner heavy = scheduler.createTaskRunner(busyTask(heavyRuns, done), () -> 8, null, "heavy");
+            TaskRunner light = scheduler.createTaskRunner(busyTask(lightRuns, done), () -> 1, null, "light");
+            heavy.wakeup();
+            light.wakeup();
+
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            heavy.shutdown(1000);
+            light.shutdown(1000);
+
+            assertTrue("light task was not starved: " + lightRuns.get(), lightRuns.get() > 0);
+            assertTrue("heavy " + heavyRuns.get() + " light " + lightRuns.get(), heavyRuns.get() > lightRuns.get() * 2);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private Task busyTask(final AtomicInteger runs, final CountDownLatch done) {
+        return new Task() {
+            @Override
+            public boolean iterate() {
+                long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(200);
+                while (System.nanoTime() < end) {
+                    // simulate page in work
+                }
+                if (runs.incrementAndGet() >= 400) {
+                    done.countDown();
+                    return false;
+                }
+                return done.getCount() > 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.broker.region;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import javax.management.ObjectName;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.advisory.AdvisorySupport;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.jmx.BrokerMBeanSupport;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.util.Wait;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlyweightTopicTest {
+
+    private final ActiveMQTopic first = new ActiveMQTopic("sensors.1.temp");
+    private final ActiveMQTopic second = new ActiveMQTopic("sensors.2.temp");
+    private final ActiveMQTopic regular = new ActiveMQTopic("regular");
+
+    private BrokerService brokerService;
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        PolicyEntry entry = new PolicyEntry();
+        entry.setTopic("sensors.>");
+        entry.setFlyweight(true);
+        entry.setInactiveTimeoutBeforeGC(1000);
+        entry.setMemoryLimit(1024 * 1024);
+        PolicyMap map = new PolicyMap();
+        map.setPolicyEntries(Collections.singletonList(entry));
+
+        brokerService = new BrokerService();
+        brokerService.setPersistent(false);
+        brokerService.setUseJmx(true);
+        brokerService.getManagementContext().setCreateConnector(false);
+        brokerService.setDestinationPolicy(map);
+        brokerService.setSchedulePeriodForDestinationPurge(500);
+        brokerService.start();
+        brokerService.waitUntilStarted();
+
+        connection = new ActiveMQConnectionFactory(brokerService.getVmConnectorURI()).createConnection();
+        connection.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (brokerService != null) {
+            brokerService.stop();
+            brokerService.waitUntilStopped();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testFlyweightTopicsShareStatistics() throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(new ActiveMQTopic("sensors.>"));
+        MessageProducer producer = session.createProducer(null);
+        producer.send(first, session.createTextMessage("1"));
+        producer.send(second, session.createTextMessage("2"));
+        producer.send(regular, session.createTextMessage("3"));
+        assertNotNull(consumer.receive(5000));
+        assertNotNull(consumer.receive(5000));
+
+        Map<ActiveMQDestination, Destination> destinations = brokerService.getRegionBroker().getDestinationMap();
+        Destination firstTopic = destinations.get(first);
+        Destination secondTopic = destinations.get(second);
+        assertTrue(firstTopic instanceof FlyweightTopic);
+        assertTrue(secondTopic instanceof FlyweightTopic);
+        assertFalse(destinations.get(regular) instanceof FlyweightTopic);
+
+        assertSame(firstTopic.getDestinationStatistics(), secondTopic.getDestinationStatistics());
+        assertEquals(2, firstTopic.getDestinationStatistics().getEnqueues().getCount());
+        assertEquals(2, firstTopic.getDestinationStatistics().getConsumers().getCount());
+        assertSame(((FlyweightTopic) firstTopic).getGroup(), ((FlyweightTopic) secondTopic).getGroup());
+        assertEquals(1024 * 1024, ((FlyweightTopic) firstTopic).getGroup().getSystemUsage().getMemoryUsage().getLimit());
+
+        ObjectName brokerName = brokerService.getBrokerObjectName();
+        assertFalse(brokerService.getManagementContext().getMBeanServer().isRegistered(BrokerMBeanSupport.createDestinationName(brokerName, first)));
+        assertTrue(brokerService.getManagementContext().getMBeanServer().isRegistered(BrokerMBeanSupport.createDestinationName(brokerName, regular)));
+    }
+
+    @Test(timeout = 60000)
+    public void testFlyweightTopicsShareAdvisoriesAndStoreLazily() throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer advisories = session.createConsumer(AdvisorySupport.getConsumerAdvisoryTopic(new ActiveMQTopic("sensors.>")));
+        session.createConsumer(first);
+        session.createConsumer(second);
+        assertNotNull(advisories.receive(5000));
+        assertNotNull(advisories.receive(5000));
+
+        Map<ActiveMQDestination, Destination> destinations = brokerService.getRegionBroker().getDestinationMap();
+        assertFalse(destinations.containsKey(AdvisorySupport.getConsumerAdvisoryTopic(first)));
+        assertFalse(destinations.containsKey(AdvisorySupport.getConsumerAdvisoryTopic(second)));
+        assertFalse(((FlyweightTopic) destinations.get(first)).isStored());
+
+        Connection durableConnection = new ActiveMQConnectionFactory(brokerService.getVmConnectorURI()).createConnection();
+        try {
+            durableConnection.setClientID("flyweight");
+            durableConnection.start();
+            Session durableSession = durableConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            durableSession.createDurableSubscriber(second, "durable");
+            assertTrue(((FlyweightTopic) destinations.get(second)).isStored());
+            assertFalse(((FlyweightTopic) destinations.get(first)).isStored());
+        } finally {
+            durableConnection.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testIdleFlyweightTopicsAreRemoved() throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(first);
+        session.createProducer(first).send(session.createTextMessage("1"));
+        assertNotNull(consumer.receive(5000));
+        assertTrue(brokerService.getRegionBroker().getDestinationMap().containsKey(first));
+        session.close();
+
+        assertTrue("idle flyweight topic should be removed", Wait.waitFor(new Wait.Condition() {
+            @Override
+            public boolean isSatisified() throws Exception {
+                return !brokerService.getRegionBroker().getDestinationMap().containsKey(first);
+            }
+        }));
+    }
+
+    @Test(timeout = 60000)
+    public void testFlyweightTopicWithOfflineDurableSubscriptionIsKept() throws Exception {
+        Connection durableConnection = new ActiveMQConnectionFactory(brokerService.getVmConnectorURI()).createConnection();
+        durableConnection.setClientID("offline");
+        durableConnection.start();
+        Session durableSession = durableConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        durableSession.createDurableSubscriber(second, "durable").close();
+        durableConnection.close();
+
+        final FlyweightTopic topic = (FlyweightTopic) brokerService.getRegionBroker().getDestinationMap().get(second);
+        assertTrue(topic.isStored());
+        assertTrue(topic.isActive());
+
+        // a few purge periods pass without the topic being collected
+        Thread.sleep(2500);
+        assertSame(topic, brokerService.getRegionBroker().getDestinationMap().get(second));
+        assertFalse(topic.canGC());
+    }
+}
@@ -187,6 +187,35 @@ public class ActiveMQMessageTest extends TestCase {
         LOG.info("Message is:  " + msg1);
     }
 
+    public void testCopyPropertiesAreCopyOnWrite() throws Exception {
+        ActiveMQMessage msg1 = new ActiveMQMessage();
+        msg1.setJMSMessageID(this.jmsMessageID);
+        msg1.setStringProperty("shared", "value");
+        msg1.setIntProperty("count", 1);
+
+        ActiveMQMessage msg2 = (ActiveMQMessage) msg1.copy();
+        ActiveMQMessage msg3 = (ActiveMQMessage) msg1.copy();
+        assertEquals("value", msg2.getStringProperty("shared"));
+
+        msg2.setIntProperty("count", 2);
+        msg3.removeProperty("shared");
+        assertEquals(1, msg1.getIntProperty("count"));
+        assertEquals(2, msg2.getIntProperty("count"));
+        assertEquals(1, msg3.getIntProperty("count"));
+        assertEquals("value", msg1.getStringProperty("shared"));
+        assertEquals("value", msg2.getStringProperty("shared"));
+        assertNull(msg3.getStringProperty("shared"));
+
+        msg1.setStringProperty("shared", "changed");
+        assertEquals("value", msg2.getStringProperty("shared"));
+
+        // a copy of an expired message must not carry the original expiration
+        msg1.setProperty(org.apache.activemq.command.Message.ORIGINAL_EXPIRATION, 10L);
+        ActiveMQMessage msg4 = (ActiveMQMessage) msg1.copy();
+        assertNull(msg4.getProperty(org.apache.activemq.command.Message.ORIGINAL_EXPIRATION));
+        assertEquals(10L, msg1.getProperty(org.apache.activemq.command.Message.ORIGINAL_EXPIRATION));
+    }
+
     public void testGetAndSetJMSMessageID() throws Exception {
         ActiveMQMessage msg = new ActiveMQMessage();
         msg.setJMSMessageID(this.jmsMessageID);
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.jms.JMSException;
+
+import junit.framework.TestCase;
+
+import org.apache.activemq.command.ActiveMQTextMessage;
+
+public class MessageEvaluationContextTest extends TestCase {
+
+    public void testSelectorResultsCachedPerMessage() throws Exception {
+        ActiveMQTextMessage first = new ActiveMQTextMessage();
+        first.setStringProperty("color", "red");
+        ActiveMQTextMessage second = new ActiveMQTextMessage();
+        second.setStringProperty("color", "blue");
+
+        CountingExpression expression = new CountingExpression();
+        MessageEvaluationContext context = new NonCachedMessageEvaluationContext();
+        context.setCacheSelectorResults(true);
+
+        context.setMessageReference(first);
+        assertTrue(context.matches(expression));
+        assertTrue(context.matches(expression));
+        assertEquals(1, expression.evaluations.get());
+
+        context.setMessageReference(second);
+        assertFalse(context.matches(expression));
+        assertFalse(context.matches(expression));
+        assertEquals(2, expression.evaluations.get());
+    }
+
+    public void testSelectorResultsNotCachedByDefault() throws Exception {
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setStringProperty("color", "red");
+
+        CountingExpression expression = new CountingExpression();
+        MessageEvaluationContext context = new MessageEvaluationContext();
+        context.setMessageReference(message);
+
+        assertTrue(context.matches(expression));
+        assertTrue(context.matches(expression));
+        assertEquals(2, expression.evaluations.get());
+    }
+
+    private static class CountingExpression implements BooleanExpression {
+
+        private final AtomicInteger evaluations = new AtomicInteger();
+
+        @Override
+        public Object evaluate(MessageEvaluationContext message) throws JMSException {
+            return Boolean.valueOf(matches(message));
+        }
+
+        @Override
+        public boolean matches(MessageEvaluationContext message) throws JMSException {
+            evaluations.incrementAndGet();
+            try {
+                return "red".equals(message.getMessage().getProperty("color"));
+            } catch (Exception e) {
+                throw new JMSException(e.getMessage());
+            }
+        }
+    }
+}
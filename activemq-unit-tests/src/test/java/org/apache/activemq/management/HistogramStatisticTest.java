@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.management;
+
+public class HistogramStatisticTest extends StatisticTestSupport {
+
+    public void testStatistic() throws Exception {
+        HistogramStatisticImpl stat = new HistogramStatisticImpl("myHistogram", "millis", "myDescription");
+        stat.setEnabled(true);
+        assertStatistic(stat, "myHistogram", "millis", "myDescription");
+
+        assertEquals(0, stat.getCount());
+        assertEquals(0.0, stat.getValueAtPercentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            stat.record(i);
+        }
+        assertEquals(1000, stat.getCount());
+        assertEquals(500500, stat.getTotal());
+        assertEquals(1000, stat.getMax());
+
+        HistogramStatisticImpl.Snapshot snapshot = stat.getSnapshot();
+        assertEquals(500.5, snapshot.getMean(), 0.001);
+        assertWithinPrecision(500, snapshot.getValueAtPercentile(50));
+        assertWithinPrecision(990, snapshot.getValueAtPercentile(99));
+        assertEquals(1000.0, snapshot.getValueAtPercentile(100));
+
+        stat.reset();
+        assertEquals(0, stat.getCount());
+        assertEquals(0, stat.getMax());
+    }
+
+    public void testDisabledStatisticIgnoresValues() throws Exception {
+        HistogramStatisticImpl stat = new HistogramStatisticImpl("myHistogram", "millis", "myDescription");
+        stat.record(10);
+        assertEquals(0, stat.getCount());
+    }
+
+    public void testParentAggregates() throws Exception {
+        HistogramStatisticImpl parent = new HistogramStatisticImpl("parent", "millis", "parent");
+        HistogramStatisticImpl child = new HistogramStatisticImpl(parent, "child", "millis", "child");
+        parent.setEnabled(true);
+        child.setEnabled(true);
+        child.record(5);
+        child.record(7);
+        assertEquals(2, parent.getCount());
+        assertEquals(7, parent.getMax());
+    }
+
+    public void testBucketsCoverRange() throws Exception {
+        for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 1000, 123456789L, Long.MAX_VALUE}) {
+            int index = HistogramStatisticImpl.bucketIndex(value);
+            assertTrue(index >= 0 && index < HistogramStatisticImpl.BUCKET_COUNT);
+        }
+        assertEquals(HistogramStatisticImpl.BUCKET_COUNT - 1, HistogramStatisticImpl.bucketIndex(Long.MAX_VALUE));
+        for (long value = 0; value < 100000; value += 37) {
+            long upper = HistogramStatisticImpl.bucketUpperBound(HistogramStatisticImpl.bucketIndex(value));
+            assertTrue(upper >= value);
+            assertTrue(upper <= value + value / 8);
+        }
+    }
+
+    private void assertWithinPrecision(long expected, double actual) {
+        assertTrue("expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.125);
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.plugin;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+
+import junit.framework.TestCase;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerPlugin;
+import org.apache.activemq.broker.BrokerService;
+
+public class MetricsBrokerPluginTest extends TestCase {
+
+    private BrokerService broker;
+    private Connection connection;
+
+    public void testMetricsEndpoint() throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue("Metrics.Test");
+        MessageProducer producer = session.createProducer(queue);
+        for (int i = 0; i < 10; i++) {
+            producer.send(session.createTextMessage("message " + i));
+        }
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(consumer.receive(5000));
+        }
+        consumer.close();
+
+        MetricsBroker metricsBroker = (MetricsBroker) broker.getBroker().getAdaptor(MetricsBroker.class);
+        assertNotNull(metricsBroker);
+
+        URL url = new URL("http://localhost:" + metricsBroker.getPort() + "/metrics");
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        assertEquals(200, http.getResponseCode());
+        String body;
+        try (InputStream in = http.getInputStream()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        assertTrue(body, body.contains("activemq_destination_enqueues_total{destination=\"queue://Metrics.Test\"} 10"));
+        assertTrue(body, body.contains("activemq_destination_enqueue_to_dispatch_millis_count{destination=\"queue://Metrics.Test\"} 10"));
+        assertTrue(body, body.contains("activemq_destination_dispatch_to_ack_millis_count{destination=\"queue://Metrics.Test\"} 10"));
+        assertTrue(body, body.contains("activemq_connector_dispatch_to_ack_millis_count{connector=\"tcp\"} 10"));
+        assertTrue(body, body.contains("activemq_destination_store_write_millis_count{destination=\"queue://Metrics.Test\"} 10"));
+        assertTrue(body, body.contains("activemq_destination_journal_sync_micros_count{destination=\"queue://Metrics.Test\"} 10"));
+        assertTrue(body, body.contains("activemq_connector_store_write_millis_count{connector=\"tcp\"} 10"));
+        assertTrue(body, body.contains("activemq_connector_journal_sync_micros_count{connector=\"tcp\"} 10"));
+        assertTrue(body, body.contains("activemq_store_write_millis_count"));
+        assertTrue(body, body.contains("activemq_journal_sync_micros_count"));
+
+        // each family is grouped under its TYPE line, the max of a summary is a gauge family of its own
+        assertTrue(body, body.contains("# TYPE activemq_destination_enqueues_total counter\nactivemq_destination_enqueues_total{"));
+        assertTrue(body, body.contains("# TYPE activemq_destination_store_write_millis summary\nactivemq_destination_store_write_millis{"));
+        assertTrue(body, body.contains("# TYPE activemq_destination_store_write_millis_max gauge\nactivemq_destination_store_write_millis_max{"));
+        assertTrue(body, body.contains("# TYPE activemq_store_write_millis_max gauge\nactivemq_store_write_millis_max "));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        broker = new BrokerService();
+        MetricsBrokerPlugin plugin = new MetricsBrokerPlugin();
+        plugin.setPort(0);
+        broker.setPlugins(new BrokerPlugin[] {plugin});
+        broker.setDeleteAllMessagesOnStartup(true);
+        broker.setUseJmx(false);
+        broker.setEnableStatistics(true);
+        broker.addConnector("tcp://localhost:0").setName("tcp");
+        broker.start();
+        broker.waitUntilStarted();
+
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(broker.getTransportConnectors().get(0).getPublishableConnectString());
+        connection = factory.createConnection();
+        connection.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+}
@@ -138,6 +138,42 @@ public class KahaDBVersionTest extends TestCase {
         doConvertRestartCycle(VERSION_6_DB);
     }
 
+    public void testUpgradedIndexSurvivesCrashBeforeCheckpoint() throws Exception {
+        File upgradeDir = new File("target/activemq-data/kahadb/upgradeDB");
+        final File crashDir = new File("target/activemq-data/kahadb/crashDB");
+        IOHelper.deleteFile(upgradeDir);
+        IOHelper.deleteFile(crashDir);
+        IOHelper.copyFile(VERSION_6_DB, upgradeDir);
+
+        // upgrade the index without a checkpoint and take its files as a crash would leave them
+        KahaDBStore store = new KahaDBStore();
+        store.setDirectory(upgradeDir);
+        store.setJournalMaxFileLength(1024 * 1024);
+        store.setCheckpointInterval(0);
+        store.setCleanupInterval(0);
+        store.start();
+        try {
+            IOHelper.copyFile(upgradeDir, crashDir);
+        } finally {
+            store.stop();
+        }
+
+        KahaDBStore restarted = new KahaDBStore();
+        restarted.setDirectory(crashDir);
+        restarted.setJournalMaxFileLength(1024 * 1024);
+        restarted.setArchiveCorruptedIndex(true);
+        restarted.start();
+        try {
+            assertEquals(MessageDatabase.VERSION, restarted.getMetadata().version);
+            String[] archived = crashDir.list((dir, name) -> name.startsWith("db.data-"));
+            assertEquals("upgraded index was rebuilt from the journal", 0, archived.length);
+        } finally {
+            restarted.stop();
+        }
+
+        doConvertRestartCycle(crashDir);
+    }
+
     public void doConvertRestartCycle(File existingStore) throws Exception {
 
         File testDir = new File("target/activemq-data/kahadb/versionDB");
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.jms.Connection;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.TransportConnector;
+import org.apache.activemq.transport.tcp.TcpTransportServer;
+import org.apache.activemq.util.Wait;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NIOSelectorEventLoopTest {
+
+    private static final int SELECTOR_COUNT = 2;
+    private static final int CONNECTION_COUNT = 4;
+
+    private BrokerService broker;
+    private TransportConnector connector;
+    private final List<Connection> connections = new ArrayList<Connection>();
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        connector = broker.addConnector("nio://localhost:0?selectorCount=" + SELECTOR_COUNT);
+        broker.start();
+        broker.waitUntilStarted();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (Exception ignore) {
+            }
+        }
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testConnectionsAreSpreadOverEventLoops() throws Exception {
+        final SelectorManager manager = ((TcpTransportServer) connector.getServer()).getSelectorManager();
+        assertNotNull(manager);
+        assertTrue(manager.isEventLoopGroup());
+        assertEquals(SELECTOR_COUNT, manager.getEventLoops().size());
+
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(connector.getPublishableConnectString());
+        for (int i = 0; i < CONNECTION_COUNT; i++) {
+            Connection connection = factory.createConnection();
+            connection.start();
+            connections.add(connection);
+        }
+
+        assertTrue(Wait.waitFor(() -> {
+            for (SelectorWorker loop : manager.getEventLoops()) {
+                if (loop.getChannelCount() != CONNECTION_COUNT / SELECTOR_COUNT) {
+                    return false;
+                }
+            }
+            return true;
+        }, 5000, 100));
+
+        Session session = connections.get(0).createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue("TEST");
+        MessageConsumer consumer = connections.get(1).createSession(false, Session.AUTO_ACKNOWLEDGE).createConsumer(queue);
+        MessageProducer producer = session.createProducer(queue);
+        producer.send(session.createTextMessage("test"));
+        Message received = consumer.receive(5000);
+        assertNotNull(received);
+
+        long selects = 0;
+        for (SelectorWorker loop : manager.getEventLoops()) {
+            selects += loop.getSelectCount();
+        }
+        assertTrue(selects > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testEventLoopsStopWithConnector() throws Exception {
+        final SelectorManager manager = ((TcpTransportServer) connector.getServer()).getSelectorManager();
+        assertNotNull(manager);
+
+        connector.stop();
+
+        for (final SelectorWorker loop : manager.getEventLoops()) {
+            assertTrue(Wait.waitFor(() -> loop.isReleased(), 5000, 100));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.transport.nio;
+
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.transport.TransportStatistics;
+import org.apache.activemq.util.Wait;
+
+/**
+ * Runs the NIO send and receive tests with write coalescing enabled on both
+ * the broker and the client side of the connection.
+ */
+public class NIOWriteCoalescingSendAndReceiveTest extends NIOJmsSendAndReceiveTest {
+
+    @Override
+    protected ActiveMQConnectionFactory createConnectionFactory() {
+        return new ActiveMQConnectionFactory(getBrokerURL() + "?writeCoalescing=true&writeCoalescingWindow=20");
+    }
+
+    @Override
+    protected BrokerService createBroker() throws Exception {
+        BrokerService answer = new BrokerService();
+        answer.setPersistent(false);
+        answer.addConnector(getBrokerURL() + "?transport.writeCoalescing=true");
+        return answer;
+    }
+
+    public void testConnectorCountsCoalescedWrites() throws Exception {
+        Session session = sendConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(session.createQueue("NIO.Coalescing"));
+        for (int i = 0; i < 10; i++) {
+            producer.send(session.createTextMessage("message " + i));
+        }
+        producer.close();
+        session.close();
+
+        final TransportStatistics statistics = broker.getTransportConnectors().get(0).getStatistics().getTransportStatistics();
+        assertTrue("no coalesced frames counted", Wait.waitFor(new Wait.Condition() {
+            @Override
+            public boolean isSatisified() throws Exception {
+                return statistics.getFramesWritten().getCount() >= 10;
+            }
+        }));
+        assertTrue(statistics.getSocketWrites().getCount() > 0);
+        assertTrue(statistics.getSocketWritesPerFrame() > 0);
+    }
+}